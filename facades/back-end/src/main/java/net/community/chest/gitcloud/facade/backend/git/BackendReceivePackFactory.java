@@ -23,18 +23,24 @@ import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 
 import net.community.chest.gitcloud.facade.git.PackFactory;
+import net.community.chest.gitcloud.facade.git.WireCaptureService;
 
 import org.apache.commons.io.HexDumpOutputStream;
+import org.apache.commons.io.capture.WireCaptureRecordType;
+import org.apache.commons.io.capture.WireCaptureSession;
 import org.apache.commons.io.input.TeeInputStream;
 import org.apache.commons.io.output.AsciiLineOutputStream;
 import org.apache.commons.io.output.LineLevelAppender;
 import org.apache.commons.io.output.TeeOutputStream;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.transport.ReceivePack;
 import org.eclipse.jgit.transport.resolver.ReceivePackFactory;
 import org.eclipse.jgit.transport.resolver.ServiceNotAuthorizedException;
 import org.eclipse.jgit.transport.resolver.ServiceNotEnabledException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import org.springframework.util.SystemPropertyUtils;
@@ -44,6 +50,7 @@ import org.springframework.util.SystemPropertyUtils;
  * @since Sep 12, 2013 10:41:52 AM
  */
 @Component
+@ManagedResource(objectName="net.community.chest.gitcloud.facade.backend.git:name=BackendReceivePackFactory")
 public class BackendReceivePackFactory<C> extends PackFactory<C> implements ReceivePackFactory<C> {
     public static final int DEFAULT_RECEIVE_TIMEOUT_SEC=DEFAULT_TIMEOUT_SEC;
     public static final String  RECEIVE_TIMEOUT_SEC_PROP="gitcloud.backend.receive.pack.timeout.sec";
@@ -61,11 +68,13 @@ public class BackendReceivePackFactory<C> extends PackFactory<C> implements Rece
     }
 
     private final int receiveTimeoutValue;
+    private final WireCaptureService wireCapture;
 
     @Inject
-    public BackendReceivePackFactory(@Value(RECEIVE_TIMEOUT_SEC_INJECTION_VALUE) int timeoutValue) {
+    public BackendReceivePackFactory(@Value(RECEIVE_TIMEOUT_SEC_INJECTION_VALUE) int timeoutValue, WireCaptureService captureService) {
         Assert.state(timeoutValue > 0, "Bad timeout value: " + timeoutValue);
         receiveTimeoutValue = timeoutValue;
+        wireCapture = Validate.notNull(captureService, "No wire capture service", ArrayUtils.EMPTY_OBJECT_ARRAY);
 
         synchronized(holder) {
             Assert.state(holder.get() == null, "Double registered factory");
@@ -76,12 +85,14 @@ public class BackendReceivePackFactory<C> extends PackFactory<C> implements Rece
     @Override
     public ReceivePack create(C request, Repository db)
             throws ServiceNotEnabledException, ServiceNotAuthorizedException {
-        final String    logPrefix;
+        final String    logPrefix, remoteUser, repoName=db.getDirectory().getName();
         if (request instanceof HttpServletRequest) {
             HttpServletRequest  req=(HttpServletRequest) request;
             logPrefix = "create(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]";
+            remoteUser = req.getRemoteUser();
         } else {
             logPrefix = "create(" + db.getDirectory() + ")";
+            remoteUser = null;
         }
         if (logger.isDebugEnabled()) {
             logger.debug(logPrefix + ": " +  db.getDirectory());
@@ -91,53 +102,36 @@ public class BackendReceivePackFactory<C> extends PackFactory<C> implements Rece
             @Override
             @SuppressWarnings("synthetic-access")
             public void receive(InputStream input, OutputStream output, OutputStream messages) throws IOException {
-                InputStream     effIn=input;
-                OutputStream    effOut=output, effMessages=messages;
-                if (logger.isTraceEnabled()) {
-                    LineLevelAppender   inputAppender=new LineLevelAppender() {
-                            @Override
-                            public void writeLineData(CharSequence lineData) throws IOException {
-                                logger.trace(logPrefix + " upload(C): " + lineData);
-                            }
-                            
-                            @Override
-                            public boolean isWriteEnabled() {
-                                return true;
-                            }
-                        };
+                InputStream         effIn=input;
+                OutputStream        effOut=output, effMessages=messages;
+                WireCaptureSession  session=wireCapture.openSession(repoName, remoteUser, logPrefix);
+                if (session != null) {
+                    effIn = session.wrapInput(effIn, WireCaptureRecordType.CLIENT);
+                    effOut = session.wrapOutput(effOut, WireCaptureRecordType.SERVER);
+                    if (effMessages != null) {
+                        effMessages = session.wrapOutput(effMessages, WireCaptureRecordType.MESSAGES);
+                    }
+                } else if (logger.isTraceEnabled()) {
+                    LineLevelAppender   inputAppender=traceAppender.createAppender(logPrefix + " upload(C): ");
                    effIn = new TeeInputStream(effIn, new HexDumpOutputStream(inputAppender), true);
 
-                   LineLevelAppender   outputAppender=new LineLevelAppender() {
-                           @Override
-                           public void writeLineData(CharSequence lineData) throws IOException {
-                               logger.trace(logPrefix + " upload(S): " + lineData);
-                           }
-                           
-                           @Override
-                           public boolean isWriteEnabled() {
-                               return true;
-                           }
-                       };
+                   LineLevelAppender   outputAppender=traceAppender.createAppender(logPrefix + " upload(S): ");
                    effOut = new TeeOutputStream(effOut, new HexDumpOutputStream(outputAppender));
                
                    if (effMessages != null) {
-                       LineLevelAppender   messagesAppender=new LineLevelAppender() {
-                               @Override
-                               public void writeLineData(CharSequence lineData) throws IOException {
-                                   logger.trace(logPrefix + " upload(M): " + lineData);
-                               }
-                               
-                               @Override
-                               public boolean isWriteEnabled() {
-                                   return true;
-                               }
-                           };
+                       LineLevelAppender   messagesAppender=traceAppender.createAppender(logPrefix + " upload(M): ");
                        // TODO review the decision to use an AsciiLineOutputStream here
                        effMessages = new TeeOutputStream(effMessages, new AsciiLineOutputStream(messagesAppender));
                    }
                 }
 
-                super.receive(effIn, effOut, effMessages);
+                try {
+                    super.receive(effIn, effOut, effMessages);
+                } finally {
+                    if (session != null) {
+                        session.close();
+                    }
+                }
             }
         };
         receive.setTimeout(receiveTimeoutValue);
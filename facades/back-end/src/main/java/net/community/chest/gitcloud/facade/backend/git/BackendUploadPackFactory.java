@@ -25,8 +25,11 @@ import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 
 import net.community.chest.gitcloud.facade.git.PackFactory;
+import net.community.chest.gitcloud.facade.git.WireCaptureService;
 
 import org.apache.commons.io.HexDumpOutputStream;
+import org.apache.commons.io.capture.WireCaptureRecordType;
+import org.apache.commons.io.capture.WireCaptureSession;
 import org.apache.commons.io.input.TeeInputStream;
 import org.apache.commons.io.output.AsciiLineOutputStream;
 import org.apache.commons.io.output.LineLevelAppender;
@@ -44,6 +47,7 @@ import org.eclipse.jgit.transport.resolver.ServiceNotAuthorizedException;
 import org.eclipse.jgit.transport.resolver.ServiceNotEnabledException;
 import org.eclipse.jgit.transport.resolver.UploadPackFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import org.springframework.util.ReflectionUtils;
@@ -54,6 +58,7 @@ import org.springframework.util.SystemPropertyUtils;
  * @since Sep 12, 2013 9:19:26 AM
  */
 @Component
+@ManagedResource(objectName="net.community.chest.gitcloud.facade.backend.git:name=BackendUploadPackFactory")
 public class BackendUploadPackFactory<C> extends PackFactory<C> implements UploadPackFactory<C> {
     public static final int DEFAULT_UPLOAD_TIMEOUT_SEC=DEFAULT_TIMEOUT_SEC;
     public static final String  UPLOAD_TIMEOUT_SEC_PROP="gitcloud.backend.upload.pack.timeout.sec";
@@ -75,11 +80,13 @@ public class BackendUploadPackFactory<C> extends PackFactory<C> implements Uploa
     }
             
     private final int uploadTimeoutValue;
+    private final WireCaptureService wireCapture;
 
     @Inject
-    public BackendUploadPackFactory(@Value(UPLOAD_TIMEOUT_SEC_INJECTION_VALUE) int timeoutValue) {
+    public BackendUploadPackFactory(@Value(UPLOAD_TIMEOUT_SEC_INJECTION_VALUE) int timeoutValue, WireCaptureService captureService) {
         Assert.state(timeoutValue > 0, "Bad timeout value: " + timeoutValue);
         uploadTimeoutValue = timeoutValue;
+        wireCapture = Validate.notNull(captureService, "No wire capture service", ArrayUtils.EMPTY_OBJECT_ARRAY);
         
         synchronized(holder) {
             Assert.state(holder.get() == null, "Double registered factory");
@@ -91,12 +98,14 @@ public class BackendUploadPackFactory<C> extends PackFactory<C> implements Uploa
     public UploadPack create(final C request, Repository db)
             throws ServiceNotEnabledException, ServiceNotAuthorizedException {
         final File      dir=db.getDirectory();
-        final String    logPrefix;
+        final String    logPrefix, remoteUser;
         if (request instanceof HttpServletRequest) {
             HttpServletRequest  req=(HttpServletRequest) request;
             logPrefix = "create(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]";
+            remoteUser = req.getRemoteUser();
         } else {
             logPrefix = "create(" + dir.getAbsolutePath() + ")";
+            remoteUser = null;
         }
         if (logger.isDebugEnabled()) {
             logger.debug(logPrefix + ": " + dir.getAbsolutePath());
@@ -106,53 +115,36 @@ public class BackendUploadPackFactory<C> extends PackFactory<C> implements Uploa
                 @Override
                 @SuppressWarnings("synthetic-access")
                 public void upload(InputStream input, OutputStream output, OutputStream messages) throws IOException {
-                    InputStream     effIn=input;
-                    OutputStream    effOut=output, effMessages=messages;
-                    if (logger.isTraceEnabled()) {
-                        LineLevelAppender   inputAppender=new LineLevelAppender() {
-                                @Override
-                                public void writeLineData(CharSequence lineData) throws IOException {
-                                    logger.trace(logPrefix + " upload(C): " + lineData);
-                                }
-                                
-                                @Override
-                                public boolean isWriteEnabled() {
-                                    return true;
-                                }
-                            };
+                    InputStream         effIn=input;
+                    OutputStream        effOut=output, effMessages=messages;
+                    WireCaptureSession  session=wireCapture.openSession(dir.getName(), remoteUser, logPrefix);
+                    if (session != null) {
+                        effIn = session.wrapInput(effIn, WireCaptureRecordType.CLIENT);
+                        effOut = session.wrapOutput(effOut, WireCaptureRecordType.SERVER);
+                        if (effMessages != null) {
+                            effMessages = session.wrapOutput(effMessages, WireCaptureRecordType.MESSAGES);
+                        }
+                    } else if (logger.isTraceEnabled()) {
+                        LineLevelAppender   inputAppender=traceAppender.createAppender(logPrefix + " upload(C): ");
                        effIn = new TeeInputStream(effIn, new HexDumpOutputStream(inputAppender), true);
 
-                       LineLevelAppender   outputAppender=new LineLevelAppender() {
-                               @Override
-                               public void writeLineData(CharSequence lineData) throws IOException {
-                                   logger.trace(logPrefix + " upload(S): " + lineData);
-                               }
-                               
-                               @Override
-                               public boolean isWriteEnabled() {
-                                   return true;
-                               }
-                           };
+                       LineLevelAppender   outputAppender=traceAppender.createAppender(logPrefix + " upload(S): ");
                        effOut = new TeeOutputStream(effOut, new HexDumpOutputStream(outputAppender));
                        
                        if (effMessages != null) {
-                           LineLevelAppender   messagesAppender=new LineLevelAppender() {
-                                   @Override
-                                   public void writeLineData(CharSequence lineData) throws IOException {
-                                       logger.trace(logPrefix + " upload(M): " + lineData);
-                                   }
-                                   
-                                   @Override
-                                   public boolean isWriteEnabled() {
-                                       return true;
-                                   }
-                               };
+                           LineLevelAppender   messagesAppender=traceAppender.createAppender(logPrefix + " upload(M): ");
                            // TODO review the decision to use an AsciiLineOutputStream here
                            effMessages = new TeeOutputStream(effMessages, new AsciiLineOutputStream(messagesAppender));
                        }
                     }
 
-                    super.upload(effIn, effOut, effMessages);
+                    try {
+                        super.upload(effIn, effOut, effMessages);
+                    } finally {
+                        if (session != null) {
+                            session.close();
+                        }
+                    }
                 }
 
                 @Override
@@ -164,17 +156,7 @@ public class BackendUploadPackFactory<C> extends PackFactory<C> implements Uploa
                         effAdv = new PacketLineOutRefAdvertiser(pckOut) {
                                 private final PacketLineOut pckLog=
                                         new PacketLineOut(  // TODO review the decision to use an AsciiLineOutputStream here
-                                                new AsciiLineOutputStream(new LineLevelAppender() {
-                                                            @Override
-                                                            public void writeLineData(CharSequence lineData) throws IOException {
-                                                                logger.trace(logPrefix + " S: " + lineData);
-                                                            }
-                                                            
-                                                            @Override
-                                                            public boolean isWriteEnabled() {
-                                                                return true;
-                                                            }
-                                                        }));
+                                                new AsciiLineOutputStream(traceAppender.createAppender(logPrefix + " S: ")));
 
                                 @Override
                                 protected void writeOne(CharSequence line) throws IOException {
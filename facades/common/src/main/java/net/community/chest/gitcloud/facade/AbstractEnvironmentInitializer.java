@@ -123,29 +123,34 @@ public abstract class AbstractEnvironmentInitializer implements ServletContextLi
         }
 
         ClassLoader cl=ExtendedClassUtils.getDefaultClassLoader(getClass());
-        for (String fileName : names) {
-            File    targetFile=new File(confDir, fileName);
-            if (targetFile.exists()) {
-                logger.info("extractConfigFiles(" + fileName + ")[" + resPrefix + "] skip - already exists: " + ExtendedFileUtils.toString(targetFile));
-                continue;
-            }
-
-            try {
-                long    copyLength=extractConfigFile(
-                            cl.getResourceAsStream(resPrefix + "/" + fileName), targetFile, getWorkBuf(ExtendedIOUtils.DEFAULT_BUFFER_SIZE_VALUE));
-                if (copyLength <= 0L) {
-                    throw new StreamCorruptedException("Bad copy count: " + copyLength);
+        byte[]  cpyBuf=ExtendedIOUtils.COPY_BUFFERS.acquire();
+        try {
+            for (String fileName : names) {
+                File    targetFile=new File(confDir, fileName);
+                if (targetFile.exists()) {
+                    logger.info("extractConfigFiles(" + fileName + ")[" + resPrefix + "] skip - already exists: " + ExtendedFileUtils.toString(targetFile));
+                    continue;
                 }
 
-                logger.info("extractConfigFiles(" + resPrefix + ")[" + fileName + "] " + copyLength + " bytes: " + ExtendedFileUtils.toString(targetFile));
-            } catch(IOException e) {
-                RuntimeException    thrown=
-                        new RuntimeException("extractConfigFiles(" + resPrefix + ")[" + fileName + "]"
-                                           + " failed (" + e.getClass().getSimpleName() + ")"
-                                           + " to extract contents: " + e.getMessage(), e);
-                logger.warn(thrown.getMessage(), e);
-                throw thrown;
+                try {
+                    long    copyLength=extractConfigFile(
+                                cl.getResourceAsStream(resPrefix + "/" + fileName), targetFile, cpyBuf);
+                    if (copyLength <= 0L) {
+                        throw new StreamCorruptedException("Bad copy count: " + copyLength);
+                    }
+
+                    logger.info("extractConfigFiles(" + resPrefix + ")[" + fileName + "] " + copyLength + " bytes: " + ExtendedFileUtils.toString(targetFile));
+                } catch(IOException e) {
+                    RuntimeException    thrown=
+                            new RuntimeException("extractConfigFiles(" + resPrefix + ")[" + fileName + "]"
+                                               + " failed (" + e.getClass().getSimpleName() + ")"
+                                               + " to extract contents: " + e.getMessage(), e);
+                    logger.warn(thrown.getMessage(), e);
+                    throw thrown;
+                }
             }
+        } finally {
+            ExtendedIOUtils.COPY_BUFFERS.release(cpyBuf);
         }
     }
 
@@ -161,11 +166,18 @@ public abstract class AbstractEnvironmentInitializer implements ServletContextLi
         }
     }
 
+    /**
+     * @param initialSize Minimum size of the buffer
+     * @return A work buffer owned by this instance - allocated on first call
+     * @deprecated Use {@link ExtendedIOUtils#COPY_BUFFERS} directly and
+     * release the acquired buffer when done
+     */
+    @Deprecated
     protected byte[] getWorkBuf(int initialSize) {
         if (workBuf == null) {
             workBuf = new byte[initialSize];
         }
-        
+
         return workBuf;
     }
 }
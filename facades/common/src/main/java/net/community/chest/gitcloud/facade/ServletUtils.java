@@ -17,14 +17,13 @@ package net.community.chest.gitcloud.facade;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Map;
-import java.util.TreeMap;
 import java.util.logging.Level;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.collections15.map.AsciiCaseInsensitiveMap;
 import org.apache.commons.lang3.ExtendedCharSequenceUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.AbstractJULWrapper;
@@ -102,33 +101,96 @@ public class ServletUtils {
         };
     }
     
-    public static final Map<String,String> getRequestHeaders(HttpServletRequest req) {
+    /**
+     * @param req The {@link HttpServletRequest}
+     * @return A case insensitive map of <U>all</U> the request headers values
+     * - multi-valued headers are mapped to all their values
+     */
+    public static final AsciiCaseInsensitiveMap<String> getRequestHeaders(HttpServletRequest req) {
         // NOTE: map must be case insensitive as per HTTP requirements
-        Map<String,String>  hdrsMap=new TreeMap<String,String>(String.CASE_INSENSITIVE_ORDER);
+        AsciiCaseInsensitiveMap<String> hdrsMap=new AsciiCaseInsensitiveMap<String>();
         for (Enumeration<String> hdrs=req.getHeaderNames(); (hdrs != null) && hdrs.hasMoreElements(); ) {
-            String  hdrName=hdrs.nextElement(), hdrValue=req.getHeader(hdrName);
-            hdrsMap.put(capitalizeHttpHeaderName(hdrName), StringUtils.trimToEmpty(hdrValue));
+            String  hdrName=capitalizeHttpHeaderName(hdrs.nextElement());
+            if (hdrsMap.containsKey(hdrName)) {
+                continue;   // some containers report the name once per value
+            }
+
+            for (Enumeration<String> values=req.getHeaders(hdrName); (values != null) && values.hasMoreElements(); ) {
+                hdrsMap.add(hdrName, StringUtils.trimToEmpty(values.nextElement()));
+            }
         }
 
         return hdrsMap;
     }
     
-    public static final Map<String,String> getResponseHeaders(HttpServletResponse rsp) {
+    /**
+     * @param rsp The {@link HttpServletResponse}
+     * @return A case insensitive map of <U>all</U> the response headers values
+     * - multi-valued headers are mapped to all their values
+     */
+    public static final AsciiCaseInsensitiveMap<String> getResponseHeaders(HttpServletResponse rsp) {
         // NOTE: map must be case insensitive as per HTTP requirements
-        Map<String,String>  hdrsMap=new TreeMap<String,String>(String.CASE_INSENSITIVE_ORDER);
+        AsciiCaseInsensitiveMap<String> hdrsMap=new AsciiCaseInsensitiveMap<String>();
         for (String hdrName : rsp.getHeaderNames()) {
-            String  hdrValue=rsp.getHeader(hdrName);
-            hdrsMap.put(capitalizeHttpHeaderName(hdrName), StringUtils.trimToEmpty(hdrValue));
+            String  name=capitalizeHttpHeaderName(hdrName);
+            if (hdrsMap.containsKey(name)) {
+                continue;   // some containers report the name once per value
+            }
+
+            for (String hdrValue : rsp.getHeaders(hdrName)) {
+                hdrsMap.add(name, StringUtils.trimToEmpty(hdrValue));
+            }
         }
 
         return hdrsMap;
     }
 
+    /**
+     * The names of the commonly used HTTP headers in their conventional spelling
+     * (e.g., &quot;ETag&quot;) - <B>Note:</B> {@link #capitalizeHttpHeaderName(String)}
+     * returns them only if they are exactly what capitalizing the given name yields
+     * @see #internHttpHeaderName(String)
+     */
+    private static final AsciiCaseInsensitiveMap<String>    WELL_KNOWN_HEADERS=new AsciiCaseInsensitiveMap<String>(64);
+    static {
+        for (String hdrName : new String[] {
+                "Accept", "Accept-Charset", "Accept-Encoding", "Accept-Language", "Accept-Ranges",
+                "Age", "Allow", "Authorization", "Cache-Control", "Connection",
+                "Content-Disposition", "Content-Encoding", "Content-Language", "Content-Length", "Content-Location",
+                "Content-MD5", "Content-Range", "Content-Type", "Cookie", "Date",
+                "ETag", "Expect", "Expires", "From", "Host",
+                "If-Match", "If-Modified-Since", "If-None-Match", "If-Range", "If-Unmodified-Since",
+                "Keep-Alive", "Last-Modified", "Location", "Max-Forwards", "Origin",
+                "Pragma", "Proxy-Authenticate", "Proxy-Authorization", "Proxy-Connection", "Range",
+                "Referer", "Retry-After", "Server", "Set-Cookie", "TE",
+                "Trailer", "Transfer-Encoding", "Upgrade", "User-Agent", "Vary",
+                "Via", "Warning", "WWW-Authenticate", "X-Forwarded-For", "X-Forwarded-Host",
+                "X-Forwarded-Proto", "X-Requested-With", "Git-Protocol"
+            }) {
+            WELL_KNOWN_HEADERS.put(hdrName, hdrName);
+        }
+    }
+
+    /**
+     * @param hdrName The HTTP header name
+     * @return The pre-allocated canonical name if this is a commonly used
+     * header (regardless of the case of the given name) - {@code null} otherwise
+     */
+    public static final String internHttpHeaderName(String hdrName) {
+        return StringUtils.isEmpty(hdrName) ? null : WELL_KNOWN_HEADERS.get(hdrName);
+    }
+
     public static final String capitalizeHttpHeaderName(String hdrName) {
         if (StringUtils.isEmpty(hdrName)) {
             return hdrName;
         }
 
+        // avoid allocating a new string for the commonly used headers
+        String  knownName=internHttpHeaderName(hdrName);
+        if ((knownName != null) && isCapitalizedAs(hdrName, knownName)) {
+            return knownName.equals(hdrName) ? hdrName : knownName;
+        }
+
         int curPos=hdrName.indexOf('-');
         if (curPos < 0) {
             return ExtendedCharSequenceUtils.capitalize(hdrName);
@@ -172,4 +234,34 @@ public class ServletUtils {
             return sb.toString();
         }
     }
+
+    /**
+     * @param hdrName The HTTP header name
+     * @param knownName A name that matches it case insensitively
+     * @return <code>true</code> if capitalizing the header name yields the known
+     * name - i.e., only the 1st letter of each dash separated component may differ
+     * and it must be the title case of the original one
+     */
+    private static boolean isCapitalizedAs(String hdrName, String knownName) {
+        if (hdrName.length() != knownName.length()) {
+            return false;
+        }
+
+        for (int index=0; index < hdrName.length(); index++) {
+            char    ch=hdrName.charAt(index), kch=knownName.charAt(index);
+            if (ch == kch) {
+                continue;
+            }
+
+            if ((index > 0) && (hdrName.charAt(index - 1) != '-')) {
+                return false;
+            }
+
+            if (Character.toTitleCase(ch) != kch) {
+                return false;
+            }
+        }
+
+        return true;
+    }
 }
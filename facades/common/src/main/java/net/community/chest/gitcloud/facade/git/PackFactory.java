@@ -14,16 +14,57 @@
  */
 package net.community.chest.gitcloud.facade.git;
 
+import java.util.logging.Level;
+
+import org.apache.commons.io.output.AsyncLineLevelAppender;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.RefreshedContextAttacher;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
 
 /**
  * @author Lyor Goldstein
  * @since Sep 12, 2013 9:29:15 AM
  */
-public abstract class PackFactory<C> extends RefreshedContextAttacher {
+public abstract class PackFactory<C> extends RefreshedContextAttacher implements DisposableBean {
     public static final int DEFAULT_TIMEOUT_SEC=30;
 
+    /**
+     * Used to trace the pack data without blocking the I/O threads - each
+     * factory has its own, but its buffers are allocated only as lines are
+     * traced, so it costs very little unless {@link Level#FINEST} is enabled
+     */
+    protected final AsyncLineLevelAppender  traceAppender;
+
     protected PackFactory() {
-        super();
+        traceAppender = new AsyncLineLevelAppender(logger, Level.FINEST);
+    }
+
+    @ManagedAttribute(description="Number of trace lines dropped due to the trace buffer being full")
+    public long getDroppedTraceLines() {
+        return traceAppender.getDroppedLines();
+    }
+
+    @ManagedAttribute(description="Number of trace lines truncated due to their length")
+    public long getTruncatedTraceLines() {
+        return traceAppender.getTruncatedLines();
+    }
+
+    @ManagedAttribute(description="Number of written trace lines")
+    public long getWrittenTraceLines() {
+        return traceAppender.getWrittenLines();
+    }
+
+    @ManagedAttribute(description="Number of trace lines waiting to be written")
+    public int getPendingTraceLines() {
+        return traceAppender.getPendingLines();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        traceAppender.close();
+        if (traceAppender.getDroppedLines() > 0L) {
+            logger.warn("destroy() dropped " + traceAppender.getDroppedLines() + " trace lines"
+                      + " out of " + (traceAppender.getWrittenLines() + traceAppender.getDroppedLines()));
+        }
     }
 }
@@ -0,0 +1,227 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.community.chest.gitcloud.facade.git;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.ExtendedFileUtils;
+import org.apache.commons.io.capture.WireCapture;
+import org.apache.commons.io.capture.WireCaptureBuffer;
+import org.apache.commons.io.capture.WireCaptureFileWriter;
+import org.apache.commons.io.capture.WireCaptureSession;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.AbstractLoggingBean;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Wraps a {@link WireCapture} instance configured via its bean properties.
+ * If no capture folder is configured then capture is disabled and
+ * {@link #openSession(String, String, String)} always returns {@code null}
+ * @author Lyor Goldstein
+ * @since Dec 3, 2013 1:15:22 PM
+ */
+@ManagedResource(objectName="net.community.chest.gitcloud.facade.git:name=WireCaptureService")
+public class WireCaptureService extends AbstractLoggingBean implements InitializingBean, DisposableBean {
+    public static final String  DEFAULT_FILE_PREFIX="gitcloud";
+
+    private String  captureFolder, filePrefix=DEFAULT_FILE_PREFIX;
+    private double  sampleRate=WireCapture.DEFAULT_SAMPLE_RATE;
+    private List<String>    repositories=Collections.emptyList(), users=Collections.emptyList();
+    private long    maxFileSize=WireCaptureFileWriter.DEFAULT_MAX_FILE_SIZE;
+    private int     maxFiles=WireCaptureFileWriter.DEFAULT_MAX_FILES;
+    private int     slotsCount=WireCaptureBuffer.DEFAULT_SLOTS_COUNT, slotSize=WireCaptureBuffer.DEFAULT_SLOT_SIZE;
+    private WireCapture capture;
+
+    public WireCaptureService() {
+        super();
+    }
+
+    @ManagedAttribute(description="Folder where capture files are written - empty if capture disabled")
+    public String getCaptureFolder() {
+        return captureFolder;
+    }
+
+    public void setCaptureFolder(String folder) {
+        captureFolder = StringUtils.trimToEmpty(folder);
+    }
+
+    @ManagedAttribute(description="Prefix of the generated capture files")
+    public String getFilePrefix() {
+        return filePrefix;
+    }
+
+    public void setFilePrefix(String prefix) {
+        filePrefix = StringUtils.isBlank(prefix) ? DEFAULT_FILE_PREFIX : prefix.trim();
+    }
+
+    @ManagedAttribute(description="Sessions sampling rate - 0=none, 1=all")
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double rate) {
+        sampleRate = rate;
+    }
+
+    @ManagedAttribute(description="Repositories whose sessions are always captured")
+    public List<String> getRepositories() {
+        return repositories;
+    }
+
+    /**
+     * @param names Comma separated list of repositories names
+     */
+    public void setRepositories(String names) {
+        repositories = toNamesList(names);
+    }
+
+    @ManagedAttribute(description="Users whose sessions are always captured")
+    public List<String> getUsers() {
+        return users;
+    }
+
+    /**
+     * @param names Comma separated list of users names
+     */
+    public void setUsers(String names) {
+        users = toNamesList(names);
+    }
+
+    @ManagedAttribute(description="Max. size of a capture file before rotating it")
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(long size) {
+        maxFileSize = size;
+    }
+
+    @ManagedAttribute(description="Max. number of capture files to keep")
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    public void setMaxFiles(int numFiles) {
+        maxFiles = numFiles;
+    }
+
+    @ManagedAttribute(description="Number of slots in the capture buffer")
+    public int getSlotsCount() {
+        return slotsCount;
+    }
+
+    public void setSlotsCount(int count) {
+        slotsCount = count;
+    }
+
+    @ManagedAttribute(description="Max. data size of each capture buffer slot")
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    public void setSlotSize(int size) {
+        slotSize = size;
+    }
+
+    @ManagedAttribute(description="Whether capture is enabled")
+    public boolean isEnabled() {
+        return capture != null;
+    }
+
+    @ManagedAttribute(description="Number of sampled sessions")
+    public long getSampledSessions() {
+        return (capture == null) ? 0L : capture.getSampledSessions();
+    }
+
+    @ManagedAttribute(description="Number of sessions that were not sampled")
+    public long getSkippedSessions() {
+        return (capture == null) ? 0L : capture.getSkippedSessions();
+    }
+
+    @ManagedAttribute(description="Number of records dropped due to the capture buffer being full")
+    public long getDroppedRecords() {
+        return (capture == null) ? 0L : capture.getDroppedRecords();
+    }
+
+    @ManagedAttribute(description="Number of bytes dropped due to the capture buffer being full")
+    public long getDroppedBytes() {
+        return (capture == null) ? 0L : capture.getDroppedBytes();
+    }
+
+    @ManagedAttribute(description="Number of failures to write captured data")
+    public long getWriteErrors() {
+        return (capture == null) ? 0L : capture.getWriteErrors();
+    }
+
+    /**
+     * @param repo The repository name - may be {@code null}/empty
+     * @param user The user name - may be {@code null}/empty
+     * @param description An (optional) description of the session
+     * @return A {@link WireCaptureSession} if capture is enabled and the
+     * session has been sampled - {@code null} otherwise
+     */
+    public WireCaptureSession openSession(String repo, String user, String description) {
+        return (capture == null) ? null : capture.openSession(repo, user, description);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (StringUtils.isEmpty(captureFolder)) {
+            logger.info("afterPropertiesSet() wire capture disabled");
+            return;
+        }
+
+        File    dir=new File(captureFolder);
+        capture = new WireCapture(new WireCaptureBuffer(slotsCount, slotSize),
+                                  new WireCaptureFileWriter(dir, filePrefix, maxFileSize, maxFiles),
+                                  sampleRate, repositories, users);
+        capture.start();
+        logger.info("afterPropertiesSet() capturing into " + ExtendedFileUtils.toString(dir)
+                  + " - rate=" + sampleRate + ", repos=" + repositories + ", users=" + users);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (capture != null) {
+            try {
+                capture.close();
+                logger.info("destroy() sampled=" + capture.getSampledSessions()
+                          + ", dropped=" + capture.getDroppedRecords() + " records"
+                          + " (" + capture.getDroppedBytes() + " bytes)");
+            } finally {
+                capture = null;
+            }
+        }
+    }
+
+    private static List<String> toNamesList(String names) {
+        String[]    values=StringUtils.split(names, ',');
+        if ((values == null) || (values.length <= 0)) {
+            return Collections.emptyList();
+        }
+
+        for (int index=0; index < values.length; index++) {
+            values[index] = values[index].trim();
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(values));
+    }
+}
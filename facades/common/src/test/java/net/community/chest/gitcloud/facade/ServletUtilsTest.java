@@ -53,4 +53,36 @@ public class ServletUtilsTest extends AbstractTestSupport {
             assertEquals("Mismatched results for hdr=" + hdr, expected, actual);
         }
     }
+
+    @Test
+    public void testCapitalizeWellKnownHttpHeaderNames() {
+        for (String expected : new String[] { "Content-Type", "Transfer-Encoding", "User-Agent", "ETag", "WWW-Authenticate" }) {
+            String  interned=ServletUtils.internHttpHeaderName(expected.toUpperCase());
+            assertEquals("Mismatched interned name", expected, interned);
+            assertSame("Modified interned value", interned, ServletUtils.capitalizeHttpHeaderName(interned));
+        }
+
+        // well-known names are used only if they are the result of the capitalization
+        String[]    values={
+                "content-type",     "Content-Type",
+                "user-agent",       "User-Agent",
+                "CONTENT-TYPE",     "CONTENT-TYPE",
+                "etag",             "Etag",
+                "www-authenticate", "Www-Authenticate",
+                "content-md5",      "Content-Md5",
+                "te",               "Te"
+            };
+        for (int    index=0; index < values.length; index += 2) {
+            String  hdr=values[index], expected=values[index+1];
+            String  actual=ServletUtils.capitalizeHttpHeaderName(hdr);
+            assertEquals("Mismatched results for hdr=" + hdr, expected, actual);
+
+            String  interned=ServletUtils.internHttpHeaderName(hdr);
+            if (expected.equals(interned)) {
+                assertSame("Non-interned result for hdr=" + hdr, interned, actual);
+            }
+        }
+
+        assertNull("Unexpected interned unknown name", ServletUtils.internHttpHeaderName(getCurrentTestName()));
+    }
 }
@@ -25,12 +25,10 @@ import java.nio.charset.Charset;
 import java.security.Principal;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.logging.Level;
 
@@ -46,16 +44,20 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import net.community.chest.gitcloud.facade.ServletUtils;
+import net.community.chest.gitcloud.facade.git.WireCaptureService;
 
 import org.apache.commons.beanutils.AbstractSimpleJavaBean;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.collections15.SetUtils;
+import org.apache.commons.collections15.map.AsciiCaseInsensitiveMap;
 import org.apache.commons.io.HexDumpOutputStream;
+import org.apache.commons.io.capture.WireCaptureRecordType;
+import org.apache.commons.io.capture.WireCaptureSession;
 import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.AsyncLineLevelAppender;
 import org.apache.commons.io.output.LineLevelAppender;
 import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.ExtendedStringUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.logging.ExtendedLogUtils;
@@ -88,6 +90,8 @@ import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.RefreshedContextAttacher;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.SystemPropertyUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -97,7 +101,8 @@ import org.springframework.web.bind.annotation.RequestMethod;
  * @author Lyor Goldstein
  * @since Sep 12, 2013 1:17:34 PM
  */
-@Controller // TODO make it a @ManagedObject and expose internal configuration values for JMX management (Read/Write)
+@Controller
+@ManagedResource(objectName="net.community.chest.gitcloud.facade.frontend.git:name=GitController") // TODO expose internal configuration values for JMX management (Read/Write)
 public class GitController extends RefreshedContextAttacher implements DisposableBean {
     public static final Set<String> ALLOWED_SERVICES=
             Collections.unmodifiableSet(
@@ -126,12 +131,15 @@ public class GitController extends RefreshedContextAttacher implements Disposabl
     private final MBeanServer   mbeanServer;
     private final CloseableHttpClient   client;
     private final long  loopRetryTimeout;
+    private final WireCaptureService    wireCapture;
+    private final AsyncLineLevelAppender    traceAppender;
     private volatile long    initTimestamp=System.currentTimeMillis();
     private volatile boolean    loopDetected;
 
     @Inject
     public GitController(MBeanServer localMbeanServer,
             HttpClientConnectionManager connectionsManager,
+            WireCaptureService captureService,
             @Value(LOOP_DETECT_TIMEOUT_VALUE) long loopDetectTimeout) {
         mbeanServer = Validate.notNull(localMbeanServer, "No MBean server", ArrayUtils.EMPTY_OBJECT_ARRAY);
         
@@ -141,12 +149,42 @@ public class GitController extends RefreshedContextAttacher implements Disposabl
                     .build()
                     ;
         loopRetryTimeout = loopDetectTimeout;
+        wireCapture = Validate.notNull(captureService, "No wire capture service", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        traceAppender = new AsyncLineLevelAppender(logger, Level.FINEST);
+    }
+
+    @ManagedAttribute(description="Number of trace lines dropped due to the trace buffer being full")
+    public long getDroppedTraceLines() {
+        return traceAppender.getDroppedLines();
+    }
+
+    @ManagedAttribute(description="Number of trace lines truncated due to their length")
+    public long getTruncatedTraceLines() {
+        return traceAppender.getTruncatedLines();
+    }
+
+    @ManagedAttribute(description="Number of written trace lines")
+    public long getWrittenTraceLines() {
+        return traceAppender.getWrittenLines();
+    }
+
+    @ManagedAttribute(description="Number of trace lines waiting to be written")
+    public int getPendingTraceLines() {
+        return traceAppender.getPendingLines();
     }
 
     @Override
     public void destroy() throws Exception {
         logger.info("destroy()");
-        client.close();
+        try {
+            client.close();
+        } finally {
+            traceAppender.close();
+            if (traceAppender.getDroppedLines() > 0L) {
+                logger.warn("destroy() dropped " + traceAppender.getDroppedLines() + " trace lines"
+                          + " out of " + (traceAppender.getWrittenLines() + traceAppender.getDroppedLines()));
+            }
+        }
     }
 
     @Override
@@ -241,7 +279,15 @@ public class GitController extends RefreshedContextAttacher implements Disposabl
                            + " forwarded to " + loopContext.getContextPath() + "/" + redirectPath);
             }
         } else {
-            executeRemoteRequest(method, repoData.getRepoLocation(), req, rsp);
+            WireCaptureSession  session=wireCapture.openSession(repoData.getRepoName(), username,
+                    method + " " + req.getRequestURI() + (StringUtils.isEmpty(req.getQueryString()) ? "" : "?" + req.getQueryString()));
+            try {
+                executeRemoteRequest(method, repoData.getRepoLocation(), req, rsp, session);
+            } finally {
+                if (session != null) {
+                    session.close();
+                }
+            }
         }
     }
 
@@ -296,22 +342,24 @@ public class GitController extends RefreshedContextAttacher implements Disposabl
         return false;
     }
 
-    private void executeRemoteRequest(RequestMethod method, URI uri, HttpServletRequest req, HttpServletResponse rsp) throws IOException {
+    private void executeRemoteRequest(RequestMethod method, URI uri, HttpServletRequest req, HttpServletResponse rsp, WireCaptureSession session)
+            throws IOException {
         if (logger.isDebugEnabled()) {
             logger.debug("executeRemoteRequest(" + method + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]"
                        + " redirected to " + uri.toASCIIString());
         }
 
         HttpRequestBase request=resolveRequest(method, uri);
-        executeRemoteRequest(request, req, rsp);
+        executeRemoteRequest(request, req, rsp, session);
     }
 
-    private StatusLine executeRemoteRequest(HttpRequestBase request, HttpServletRequest req, HttpServletResponse rsp) throws IOException {
+    private StatusLine executeRemoteRequest(HttpRequestBase request, HttpServletRequest req, HttpServletResponse rsp, WireCaptureSession session)
+            throws IOException {
         copyRequestHeadersValues(req, request);
 
         final CloseableHttpResponse  response;
         if (HttpPost.METHOD_NAME.equalsIgnoreCase(request.getMethod())) {
-            response = transferPostedData((HttpEntityEnclosingRequestBase) request, req);
+            response = transferPostedData((HttpEntityEnclosingRequestBase) request, req, session);
         } else {
             response = client.execute(request);
         }
@@ -330,7 +378,7 @@ public class GitController extends RefreshedContextAttacher implements Disposabl
                 rsp.setStatus(statusCode);
                 
                 copyResponseHeadersValues(req, response, rsp);
-                transferBackendResponse(req, rspEntity, rsp);
+                transferBackendResponse(req, rspEntity, rsp, session);
             }
             
             return statusLine;
@@ -339,23 +387,14 @@ public class GitController extends RefreshedContextAttacher implements Disposabl
         }
     }
 
-    private CloseableHttpResponse transferPostedData(HttpEntityEnclosingRequestBase postRequest, final HttpServletRequest req)
+    private CloseableHttpResponse transferPostedData(HttpEntityEnclosingRequestBase postRequest, final HttpServletRequest req, WireCaptureSession session)
             throws IOException {
         InputStream postData=req.getInputStream();
         try {
-            if (logger.isTraceEnabled()) {
-                LineLevelAppender   appender=new LineLevelAppender() {
-                        @Override
-                        @SuppressWarnings("synthetic-access")
-                        public void writeLineData(CharSequence lineData) throws IOException {
-                            logger.trace("transferPostedData(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "] C: " + lineData);
-                        }
-                        
-                        @Override
-                        public boolean isWriteEnabled() {
-                            return true;
-                        }
-                    };
+            if (session != null) {
+                postData = session.wrapInput(postData, WireCaptureRecordType.CLIENT);
+            } else if (logger.isTraceEnabled()) {
+                LineLevelAppender   appender=traceAppender.createAppender("transferPostedData(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "] C: ");
                 postData = new TeeInputStream(postData, new HexDumpOutputStream(appender), true);
             }
             postRequest.setEntity(new InputStreamEntity(postData));
@@ -365,25 +404,15 @@ public class GitController extends RefreshedContextAttacher implements Disposabl
         }
     }
 
-    private void transferBackendResponse(final HttpServletRequest req, HttpEntity rspEntity, HttpServletResponse rsp)
+    private void transferBackendResponse(final HttpServletRequest req, HttpEntity rspEntity, HttpServletResponse rsp, WireCaptureSession session)
                     throws IOException {
         final String    method=req.getMethod();
         OutputStream    rspTarget=rsp.getOutputStream();
         try {
-            if (logger.isTraceEnabled()) {
-                LineLevelAppender   appender=new LineLevelAppender() {
-                        @Override
-                        @SuppressWarnings("synthetic-access")
-                        public void writeLineData(CharSequence lineData) throws IOException {
-                            logger.trace("transferBackendResponse(" + method + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]"
-                                       + " S: " + lineData);
-                        }
-
-                        @Override
-                        public boolean isWriteEnabled() {
-                            return true;
-                        }
-                    };
+            if (session != null) {
+                rspTarget = session.wrapOutput(rspTarget, WireCaptureRecordType.SERVER);
+            } else if (logger.isTraceEnabled()) {
+                LineLevelAppender   appender=traceAppender.createAppender("transferBackendResponse(" + method + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "] S: ");
                 rspTarget = new TeeOutputStream(rspTarget, new HexDumpOutputStream(appender));
             }
 
@@ -499,29 +528,30 @@ public class GitController extends RefreshedContextAttacher implements Disposabl
     // TODO move this to some generic util location
     // NOTE: returns ALL request headers - even those that were filtered out
     private Map<String,String> copyRequestHeadersValues(HttpServletRequest req, HttpRequestBase request) {
-        Map<String,String>  hdrsMap=ServletUtils.getRequestHeaders(req);
+        AsciiCaseInsensitiveMap<String> hdrsMap=ServletUtils.getRequestHeaders(req);
         for (Map.Entry<String,String> hdrEntry : hdrsMap.entrySet()) {
-            String  hdrName=hdrEntry.getKey(), hdrValue=StringUtils.trimToEmpty(hdrEntry.getValue());
-            if (StringUtils.isEmpty(hdrValue)) {
-                logger.warn("copyRequestHeadersValues(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]"
-                          + " no value for header " + hdrName);
-                
-            }
-
-            if (FILTERED_REQUEST_HEADERS.contains(hdrName)) {
-                if (logger.isTraceEnabled()) {
-                    logger.trace("copyRequestHeadersValues(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]"
-                               + " filtered " + hdrName + ": " + hdrValue);
+            String  hdrName=hdrEntry.getKey();
+            boolean filtered=FILTERED_REQUEST_HEADERS.contains(hdrName);
+            for (String hdrValue : hdrsMap.getAll(hdrName)) {
+                if (StringUtils.isEmpty(hdrValue)) {
+                    logger.warn("copyRequestHeadersValues(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]"
+                              + " no value for header " + hdrName);
+                    
                 }
-            } else {
-                if (logger.isTraceEnabled()) {
-                    logger.trace("copyRequestHeadersValues(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]"
-                               + " " + hdrName + ": " + hdrValue);
+
+                if (filtered) {
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("copyRequestHeadersValues(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]"
+                                   + " filtered " + hdrName + ": " + hdrValue);
+                    }
+                } else {
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("copyRequestHeadersValues(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]"
+                                   + " " + hdrName + ": " + hdrValue);
+                    }
+                    request.addHeader(hdrName, hdrValue);
                 }
-                request.addHeader(hdrName, hdrValue);
             }
-
-            hdrsMap.put(hdrName, hdrValue);
         }
 
         return hdrsMap;
@@ -543,15 +573,6 @@ public class GitController extends RefreshedContextAttacher implements Disposabl
                     add(HTTP.SERVER_HEADER);
                 }
             });
-    public static final Comparator<Header>  BY_NAME_COMPARATOR=new Comparator<Header>() {
-            @Override
-            public int compare(Header h1, Header h2) {
-                String  n1=(h1 == null) ? null : h1.getName();
-                String  n2=(h2 == null) ? null : h2.getName();
-                // header names are case-insensitive
-                return ExtendedStringUtils.safeCompare(n1, n2, false);
-            }
-        };
     // TODO move this to some generic util location
     // NOTE: returns ALL response headers - even those that were filtered out
     private Map<String,String> copyResponseHeadersValues(HttpServletRequest req, HttpMessage response, HttpServletResponse rsp) {
@@ -560,14 +581,13 @@ public class GitController extends RefreshedContextAttacher implements Disposabl
             logger.warn("copyResponseHeadersValues(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "] no headers");
             return Collections.emptyMap();
         }
-        Arrays.sort(hdrs, BY_NAME_COMPARATOR);
 
         // NOTE: map must be case insensitive as per HTTP requirements
-        Map<String,String>  hdrsMap=new TreeMap<String,String>(String.CASE_INSENSITIVE_ORDER);
+        AsciiCaseInsensitiveMap<String> hdrsMap=new AsciiCaseInsensitiveMap<String>(hdrs.length);
         for (Header hdrEntry : hdrs) {
-            // TODO add support for multi-valued headers
             String  hdrName=ServletUtils.capitalizeHttpHeaderName(hdrEntry.getName()), hdrValue=StringUtils.trimToEmpty(hdrEntry.getValue());
-            hdrsMap.put(hdrName, hdrValue);
+            // multi-valued headers are echoed with all their values
+            boolean firstValue=(hdrsMap.add(hdrName, hdrValue) == 1);
             if (FILTERED_RESPONSE_HEADERS.contains(hdrName)) {
                 if (logger.isTraceEnabled()) {
                     logger.trace("copyResponseHeadersValues(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]"
@@ -579,16 +599,17 @@ public class GitController extends RefreshedContextAttacher implements Disposabl
             if (StringUtils.isEmpty(hdrValue)) {
                 logger.warn("copyResponseHeadersValues(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]"
                           + " no value for header " + hdrName);
-                rsp.setHeader(hdrName, "");
-                continue;
-            }
-
-            if (logger.isTraceEnabled()) {
+                hdrValue = "";
+            } else if (logger.isTraceEnabled()) {
                 logger.trace("copyResponseHeadersValues(" + req.getMethod() + ")[" + req.getRequestURI() + "][" + req.getQueryString() + "]"
                            + " " + hdrName + ": " + hdrValue);
             }
 
-            rsp.setHeader(hdrName, hdrValue);
+            if (firstValue) {
+                rsp.setHeader(hdrName, hdrValue);
+            } else {
+                rsp.addHeader(hdrName, hdrValue);
+            }
         }
 
         return hdrsMap;
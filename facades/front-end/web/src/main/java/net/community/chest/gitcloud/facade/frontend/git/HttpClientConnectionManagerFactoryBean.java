@@ -16,10 +16,16 @@ package net.community.chest.gitcloud.facade.frontend.git;
 
 import java.io.IOException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
+import net.community.chest.gitcloud.facade.frontend.git.metrics.ConnectionPoolMetrics;
+
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.logging.AbstractLoggingBean;
 import org.apache.http.HttpClientConnection;
@@ -69,44 +75,65 @@ public class HttpClientConnectionManagerFactoryBean
                                             + SystemPropertyUtils.VALUE_SEPARATOR
                                             + DEFAULT_MAX_TOTAL
                                             + SystemPropertyUtils.PLACEHOLDER_SUFFIX;
+    public static final String  METRICS_SAMPLE_SEC_CONFIG_PROP="gitcloud.frontend.git.http.conn.manager.metrics.sample.sec";
+        public static final long    DEFAULT_METRICS_SAMPLE_SEC=10L;
+        private static final String METRICS_SAMPLE_SEC_CONFIG_VALUE=SystemPropertyUtils.PLACEHOLDER_PREFIX
+                                            + METRICS_SAMPLE_SEC_CONFIG_PROP
+                                            + SystemPropertyUtils.VALUE_SEPARATOR
+                                            + DEFAULT_METRICS_SAMPLE_SEC
+                                            + SystemPropertyUtils.PLACEHOLDER_SUFFIX;
 
     private final PoolingHttpClientConnectionManager   manager;
+    private final ConnectionPoolMetrics metrics;
+    private final ScheduledExecutorService  sampler;
+    private final long  sampleSeconds;
 
     @Inject
     public HttpClientConnectionManagerFactoryBean(
             @Value(TTL_CONFIG_VALUE) long ttlSeconds,
             @Value(MAX_PER_ROUTE_CONFIG_VALUE) int defaultMaxPerRoute,
-            @Value(MAX_TOTAL_CONFIG_VALUE) int maxTotal) {
+            @Value(MAX_TOTAL_CONFIG_VALUE) int maxTotal,
+            @Value(METRICS_SAMPLE_SEC_CONFIG_VALUE) long metricsSampleSeconds,
+            ConnectionPoolMetrics poolMetrics) {
         Validate.isTrue(ttlSeconds > 0L, "Invalid TTL value: %d", ttlSeconds);
         Validate.isTrue(defaultMaxPerRoute > 0, "Invalid max. per-route value: %d", defaultMaxPerRoute);
         Validate.isTrue(maxTotal > 0, "Invalid max. total value: %d", maxTotal);
+        metrics = Validate.notNull(poolMetrics, "No pool metrics", ArrayUtils.EMPTY_OBJECT_ARRAY);
 
         // TODO use a different connections registry with an all-trusting HTTPS socket factory
-        // TODO log the total stats and/or pre-route one at DEBUG/INFO level every few minutes/seconds or every N requests
         manager = new PoolingHttpClientConnectionManager(ttlSeconds, TimeUnit.SECONDS) {
                 @Override
                 @SuppressWarnings("synthetic-access")
                 public ConnectionRequest requestConnection(final HttpRoute route, Object state) {
                     final ConnectionRequest   req=super.requestConnection(route, state);
-                    if (logger.isTraceEnabled()) {
-                        return new ConnectionRequest() {
-                            @Override
-                            public boolean cancel() {
+                    final long                startTime=System.nanoTime();
+                    return new ConnectionRequest() {
+                        @Override
+                        public boolean cancel() {
+                            if (logger.isTraceEnabled()) {
                                 logger.trace("requestConnection(" + route + ") cancelling");
-                                return req.cancel();
                             }
-                            
-                            @Override
-                            public HttpClientConnection get(long timeout, TimeUnit tunit)
-                                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
-                                HttpClientConnection    conn=req.get(timeout, tunit);
+                            return req.cancel();
+                        }
+                        
+                        @Override
+                        public HttpClientConnection get(long timeout, TimeUnit tunit)
+                                throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                            final HttpClientConnection    conn;
+                            try {
+                                conn = req.get(timeout, tunit);
+                            } catch(ConnectionPoolTimeoutException e) {
+                                metrics.timedOut(route, System.nanoTime() - startTime);
+                                throw e;
+                            }
+
+                            metrics.leased(route, conn, System.nanoTime() - startTime);
+                            if (logger.isTraceEnabled()) {
                                 logger.trace("requestConnection(" + route + ")[" + timeout + " " + tunit + "]: " + conn);
-                                return conn;
                             }
-                        };
-                    }
-                    
-                    return req;
+                            return conn;
+                        }
+                    };
                 }
     
                 @Override
@@ -115,6 +142,7 @@ public class HttpClientConnectionManagerFactoryBean
                     if (logger.isTraceEnabled()) {
                         logger.trace("releaseConnection(" + keepalive + " " + tunit + "]: " + managedConn);
                     }
+                    metrics.released(managedConn);
                     super.releaseConnection(managedConn, state, keepalive, tunit);
                 }
 
@@ -126,10 +154,51 @@ public class HttpClientConnectionManagerFactoryBean
                         logger.trace("connect(" + route + ")[timeout=" + connectTimeout + "]: " + managedConn);
                     }
                     super.connect(managedConn, route, connectTimeout, context);
+                    metrics.connected(route);
+                }
+
+                @Override
+                @SuppressWarnings("synthetic-access")
+                public void shutdown() {
+                    try {
+                        super.shutdown();
+                    } finally {
+                        metrics.shutdown();
+                    }
                 }
             };
         manager.setDefaultMaxPerRoute(defaultMaxPerRoute);
         manager.setMaxTotal(maxTotal);
+
+        if ((sampleSeconds=metricsSampleSeconds) > 0L) {
+            sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread  t=new Thread(r, ConnectionPoolMetrics.class.getSimpleName());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            sampler.scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    @SuppressWarnings("synthetic-access")
+                    public void run() {
+                        try {
+                            metrics.sample(manager);
+                        } catch(RuntimeException e) {   // don't let it cancel the sampling
+                            logger.warn("sample() failed (" + e.getClass().getSimpleName() + "): " + e.getMessage());
+                        }
+                    }
+                }, sampleSeconds, sampleSeconds, TimeUnit.SECONDS);
+        } else {
+            logger.info("Pool metrics sampling disabled");
+            sampler = null;
+        }
+    }
+
+    @ManagedAttribute(description="Pool metrics sampling interval (sec.) - non-positive if disabled")
+    public long getMetricsSampleSeconds() {
+        return sampleSeconds;
     }
 
     @Override
@@ -181,6 +250,9 @@ public class HttpClientConnectionManagerFactoryBean
     public void destroy() throws Exception {
         HttpClientConnectionManager mgr=getObject();
         logger.info("destroy()");
+        if (sampler != null) {
+            sampler.shutdownNow();
+        }
         mgr.shutdown();
     }
 
@@ -0,0 +1,340 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.community.chest.gitcloud.facade.frontend.git.metrics;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.AbstractLoggingBean;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.SystemPropertyUtils;
+
+/**
+ * Records the HTTP connections pool activity (connect/lease/release/timeout
+ * and lease wait-times) per route as well as periodic samples of the pool
+ * state. The activity recording methods are lock-free and are invoked on the
+ * request path, while the {@link #sample(ConnPoolControl)} method is expected
+ * to be invoked periodically by a single thread
+ * @author Lyor Goldstein
+ * @since Dec 2, 2013 11:32:50 AM
+ */
+@Component
+@ManagedResource(objectName="net.community.chest.gitcloud.facade.frontend.git:name=ConnectionPoolMetrics")
+public class ConnectionPoolMetrics extends AbstractLoggingBean {
+    public static final String  SAMPLES_HISTORY_CONFIG_PROP="gitcloud.frontend.git.http.conn.metrics.samples.history";
+        public static final int     DEFAULT_SAMPLES_HISTORY=60;
+        private static final String SAMPLES_HISTORY_CONFIG_VALUE=SystemPropertyUtils.PLACEHOLDER_PREFIX
+                                            + SAMPLES_HISTORY_CONFIG_PROP
+                                            + SystemPropertyUtils.VALUE_SEPARATOR
+                                            + DEFAULT_SAMPLES_HISTORY
+                                            + SystemPropertyUtils.PLACEHOLDER_SUFFIX;
+    /**
+     * The &quot;route&quot; name used to report the entire pool values
+     */
+    public static final String  TOTAL_ROUTE_NAME="total";
+    public static final String  METRICS_PREFIX="gitcloud_http_pool_";
+
+    private final int   samplesHistory;
+    private final RouteActivityCounters totalCounters=new RouteActivityCounters();
+    private final PoolStatsSeries   totalSeries;
+    private final ConcurrentMap<HttpRoute,RouteActivityCounters>    routesCounters=new ConcurrentHashMap<HttpRoute,RouteActivityCounters>();
+    private final ConcurrentMap<HttpRoute,PoolStatsSeries>  routesSeries=new ConcurrentHashMap<HttpRoute,PoolStatsSeries>();
+    // used to attribute a released connection to its route
+    private final ConcurrentMap<HttpClientConnection,HttpRoute> leasedRoutes=new ConcurrentHashMap<HttpClientConnection,HttpRoute>();
+
+    @Inject
+    public ConnectionPoolMetrics(@Value(SAMPLES_HISTORY_CONFIG_VALUE) int history) {
+        Validate.isTrue(history > 0, "Invalid samples history size: %d", history);
+        samplesHistory = history;
+        totalSeries = new PoolStatsSeries(samplesHistory);
+    }
+
+    @ManagedAttribute(description="Number of raw samples kept per route")
+    public int getSamplesHistory() {
+        return samplesHistory;
+    }
+
+    @ManagedAttribute(description="Number of tracked routes")
+    public int getRoutesCount() {
+        return routesCounters.size();
+    }
+
+    @ManagedAttribute(description="Number of leased connections tracked for attributing their release")
+    public int getLeasedConnectionsCount() {
+        return leasedRoutes.size();
+    }
+
+    @ManagedAttribute(description="Total connections established")
+    public long getConnectsCount() {
+        return totalCounters.getConnectsCount();
+    }
+
+    @ManagedAttribute(description="Total connections leased")
+    public long getLeasesCount() {
+        return totalCounters.getLeasesCount();
+    }
+
+    @ManagedAttribute(description="Total connections released")
+    public long getReleasesCount() {
+        return totalCounters.getReleasesCount();
+    }
+
+    @ManagedAttribute(description="Total connection lease requests that timed out")
+    public long getTimeoutsCount() {
+        return totalCounters.getTimeoutsCount();
+    }
+
+    @ManagedAttribute(description="Leased connections at last sample")
+    public int getLeased() {
+        PoolStatsSample sample=totalSeries.getLastSample();
+        return (sample == null) ? 0 : sample.getLeased();
+    }
+
+    @ManagedAttribute(description="Pending lease requests at last sample")
+    public int getPending() {
+        PoolStatsSample sample=totalSeries.getLastSample();
+        return (sample == null) ? 0 : sample.getPending();
+    }
+
+    @ManagedAttribute(description="Available idle connections at last sample")
+    public int getAvailable() {
+        PoolStatsSample sample=totalSeries.getLastSample();
+        return (sample == null) ? 0 : sample.getAvailable();
+    }
+
+    @ManagedAttribute(description="Leases per second during the last completed minute")
+    public double getLastMinuteLeasesRate() {
+        PoolStatsRollup r=totalSeries.getLastMinute();
+        return (r == null) ? 0.0d : r.getLeasesRate();
+    }
+
+    @ManagedAttribute(description="Avg. lease wait time (msec.) during the last completed minute")
+    public double getLastMinuteAverageWaitTime() {
+        PoolStatsRollup r=totalSeries.getLastMinute();
+        return (r == null) ? 0.0d : r.getAverageWaitTime();
+    }
+
+    @ManagedOperation(description="Shows the current metrics in text format")
+    public String showMetrics() {
+        StringBuilder   sb=new StringBuilder(1024);
+        try {
+            appendMetrics(sb);
+        } catch(IOException e) {    // unexpected since using a StringBuilder
+            throw new IllegalStateException("Failed to format metrics: " + e.getMessage(), e);
+        }
+        return sb.toString();
+    }
+
+    @ManagedOperation(description="Shows the per-minute history of the entire pool")
+    public String showMinutesHistory() {
+        return appendHistory(new StringBuilder(1024), totalSeries.getMinutes()).toString();
+    }
+
+    @ManagedOperation(description="Shows the per-hour history of the entire pool")
+    public String showHoursHistory() {
+        return appendHistory(new StringBuilder(1024), totalSeries.getHours()).toString();
+    }
+
+    public PoolStatsSeries getTotalSeries() {
+        return totalSeries;
+    }
+
+    public PoolStatsSeries getRouteSeries(HttpRoute route) {
+        return routesSeries.get(route);
+    }
+
+    public void connected(HttpRoute route) {
+        totalCounters.connected();
+        resolveRouteCounters(route).connected();
+    }
+
+    public void leased(HttpRoute route, HttpClientConnection conn, long waitNanos) {
+        totalCounters.leased(waitNanos);
+        resolveRouteCounters(route).leased(waitNanos);
+        if (conn != null) {
+            leasedRoutes.put(conn, route);
+        }
+    }
+
+    public void timedOut(HttpRoute route, long waitNanos) {
+        totalCounters.timedOut(waitNanos);
+        resolveRouteCounters(route).timedOut(waitNanos);
+    }
+
+    public void released(HttpClientConnection conn) {
+        totalCounters.released();
+
+        HttpRoute   route=(conn == null) ? null : leasedRoutes.remove(conn);
+        if (route != null) {
+            resolveRouteCounters(route).released();
+        }
+    }
+
+    /**
+     * Invoked when the connections manager is shut down - discards the
+     * tracked leased connections since they will never be released
+     */
+    public void shutdown() {
+        int count=leasedRoutes.size();
+        leasedRoutes.clear();
+        if (count > 0) {
+            logger.info("shutdown() discarded " + count + " leased connections");
+        }
+    }
+
+    RouteActivityCounters resolveRouteCounters(HttpRoute route) {
+        RouteActivityCounters   counters=routesCounters.get(route);
+        if (counters == null) {
+            RouteActivityCounters   prev=routesCounters.putIfAbsent(route, counters=new RouteActivityCounters());
+            if (prev != null) {
+                counters = prev;
+            }
+        }
+
+        return counters;
+    }
+
+    public void sample(ConnPoolControl<HttpRoute> pool) {
+        sample(pool, System.currentTimeMillis());
+    }
+
+    public void sample(ConnPoolControl<HttpRoute> pool, long now) {
+        PoolStats   totalStats=pool.getTotalStats();
+        totalSeries.add(new PoolStatsSample(now, totalStats, totalCounters));
+        if (logger.isDebugEnabled()) {
+            logger.debug("sample(" + TOTAL_ROUTE_NAME + ") " + totalStats);
+        }
+
+        for (Map.Entry<HttpRoute,RouteActivityCounters> re : routesCounters.entrySet()) {
+            HttpRoute       route=re.getKey();
+            PoolStats       stats=pool.getStats(route);
+            PoolStatsSeries series=routesSeries.get(route);
+            if (series == null) {   // OK since only one thread samples
+                series = new PoolStatsSeries(samplesHistory);
+                routesSeries.put(route, series);
+            }
+
+            series.add(new PoolStatsSample(now, stats, re.getValue()));
+            if (logger.isTraceEnabled()) {
+                logger.trace("sample(" + route + ") " + stats);
+            }
+        }
+    }
+
+    /**
+     * Appends the current metrics in a simple line oriented text format -
+     * <code>name{labels} value</code>
+     * @param sb The {@link Appendable} to append to
+     * @return Same as input
+     * @throws IOException If failed to append the data
+     */
+    public <A extends Appendable> A appendMetrics(A sb) throws IOException {
+        appendRouteMetrics(sb, TOTAL_ROUTE_NAME, totalCounters, totalSeries);
+        for (Map.Entry<HttpRoute,RouteActivityCounters> re : routesCounters.entrySet()) {
+            HttpRoute   route=re.getKey();
+            appendRouteMetrics(sb, route.getTargetHost().toURI(), re.getValue(), routesSeries.get(route));
+        }
+
+        return sb;
+    }
+
+    public static final <A extends Appendable> A appendRouteMetrics(
+            A sb, String routeName, RouteActivityCounters counters, PoolStatsSeries series)
+                throws IOException {
+        String          label="{route=\"" + routeName + "\"}";
+        PoolStatsSample sample=(series == null) ? null : series.getLastSample();
+        if (sample != null) {
+            appendMetric(sb, "leased", label, sample.getLeased());
+            appendMetric(sb, "pending", label, sample.getPending());
+            appendMetric(sb, "available", label, sample.getAvailable());
+            appendMetric(sb, "max", label, sample.getMax());
+        }
+
+        appendMetric(sb, "connects_total", label, counters.getConnectsCount());
+        appendMetric(sb, "leases_total", label, counters.getLeasesCount());
+        appendMetric(sb, "releases_total", label, counters.getReleasesCount());
+        appendMetric(sb, "timeouts_total", label, counters.getTimeoutsCount());
+
+        long[]  histogram=counters.getWaitTimeHistogram();
+        long    cumulative=0L;
+        for (int index=0; index < histogram.length; index++) {
+            long    limit=RouteActivityCounters.getWaitTimeBucketLimit(index);
+            cumulative += histogram[index];
+            appendMetric(sb, "lease_wait_msec_bucket",
+                    "{route=\"" + routeName + "\",le=\"" + ((limit == Long.MAX_VALUE) ? "+Inf" : String.valueOf(limit)) + "\"}",
+                    cumulative);
+        }
+        appendMetric(sb, "lease_wait_msec_count", label, cumulative);
+        appendMetric(sb, "lease_wait_msec_sum", label, counters.getWaitTimeNanos() / 1000000L);
+
+        if (series != null) {
+            appendRollupMetrics(sb, routeName, "1m", series.getLastMinute());
+            appendRollupMetrics(sb, routeName, "1h", series.getLastHour());
+        }
+
+        return sb;
+    }
+
+    public static final <A extends Appendable> A appendRollupMetrics(A sb, String routeName, String period, PoolStatsRollup r)
+                throws IOException {
+        if (r == null) {
+            return sb;
+        }
+
+        String  label="{route=\"" + routeName + "\",period=\"" + period + "\"}";
+        appendMetric(sb, "leased_avg", label, r.getAverageLeased());
+        appendMetric(sb, "leased_max", label, r.getMaxLeased());
+        appendMetric(sb, "pending_avg", label, r.getAveragePending());
+        appendMetric(sb, "pending_max", label, r.getMaxPending());
+        appendMetric(sb, "available_min", label, r.getMinAvailable());
+        appendMetric(sb, "connects_rate", label, r.getConnectsRate());
+        appendMetric(sb, "leases_rate", label, r.getLeasesRate());
+        appendMetric(sb, "releases_rate", label, r.getReleasesRate());
+        appendMetric(sb, "timeouts", label, r.getTimeoutsCount());
+        appendMetric(sb, "lease_wait_msec_avg", label, r.getAverageWaitTime());
+        return sb;
+    }
+
+    public static final <A extends Appendable> A appendMetric(A sb, String name, String label, long value) throws IOException {
+        sb.append(METRICS_PREFIX).append(name).append(label).append(' ').append(String.valueOf(value)).append('\n');
+        return sb;
+    }
+
+    public static final <A extends Appendable> A appendMetric(A sb, String name, String label, double value) throws IOException {
+        sb.append(METRICS_PREFIX).append(name).append(label).append(' ').append(String.format(Locale.ROOT, "%.3f", Double.valueOf(value))).append('\n');
+        return sb;
+    }
+
+    public static final StringBuilder appendHistory(StringBuilder sb, Iterable<? extends PoolStatsRollup> rollups) {
+        for (PoolStatsRollup r : rollups) {
+            sb.append(r).append('\n');
+        }
+        return sb;
+    }
+}
@@ -0,0 +1,59 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.community.chest.gitcloud.facade.frontend.git.metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.AbstractLoggingBean;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * Serves the {@link ConnectionPoolMetrics} as plain text on <code>/metrics</code>
+ * @author Lyor Goldstein
+ * @since Dec 2, 2013 1:14:09 PM
+ */
+@Controller
+public class ConnectionPoolMetricsController extends AbstractLoggingBean {
+    public static final String  METRICS_PATH="/metrics";
+    public static final String  METRICS_CONTENT_TYPE="text/plain; charset=UTF-8";
+
+    private final ConnectionPoolMetrics metrics;
+
+    @Inject
+    public ConnectionPoolMetricsController(ConnectionPoolMetrics poolMetrics) {
+        metrics = Validate.notNull(poolMetrics, "No pool metrics", ArrayUtils.EMPTY_OBJECT_ARRAY);
+    }
+
+    @RequestMapping(value=METRICS_PATH, method=RequestMethod.GET)
+    public void serveMetrics(HttpServletResponse rsp) throws IOException {
+        rsp.setContentType(METRICS_CONTENT_TYPE);
+        rsp.setHeader("Cache-Control", "no-cache");
+
+        PrintWriter writer=rsp.getWriter();
+        try {
+            metrics.appendMetrics(writer);
+        } finally {
+            writer.close();
+        }
+    }
+}
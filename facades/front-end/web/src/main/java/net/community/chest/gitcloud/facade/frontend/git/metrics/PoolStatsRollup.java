@@ -0,0 +1,251 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.community.chest.gitcloud.facade.frontend.git.metrics;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.time.DateFormatUtils;
+
+/**
+ * Aggregates {@link PoolStatsSample}-s (or other roll-ups) over a fixed
+ * period - e.g., minute or hour. The pool state is summarized as min./max./avg.
+ * values, while the activity counters are accumulated as deltas over the
+ * period so they can be used to calculate rates
+ * @author Lyor Goldstein
+ * @since Dec 2, 2013 10:47:22 AM
+ */
+public class PoolStatsRollup implements Cloneable, Serializable {
+    private static final long serialVersionUID = -4385316370906546329L;
+
+    private final long  startTime, duration;
+    private int     numSamples;
+    private int     minLeased=Integer.MAX_VALUE, maxLeased;
+    private long    sumLeased;
+    private int     minPending=Integer.MAX_VALUE, maxPending;
+    private long    sumPending;
+    private int     minAvailable=Integer.MAX_VALUE, maxAvailable;
+    private long    sumAvailable;
+    private long    connects, leases, releases, timeouts, waitTimeNanos;
+
+    /**
+     * @param start Period start time (msec.)
+     * @param periodDuration Period duration (msec.)
+     */
+    public PoolStatsRollup(long start, long periodDuration) {
+        startTime = start;
+        duration = periodDuration;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public int getNumSamples() {
+        return numSamples;
+    }
+
+    public int getMinLeased() {
+        return (numSamples <= 0) ? 0 : minLeased;
+    }
+
+    public int getMaxLeased() {
+        return maxLeased;
+    }
+
+    public double getAverageLeased() {
+        return average(sumLeased);
+    }
+
+    public int getMinPending() {
+        return (numSamples <= 0) ? 0 : minPending;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    public double getAveragePending() {
+        return average(sumPending);
+    }
+
+    public int getMinAvailable() {
+        return (numSamples <= 0) ? 0 : minAvailable;
+    }
+
+    public int getMaxAvailable() {
+        return maxAvailable;
+    }
+
+    public double getAverageAvailable() {
+        return average(sumAvailable);
+    }
+
+    public long getConnectsCount() {
+        return connects;
+    }
+
+    public long getLeasesCount() {
+        return leases;
+    }
+
+    public long getReleasesCount() {
+        return releases;
+    }
+
+    public long getTimeoutsCount() {
+        return timeouts;
+    }
+
+    public long getWaitTimeNanos() {
+        return waitTimeNanos;
+    }
+
+    /**
+     * @return Average lease wait time (msec.) of the leases/timeouts that
+     * occurred during the period
+     */
+    public double getAverageWaitTime() {
+        long    count=leases + timeouts;
+        if (count <= 0L) {
+            return 0.0d;
+        } else {
+            return (double) TimeUnit.NANOSECONDS.toMicros(waitTimeNanos) / (count * 1000.0d);
+        }
+    }
+
+    public double getConnectsRate() {
+        return rate(connects);
+    }
+
+    public double getLeasesRate() {
+        return rate(leases);
+    }
+
+    public double getReleasesRate() {
+        return rate(releases);
+    }
+
+    /**
+     * @param sample The {@link PoolStatsSample} to add
+     * @param prev The previous sample (if any) - used to calculate the
+     * activity counters deltas. If {@code null} then only the pool state
+     * is accumulated
+     * @return This instance
+     */
+    public PoolStatsRollup add(PoolStatsSample sample, PoolStatsSample prev) {
+        numSamples++;
+
+        int value=sample.getLeased();
+        minLeased = Math.min(minLeased, value);
+        maxLeased = Math.max(maxLeased, value);
+        sumLeased += value;
+
+        value = sample.getPending();
+        minPending = Math.min(minPending, value);
+        maxPending = Math.max(maxPending, value);
+        sumPending += value;
+
+        value = sample.getAvailable();
+        minAvailable = Math.min(minAvailable, value);
+        maxAvailable = Math.max(maxAvailable, value);
+        sumAvailable += value;
+
+        if (prev != null) {
+            connects += delta(sample.getConnectsCount(), prev.getConnectsCount());
+            leases += delta(sample.getLeasesCount(), prev.getLeasesCount());
+            releases += delta(sample.getReleasesCount(), prev.getReleasesCount());
+            timeouts += delta(sample.getTimeoutsCount(), prev.getTimeoutsCount());
+            waitTimeNanos += delta(sample.getWaitTimeNanos(), prev.getWaitTimeNanos());
+        }
+
+        return this;
+    }
+
+    /**
+     * @param other Another (typically shorter period) roll-up to merge into
+     * this one - e.g., a minute roll-up into an hour one
+     * @return This instance
+     */
+    public PoolStatsRollup add(PoolStatsRollup other) {
+        if (other.getNumSamples() <= 0) {
+            return this;
+        }
+
+        numSamples += other.getNumSamples();
+        minLeased = Math.min(minLeased, other.getMinLeased());
+        maxLeased = Math.max(maxLeased, other.getMaxLeased());
+        sumLeased += other.sumLeased;
+        minPending = Math.min(minPending, other.getMinPending());
+        maxPending = Math.max(maxPending, other.getMaxPending());
+        sumPending += other.sumPending;
+        minAvailable = Math.min(minAvailable, other.getMinAvailable());
+        maxAvailable = Math.max(maxAvailable, other.getMaxAvailable());
+        sumAvailable += other.sumAvailable;
+        connects += other.getConnectsCount();
+        leases += other.getLeasesCount();
+        releases += other.getReleasesCount();
+        timeouts += other.getTimeoutsCount();
+        waitTimeNanos += other.getWaitTimeNanos();
+        return this;
+    }
+
+    private double average(long sum) {
+        if (numSamples <= 0) {
+            return 0.0d;
+        } else {
+            return (double) sum / numSamples;
+        }
+    }
+
+    // events per second
+    private double rate(long count) {
+        if (duration <= 0L) {
+            return 0.0d;
+        } else {
+            return (count * 1000.0d) / duration;
+        }
+    }
+
+    // NOTE: counters are reset if the pool is re-created, so negative deltas are ignored
+    private static long delta(long cur, long prev) {
+        return Math.max(0L, cur - prev);
+    }
+
+    @Override
+    public PoolStatsRollup clone() {
+        try {
+            return getClass().cast(super.clone());
+        } catch(CloneNotSupportedException e) { // unexpected
+            throw new UnsupportedOperationException("Failed to clone " + toString() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return DateFormatUtils.ISO_DATETIME_FORMAT.format(getStartTime())
+             + "[" + getDuration() + "]"
+             + "[samples=" + getNumSamples()
+             + ",leased=" + getMinLeased() + "/" + getAverageLeased() + "/" + getMaxLeased()
+             + ",pending=" + getMinPending() + "/" + getAveragePending() + "/" + getMaxPending()
+             + ",available=" + getMinAvailable() + "/" + getAverageAvailable() + "/" + getMaxAvailable()
+             + "]"
+             ;
+    }
+}
@@ -0,0 +1,105 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.community.chest.gitcloud.facade.frontend.git.metrics;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang3.time.DateFormatUtils;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * An immutable snapshot of the pool state of a route (or the entire pool)
+ * along with the cumulative activity counters at the time of sampling
+ * @author Lyor Goldstein
+ * @since Dec 2, 2013 10:31:07 AM
+ */
+public class PoolStatsSample implements Serializable {
+    private static final long serialVersionUID = 6029046611245837170L;
+
+    private final long  timestamp;
+    private final int   leased, pending, available, max;
+    private final long  connects, leases, releases, timeouts, waitTimeNanos;
+
+    public PoolStatsSample(long ts, PoolStats stats, RouteActivityCounters counters) {
+        this(ts, stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax(),
+             counters.getConnectsCount(), counters.getLeasesCount(), counters.getReleasesCount(),
+             counters.getTimeoutsCount(), counters.getWaitTimeNanos());
+    }
+
+    public PoolStatsSample(long ts, int leasedCount, int pendingCount, int availableCount, int maxCount,
+                           long connectsCount, long leasesCount, long releasesCount, long timeoutsCount, long waitNanos) {
+        timestamp = ts;
+        leased = leasedCount;
+        pending = pendingCount;
+        available = availableCount;
+        max = maxCount;
+        connects = connectsCount;
+        leases = leasesCount;
+        releases = releasesCount;
+        timeouts = timeoutsCount;
+        waitTimeNanos = waitNanos;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getLeased() {
+        return leased;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public long getConnectsCount() {
+        return connects;
+    }
+
+    public long getLeasesCount() {
+        return leases;
+    }
+
+    public long getReleasesCount() {
+        return releases;
+    }
+
+    public long getTimeoutsCount() {
+        return timeouts;
+    }
+
+    public long getWaitTimeNanos() {
+        return waitTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return DateFormatUtils.ISO_DATETIME_FORMAT.format(getTimestamp())
+             + "[leased=" + getLeased()
+             + ",pending=" + getPending()
+             + ",available=" + getAvailable()
+             + ",max=" + getMax()
+             + "]"
+             ;
+    }
+}
@@ -0,0 +1,199 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.community.chest.gitcloud.facade.frontend.git.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Keeps the most recent raw {@link PoolStatsSample}-s of a route in a fixed
+ * size ring buffer, and rolls them up into minute and hour {@link PoolStatsRollup}-s
+ * which are kept in their own ring buffers. <B>Note:</B> all accesses are
+ * synchronized - samples are added by a single (scheduled) thread and read
+ * only when reporting, so there is no contention on the request path
+ * @author Lyor Goldstein
+ * @since Dec 2, 2013 11:05:18 AM
+ */
+public class PoolStatsSeries {
+    public static final long    MINUTE_DURATION=TimeUnit.MINUTES.toMillis(1L);
+    public static final long    HOUR_DURATION=TimeUnit.HOURS.toMillis(1L);
+    public static final int     DEFAULT_MINUTES_HISTORY=60;
+    public static final int     DEFAULT_HOURS_HISTORY=24;
+
+    private final Ring<PoolStatsSample> samples;
+    private final Ring<PoolStatsRollup> minutes;
+    private final Ring<PoolStatsRollup> hours;
+    private PoolStatsSample lastSample;
+    private PoolStatsRollup curMinute, curHour;
+
+    public PoolStatsSeries(int samplesHistory) {
+        this(samplesHistory, DEFAULT_MINUTES_HISTORY, DEFAULT_HOURS_HISTORY);
+    }
+
+    public PoolStatsSeries(int samplesHistory, int minutesHistory, int hoursHistory) {
+        samples = new Ring<PoolStatsSample>(samplesHistory);
+        minutes = new Ring<PoolStatsRollup>(minutesHistory);
+        hours = new Ring<PoolStatsRollup>(hoursHistory);
+    }
+
+    public synchronized void add(PoolStatsSample sample) {
+        long    ts=sample.getTimestamp(), minuteStart=ts - (ts % MINUTE_DURATION);
+        if ((curMinute != null) && (curMinute.getStartTime() != minuteStart)) {
+            rollMinute(curMinute);
+            curMinute = null;
+        }
+
+        if (curMinute == null) {
+            curMinute = new PoolStatsRollup(minuteStart, MINUTE_DURATION);
+        }
+
+        curMinute.add(sample, lastSample);
+        samples.add(sample);
+        lastSample = sample;
+    }
+
+    private void rollMinute(PoolStatsRollup minute) {
+        minutes.add(minute);
+
+        long    ts=minute.getStartTime(), hourStart=ts - (ts % HOUR_DURATION);
+        if ((curHour != null) && (curHour.getStartTime() != hourStart)) {
+            hours.add(curHour);
+            curHour = null;
+        }
+
+        if (curHour == null) {
+            curHour = new PoolStatsRollup(hourStart, HOUR_DURATION);
+        }
+        curHour.add(minute);
+    }
+
+    public synchronized PoolStatsSample getLastSample() {
+        return lastSample;
+    }
+
+    /**
+     * @return The last <U>completed</U> minute roll-up - {@code null} if none
+     */
+    public synchronized PoolStatsRollup getLastMinute() {
+        PoolStatsRollup r=minutes.last();
+        return (r == null) ? null : r.clone();
+    }
+
+    /**
+     * @return The last <U>completed</U> hour roll-up - {@code null} if none
+     */
+    public synchronized PoolStatsRollup getLastHour() {
+        PoolStatsRollup r=hours.last();
+        return (r == null) ? null : r.clone();
+    }
+
+    /**
+     * @return The currently accumulating minute roll-up - {@code null} if
+     * no samples added yet
+     */
+    public synchronized PoolStatsRollup getCurrentMinute() {
+        return (curMinute == null) ? null : curMinute.clone();
+    }
+
+    /**
+     * @return The raw samples - oldest first
+     */
+    public synchronized List<PoolStatsSample> getSamples() {
+        return samples.toList();
+    }
+
+    /**
+     * @return The completed minutes roll-ups - oldest first
+     */
+    public synchronized List<PoolStatsRollup> getMinutes() {
+        return cloneAll(minutes.toList());
+    }
+
+    /**
+     * @return The completed hours roll-ups - oldest first
+     */
+    public synchronized List<PoolStatsRollup> getHours() {
+        return cloneAll(hours.toList());
+    }
+
+    private static List<PoolStatsRollup> cloneAll(List<PoolStatsRollup> list) {
+        if (list.isEmpty()) {
+            return list;
+        }
+
+        List<PoolStatsRollup>   result=new ArrayList<PoolStatsRollup>(list.size());
+        for (PoolStatsRollup r : list) {
+            result.add(r.clone());
+        }
+
+        return result;
+    }
+
+    /**
+     * A simple fixed capacity ring buffer that overwrites its oldest
+     * entry when full. <B>Note:</B> not thread-safe
+     * @param <T> Type of entry
+     */
+    static class Ring<T> {
+        private final Object[]  entries;
+        private int next, size;
+
+        Ring(int capacity) {
+            Validate.isTrue(capacity > 0, "Bad ring capacity: %d", capacity);
+            entries = new Object[capacity];
+        }
+
+        void add(T value) {
+            entries[next] = value;
+            next = (next + 1) % entries.length;
+            if (size < entries.length) {
+                size++;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        T last() {
+            if (size <= 0) {
+                return null;
+            }
+
+            int index=(next == 0) ? entries.length - 1 : next - 1;
+            return (T) entries[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> toList() {
+            if (size <= 0) {
+                return Collections.emptyList();
+            }
+
+            List<T> result=new ArrayList<T>(size);
+            for (int index=0, pos=(next - size + entries.length) % entries.length; index < size; index++) {
+                result.add((T) entries[pos]);
+                pos = (pos + 1) % entries.length;
+            }
+
+            return result;
+        }
+    }
+}
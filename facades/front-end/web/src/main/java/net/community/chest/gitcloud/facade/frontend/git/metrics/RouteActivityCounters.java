@@ -0,0 +1,130 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.community.chest.gitcloud.facade.frontend.git.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Holds the cumulative connect/lease/release/timeout counters of a route
+ * as well as the connection acquire wait-time histogram. All updates are
+ * lock-free so they can be invoked from the request threads
+ * @author Lyor Goldstein
+ * @since Dec 2, 2013 10:12:41 AM
+ */
+public class RouteActivityCounters {
+    /**
+     * Upper bounds (msec.) of the lease wait-time histogram buckets. An extra
+     * &quot;overflow&quot; bucket is used for any value above the last one
+     */
+    private static final long[] WAIT_TIME_BUCKETS={ 1L, 2L, 5L, 10L, 25L, 50L, 100L, 250L, 500L, 1000L, 2500L, 5000L, 10000L };
+
+    private final AtomicLong    connects=new AtomicLong(0L);
+    private final AtomicLong    leases=new AtomicLong(0L);
+    private final AtomicLong    releases=new AtomicLong(0L);
+    private final AtomicLong    timeouts=new AtomicLong(0L);
+    private final AtomicLong    waitTimeNanos=new AtomicLong(0L);
+    private final AtomicLongArray   waitHistogram=new AtomicLongArray(WAIT_TIME_BUCKETS.length + 1);
+
+    public RouteActivityCounters() {
+        super();
+    }
+
+    public long getConnectsCount() {
+        return connects.get();
+    }
+
+    public long getLeasesCount() {
+        return leases.get();
+    }
+
+    public long getReleasesCount() {
+        return releases.get();
+    }
+
+    public long getTimeoutsCount() {
+        return timeouts.get();
+    }
+
+    public long getWaitTimeNanos() {
+        return waitTimeNanos.get();
+    }
+
+    public void connected() {
+        connects.incrementAndGet();
+    }
+
+    public void released() {
+        releases.incrementAndGet();
+    }
+
+    public void leased(long waitNanos) {
+        leases.incrementAndGet();
+        recordWaitTime(waitNanos);
+    }
+
+    public void timedOut(long waitNanos) {
+        timeouts.incrementAndGet();
+        recordWaitTime(waitNanos);
+    }
+
+    private void recordWaitTime(long waitNanos) {
+        long    nanos=Math.max(0L, waitNanos);
+        waitTimeNanos.addAndGet(nanos);
+        waitHistogram.incrementAndGet(resolveBucketIndex(TimeUnit.NANOSECONDS.toMillis(nanos)));
+    }
+
+    /**
+     * @return A copy of the current wait-time histogram values - the last
+     * value is the &quot;overflow&quot; bucket
+     * @see #getWaitTimeBucketLimit(int)
+     */
+    public long[] getWaitTimeHistogram() {
+        long[]  values=new long[waitHistogram.length()];
+        for (int index=0; index < values.length; index++) {
+            values[index] = waitHistogram.get(index);
+        }
+
+        return values;
+    }
+
+    public static final int getWaitTimeBucketsCount() {
+        return WAIT_TIME_BUCKETS.length + 1;
+    }
+
+    /**
+     * @param index The bucket index
+     * @return The bucket upper limit (msec.) - {@link Long#MAX_VALUE} for
+     * the &quot;overflow&quot; bucket
+     */
+    public static final long getWaitTimeBucketLimit(int index) {
+        if (index < WAIT_TIME_BUCKETS.length) {
+            return WAIT_TIME_BUCKETS[index];
+        } else {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    static final int resolveBucketIndex(long msec) {
+        for (int index=0; index < WAIT_TIME_BUCKETS.length; index++) {
+            if (msec <= WAIT_TIME_BUCKETS[index]) {
+                return index;
+            }
+        }
+
+        return WAIT_TIME_BUCKETS.length;
+    }
+}
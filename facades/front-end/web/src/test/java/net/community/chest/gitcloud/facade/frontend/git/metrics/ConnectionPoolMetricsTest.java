@@ -0,0 +1,173 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.community.chest.gitcloud.facade.frontend.git.metrics;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.DefaultBHttpClientConnection;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.springframework.test.AbstractSpringTestSupport;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 2, 2013 1:42:17 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConnectionPoolMetricsTest extends AbstractSpringTestSupport {
+    private static final HttpRoute  TEST_ROUTE=new HttpRoute(new HttpHost("localhost", 8080));
+
+    public ConnectionPoolMetricsTest() {
+        super();
+    }
+
+    @Test
+    public void testActivityCounters() {
+        ConnectionPoolMetrics   metrics=new ConnectionPoolMetrics(ConnectionPoolMetrics.DEFAULT_SAMPLES_HISTORY);
+        metrics.connected(TEST_ROUTE);
+        metrics.leased(TEST_ROUTE, null, TimeUnit.MILLISECONDS.toNanos(3L));
+        metrics.leased(TEST_ROUTE, null, TimeUnit.SECONDS.toNanos(30L));
+        metrics.timedOut(TEST_ROUTE, TimeUnit.SECONDS.toNanos(30L));
+        metrics.released(null);
+
+        assertEquals("Mismatched connects", 1L, metrics.getConnectsCount());
+        assertEquals("Mismatched leases", 2L, metrics.getLeasesCount());
+        assertEquals("Mismatched timeouts", 1L, metrics.getTimeoutsCount());
+        assertEquals("Mismatched releases", 1L, metrics.getReleasesCount());
+
+        RouteActivityCounters   counters=metrics.resolveRouteCounters(TEST_ROUTE);
+        long[]  histogram=counters.getWaitTimeHistogram();
+        assertEquals("Mismatched histogram size", RouteActivityCounters.getWaitTimeBucketsCount(), histogram.length);
+        assertEquals("Mismatched 3 msec. bucket", 1L, histogram[RouteActivityCounters.resolveBucketIndex(3L)]);
+        assertEquals("Mismatched overflow bucket", 2L, histogram[histogram.length - 1]);
+    }
+
+    @Test
+    public void testLeasedConnectionsTracking() {
+        ConnectionPoolMetrics   metrics=new ConnectionPoolMetrics(ConnectionPoolMetrics.DEFAULT_SAMPLES_HISTORY);
+        HttpClientConnection    released=new DefaultBHttpClientConnection(Byte.MAX_VALUE);
+        HttpClientConnection    leased=new DefaultBHttpClientConnection(Byte.MAX_VALUE);
+        metrics.leased(TEST_ROUTE, released, 0L);
+        metrics.leased(TEST_ROUTE, leased, 0L);
+        assertEquals("Mismatched tracked connections after lease", 2, metrics.getLeasedConnectionsCount());
+
+        metrics.released(released);
+        assertEquals("Mismatched tracked connections after release", 1, metrics.getLeasedConnectionsCount());
+        assertEquals("Mismatched route releases", 1L, metrics.resolveRouteCounters(TEST_ROUTE).getReleasesCount());
+
+        metrics.shutdown();
+        assertEquals("Tracked connections not discarded on shutdown", 0, metrics.getLeasedConnectionsCount());
+    }
+
+    @Test
+    public void testMinuteAndHourRollups() {
+        ConnectionPoolMetrics   metrics=new ConnectionPoolMetrics(ConnectionPoolMetrics.DEFAULT_SAMPLES_HISTORY);
+        metrics.connected(TEST_ROUTE);
+
+        TestPoolControl pool=new TestPoolControl();
+        long            start=PoolStatsSeries.HOUR_DURATION * 1000L, sampleInterval=TimeUnit.SECONDS.toMillis(10L);
+        int             numSamples=(int) ((PoolStatsSeries.HOUR_DURATION + PoolStatsSeries.MINUTE_DURATION) / sampleInterval);
+        for (int index=0; index <= numSamples; index++) {
+            pool.leased = index % 7;
+            metrics.leased(TEST_ROUTE, null, TimeUnit.MILLISECONDS.toNanos(index % 13));
+            metrics.sample(pool, start + index * sampleInterval);
+        }
+
+        PoolStatsSeries         series=metrics.getTotalSeries();
+        List<PoolStatsSample>   samples=series.getSamples();
+        assertEquals("Mismatched raw samples history", metrics.getSamplesHistory(), samples.size());
+
+        List<PoolStatsRollup>   minutes=series.getMinutes();
+        assertEquals("Mismatched minutes history", PoolStatsSeries.DEFAULT_MINUTES_HISTORY, minutes.size());
+        for (PoolStatsRollup r : minutes) {
+            assertEquals("Mismatched samples count in " + r, PoolStatsSeries.MINUTE_DURATION / sampleInterval, r.getNumSamples());
+            assertTrue("Bad max. leased in " + r, r.getMaxLeased() <= 6);
+            assertTrue("Bad min. leased in " + r, r.getMinLeased() >= 0);
+        }
+
+        PoolStatsRollup lastMinute=series.getLastMinute();
+        assertEquals("Mismatched leases rate in " + lastMinute, 0.1d, lastMinute.getLeasesRate(), 0.000001d);
+
+        List<PoolStatsRollup>   hours=series.getHours();
+        assertEquals("Mismatched hours history", 1, hours.size());
+
+        PoolStatsRollup hour=hours.get(0);
+        assertEquals("Mismatched hour start", start, hour.getStartTime());
+        assertEquals("Mismatched hour samples", PoolStatsSeries.HOUR_DURATION / sampleInterval, hour.getNumSamples());
+
+        PoolStatsSeries routeSeries=metrics.getRouteSeries(TEST_ROUTE);
+        assertNotNull("No route series", routeSeries);
+        assertEquals("Mismatched route samples", samples.size(), routeSeries.getSamples().size());
+
+        String  text=metrics.showMetrics();
+        assertTrue("Missing total metrics: " + text, text.contains(ConnectionPoolMetrics.METRICS_PREFIX + "leased{route=\"" + ConnectionPoolMetrics.TOTAL_ROUTE_NAME + "\"}"));
+        assertTrue("Missing route metrics: " + text, text.contains("{route=\"" + TEST_ROUTE.getTargetHost().toURI() + "\",period=\"1h\"}"));
+    }
+
+    static class TestPoolControl implements ConnPoolControl<HttpRoute> {
+        int leased, pending, available, max=Byte.SIZE;
+
+        TestPoolControl() {
+            super();
+        }
+
+        @Override
+        public void setMaxTotal(int value) {
+            max = value;
+        }
+
+        @Override
+        public int getMaxTotal() {
+            return max;
+        }
+
+        @Override
+        public void setDefaultMaxPerRoute(int value) {
+            max = value;
+        }
+
+        @Override
+        public int getDefaultMaxPerRoute() {
+            return max;
+        }
+
+        @Override
+        public void setMaxPerRoute(HttpRoute route, int value) {
+            max = value;
+        }
+
+        @Override
+        public int getMaxPerRoute(HttpRoute route) {
+            return max;
+        }
+
+        @Override
+        public PoolStats getTotalStats() {
+            return new PoolStats(leased, pending, available, max);
+        }
+
+        @Override
+        public PoolStats getStats(HttpRoute route) {
+            return getTotalStats();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.collections15.keyvalue.KeyedAccessor;
+import org.apache.commons.collections15.keyvalue.KeyedReader;
+import org.apache.commons.lang3.ObjectUtils;
+
+/**
+ * Serves as the base class for the concrete mapped property beans emitted by
+ * the {@link MappedPropertyBeanClassGenerator}. Each generated getter/setter
+ * calls {@link #getProperty(int)}/{@link #setProperty(int, Object)} with the
+ * pre-computed slot index of its property, so no method name resolution or
+ * arguments array allocation takes place
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 6:37:15 PM
+ */
+public abstract class AbstractMappedPropertyBean {
+    private final Object[]  values;
+    private final KeyedReader<String,?> reader;
+    private final KeyedAccessor<String,Object>  writer;
+    private final String[]  readKeys, writeKeys;
+
+    /**
+     * @param slotValues If non-<code>null</code> then the (fixed) values to
+     * be returned by the getters - indexed by slot. Otherwise, the values are
+     * read via the values reader
+     * @param valuesReader The {@link KeyedReader} used to read the values if
+     * no fixed values provided
+     * @param valuesWriter The {@link KeyedAccessor} used to update the values -
+     * if <code>null</code> then the bean is read-only
+     * @param readerKeys The keys used to read each slot
+     * @param writerKeys The keys used to write each slot
+     */
+    protected AbstractMappedPropertyBean(Object[] slotValues, KeyedReader<String,?> valuesReader,
+            KeyedAccessor<String,Object> valuesWriter, String[] readerKeys, String[] writerKeys) {
+        if ((slotValues == null) && (valuesReader == null)) {
+            throw new IllegalStateException("No values reader provided");
+        }
+
+        values = slotValues;
+        reader = valuesReader;
+        writer = valuesWriter;
+        readKeys = readerKeys;
+        writeKeys = writerKeys;
+    }
+
+    /**
+     * @param index The property slot index
+     * @return The property value - <code>null</code> if mapped to an
+     * {@link org.apache.commons.lang3.ObjectUtils.Null} value
+     * @throws NoSuchElementException if no value mapped for the property
+     */
+    protected final Object getProperty(int index) {
+        Object  value=(values == null) ? reader.get(readKeys[index]) : values[index];
+        if (value == null) {
+            throw new NoSuchElementException("No value found for " + readKeys[index]);
+        }
+
+        if (value instanceof ObjectUtils.Null) {
+            return null;
+        } else {
+            return value;
+        }
+    }
+
+    /**
+     * @param index The property slot index
+     * @param value The value to set - <code>null</code> is allowed
+     * @throws UnsupportedOperationException if this is a read-only bean
+     */
+    protected final void setProperty(int index, Object value) {
+        if (writer == null) {
+            throw new UnsupportedOperationException("Read-only property: " + writeKeys[index]);
+        }
+
+        writer.put(writeKeys[index], value);
+    }
+
+    @Override
+    public String toString() {
+        Class<?>[]  ifcs=getClass().getInterfaces();
+        return ifcs[0].getSimpleName() + "[" + ((values == null) ? String.valueOf(reader) : Arrays.toString(values)) + "]";
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.collections15.ExtendedMapUtils;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Holds the (immutable) accessors of a bean {@link Class} as discovered by
+ * {@link ExtendedBeanUtils#describeBean(Class, boolean, boolean)}. The model
+ * is computed once per class and cached via a {@link ClassValue} so that it
+ * is released along with the class
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 5:56:37 PM
+ */
+public final class BeanAccessorModel {
+    private static final ClassValue<BeanAccessorModel>  PUBLIC_MODELS=new ClassValue<BeanAccessorModel>() {
+            @Override
+            protected BeanAccessorModel computeValue(Class<?> type) {
+                return new BeanAccessorModel(type, ExtendedBeanUtils.introspectBean(type, true, false));
+            }
+        };
+    private static final ClassValue<BeanAccessorModel>  ACCESSIBLE_MODELS=new ClassValue<BeanAccessorModel>() {
+            @Override
+            protected BeanAccessorModel computeValue(Class<?> type) {
+                return new BeanAccessorModel(type, ExtendedBeanUtils.introspectBean(type, false, true));
+            }
+        };
+
+    private final Class<?>  beanClass;
+    private final SortedMap<String,Pair<Method,Method>> descriptors;
+    private final SortedMap<String,BeanPropertyAccessor>    accessors;
+
+    private BeanAccessorModel(Class<?> type, SortedMap<String,Pair<Method,Method>> attrsMap) {
+        beanClass = type;
+
+        if (ExtendedMapUtils.isEmpty(attrsMap)) {
+            descriptors = ExtendedMapUtils.emptySortedMap();
+            accessors = ExtendedMapUtils.emptySortedMap();
+            return;
+        }
+
+        SortedMap<String,BeanPropertyAccessor>  accMap=new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String,Pair<Method,Method>> pe : attrsMap.entrySet()) {
+            String  name=pe.getKey();
+            accMap.put(name, new BeanPropertyAccessor(name, pe.getValue()));
+        }
+
+        descriptors = Collections.unmodifiableSortedMap(attrsMap);
+        accessors = Collections.unmodifiableSortedMap(accMap);
+    }
+
+    public Class<?> getBeanClass() {
+        return beanClass;
+    }
+
+    /**
+     * @return An <U>unmodifiable</U> {@link SortedMap} of the discovered
+     * properties where key=the property name (case <U>insensitive</U>),
+     * value={@link Pair} of getter (left) and setter (right) {@link Method}-s
+     */
+    public SortedMap<String,Pair<Method,Method>> getDescriptors() {
+        return descriptors;
+    }
+
+    /**
+     * @return An <U>unmodifiable</U> {@link SortedMap} of the compiled
+     * accessors where key=the property name (case <U>insensitive</U>)
+     */
+    public SortedMap<String,BeanPropertyAccessor> getAccessors() {
+        return accessors;
+    }
+
+    /**
+     * @param name The property name (case <U>insensitive</U>)
+     * @return The matching {@link BeanPropertyAccessor} - <code>null</code>
+     * if no such property
+     */
+    public BeanPropertyAccessor getAccessor(String name) {
+        return accessors.get(name);
+    }
+
+    @Override
+    public String toString() {
+        return beanClass.getSimpleName() + accessors.values();
+    }
+
+    /**
+     * @param beanClass The bean {@link Class}
+     * @param publicOnly If <code>true</code> then the model contains only the
+     * <code>public</code> accessors, otherwise all of them (made accessible)
+     * @return The cached {@link BeanAccessorModel}
+     * @throws IllegalArgumentException if no bean class provided
+     * @throws IllegalStateException if failed to introspect the class
+     */
+    public static BeanAccessorModel of(Class<?> beanClass, boolean publicOnly) {
+        if (beanClass == null) {
+            throw new IllegalArgumentException("No bean class provided");
+        }
+
+        if (publicOnly) {
+            return PUBLIC_MODELS.get(beanClass);
+        } else {
+            return ACCESSIBLE_MODELS.get(beanClass);
+        }
+    }
+}
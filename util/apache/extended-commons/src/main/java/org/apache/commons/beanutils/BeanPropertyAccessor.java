@@ -0,0 +1,171 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExtendedExceptionUtils;
+import org.apache.commons.lang3.reflect.ExtendedMethodUtils;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Invokes a bean property getter/setter via a pre-compiled {@link MethodHandle}
+ * instead of {@link Method#invoke(Object, Object...)}. If a handle cannot be
+ * obtained for an accessor (e.g., a <code>public</code> method of a non-public
+ * class) then the accessor falls back to reflection
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 5:41:12 PM
+ */
+public final class BeanPropertyAccessor {
+    private static final MethodType GETTER_TYPE=MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE=MethodType.methodType(Void.TYPE, Object.class, Object.class);
+
+    private final String    name;
+    private final Method    getter, setter;
+    private final MethodHandle  getterHandle, setterHandle;
+    private final Class<?>  primitiveType;
+
+    public BeanPropertyAccessor(String propName, Pair<Method,Method> accessors) {
+        this(propName, ExtendedBeanUtils.GETTER_VALUE.transform(accessors), ExtendedBeanUtils.SETTER_VALUE.transform(accessors));
+    }
+
+    /**
+     * @param propName The property name
+     * @param getterMethod The getter {@link Method} - may be <code>null</code>
+     * @param setterMethod The setter {@link Method} - may be <code>null</code>
+     * @throws IllegalArgumentException if no property name provided
+     */
+    public BeanPropertyAccessor(String propName, Method getterMethod, Method setterMethod) {
+        if (StringUtils.isEmpty(propName)) {
+            throw new IllegalArgumentException("No property name provided");
+        }
+
+        name = propName;
+        getter = getterMethod;
+        setter = setterMethod;
+        getterHandle = (getter == null) ? null : toMethodHandle(getter, GETTER_TYPE);
+        setterHandle = (setter == null) ? null : toMethodHandle(setter, SETTER_TYPE);
+
+        Class<?>    propType=(setter == null) ? null : setter.getParameterTypes()[0];
+        primitiveType = ((propType != null) && propType.isPrimitive()) ? propType : null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Method getGetter() {
+        return getter;
+    }
+
+    public Method getSetter() {
+        return setter;
+    }
+
+    public boolean isReadable() {
+        return getter != null;
+    }
+
+    public boolean isWriteable() {
+        return setter != null;
+    }
+
+    /**
+     * @return <code>true</code> if all available accessors are invoked via
+     * a {@link MethodHandle} - i.e., no reflection fallback is used
+     */
+    public boolean isCompiled() {
+        return ((getter == null) || (getterHandle != null))
+            && ((setter == null) || (setterHandle != null))
+            ;
+    }
+
+    /**
+     * @param bean The bean instance
+     * @return The property value
+     * @throws IllegalStateException if property has no getter
+     */
+    public Object getValue(Object bean) {
+        if (getterHandle == null) {
+            if (getter == null) {
+                throw new IllegalStateException("No getter for property=" + name);
+            }
+
+            return ExtendedMethodUtils.invoke(getter, bean);
+        }
+
+        try {
+            return (Object) getterHandle.invokeExact(bean);
+        } catch(Throwable e) {
+            throw ExtendedExceptionUtils.toRuntimeException(e, true);
+        }
+    }
+
+    /**
+     * @param bean The bean instance
+     * @param value The property value
+     * @throws IllegalStateException if property has no setter
+     * @throws IllegalArgumentException if attempted to set a <code>null</code>
+     * value for a primitive property
+     */
+    public void setValue(Object bean, Object value) {
+        if ((value == null) && (primitiveType != null)) {
+            throw new IllegalArgumentException("No " + primitiveType.getSimpleName() + " value for property=" + name);
+        }
+
+        if (setterHandle == null) {
+            if (setter == null) {
+                throw new IllegalStateException("No setter for property=" + name);
+            }
+
+            ExtendedMethodUtils.invoke(setter, bean, value);
+            return;
+        }
+
+        try {
+            setterHandle.invokeExact(bean, value);
+        } catch(Throwable e) {
+            throw ExtendedExceptionUtils.toRuntimeException(e, true);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getName() + "[get=" + (isReadable() ? getter.getName() : null)
+                         + ", set=" + (isWriteable() ? setter.getName() : null)
+                         + ", compiled=" + isCompiled()
+                         + "]";
+    }
+
+    /**
+     * @param m The {@link Method} to convert
+     * @param type The generic {@link MethodType} to adapt the handle to
+     * @return The adapted {@link MethodHandle} - <code>null</code> if the
+     * method is not accessible
+     */
+    static MethodHandle toMethodHandle(Method m, MethodType type) {
+        try {
+            return MethodHandles.publicLookup().unreflect(m).asType(type);
+        } catch(IllegalAccessException e) {
+            return null;
+        }
+    }
+}
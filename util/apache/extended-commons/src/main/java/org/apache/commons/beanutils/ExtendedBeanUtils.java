@@ -23,6 +23,7 @@ import java.beans.PropertyDescriptor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -43,7 +44,6 @@ import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.ExtendedArrayUtils;
 import org.apache.commons.lang3.ExtendedCharSequenceUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.reflect.ExtendedMethodUtils;
 import org.apache.commons.lang3.tuple.Pair;
 
 /**
@@ -116,19 +116,24 @@ public class ExtendedBeanUtils {
             throw new IllegalArgumentException("No attributes");
         }
 
+        final BeanPropertyAccessor[]    getters=new BeanPropertyAccessor[attrsMap.size()];
+        int                             index=0;
+        for (Map.Entry<String,? extends Pair<Method,?>> pe : attrsMap.entrySet()) {
+            getters[index] = new BeanPropertyAccessor(pe.getKey(), GETTER_VALUE.transform(pe.getValue()), null);
+            index++;
+        }
+
         return new Transformer<E,SortedMap<String,Object>>() {
             @Override
             public SortedMap<String,Object> transform(E input) {
                 SortedMap<String,Object>  valuesMap=new TreeMap<String,Object>(String.CASE_INSENSITIVE_ORDER);
-                for (Map.Entry<String,? extends Pair<Method,?>> pe : attrsMap.entrySet()) {
-                    String          name=pe.getKey();
-                    Pair<Method,?>  pair=pe.getValue();
-                    Method          getter=GETTER_VALUE.transform(pair);
-                    if (getter == null) {
+                for (BeanPropertyAccessor accessor : getters) {
+                    String  name=accessor.getName();
+                    if (!accessor.isReadable()) {
                         throw new NoSuchElementException("No getter for property=" + name);
                     }
                     
-                    Object  value=ExtendedMethodUtils.invoke(getter, input);
+                    Object  value=accessor.getValue(input);
                     if (value == null) {
                         if (valuesMap.containsKey(name)) {
                             throw new IllegalStateException("Multiple (null) values for property=" + name);
@@ -166,11 +171,16 @@ public class ExtendedBeanUtils {
             throw new IllegalArgumentException("No attributes");
         }
         
+        final BeanPropertyAccessor[]    setters=toSetterAccessors(attrsMap);
         return new Transformer<Map<String,?>,E>() {
             @Override
             public E transform(Map<String,?> valuesMap) {
-                Transformer<Map<String,?>,E>    delegate=propertiesToBeanTransformer((E) factory.create(), attrsMap);
-                return delegate.transform(valuesMap);
+                E   instance=factory.create();
+                if (instance == null) {
+                    throw new IllegalStateException("No instance created");
+                }
+
+                return updateBeanProperties(instance, setters, valuesMap);
             }
         };
     }
@@ -194,30 +204,42 @@ public class ExtendedBeanUtils {
             throw new IllegalArgumentException("No attributes");
         }
         
+        final BeanPropertyAccessor[]    setters=toSetterAccessors(attrsMap);
         return new Transformer<Map<String,?>,E>() {
             @Override
             public E transform(Map<String,?> valuesMap) {
-                if (ExtendedMapUtils.isEmpty(valuesMap)) {
-                    return instance;
-                }
-
-                for (Map.Entry<String,? extends Pair<?,Method>> ae : attrsMap.entrySet()) {
-                    String          name=ae.getKey();
-                    Pair<?,Method>  pair=ae.getValue();
-                    Method          setter=SETTER_VALUE.transform(pair);
-                    if (setter == null) {
-                        continue;   // ignore non settable values
-                    }
-                    
-                    Object  value=valuesMap.get(name);
-                    ExtendedMethodUtils.invoke(setter, instance, value);
-                }
-
-                return instance;
+                return updateBeanProperties(instance, setters, valuesMap);
             }
         };
     }
 
+    private static BeanPropertyAccessor[] toSetterAccessors(Map<String,? extends Pair<?,Method>> attrsMap) {
+        List<BeanPropertyAccessor>  setters=new ArrayList<>(attrsMap.size());
+        for (Map.Entry<String,? extends Pair<?,Method>> ae : attrsMap.entrySet()) {
+            Method  setter=SETTER_VALUE.transform(ae.getValue());
+            if (setter == null) {
+                continue;   // ignore non settable values
+            }
+            
+            setters.add(new BeanPropertyAccessor(ae.getKey(), null, setter));
+        }
+
+        return setters.toArray(new BeanPropertyAccessor[setters.size()]);
+    }
+
+    private static <E> E updateBeanProperties(E instance, BeanPropertyAccessor[] setters, Map<String,?> valuesMap) {
+        if (ExtendedMapUtils.isEmpty(valuesMap)) {
+            return instance;
+        }
+
+        for (BeanPropertyAccessor accessor : setters) {
+            Object  value=valuesMap.get(accessor.getName());
+            accessor.setValue(instance, value);
+        }
+
+        return instance;
+    }
+
     /**
      * A {@link Predicate} that returns <code>true</code> if the getter
      * {@link Method} in the right-hand of a {@link Pair} is non-<code>null</code>
@@ -319,12 +341,32 @@ public class ExtendedBeanUtils {
      * right one (if non-<code>null</code> represents the setter
      * @throws IllegalStateException if same property (with different case)
      * encountered or failed to extract bean information
+     * @see BeanAccessorModel#of(Class, boolean)
      */
     public static final SortedMap<String,Pair<Method,Method>> describeBean(Class<?> beanClass, boolean publicOnly, boolean makeAccessible) {
         if (beanClass == null) {
             return ExtendedMapUtils.emptySortedMap();
         }
 
+        // non-accessible non-public methods cannot be compiled, so no use caching them
+        if ((!publicOnly) && (!makeAccessible)) {
+            return introspectBean(beanClass, publicOnly, makeAccessible);
+        }
+
+        // return a copy since callers may (and do) modify the result
+        BeanAccessorModel                       model=BeanAccessorModel.of(beanClass, publicOnly);
+        SortedMap<String,Pair<Method,Method>>   attrsMap=model.getDescriptors();
+        if (ExtendedMapUtils.isEmpty(attrsMap)) {
+            return ExtendedMapUtils.emptySortedMap();
+        } else {
+            SortedMap<String,Pair<Method,Method>>   result=new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            result.putAll(attrsMap);
+            return result;
+        }
+    }
+
+    // the actual (un-cached) implementation of describeBean
+    static SortedMap<String,Pair<Method,Method>> introspectBean(Class<?> beanClass, boolean publicOnly, boolean makeAccessible) {
         /*
          * NOTE: for interfaces, the "superclass" is always null, so if this
          * is an interface or an abstract class we need to "climb" the hierarchy
@@ -76,9 +76,16 @@ public class MappedPropertyBeanAccessProxy extends MappedPropertyBeanReadProxy {
      * @param cl The {@link ClassLoader} to use to generate the proxy
      * @param proxyType The result proxy type
      * @return A proxy instance backed by the values
+     * @see MappedPropertyBeanClassGenerator#newPropertiesAccessBean(Class, KeyedAccessor)
      * @see #createPropertyBeanAccessor(KeyedAccessor, ClassLoader, Class)
      */
     public static final <T> T createPropertyBeanAccessor(Map<String,Object> valuesMap, ClassLoader cl, Class<T> proxyType) {
+        // the generated bean accesses the values by property name, so no need for methods routing
+        T   bean=MappedPropertyBeanClassGenerator.newPropertiesAccessBean(proxyType, createValuesAccessor(valuesMap));
+        if (bean != null) {
+            return bean;
+        }
+
         return createPropertyBeanAccessor(createMethodsAccessor(valuesMap, proxyType), cl, proxyType);
     }
 
@@ -100,10 +107,19 @@ public class MappedPropertyBeanAccessProxy extends MappedPropertyBeanReadProxy {
      * <code>getX, setX</code> and not just <code>X</code>)
      * @param cl The {@link ClassLoader} to use to generate the proxy
      * @param proxyType The result proxy type
-     * @return A proxy instance backed by the values
+     * @return A proxy instance backed by the values. <B>Note:</B> if possible,
+     * an instance of a generated class that implements the proxy type is
+     * returned instead of an actual {@link java.lang.reflect.Proxy}, in which
+     * case the class loader argument is not used
+     * @see MappedPropertyBeanClassGenerator#newAccessBean(Class, KeyedAccessor)
      * @see ProxyUtils#newProxyInstance(Class, ClassLoader, InvocationHandler, Class...)
      */
     public static final <T> T createPropertyBeanAccessor(KeyedAccessor<String,Object> accessor, ClassLoader cl, Class<T> proxyType) {
+        T   bean=MappedPropertyBeanClassGenerator.newAccessBean(proxyType, accessor);
+        if (bean != null) {
+            return bean;
+        }
+
         return ProxyUtils.newProxyInstance(proxyType, cl, new MappedPropertyBeanAccessProxy(accessor), proxyType);
     }
 
@@ -0,0 +1,609 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.apache.commons.collections15.keyvalue.KeyedAccessor;
+import org.apache.commons.collections15.keyvalue.KeyedReader;
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.exception.ExtendedExceptionUtils;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Emits (and caches per interface) a concrete {@link AbstractMappedPropertyBean}
+ * implementation of a bean interface, so that mapped property beans do not
+ * have to go through {@link java.lang.reflect.Proxy} dispatch. Generation is
+ * supported only for <code>public</code> interfaces whose methods are all
+ * property getters/setters whose types are <code>public</code> - the various
+ * <code>newXXXBean</code> methods return <code>null</code> for any other type
+ * so that the caller can fall back to a proxy
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 6:52:08 PM
+ */
+public class MappedPropertyBeanClassGenerator {
+    /**
+     * Suffix appended to the interface name in order to generate the
+     * implementation class name
+     */
+    public static final String  GENERATED_CLASS_SUFFIX="$$MappedPropertyBean";
+
+    private static final MethodType CONSTRUCTOR_TYPE=MethodType.methodType(AbstractMappedPropertyBean.class,
+            Object[].class, KeyedReader.class, KeyedAccessor.class, String[].class, String[].class);
+    private static final BeanClassInfo  UNSUPPORTED=new BeanClassInfo(null, null, null, null, null);
+    private static final ClassValue<BeanClassInfo> BEAN_CLASSES=new ClassValue<BeanClassInfo>() {
+            @Override
+            protected BeanClassInfo computeValue(Class<?> type) {
+                return createBeanClassInfo(type);
+            }
+        };
+
+    protected MappedPropertyBeanClassGenerator() {
+        super();
+    }
+
+    /**
+     * @param type The bean interface
+     * @return <code>true</code> if a concrete class can be generated for it
+     */
+    public static final boolean isGeneratedBeanSupported(Class<?> type) {
+        return getGeneratedBeanClass(type) != null;
+    }
+
+    /**
+     * @param type The bean interface
+     * @return The (cached) generated implementation {@link Class} - <code>null</code>
+     * if generation not supported for the type
+     */
+    public static final Class<?> getGeneratedBeanClass(Class<?> type) {
+        if (type == null) {
+            return null;
+        }
+
+        BeanClassInfo   info=BEAN_CLASSES.get(type);
+        return info.beanClass;
+    }
+
+    /**
+     * @param type The bean interface
+     * @param methodValuesMap A {@link Map} of the values to be returned by the
+     * getters where key=the getter method name. The values are copied into
+     * the bean slots, so subsequent changes to the map are not reflected
+     * @return The generated bean instance - <code>null</code> if generation
+     * not supported for the type
+     * @see MappedPropertyBeanReadProxy#calculateMethodValuesMap(Map, Map)
+     */
+    public static final <T> T newReadBean(Class<T> type, Map<String,?> methodValuesMap) {
+        BeanClassInfo   info=(type == null) ? UNSUPPORTED : BEAN_CLASSES.get(type);
+        if (info.constructor == null) {
+            return null;
+        }
+
+        String[]    getters=info.getterNames;
+        Object[]    values=new Object[getters.length];
+        for (int index=0; index < getters.length; index++) {
+            String  name=getters[index];
+            if (name != null) {
+                values[index] = methodValuesMap.get(name);
+            }
+        }
+
+        return info.newInstance(type, values, null, null, getters, info.setterNames);
+    }
+
+    /**
+     * @param type The bean interface
+     * @param reader The {@link KeyedReader} used to read the values where
+     * key=the getter method name
+     * @return The generated bean instance - <code>null</code> if generation
+     * not supported for the type
+     */
+    public static final <T> T newReadBean(Class<T> type, KeyedReader<String,?> reader) {
+        BeanClassInfo   info=(type == null) ? UNSUPPORTED : BEAN_CLASSES.get(type);
+        if (info.constructor == null) {
+            return null;
+        }
+
+        return info.newInstance(type, null, reader, null, info.getterNames, info.setterNames);
+    }
+
+    /**
+     * @param type The bean interface
+     * @param accessor The {@link KeyedAccessor} used to read/write the values
+     * where key=the getter/setter method name
+     * @return The generated bean instance - <code>null</code> if generation
+     * not supported for the type
+     * @see MappedPropertyBeanAccessProxy#createMethodsAccessor(KeyedAccessor, Map)
+     */
+    public static final <T> T newAccessBean(Class<T> type, KeyedAccessor<String,Object> accessor) {
+        BeanClassInfo   info=(type == null) ? UNSUPPORTED : BEAN_CLASSES.get(type);
+        if (info.constructor == null) {
+            return null;
+        }
+
+        if (accessor == null) {
+            throw new IllegalStateException("No accessor");
+        }
+
+        return info.newInstance(type, null, accessor, accessor, info.getterNames, info.setterNames);
+    }
+
+    /**
+     * @param type The bean interface
+     * @param accessor The {@link KeyedAccessor} used to read/write the values
+     * where key=the <U>pure</U> property name
+     * @return The generated bean instance - <code>null</code> if generation
+     * not supported for the type
+     * @see MappedPropertyBeanAccessProxy#createValuesAccessor(Map)
+     */
+    public static final <T> T newPropertiesAccessBean(Class<T> type, KeyedAccessor<String,Object> accessor) {
+        BeanClassInfo   info=(type == null) ? UNSUPPORTED : BEAN_CLASSES.get(type);
+        if (info.constructor == null) {
+            return null;
+        }
+
+        if (accessor == null) {
+            throw new IllegalStateException("No accessor");
+        }
+
+        return info.newInstance(type, null, accessor, accessor, info.propNames, info.propNames);
+    }
+
+    private static BeanClassInfo createBeanClassInfo(Class<?> type) {
+        if ((!type.isInterface()) || (!isAccessibleType(type))) {
+            return UNSUPPORTED;
+        }
+
+        SortedMap<String,Pair<Method,Method>>   attrsMap=ExtendedBeanUtils.describeBean(type);
+        int                                     numProps=attrsMap.size(), slot=0;
+        String[]                                propNames=new String[numProps];
+        String[]                                getterNames=new String[numProps], setterNames=new String[numProps];
+        Map<String,Integer>                     slotsMap=new HashMap<>(2 * numProps);
+        for (Map.Entry<String,Pair<Method,Method>> pe : attrsMap.entrySet()) {
+            Pair<Method,Method> pair=pe.getValue();
+            Method              getter=ExtendedBeanUtils.GETTER_VALUE.transform(pair);
+            Method              setter=ExtendedBeanUtils.SETTER_VALUE.transform(pair);
+            propNames[slot] = pe.getKey();
+            getterNames[slot] = (getter == null) ? null : getter.getName();
+            setterNames[slot] = (setter == null) ? null : setter.getName();
+            if (getter != null) {
+                slotsMap.put(getter.getName(), Integer.valueOf(slot));
+            }
+            if (setter != null) {
+                slotsMap.put(setter.getName(), Integer.valueOf(slot));
+            }
+            slot++;
+        }
+
+        String  className=type.getName() + GENERATED_CLASS_SUFFIX;
+        if (className.startsWith("java.")) {
+            className = ClassUtils.getPackageName(MappedPropertyBeanClassGenerator.class) + "." + className;
+        }
+
+        ClassFileWriter writer=new ClassFileWriter(className, type);
+        Set<String>     signatures=new HashSet<>();
+        for (Method m : type.getMethods()) {
+            int mods=m.getModifiers();
+            if (Modifier.isStatic(mods) || (!Modifier.isAbstract(mods))) {
+                continue;
+            }
+
+            String  name=m.getName(), desc=toMethodDescriptor(m);
+            if (!signatures.add(name + desc)) {
+                continue;   // same method inherited via several interfaces
+            }
+
+            Integer     index=slotsMap.get(name);
+            Class<?>[]  params=m.getParameterTypes();
+            Class<?>    returnType=m.getReturnType();
+            if (index == null) {
+                return UNSUPPORTED;
+            }
+
+            if ((params.length == 0) && (!Void.TYPE.equals(returnType))) {
+                if ((!name.equals(getterNames[index.intValue()])) || (!isAccessibleType(returnType))) {
+                    return UNSUPPORTED;
+                }
+                writer.addGetter(name, desc, index.intValue(), returnType);
+            } else if ((params.length == 1) && Void.TYPE.equals(returnType)) {
+                if (!name.equals(setterNames[index.intValue()])) {
+                    return UNSUPPORTED;
+                }
+                writer.addSetter(name, desc, index.intValue(), params[0]);
+            } else {
+                return UNSUPPORTED;
+            }
+        }
+
+        try {
+            GeneratedClassLoader    cl=new GeneratedClassLoader(type.getClassLoader());
+            Class<?>                beanClass=cl.define(className, writer.toByteArray());
+            MethodHandle            constructor=MethodHandles.publicLookup().findConstructor(beanClass, CONSTRUCTOR_TYPE.changeReturnType(Void.TYPE));
+            return new BeanClassInfo(beanClass, constructor.asType(CONSTRUCTOR_TYPE), getterNames, setterNames, propNames);
+        } catch(ReflectiveOperationException | LinkageError e) {
+            return UNSUPPORTED;    // fall back to a proxy
+        }
+    }
+
+    /**
+     * @param type The {@link Class} to check
+     * @return <code>true</code> if the type is primitive or it (and all its
+     * declaring classes) are <code>public</code>
+     */
+    static boolean isAccessibleType(Class<?> type) {
+        Class<?>    t=type;
+        while (t.isArray()) {
+            t = t.getComponentType();
+        }
+
+        if (t.isPrimitive()) {
+            return true;
+        }
+
+        for ( ; t != null; t = t.getDeclaringClass()) {
+            if (!Modifier.isPublic(t.getModifiers())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static String toMethodDescriptor(Method m) {
+        StringBuilder   sb=new StringBuilder().append('(');
+        for (Class<?> p : m.getParameterTypes()) {
+            sb.append(toTypeDescriptor(p));
+        }
+        return sb.append(')').append(toTypeDescriptor(m.getReturnType())).toString();
+    }
+
+    static String toTypeDescriptor(Class<?> type) {
+        if (type.isArray()) {
+            return toInternalName(type);
+        }
+
+        if (!type.isPrimitive()) {
+            return "L" + toInternalName(type) + ";";
+        }
+
+        if (Boolean.TYPE.equals(type)) {
+            return "Z";
+        } else if (Long.TYPE.equals(type)) {
+            return "J";
+        } else {    // all other primitives use the 1st (capitalized) letter of their name
+            return String.valueOf(Character.toUpperCase(type.getName().charAt(0)));
+        }
+    }
+
+    static String toInternalName(Class<?> type) {
+        return toInternalName(type.getName());
+    }
+
+    static String toInternalName(String className) {
+        return className.replace('.', '/');
+    }
+
+    private static final class BeanClassInfo {
+        final Class<?>  beanClass;
+        final MethodHandle  constructor;
+        final String[]  getterNames, setterNames, propNames;
+
+        BeanClassInfo(Class<?> generatedClass, MethodHandle ctor, String[] getters, String[] setters, String[] props) {
+            beanClass = generatedClass;
+            constructor = ctor;
+            getterNames = getters;
+            setterNames = setters;
+            propNames = props;
+        }
+
+        <T> T newInstance(Class<T> type, Object[] values, KeyedReader<String,?> reader,
+                          KeyedAccessor<String,Object> writer, String[] readKeys, String[] writeKeys) {
+            try {
+                AbstractMappedPropertyBean  bean=(AbstractMappedPropertyBean) constructor.invokeExact(values, reader, writer, readKeys, writeKeys);
+                return type.cast(bean);
+            } catch(Throwable e) {
+                throw ExtendedExceptionUtils.toRuntimeException(e, true);
+            }
+        }
+    }
+
+    /**
+     * Resolves the generated classes references to this library's types via
+     * the library's own class loader and all others via the interface's loader
+     */
+    private static final class GeneratedClassLoader extends ClassLoader {
+        private static final Map<String,Class<?>>   SHARED_TYPES=Collections.unmodifiableMap(mapSharedTypes(
+                AbstractMappedPropertyBean.class, KeyedReader.class, KeyedAccessor.class));
+
+        GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            Class<?>    type=SHARED_TYPES.get(name);
+            if (type != null) {
+                return type;
+            }
+
+            return super.loadClass(name, resolve);
+        }
+
+        Class<?> define(String name, byte[] data) {
+            return defineClass(name, data, 0, data.length);
+        }
+
+        private static Map<String,Class<?>> mapSharedTypes(Class<?> ... types) {
+            Map<String,Class<?>>    typesMap=new HashMap<>(types.length);
+            for (Class<?> t : types) {
+                typesMap.put(t.getName(), t);
+            }
+            return typesMap;
+        }
+    }
+
+    /**
+     * A minimal class file writer that emits only what the generated beans
+     * require - no fields, no branches (hence no stack map frames) and no
+     * exception tables
+     */
+    private static final class ClassFileWriter {
+        private static final int    CLASS_FILE_VERSION=50;  // Java 6 - no stack map frames required
+        private static final int    ACC_PUBLIC=0x0001, ACC_FINAL=0x0010, ACC_SUPER=0x0020;
+
+        private static final int    CONSTANT_Utf8=1, CONSTANT_Class=7, CONSTANT_Methodref=10, CONSTANT_NameAndType=12;
+
+        private static final int    ICONST_0=0x03, BIPUSH=0x10, SIPUSH=0x11, ALOAD=0x19;
+        private static final int    ILOAD_1=0x1b, LLOAD_1=0x1f, FLOAD_1=0x23, DLOAD_1=0x27, ALOAD_0=0x2a, ALOAD_1=0x2b;
+        private static final int    IRETURN=0xac, LRETURN=0xad, FRETURN=0xae, DRETURN=0xaf, ARETURN=0xb0, RETURN=0xb1;
+        private static final int    INVOKEVIRTUAL=0xb6, INVOKESPECIAL=0xb7, INVOKESTATIC=0xb8, CHECKCAST=0xc0;
+
+        private static final String BASE_CLASS=toInternalName(AbstractMappedPropertyBean.class);
+        private static final String CONSTRUCTOR_DESCRIPTOR="([Ljava/lang/Object;"
+                                                         + toTypeDescriptor(KeyedReader.class)
+                                                         + toTypeDescriptor(KeyedAccessor.class)
+                                                         + "[Ljava/lang/String;[Ljava/lang/String;)V";
+
+        private final Map<String,Integer>   constants=new HashMap<>();
+        private final ByteArrayOutputStream poolBytes=new ByteArrayOutputStream(1024), methodsBytes=new ByteArrayOutputStream(1024);
+        private final DataOutputStream  pool=new DataOutputStream(poolBytes), methods=new DataOutputStream(methodsBytes);
+        private final int   thisClass, superClass, ifcClass;
+        private int poolCount=1, methodsCount;
+
+        ClassFileWriter(String className, Class<?> ifc) {
+            thisClass = classRef(toInternalName(className));
+            superClass = classRef(BASE_CLASS);
+            ifcClass = classRef(toInternalName(ifc));
+
+            ByteArrayOutputStream   code=new ByteArrayOutputStream();
+            code.write(ALOAD_0);
+            code.write(ALOAD_1);
+            code.write(ALOAD_1 + 1);
+            code.write(ALOAD_1 + 2);
+            code.write(ALOAD);
+            code.write(4);
+            code.write(ALOAD);
+            code.write(5);
+            writeMemberRef(code, INVOKESPECIAL, methodRef(BASE_CLASS, "<init>", CONSTRUCTOR_DESCRIPTOR));
+            code.write(RETURN);
+            addMethod("<init>", CONSTRUCTOR_DESCRIPTOR, 6, 6, code);
+        }
+
+        void addGetter(String name, String desc, int slot, Class<?> returnType) {
+            ByteArrayOutputStream   code=new ByteArrayOutputStream();
+            code.write(ALOAD_0);
+            writePush(code, slot);
+            writeMemberRef(code, INVOKEVIRTUAL, methodRef(BASE_CLASS, "getProperty", "(I)Ljava/lang/Object;"));
+            if (returnType.isPrimitive()) {
+                String  wrapper=toInternalName(ClassUtils.primitiveToWrapper(returnType));
+                writeMemberRef(code, CHECKCAST, classRef(wrapper));
+                writeMemberRef(code, INVOKEVIRTUAL, methodRef(wrapper, returnType.getName() + "Value", "()" + toTypeDescriptor(returnType)));
+                code.write(selectOpcode(returnType, IRETURN, LRETURN, FRETURN, DRETURN));
+            } else {
+                if (!Object.class.equals(returnType)) {
+                    writeMemberRef(code, CHECKCAST, classRef(toInternalName(returnType)));
+                }
+                code.write(ARETURN);
+            }
+            addMethod(name, desc, 2, 1, code);
+        }
+
+        void addSetter(String name, String desc, int slot, Class<?> paramType) {
+            ByteArrayOutputStream   code=new ByteArrayOutputStream();
+            code.write(ALOAD_0);
+            writePush(code, slot);
+
+            int maxLocals=2;
+            if (paramType.isPrimitive()) {
+                Class<?>    wrapperType=ClassUtils.primitiveToWrapper(paramType);
+                String      wrapper=toInternalName(wrapperType), paramDesc=toTypeDescriptor(paramType);
+                code.write(selectOpcode(paramType, ILOAD_1, LLOAD_1, FLOAD_1, DLOAD_1));
+                writeMemberRef(code, INVOKESTATIC, methodRef(wrapper, "valueOf", "(" + paramDesc + ")" + toTypeDescriptor(wrapperType)));
+                if (Long.TYPE.equals(paramType) || Double.TYPE.equals(paramType)) {
+                    maxLocals = 3;
+                }
+            } else {
+                code.write(ALOAD_1);
+            }
+
+            writeMemberRef(code, INVOKEVIRTUAL, methodRef(BASE_CLASS, "setProperty", "(ILjava/lang/Object;)V"));
+            code.write(RETURN);
+            addMethod(name, desc, 4, maxLocals, code);
+        }
+
+        byte[] toByteArray() {
+            try {
+                ByteArrayOutputStream   out=new ByteArrayOutputStream(poolBytes.size() + methodsBytes.size() + 64);
+                DataOutputStream        data=new DataOutputStream(out);
+                data.writeInt(0xCAFEBABE);
+                data.writeShort(0);
+                data.writeShort(CLASS_FILE_VERSION);
+                data.writeShort(poolCount);
+                poolBytes.writeTo(data);
+                data.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+                data.writeShort(thisClass);
+                data.writeShort(superClass);
+                data.writeShort(1);
+                data.writeShort(ifcClass);
+                data.writeShort(0); // fields
+                data.writeShort(methodsCount);
+                methodsBytes.writeTo(data);
+                data.writeShort(0); // attributes
+                data.flush();
+                return out.toByteArray();
+            } catch(IOException e) {    // unexpected for in-memory streams
+                throw new IllegalStateException("toByteArray() failed: " + e.getMessage(), e);
+            }
+        }
+
+        private void addMethod(String name, String desc, int maxStack, int maxLocals, ByteArrayOutputStream code) {
+            try {
+                int nameIndex=utf8(name), descIndex=utf8(desc), codeIndex=utf8("Code");
+                methods.writeShort(ACC_PUBLIC);
+                methods.writeShort(nameIndex);
+                methods.writeShort(descIndex);
+                methods.writeShort(1);  // Code attribute
+                methods.writeShort(codeIndex);
+                methods.writeInt(12 + code.size());
+                methods.writeShort(maxStack);
+                methods.writeShort(maxLocals);
+                methods.writeInt(code.size());
+                code.writeTo(methods);
+                methods.writeShort(0);  // exceptions table
+                methods.writeShort(0);  // code attributes
+                methodsCount++;
+            } catch(IOException e) {    // unexpected for in-memory streams
+                throw new IllegalStateException("addMethod(" + name + ") failed: " + e.getMessage(), e);
+            }
+        }
+
+        private int utf8(String value) {
+            String  key="U" + value;
+            Integer index=constants.get(key);
+            if (index != null) {
+                return index.intValue();
+            }
+
+            try {
+                pool.writeByte(CONSTANT_Utf8);
+                pool.writeUTF(value);
+            } catch(IOException e) {    // unexpected for in-memory streams
+                throw new IllegalStateException("utf8(" + value + ") failed: " + e.getMessage(), e);
+            }
+            return addConstant(key);
+        }
+
+        private int classRef(String internalName) {
+            String  key="C" + internalName;
+            Integer index=constants.get(key);
+            if (index != null) {
+                return index.intValue();
+            }
+
+            return writeConstant(key, CONSTANT_Class, utf8(internalName));
+        }
+
+        private int methodRef(String owner, String name, String desc) {
+            String  key="M" + owner + "." + name + desc;
+            Integer index=constants.get(key);
+            if (index != null) {
+                return index.intValue();
+            }
+
+            int classIndex=classRef(owner);
+            int natIndex=nameAndType(name, desc);
+            return writeConstant(key, CONSTANT_Methodref, classIndex, natIndex);
+        }
+
+        private int nameAndType(String name, String desc) {
+            String  key="N" + name + ":" + desc;
+            Integer index=constants.get(key);
+            if (index != null) {
+                return index.intValue();
+            }
+
+            int nameIndex=utf8(name);
+            int descIndex=utf8(desc);
+            return writeConstant(key, CONSTANT_NameAndType, nameIndex, descIndex);
+        }
+
+        private int writeConstant(String key, int tag, int ... refs) {
+            try {
+                pool.writeByte(tag);
+                for (int r : refs) {
+                    pool.writeShort(r);
+                }
+            } catch(IOException e) {    // unexpected for in-memory streams
+                throw new IllegalStateException("writeConstant(" + key + ") failed: " + e.getMessage(), e);
+            }
+            return addConstant(key);
+        }
+
+        private int addConstant(String key) {
+            int index=poolCount;
+            constants.put(key, Integer.valueOf(index));
+            poolCount++;
+            return index;
+        }
+
+        private static void writeMemberRef(ByteArrayOutputStream code, int opcode, int index) {
+            code.write(opcode);
+            code.write((index >> 8) & 0xFF);
+            code.write(index & 0xFF);
+        }
+
+        private static void writePush(ByteArrayOutputStream code, int value) {
+            if (value <= 5) {
+                code.write(ICONST_0 + value);
+            } else if (value <= Byte.MAX_VALUE) {
+                code.write(BIPUSH);
+                code.write(value);
+            } else if (value <= Short.MAX_VALUE) {
+                code.write(SIPUSH);
+                code.write((value >> 8) & 0xFF);
+                code.write(value & 0xFF);
+            } else {
+                throw new IllegalArgumentException("Too many properties: " + value);
+            }
+        }
+
+        private static int selectOpcode(Class<?> primitiveType, int intOpcode, int longOpcode, int floatOpcode, int doubleOpcode) {
+            if (Long.TYPE.equals(primitiveType)) {
+                return longOpcode;
+            } else if (Float.TYPE.equals(primitiveType)) {
+                return floatOpcode;
+            } else if (Double.TYPE.equals(primitiveType)) {
+                return doubleOpcode;
+            } else {
+                return intOpcode;
+            }
+        }
+    }
+}
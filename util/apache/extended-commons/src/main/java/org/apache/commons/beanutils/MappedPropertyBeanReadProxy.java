@@ -137,10 +137,16 @@ public class MappedPropertyBeanReadProxy implements InvocationHandler {
      * @param proxyType The result proxy type
      * @return A proxy instance backed by the values
      * @see #calculateMethodValuesMap(Map, Map)
+     * @see MappedPropertyBeanClassGenerator#newReadBean(Class, Map)
      * @see #createPropertyBeanProxy(KeyedReader, ClassLoader, Class) 
      */
     public static final <T> T createPropertyBeanProxy(Map<String,Method> propsMap, Map<String,?> valuesMap, ClassLoader cl, Class<T> proxyType) {
         Map<String,Object>  methodValuesMap=calculateMethodValuesMap(propsMap, valuesMap);
+        T                   bean=MappedPropertyBeanClassGenerator.newReadBean(proxyType, methodValuesMap);
+        if (bean != null) {
+            return bean;
+        }
+
         return createPropertyBeanProxy(KeyedAccessUtils.keyedAccessor(methodValuesMap), cl, proxyType);
     }
 
@@ -162,10 +168,19 @@ public class MappedPropertyBeanReadProxy implements InvocationHandler {
      * and not just <code>X</code>)
      * @param cl The {@link ClassLoader} to use to generate the proxy
      * @param proxyType The result proxy type
-     * @return A proxy instance backed by the values
+     * @return A proxy instance backed by the values. <B>Note:</B> if possible,
+     * an instance of a generated class that implements the proxy type is
+     * returned instead of an actual {@link java.lang.reflect.Proxy}, in which
+     * case the class loader argument is not used
+     * @see MappedPropertyBeanClassGenerator#newReadBean(Class, KeyedReader)
      * @see ProxyUtils#newProxyInstance(Class, ClassLoader, InvocationHandler, Class...)
      */
     public static final <T> T createPropertyBeanProxy(KeyedReader<String,?> reader, ClassLoader cl, Class<T> proxyType) {
+        T   bean=MappedPropertyBeanClassGenerator.newReadBean(proxyType, reader);
+        if (bean != null) {
+            return bean;
+        }
+
         return ProxyUtils.newProxyInstance(proxyType, cl, new MappedPropertyBeanReadProxy(reader), proxyType);
     }
     /**
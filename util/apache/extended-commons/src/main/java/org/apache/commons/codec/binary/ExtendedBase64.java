@@ -16,11 +16,26 @@
 
 package org.apache.commons.codec.binary;
 
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.ExtendedArrayUtils;
+import org.apache.commons.lang3.Validate;
 
 /**
+ * <P>Besides the {@link Base64} functionality, provides table driven encoding
+ * and decoding directly into caller supplied arrays and buffers (see
+ * {@link Encoder} and {@link Decoder}), stream copy functions that
+ * encode/decode the data while copying it and stream wrappers that do the
+ * same (see {@link EncodingOutputStream} and {@link DecodingInputStream}). The encoding uses a table
+ * that maps 12 bits to their 2 encoded characters, so each 3 bytes group
+ * requires only 2 lookups.</P>
  * @author lgoldstein
  */
 public class ExtendedBase64 extends Base64 {
@@ -69,4 +84,744 @@ public class ExtendedBase64 extends Base64 {
 	public static final String decodeBase64ToString(byte ... bytes) throws UnsupportedEncodingException {
 		return decodeBase64ToString("UTF-8", bytes);
 	}
+
+    /**
+     * The padding character
+     */
+    public static final byte PAD_CHAR='=';
+    /**
+     * Default size of the buffer used by the stream copy functions - a multiple of 3 and 4
+     */
+    public static final int DEFAULT_COPY_SIZE=3 * 4 * 1024;
+
+    private static final byte[] STANDARD_ALPHABET=
+            { 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
+              'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z',
+              '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '+', '/' };
+    private static final byte[] URL_SAFE_ALPHABET=
+            { 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
+              'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z',
+              '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '-', '_' };
+    // maps every 12 bits value to its 2 encoded characters - (first << 8) | second
+    private static final short[]    STANDARD_PAIRS=createPairsTable(STANDARD_ALPHABET), URL_SAFE_PAIRS=createPairsTable(URL_SAFE_ALPHABET);
+
+    private static final byte   INVALID_VALUE=(-1), SKIP_VALUE=(-2), PAD_VALUE=(-3);
+    // maps an (8-bit) character to its 6 bits value - accepts both the standard and URL safe alphabets
+    private static final byte[] DECODE_TABLE=createDecodeTable();
+
+    private static short[] createPairsTable(byte[] alphabet) {
+        short[] pairs=new short[1 << 12];
+        for (int index=0; index < pairs.length; index++) {
+            pairs[index] = (short) ((alphabet[index >>> 6] << 8) | alphabet[index & 0x3F]);
+        }
+        return pairs;
+    }
+
+    private static byte[] createDecodeTable() {
+        byte[]  table=new byte[256];
+        for (int index=0; index < table.length; index++) {
+            table[index] = INVALID_VALUE;
+        }
+
+        for (int index=0; index < STANDARD_ALPHABET.length; index++) {
+            table[STANDARD_ALPHABET[index]] = (byte) index;
+            table[URL_SAFE_ALPHABET[index]] = (byte) index;
+        }
+
+        table[' '] = SKIP_VALUE;
+        table['\t'] = SKIP_VALUE;
+        table['\r'] = SKIP_VALUE;
+        table['\n'] = SKIP_VALUE;
+        table[PAD_CHAR] = PAD_VALUE;
+        return table;
+    }
+
+    /**
+     * @param len Number of bytes to encode
+     * @param padding Whether the encoded data is padded
+     * @return Number of encoded characters
+     */
+    public static final int getEncodedLength(int len, boolean padding) {
+        Validate.isTrue(len >= 0, "Bad length: %d", len);
+        long    encLen=padding ? 4L * ((len + 2L) / 3L) : (4L * len + 2L) / 3L;
+        Validate.isTrue(encLen <= Integer.MAX_VALUE, "Encoded length too large: %d", encLen);
+        return (int) encLen;
+    }
+
+    /**
+     * @param len Number of encoded characters
+     * @return The <U>maximum</U> number of decoded bytes - the actual number may
+     * be smaller due to padding and/or white space
+     */
+    public static final int getMaxDecodedLength(int len) {
+        Validate.isTrue(len >= 0, "Bad length: %d", len);
+        return (int) ((3L * len) / 4L);
+    }
+
+    /**
+     * @param data The data to encode
+     * @param urlSafe Whether to use the URL safe alphabet
+     * @return The (padded) encoded data
+     */
+    public static final String encodeToString(byte[] data, boolean urlSafe) {
+        int len=ExtendedArrayUtils.length(data);
+        if (len <= 0) {
+            return "";
+        }
+
+        char[]  chars=new char[getEncodedLength(len, true)];
+        encode(data, 0, len, chars, 0, urlSafe, true);
+        return new String(chars);
+    }
+
+    /**
+     * @param src The data to encode
+     * @param off Offset of data to encode
+     * @param len Number of bytes to encode
+     * @param dst The target array - must have enough room for {@link #getEncodedLength(int, boolean)}
+     * characters starting at the specified offset
+     * @param dstOff Offset in target array
+     * @param urlSafe Whether to use the URL safe alphabet
+     * @param padding Whether to pad the result
+     * @return Number of written bytes
+     */
+    public static final int encode(byte[] src, int off, int len, byte[] dst, int dstOff, boolean urlSafe, boolean padding) {
+        checkRange(src.length, off, len);
+        checkRange(dst.length, dstOff, getEncodedLength(len, padding));
+
+        int groupsLen=len - (len % 3), dp=encodeGroups(src, off, groupsLen, dst, dstOff, urlSafe ? URL_SAFE_PAIRS : STANDARD_PAIRS);
+        dp = encodeTail(src, off + groupsLen, len - groupsLen, dst, dp, urlSafe ? URL_SAFE_ALPHABET : STANDARD_ALPHABET, padding);
+        return dp - dstOff;
+    }
+
+    /**
+     * @param src The data to encode
+     * @param off Offset of data to encode
+     * @param len Number of bytes to encode
+     * @param dst The target array - must have enough room for {@link #getEncodedLength(int, boolean)}
+     * characters starting at the specified offset
+     * @param dstOff Offset in target array
+     * @param urlSafe Whether to use the URL safe alphabet
+     * @param padding Whether to pad the result
+     * @return Number of written characters
+     */
+    public static final int encode(byte[] src, int off, int len, char[] dst, int dstOff, boolean urlSafe, boolean padding) {
+        checkRange(src.length, off, len);
+        checkRange(dst.length, dstOff, getEncodedLength(len, padding));
+
+        short[] pairs=urlSafe ? URL_SAFE_PAIRS : STANDARD_PAIRS;
+        int     sp=off, dp=dstOff, groupsEnd=off + len - (len % 3);
+        for ( ; sp < groupsEnd; sp += 3, dp += 4) {
+            int     bits=((src[sp] & 0xFF) << 16) | ((src[sp + 1] & 0xFF) << 8) | (src[sp + 2] & 0xFF);
+            short   p1=pairs[bits >>> 12], p2=pairs[bits & 0x0FFF];
+            dst[dp] = (char) ((p1 >>> 8) & 0xFF);
+            dst[dp + 1] = (char) (p1 & 0xFF);
+            dst[dp + 2] = (char) ((p2 >>> 8) & 0xFF);
+            dst[dp + 3] = (char) (p2 & 0xFF);
+        }
+
+        byte[]  tail=new byte[4];
+        int     tailLen=encodeTail(src, sp, off + len - sp, tail, 0, urlSafe ? URL_SAFE_ALPHABET : STANDARD_ALPHABET, padding);
+        for (int index=0; index < tailLen; index++, dp++) {
+            dst[dp] = (char) tail[index];
+        }
+
+        return dp - dstOff;
+    }
+
+    /**
+     * @param data The encoded data - may contain white space
+     * @return The decoded bytes
+     * @throws StreamCorruptedException If invalid encoded data
+     */
+    public static final byte[] decodeToArray(CharSequence data) throws StreamCorruptedException {
+        int len=(data == null) ? 0 : data.length();
+        if (len <= 0) {
+            return ArrayUtils.EMPTY_BYTE_ARRAY;
+        }
+
+        byte[]  decoded=new byte[getMaxDecodedLength(len)];
+        int     decLen=decode(data, 0, len, decoded, 0);
+        if (decLen == decoded.length) {
+            return decoded;
+        }
+
+        byte[]  result=new byte[decLen];
+        System.arraycopy(decoded, 0, result, 0, decLen);
+        return result;
+    }
+
+    /**
+     * @param src The encoded data - may contain white space and may be unpadded
+     * @param off Offset of encoded data
+     * @param len Number of encoded characters
+     * @param dst The target array - must have enough room for {@link #getMaxDecodedLength(int)}
+     * bytes starting at the specified offset
+     * @param dstOff Offset in target array
+     * @return Number of decoded bytes
+     * @throws StreamCorruptedException If invalid encoded data
+     */
+    public static final int decode(byte[] src, int off, int len, byte[] dst, int dstOff) throws StreamCorruptedException {
+        Decoder decoder=new Decoder();
+        int     decLen=decoder.update(src, off, len, dst, dstOff);
+        return decLen + decoder.finish(dst, dstOff + decLen);
+    }
+
+    /**
+     * @param src The encoded data - may contain white space and may be unpadded
+     * @param off Offset of encoded data
+     * @param len Number of encoded characters
+     * @param dst The target array - must have enough room for {@link #getMaxDecodedLength(int)}
+     * bytes starting at the specified offset
+     * @param dstOff Offset in target array
+     * @return Number of decoded bytes
+     * @throws StreamCorruptedException If invalid encoded data
+     */
+    public static final int decode(CharSequence src, int off, int len, byte[] dst, int dstOff) throws StreamCorruptedException {
+        Decoder decoder=new Decoder();
+        int     decLen=decoder.update(src, off, len, dst, dstOff);
+        return decLen + decoder.finish(dst, dstOff + decLen);
+    }
+
+    /**
+     * Encodes the input data while copying it to the output
+     * @param in The {@link InputStream} to read from (until EOF)
+     * @param out The {@link OutputStream} to write the (padded) encoded data to
+     * @param urlSafe Whether to use the URL safe alphabet
+     * @return Number of written bytes
+     * @throws IOException If failed to read/write
+     */
+    public static final long encode(InputStream in, OutputStream out, boolean urlSafe) throws IOException {
+        Encoder encoder=new Encoder(urlSafe, true);
+        byte[]  data=new byte[DEFAULT_COPY_SIZE], encoded=new byte[getEncodedLength(DEFAULT_COPY_SIZE, true) + 4];
+        long    written=0L;
+        for (int readLen=in.read(data); readLen != (-1); readLen = in.read(data)) {
+            int encLen=encoder.update(data, 0, readLen, encoded, 0);
+            out.write(encoded, 0, encLen);
+            written += encLen;
+        }
+
+        int encLen=encoder.finish(encoded, 0);
+        out.write(encoded, 0, encLen);
+        return written + encLen;
+    }
+
+    /**
+     * Decodes the input data while copying it to the output
+     * @param in The {@link InputStream} to read the encoded data from (until EOF) -
+     * may contain white space and may be unpadded
+     * @param out The {@link OutputStream} to write the decoded data to
+     * @return Number of written bytes
+     * @throws IOException If failed to read/write or invalid encoded data
+     */
+    public static final long decode(InputStream in, OutputStream out) throws IOException {
+        Decoder decoder=new Decoder();
+        byte[]  data=new byte[DEFAULT_COPY_SIZE], decoded=new byte[getMaxDecodedLength(DEFAULT_COPY_SIZE) + 3];
+        long    written=0L;
+        for (int readLen=in.read(data); readLen != (-1); readLen = in.read(data)) {
+            int decLen=decoder.update(data, 0, readLen, decoded, 0);
+            out.write(decoded, 0, decLen);
+            written += decLen;
+        }
+
+        int decLen=decoder.finish(decoded, 0);
+        out.write(decoded, 0, decLen);
+        return written + decLen;
+    }
+
+    // NOTE: assumes len is a multiple of 3
+    static int encodeGroups(byte[] src, int off, int len, byte[] dst, int dstOff, short[] pairs) {
+        int sp=off, dp=dstOff, end=off + len;
+        // 2 groups (6 bytes = 8 characters) per iteration
+        for (int unrolledEnd=end - 6; sp <= unrolledEnd; sp += 6, dp += 8) {
+            int     bits1=((src[sp] & 0xFF) << 16) | ((src[sp + 1] & 0xFF) << 8) | (src[sp + 2] & 0xFF);
+            int     bits2=((src[sp + 3] & 0xFF) << 16) | ((src[sp + 4] & 0xFF) << 8) | (src[sp + 5] & 0xFF);
+            short   p1=pairs[bits1 >>> 12], p2=pairs[bits1 & 0x0FFF], p3=pairs[bits2 >>> 12], p4=pairs[bits2 & 0x0FFF];
+            dst[dp] = (byte) (p1 >>> 8);
+            dst[dp + 1] = (byte) p1;
+            dst[dp + 2] = (byte) (p2 >>> 8);
+            dst[dp + 3] = (byte) p2;
+            dst[dp + 4] = (byte) (p3 >>> 8);
+            dst[dp + 5] = (byte) p3;
+            dst[dp + 6] = (byte) (p4 >>> 8);
+            dst[dp + 7] = (byte) p4;
+        }
+
+        if (sp < end) {
+            int     bits=((src[sp] & 0xFF) << 16) | ((src[sp + 1] & 0xFF) << 8) | (src[sp + 2] & 0xFF);
+            short   p1=pairs[bits >>> 12], p2=pairs[bits & 0x0FFF];
+            dst[dp] = (byte) (p1 >>> 8);
+            dst[dp + 1] = (byte) p1;
+            dst[dp + 2] = (byte) (p2 >>> 8);
+            dst[dp + 3] = (byte) p2;
+            dp += 4;
+        }
+
+        return dp;
+    }
+
+    // NOTE: assumes len is 0, 1 or 2
+    static int encodeTail(byte[] src, int off, int len, byte[] dst, int dstOff, byte[] alphabet, boolean padding) {
+        if (len <= 0) {
+            return dstOff;
+        }
+
+        int bits=(src[off] & 0xFF) << 16, dp=dstOff;
+        if (len > 1) {
+            bits |= (src[off + 1] & 0xFF) << 8;
+        }
+
+        dst[dp++] = alphabet[bits >>> 18];
+        dst[dp++] = alphabet[(bits >>> 12) & 0x3F];
+        if (len > 1) {
+            dst[dp++] = alphabet[(bits >>> 6) & 0x3F];
+        } else if (padding) {
+            dst[dp++] = PAD_CHAR;
+        }
+
+        if (padding) {
+            dst[dp++] = PAD_CHAR;
+        }
+
+        return dp;
+    }
+
+    static void checkRange(int arrayLen, int off, int len) {
+        if ((off < 0) || (len < 0) || (off > (arrayLen - len))) {
+            throw new IndexOutOfBoundsException("Bad range: offset=" + off + ", length=" + len + ", array length=" + arrayLen);
+        }
+    }
+
+    /**
+     * <P>A streaming encoder - i.e., the data to be encoded can be provided in
+     * chunks of arbitrary sizes, and the encoder keeps the remainder (if any)
+     * for the next chunk. <B>Note:</B> not thread-safe</P>
+     */
+    public static class Encoder {
+        private final short[]   pairs;
+        private final byte[]    alphabet;
+        private final boolean   padding;
+        private final byte[]    pending=new byte[3];
+        private int numPending;
+
+        public Encoder() {
+            this(false, true);
+        }
+
+        public Encoder(boolean urlSafe, boolean withPadding) {
+            pairs = urlSafe ? URL_SAFE_PAIRS : STANDARD_PAIRS;
+            alphabet = urlSafe ? URL_SAFE_ALPHABET : STANDARD_ALPHABET;
+            padding = withPadding;
+        }
+
+        /**
+         * @param src The data to encode
+         * @param off Offset of data
+         * @param len Number of bytes
+         * @param dst Target array - must have room for {@link ExtendedBase64#getEncodedLength(int, boolean)}
+         * of (<code>len + 2</code>) bytes starting at the specified offset
+         * @param dstOff Offset in target array
+         * @return Number of written bytes - may be less than the encoded length
+         * of the data since up to 2 bytes are kept until the next call
+         */
+        public int update(byte[] src, int off, int len, byte[] dst, int dstOff) {
+            checkRange(src.length, off, len);
+
+            int sp=off, end=off + len, dp=dstOff;
+            if (numPending > 0) {   // complete the pending group first
+                while ((numPending < 3) && (sp < end)) {
+                    pending[numPending++] = src[sp++];
+                }
+
+                if (numPending < 3) {
+                    return 0;
+                }
+
+                dp = encodeGroups(pending, 0, 3, dst, dp, pairs);
+                numPending = 0;
+            }
+
+            int groupsLen=(end - sp) - ((end - sp) % 3);
+            dp = encodeGroups(src, sp, groupsLen, dst, dp, pairs);
+            for (sp += groupsLen; sp < end; sp++) {
+                pending[numPending++] = src[sp];
+            }
+
+            return dp - dstOff;
+        }
+
+        /**
+         * Encodes the available source data into the available target space
+         * @param src The source {@link ByteBuffer} - its position is advanced
+         * beyond the consumed data
+         * @param dst The target {@link ByteBuffer} - its position is advanced
+         * beyond the written data
+         * @return Number of written bytes
+         */
+        public int update(ByteBuffer src, ByteBuffer dst) {
+            // limit the consumed data so that everything fits in the target
+            int maxLen=Math.min(src.remaining(), (dst.remaining() / 4) * 3 - numPending);
+            if (maxLen <= 0) {
+                return 0;
+            }
+
+            if (src.hasArray() && dst.hasArray()) {
+                int written=update(src.array(), src.arrayOffset() + src.position(), maxLen, dst.array(), dst.arrayOffset() + dst.position());
+                src.position(src.position() + maxLen);
+                dst.position(dst.position() + written);
+                return written;
+            }
+
+            byte[]  data=new byte[Math.min(maxLen, DEFAULT_COPY_SIZE)], encoded=new byte[getEncodedLength(data.length + 2, true)];
+            int     written=0;
+            for (int remaining=maxLen; remaining > 0; ) {
+                int chunkLen=Math.min(remaining, data.length);
+                src.get(data, 0, chunkLen);
+                int encLen=update(data, 0, chunkLen, encoded, 0);
+                dst.put(encoded, 0, encLen);
+                written += encLen;
+                remaining -= chunkLen;
+            }
+
+            return written;
+        }
+
+        /**
+         * Encodes the pending data (if any) and re-initializes the encoder
+         * @param dst The target array - must have room for at least 4 bytes
+         * @param dstOff Offset in target array
+         * @return Number of written bytes
+         */
+        public int finish(byte[] dst, int dstOff) {
+            int dp=encodeTail(pending, 0, numPending, dst, dstOff, alphabet, padding);
+            numPending = 0;
+            return dp - dstOff;
+        }
+    }
+
+    /**
+     * <P>A streaming decoder - i.e., the encoded data can be provided in chunks
+     * of arbitrary sizes, and the decoder keeps the incomplete group (if any)
+     * for the next chunk. White space is ignored and both the standard and URL
+     * safe alphabets are accepted. <B>Note:</B> not thread-safe</P>
+     */
+    public static class Decoder {
+        private int bits, numPending;
+        private boolean padded;
+        private long    position;
+
+        public Decoder() {
+            super();
+        }
+
+        /**
+         * @param src The encoded data
+         * @param off Offset of data
+         * @param len Number of bytes
+         * @param dst Target array - must have room for {@link ExtendedBase64#getMaxDecodedLength(int)}
+         * of (<code>len + 3</code>) bytes starting at the specified offset
+         * @param dstOff Offset in target array
+         * @return Number of written bytes
+         * @throws StreamCorruptedException If invalid encoded data
+         */
+        public int update(byte[] src, int off, int len, byte[] dst, int dstOff) throws StreamCorruptedException {
+            checkRange(src.length, off, len);
+
+            int sp=off, end=off + len, dp=dstOff;
+            while (sp < end) {
+                // fast path - a whole group of valid characters
+                if ((numPending == 0) && (!padded) && ((end - sp) >= 4)) {
+                    int c1=DECODE_TABLE[src[sp] & 0xFF], c2=DECODE_TABLE[src[sp + 1] & 0xFF];
+                    int c3=DECODE_TABLE[src[sp + 2] & 0xFF], c4=DECODE_TABLE[src[sp + 3] & 0xFF];
+                    if ((c1 | c2 | c3 | c4) >= 0) {
+                        int value=(c1 << 18) | (c2 << 12) | (c3 << 6) | c4;
+                        dst[dp] = (byte) (value >>> 16);
+                        dst[dp + 1] = (byte) (value >>> 8);
+                        dst[dp + 2] = (byte) value;
+                        dp += 3;
+                        sp += 4;
+                        continue;
+                    }
+                }
+
+                dp = decodeChar(src[sp] & 0xFF, off, sp, dst, dp);
+                sp++;
+            }
+
+            position += len;
+            return dp - dstOff;
+        }
+
+        /**
+         * @param src The encoded data
+         * @param off Offset of data
+         * @param len Number of characters
+         * @param dst Target array - must have room for {@link ExtendedBase64#getMaxDecodedLength(int)}
+         * of (<code>len + 3</code>) bytes starting at the specified offset
+         * @param dstOff Offset in target array
+         * @return Number of written bytes
+         * @throws StreamCorruptedException If invalid encoded data
+         */
+        public int update(CharSequence src, int off, int len, byte[] dst, int dstOff) throws StreamCorruptedException {
+            checkRange(src.length(), off, len);
+
+            int sp=off, end=off + len, dp=dstOff;
+            while (sp < end) {
+                // fast path - a whole group of valid characters
+                if ((numPending == 0) && (!padded) && ((end - sp) >= 4)) {
+                    int c1=toValue(src.charAt(sp)), c2=toValue(src.charAt(sp + 1));
+                    int c3=toValue(src.charAt(sp + 2)), c4=toValue(src.charAt(sp + 3));
+                    if ((c1 | c2 | c3 | c4) >= 0) {
+                        int value=(c1 << 18) | (c2 << 12) | (c3 << 6) | c4;
+                        dst[dp] = (byte) (value >>> 16);
+                        dst[dp + 1] = (byte) (value >>> 8);
+                        dst[dp + 2] = (byte) value;
+                        dp += 3;
+                        sp += 4;
+                        continue;
+                    }
+                }
+
+                char    ch=src.charAt(sp);
+                dp = decodeChar((ch <= 0xFF) ? ch : 0x00, off, sp, dst, dp);
+                sp++;
+            }
+
+            position += len;
+            return dp - dstOff;
+        }
+
+        /**
+         * Decodes the pending (unpadded) data - if any - and re-initializes the decoder
+         * @param dst The target array - must have room for at least 2 bytes
+         * @param dstOff Offset in target array
+         * @return Number of written bytes
+         * @throws StreamCorruptedException If incomplete encoded data
+         */
+        public int finish(byte[] dst, int dstOff) throws StreamCorruptedException {
+            try {
+                if (padded || (numPending == 0)) {
+                    return 0;
+                }
+
+                return flushPending(dst, dstOff) - dstOff;
+            } finally {
+                bits = 0;
+                numPending = 0;
+                padded = false;
+                position = 0L;
+            }
+        }
+
+        private static int toValue(char ch) {
+            return (ch <= 0xFF) ? DECODE_TABLE[ch] : INVALID_VALUE;
+        }
+
+        private int decodeChar(int ch, int off, int sp, byte[] dst, int dstOff) throws StreamCorruptedException {
+            int value=DECODE_TABLE[ch];
+            if (value == SKIP_VALUE) {
+                return dstOff;
+            }
+
+            if (value == PAD_VALUE) {
+                if (padded) {   // allow the 2nd padding character
+                    return dstOff;
+                }
+
+                int dp=flushPending(dst, dstOff);
+                padded = true;
+                return dp;
+            }
+
+            if ((value < 0) || padded) {
+                throw new StreamCorruptedException("Invalid character (0x" + Integer.toHexString(ch) + ")"
+                                                 + " at position=" + (position + sp - off));
+            }
+
+            bits = (bits << 6) | value;
+            if ((++numPending) < 4) {
+                return dstOff;
+            }
+
+            dst[dstOff] = (byte) (bits >>> 16);
+            dst[dstOff + 1] = (byte) (bits >>> 8);
+            dst[dstOff + 2] = (byte) bits;
+            bits = 0;
+            numPending = 0;
+            return dstOff + 3;
+        }
+
+        private int flushPending(byte[] dst, int dstOff) throws StreamCorruptedException {
+            int dp=dstOff;
+            switch(numPending) {
+                case 2  :
+                    dst[dp++] = (byte) (bits >>> 4);
+                    break;
+
+                case 3  :
+                    dst[dp++] = (byte) (bits >>> 10);
+                    dst[dp++] = (byte) (bits >>> 2);
+                    break;
+
+                default :
+                    throw new StreamCorruptedException("Incomplete group: " + numPending + " characters at position=" + position);
+            }
+
+            bits = 0;
+            numPending = 0;
+            return dp;
+        }
+    }
+
+    /**
+     * <P>An {@link OutputStream} that encodes the data written to it and writes
+     * the encoded data to the wrapped stream. <B>Note:</B> up to 2 bytes are
+     * kept until more data is written, so {@link #flush()} does not write them -
+     * the encoding is completed only when the stream is closed</P>
+     */
+    public static class EncodingOutputStream extends FilterOutputStream {
+        private final Encoder   encoder;
+        private final byte[]    encoded=new byte[getEncodedLength(DEFAULT_COPY_SIZE + 2, true)];
+        private final byte[]    oneByte=new byte[1];
+        private boolean closed;
+
+        public EncodingOutputStream(OutputStream out) {
+            this(out, false, true);
+        }
+
+        /**
+         * @param out The {@link OutputStream} to write the encoded data to
+         * @param urlSafe Whether to use the URL safe alphabet
+         * @param padding Whether to pad the encoded data
+         */
+        public EncodingOutputStream(OutputStream out, boolean urlSafe, boolean padding) {
+            super(Validate.notNull(out, "No target stream", ArrayUtils.EMPTY_OBJECT_ARRAY));
+            encoder = new Encoder(urlSafe, padding);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            oneByte[0] = (byte) b;
+            write(oneByte, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+
+            checkRange(b.length, off, len);
+            for (int pos=off, remaining=len; remaining > 0; ) {
+                int chunkLen=Math.min(remaining, DEFAULT_COPY_SIZE), encLen=encoder.update(b, pos, chunkLen, encoded, 0);
+                if (encLen > 0) {
+                    out.write(encoded, 0, encLen);
+                }
+                pos += chunkLen;
+                remaining -= chunkLen;
+            }
+        }
+
+        /**
+         * Writes the remaining encoded data and closes the wrapped stream
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            try {
+                out.write(encoded, 0, encoder.finish(encoded, 0));
+                out.flush();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * An {@link InputStream} that reads encoded data from the wrapped stream
+     * and returns the decoded data - see {@link Decoder} for the accepted input
+     */
+    public static class DecodingInputStream extends InputStream {
+        private final InputStream   in;
+        private final Decoder   decoder=new Decoder();
+        private final byte[]    encoded=new byte[DEFAULT_COPY_SIZE];
+        private final byte[]    decoded=new byte[getMaxDecodedLength(DEFAULT_COPY_SIZE) + 3];
+        private final byte[]    oneByte=new byte[1];
+        private int decodedPos, decodedLen;
+        private boolean eof, closed;
+
+        /**
+         * @param inStream The {@link InputStream} to read the encoded data from
+         */
+        public DecodingInputStream(InputStream inStream) {
+            in = Validate.notNull(inStream, "No source stream", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int readLen=read(oneByte, 0, 1);
+            return (readLen == (-1)) ? (-1) : (oneByte[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+
+            checkRange(b.length, off, len);
+            if (len == 0) {
+                return 0;
+            }
+
+            while (decodedPos >= decodedLen) {
+                if (!fill()) {
+                    return (-1);
+                }
+            }
+
+            int cpyLen=Math.min(len, decodedLen - decodedPos);
+            System.arraycopy(decoded, decodedPos, b, off, cpyLen);
+            decodedPos += cpyLen;
+            return cpyLen;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return decodedLen - decodedPos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            in.close();
+        }
+
+        // returns false if no more data
+        private boolean fill() throws IOException {
+            if (eof) {
+                return false;
+            }
+
+            decodedPos = 0;
+
+            int readLen=in.read(encoded);
+            if (readLen == (-1)) {
+                eof = true;
+                decodedLen = decoder.finish(decoded, 0);
+                return decodedLen > 0;
+            }
+
+            decodedLen = decoder.update(encoded, 0, readLen, decoded, 0);
+            return true;
+        }
+    }
 }
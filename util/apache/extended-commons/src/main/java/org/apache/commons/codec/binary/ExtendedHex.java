@@ -16,16 +16,28 @@
 
 package org.apache.commons.codec.binary;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.io.StreamCorruptedException;
+import java.io.Writer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.ExtendedArrayUtils;
 import org.apache.commons.lang3.ExtendedCharSequenceUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
 
 /**
+ * <P>Besides the {@link Hex} functionality, provides table driven encoding
+ * and decoding directly into caller supplied arrays, stream copy functions
+ * that encode/decode the data while copying it and stream wrappers that do
+ * the same (see {@link EncodingOutputStream} and {@link DecodingInputStream}).
+ * The encoding uses a table that maps each byte value to its 2 hex characters.</P>
  * @author Lyor G.
  */
 public class ExtendedHex extends Hex {
@@ -39,6 +51,38 @@ public class ExtendedHex extends Hex {
      */
     public static final String DIGITS_UPPER="0123456789ABCDEF";
 
+    /**
+     * Default size of the buffer used by the stream copy functions
+     */
+    public static final int DEFAULT_COPY_SIZE=4 * 1024;
+
+    // maps each byte value to its 2 hex characters - at (2 * value) and (2 * value + 1)
+    private static final char[] LOWER_PAIRS=createPairsTable(DIGITS_LOWER), UPPER_PAIRS=createPairsTable(DIGITS_UPPER);
+    // maps an ASCII character to its nibble value (or -1 if not a hex digit)
+    private static final byte[] DECODE_TABLE=createDecodeTable();
+
+    private static char[] createPairsTable(String digits) {
+        char[]  pairs=new char[2 * 256];
+        for (int index=0; index < 256; index++) {
+            pairs[2 * index] = digits.charAt(index >>> 4);
+            pairs[2 * index + 1] = digits.charAt(index & 0x0F);
+        }
+        return pairs;
+    }
+
+    private static byte[] createDecodeTable() {
+        byte[]  table=new byte[128];
+        for (int index=0; index < table.length; index++) {
+            table[index] = (-1);
+        }
+
+        for (int index=0; index < DIGITS_LOWER.length(); index++) {
+            table[DIGITS_LOWER.charAt(index)] = (byte) index;
+            table[DIGITS_UPPER.charAt(index)] = (byte) index;
+        }
+        return table;
+    }
+
     public ExtendedHex() {
         this(DEFAULT_CHARSET);
     }
@@ -76,12 +120,41 @@ public class ExtendedHex extends Hex {
     }
 
     public static final <A extends Appendable> A appendHexData(A sb, boolean toLowerCase, CharSequence separator, byte[] data, int offset, int len) throws IOException {
-        boolean haveSeparator=!StringUtils.isEmpty(separator);
+        if (StringUtils.isEmpty(separator)) {
+            return appendHexChunks(sb, toLowerCase, data, offset, len);
+        }
+
+        char[]  pairs=toLowerCase ? LOWER_PAIRS : UPPER_PAIRS;
         for (int index=0, pos=offset; index < len; index++, pos++) {
-            if (haveSeparator && (index > 0)) {
+            if (index > 0) {
                 sb.append(separator);
             }
-            appendHex(sb, toLowerCase, data[pos]);
+
+            int value=2 * (data[pos] & 0xFF);
+            sb.append(pairs[value]).append(pairs[value + 1]);
+        }
+
+        return sb;
+    }
+
+    // encodes the data in chunks and appends them as a whole
+    private static <A extends Appendable> A appendHexChunks(A sb, boolean toLowerCase, byte[] data, int offset, int len) throws IOException {
+        if (len <= 0) {
+            return sb;
+        }
+
+        char[]  chunk=new char[2 * Math.min(len, DEFAULT_COPY_SIZE)];
+        for (int pos=offset, remaining=len; remaining > 0; ) {
+            int chunkLen=Math.min(remaining, chunk.length / 2), numChars=encodeHex(data, pos, chunkLen, chunk, 0, toLowerCase);
+            if (sb instanceof StringBuilder) {
+                ((StringBuilder) sb).append(chunk, 0, numChars);
+            } else if (sb instanceof Writer) {
+                ((Writer) sb).write(chunk, 0, numChars);
+            } else {
+                sb.append(CharBuffer.wrap(chunk, 0, numChars));
+            }
+            pos += chunkLen;
+            remaining -= chunkLen;
         }
 
         return sb;
@@ -114,8 +187,9 @@ public class ExtendedHex extends Hex {
     }
 
     public static final <A extends Appendable> A appendHex(A sb, boolean toLowerCase, byte value) throws IOException {
-        appendHexChar(sb, toLowerCase, (value >> 4) & 0x0F);
-        appendHexChar(sb, toLowerCase, value & 0x0F);
+        char[]  pairs=toLowerCase ? LOWER_PAIRS : UPPER_PAIRS;
+        int     index=2 * (value & 0xFF);
+        sb.append(pairs[index]).append(pairs[index + 1]);
         return sb;
     }
 
@@ -136,4 +210,291 @@ public class ExtendedHex extends Hex {
             return new String(encodeHex(data, toLowerCase));
         }
     }
+
+    /**
+     * @param src The data to encode
+     * @param off Offset of data
+     * @param len Number of bytes to encode
+     * @param dst The target array - must have room for (<code>2 * len</code>)
+     * characters starting at the specified offset
+     * @param dstOff Offset in target array
+     * @param toLowerCase Whether to use lowercase hex digits
+     * @return Number of written characters
+     */
+    public static final int encodeHex(byte[] src, int off, int len, char[] dst, int dstOff, boolean toLowerCase) {
+        ExtendedBase64.checkRange(src.length, off, len);
+        ExtendedBase64.checkRange(dst.length, dstOff, 2 * len);
+
+        char[]  pairs=toLowerCase ? LOWER_PAIRS : UPPER_PAIRS;
+        for (int sp=off, dp=dstOff, end=off + len; sp < end; sp++, dp += 2) {
+            int index=2 * (src[sp] & 0xFF);
+            dst[dp] = pairs[index];
+            dst[dp + 1] = pairs[index + 1];
+        }
+
+        return 2 * len;
+    }
+
+    /**
+     * @param src The data to encode
+     * @param off Offset of data
+     * @param len Number of bytes to encode
+     * @param dst The target array - must have room for (<code>2 * len</code>)
+     * (ASCII) characters starting at the specified offset
+     * @param dstOff Offset in target array
+     * @param toLowerCase Whether to use lowercase hex digits
+     * @return Number of written bytes
+     */
+    public static final int encodeHex(byte[] src, int off, int len, byte[] dst, int dstOff, boolean toLowerCase) {
+        ExtendedBase64.checkRange(src.length, off, len);
+        ExtendedBase64.checkRange(dst.length, dstOff, 2 * len);
+
+        char[]  pairs=toLowerCase ? LOWER_PAIRS : UPPER_PAIRS;
+        for (int sp=off, dp=dstOff, end=off + len; sp < end; sp++, dp += 2) {
+            int index=2 * (src[sp] & 0xFF);
+            dst[dp] = (byte) pairs[index];
+            dst[dp + 1] = (byte) pairs[index + 1];
+        }
+
+        return 2 * len;
+    }
+
+    /**
+     * @param src The encoded data - case insensitive
+     * @param off Offset of data
+     * @param len Number of characters - must be even
+     * @param dst The target array - must have room for (<code>len / 2</code>)
+     * bytes starting at the specified offset
+     * @param dstOff Offset in target array
+     * @return Number of decoded bytes
+     * @throws StreamCorruptedException If odd length or non-hex character
+     */
+    public static final int decodeHex(CharSequence src, int off, int len, byte[] dst, int dstOff) throws StreamCorruptedException {
+        ExtendedBase64.checkRange(src.length(), off, len);
+        if ((len & 0x01) != 0) {
+            throw new StreamCorruptedException("Odd number of characters: " + len);
+        }
+        ExtendedBase64.checkRange(dst.length, dstOff, len / 2);
+
+        for (int sp=off, dp=dstOff, end=off + len; sp < end; sp += 2, dp++) {
+            dst[dp] = (byte) ((toNibble(src.charAt(sp), sp - off) << 4) | toNibble(src.charAt(sp + 1), sp + 1 - off));
+        }
+
+        return len / 2;
+    }
+
+    /**
+     * @param src The encoded (ASCII) data - case insensitive
+     * @param off Offset of data
+     * @param len Number of bytes - must be even
+     * @param dst The target array - must have room for (<code>len / 2</code>)
+     * bytes starting at the specified offset
+     * @param dstOff Offset in target array
+     * @return Number of decoded bytes
+     * @throws StreamCorruptedException If odd length or non-hex character
+     */
+    public static final int decodeHex(byte[] src, int off, int len, byte[] dst, int dstOff) throws StreamCorruptedException {
+        ExtendedBase64.checkRange(src.length, off, len);
+        if ((len & 0x01) != 0) {
+            throw new StreamCorruptedException("Odd number of characters: " + len);
+        }
+        ExtendedBase64.checkRange(dst.length, dstOff, len / 2);
+
+        for (int sp=off, dp=dstOff, end=off + len; sp < end; sp += 2, dp++) {
+            dst[dp] = (byte) ((toNibble((char) (src[sp] & 0xFF), sp - off) << 4) | toNibble((char) (src[sp + 1] & 0xFF), sp + 1 - off));
+        }
+
+        return len / 2;
+    }
+
+    /**
+     * Encodes the input data while copying it to the output
+     * @param in The {@link InputStream} to read from (until EOF)
+     * @param out The {@link Writer} to write the encoded data to
+     * @param toLowerCase Whether to use lowercase hex digits
+     * @return Number of written characters
+     * @throws IOException If failed to read/write
+     */
+    public static final long encodeHex(InputStream in, Writer out, boolean toLowerCase) throws IOException {
+        byte[]  data=new byte[DEFAULT_COPY_SIZE];
+        char[]  encoded=new char[2 * data.length];
+        long    written=0L;
+        for (int readLen=in.read(data); readLen != (-1); readLen = in.read(data)) {
+            int numChars=encodeHex(data, 0, readLen, encoded, 0, toLowerCase);
+            out.write(encoded, 0, numChars);
+            written += numChars;
+        }
+
+        return written;
+    }
+
+    /**
+     * Decodes the input data while copying it to the output
+     * @param in The {@link Reader} to read the encoded data from (until EOF)
+     * @param out The {@link OutputStream} to write the decoded data to
+     * @return Number of written bytes
+     * @throws IOException If failed to read/write or invalid encoded data
+     */
+    public static final long decodeHex(Reader in, OutputStream out) throws IOException {
+        char[]  data=new char[2 * DEFAULT_COPY_SIZE];
+        byte[]  decoded=new byte[DEFAULT_COPY_SIZE];
+        long    written=0L;
+        int     pending=0;
+        for (int readLen=in.read(data, pending, data.length - pending); readLen != (-1); readLen = in.read(data, pending, data.length - pending)) {
+            int available=pending + readLen, evenLen=available & (~0x01);
+            int numBytes=decodeHex(CharBuffer.wrap(data), 0, evenLen, decoded, 0);
+            out.write(decoded, 0, numBytes);
+            written += numBytes;
+
+            // keep the odd character (if any) for the next read
+            if ((pending = available - evenLen) > 0) {
+                data[0] = data[evenLen];
+            }
+        }
+
+        if (pending > 0) {
+            throw new StreamCorruptedException("Odd number of characters: " + (2L * written + pending));
+        }
+
+        return written;
+    }
+
+    private static int toNibble(char ch, int pos) throws StreamCorruptedException {
+        int value=(ch < DECODE_TABLE.length) ? DECODE_TABLE[ch] : (-1);
+        if (value < 0) {
+            throw new StreamCorruptedException("Invalid hex character (0x" + Integer.toHexString(ch) + ") at position=" + pos);
+        }
+        return value;
+    }
+
+    /**
+     * An {@link OutputStream} that writes the (ASCII) hex encoding of the data
+     * written to it to the wrapped stream
+     */
+    public static class EncodingOutputStream extends FilterOutputStream {
+        private final boolean   lowerCase;
+        private final byte[]    encoded=new byte[2 * DEFAULT_COPY_SIZE];
+        private final byte[]    oneByte=new byte[1];
+
+        /**
+         * @param out The {@link OutputStream} to write the encoded data to
+         * @param toLowerCase Whether to use lowercase hex digits
+         */
+        public EncodingOutputStream(OutputStream out, boolean toLowerCase) {
+            super(Validate.notNull(out, "No target stream", ArrayUtils.EMPTY_OBJECT_ARRAY));
+            lowerCase = toLowerCase;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            oneByte[0] = (byte) b;
+            write(oneByte, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ExtendedBase64.checkRange(b.length, off, len);
+            for (int pos=off, remaining=len; remaining > 0; ) {
+                int chunkLen=Math.min(remaining, DEFAULT_COPY_SIZE);
+                out.write(encoded, 0, encodeHex(b, pos, chunkLen, encoded, 0, lowerCase));
+                pos += chunkLen;
+                remaining -= chunkLen;
+            }
+        }
+    }
+
+    /**
+     * An {@link InputStream} that reads (ASCII) hex encoded data - case
+     * insensitive - from the wrapped stream and returns the decoded data
+     */
+    public static class DecodingInputStream extends InputStream {
+        private final InputStream   in;
+        private final byte[]    encoded=new byte[2 * DEFAULT_COPY_SIZE];
+        private final byte[]    decoded=new byte[DEFAULT_COPY_SIZE];
+        private final byte[]    oneByte=new byte[1];
+        private int decodedPos, decodedLen, pending;
+        private long    position;
+        private boolean eof, closed;
+
+        /**
+         * @param inStream The {@link InputStream} to read the encoded data from
+         */
+        public DecodingInputStream(InputStream inStream) {
+            in = Validate.notNull(inStream, "No source stream", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int readLen=read(oneByte, 0, 1);
+            return (readLen == (-1)) ? (-1) : (oneByte[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+
+            ExtendedBase64.checkRange(b.length, off, len);
+            if (len == 0) {
+                return 0;
+            }
+
+            while (decodedPos >= decodedLen) {
+                if (!fill()) {
+                    return (-1);
+                }
+            }
+
+            int cpyLen=Math.min(len, decodedLen - decodedPos);
+            System.arraycopy(decoded, decodedPos, b, off, cpyLen);
+            decodedPos += cpyLen;
+            return cpyLen;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return decodedLen - decodedPos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            in.close();
+        }
+
+        // returns false if no more data
+        private boolean fill() throws IOException {
+            if (eof) {
+                return false;
+            }
+
+            decodedPos = 0;
+
+            int readLen=in.read(encoded, pending, encoded.length - pending);
+            if (readLen == (-1)) {
+                eof = true;
+                if (pending > 0) {
+                    throw new StreamCorruptedException("Odd number of characters: " + (position + pending));
+                }
+                decodedLen = 0;
+                return false;
+            }
+
+            int available=pending + readLen, evenLen=available & (~0x01);
+            decodedLen = decodeHex(encoded, 0, evenLen, decoded, 0);
+            position += evenLen;
+
+            // keep the odd character (if any) for the next read
+            if ((pending = available - evenLen) > 0) {
+                encoded[0] = encoded[evenLen];
+            }
+
+            return true;
+        }
+    }
 }
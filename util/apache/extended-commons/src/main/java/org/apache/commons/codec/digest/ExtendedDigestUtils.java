@@ -22,18 +22,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.Provider;
 import java.security.Security;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.apache.commons.collections15.ExtendedSetUtils;
+import org.apache.commons.collections15.ThreadLocalFactory;
+import org.apache.commons.io.ExtendedIOUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.io.output.NullWriter;
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
 /**
@@ -42,6 +52,71 @@ import org.apache.commons.lang3.Validate;
  */
 public class ExtendedDigestUtils extends DigestUtils {
     public static final String  PROVIDER_DIGEST_KEY_PREFIX="MessageDigest.";
+    /**
+     * Default size of the read buffer used when feeding several digests
+     */
+    public static final int MULTI_DIGEST_BUFFER_SIZE=64 * 1024;
+    /**
+     * Default size of each leaf block in a tree hash
+     */
+    public static final int DEFAULT_TREE_HASH_BLOCK_SIZE=1024 * 1024;
+    /**
+     * Prefix digested before each leaf block data in a tree hash
+     */
+    public static final byte    TREE_HASH_LEAF_PREFIX=0x00;
+    /**
+     * Prefix digested before the children hashes of an internal tree hash node
+     */
+    public static final byte    TREE_HASH_NODE_PREFIX=0x01;
+
+    private static final ThreadLocalFactory<Map<String,MessageDigest>>  POOLED_DIGESTS=
+            new ThreadLocalFactory<Map<String,MessageDigest>>() {
+                @Override
+                public Map<String,MessageDigest> create() {
+                    return new HashMap<String,MessageDigest>();
+                }
+            };
+
+    /**
+     * @param algorithm The digest algorithm
+     * @return A {@link MessageDigest} instance that is cached per-thread
+     * @throws IllegalArgumentException If the algorithm is not supported
+     * @see #getPooledDigest(String, String)
+     */
+    public static final MessageDigest getPooledDigest(String algorithm) {
+        return getPooledDigest(algorithm, null);
+    }
+
+    /**
+     * Provides a (reset) {@link MessageDigest} instance that is cached per-thread
+     * so that the (synchronized and expensive) provider lookup is executed only
+     * once per thread. <B>Note:</B> the caller must complete using the instance
+     * (i.e., call {@link MessageDigest#digest()}) before calling any code that
+     * might request the same digest in the same thread, and must not pass it
+     * to other threads
+     * @param algorithm The digest algorithm
+     * @param provider The provider name - if {@code null}/empty then the
+     * default one is used
+     * @return The cached instance
+     * @throws IllegalArgumentException If the algorithm/provider is not supported
+     */
+    public static final MessageDigest getPooledDigest(String algorithm, String provider) {
+        Map<String,MessageDigest>   digests=POOLED_DIGESTS.get();
+        String                      key=StringUtils.isEmpty(provider) ? algorithm : algorithm + "@" + provider;
+        MessageDigest               digest=digests.get(key);
+        if (digest == null) {
+            try {
+                digest = StringUtils.isEmpty(provider) ? MessageDigest.getInstance(algorithm) : MessageDigest.getInstance(algorithm, provider);
+            } catch(GeneralSecurityException e) {
+                throw new IllegalArgumentException("getPooledDigest(" + key + ") " + e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+            }
+            digests.put(key, digest);
+        } else {
+            digest.reset();
+        }
+
+        return digest;
+    }
 
     // inspired by http://www.java2s.com/Code/Java/Security/Listtheavailablealgorithmnamesforcipherskeyagreementmacsmessagedigestsandsignatures.htm
     /**
@@ -188,4 +263,255 @@ public class ExtendedDigestUtils extends DigestUtils {
         
         return output.getDigestValue();
     }
+
+    /**
+     * @param algorithms The digest algorithms names
+     * @return A {@link MessageDigest} array - one per algorithm in the same order
+     * @throws IllegalArgumentException If an algorithm is not supported
+     */
+    public static final MessageDigest[] getDigests(String ... algorithms) {
+        Validate.isTrue(!ArrayUtils.isEmpty(algorithms), "No algorithms", ArrayUtils.EMPTY_OBJECT_ARRAY);
+
+        MessageDigest[] digests=new MessageDigest[algorithms.length];
+        for (int index=0; index < algorithms.length; index++) {
+            digests[index] = getDigest(algorithms[index]);
+        }
+
+        return digests;
+    }
+
+    /**
+     * Feeds the same data to all the digests
+     * @param data The data buffer
+     * @param off Offset of data in buffer
+     * @param len Number of bytes to digest
+     * @param digests The {@link MessageDigest}-s to update
+     */
+    public static final void update(byte[] data, int off, int len, MessageDigest ... digests) {
+        for (MessageDigest digest : digests) {
+            digest.update(data, off, len);
+        }
+    }
+
+    /**
+     * @param digests The {@link MessageDigest}-s to complete
+     * @return The digests values - in the same order as the digests
+     */
+    public static final byte[][] digestAll(MessageDigest ... digests) {
+        byte[][]    values=new byte[digests.length][];
+        for (int index=0; index < digests.length; index++) {
+            values[index] = digests[index].digest();
+        }
+
+        return values;
+    }
+
+    /**
+     * Calculates several digests of the file in a single pass
+     * @param file The file whose digests are requested
+     * @param digests The {@link MessageDigest}-s to use
+     * @return The digests values - in the same order as the digests
+     * @throws IOException If failed to access the file
+     * @see #multiDigest(InputStream, MessageDigest...)
+     */
+    public static final byte[][] multiDigest(File file, MessageDigest ... digests) throws IOException {
+        InputStream input=new FileInputStream(file);
+        try {
+            return multiDigest(input, digests);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Calculates several digests of the data in a single pass - i.e., each
+     * read buffer is fed to all the digests before reading the next one
+     * @param input The {@link InputStream} whose data is to be digested
+     * @param digests The {@link MessageDigest}-s to use
+     * @return The digests values - in the same order as the digests
+     * @throws IOException If failed to read the data
+     * @see MultiDigestInputStream
+     */
+    public static final byte[][] multiDigest(InputStream input, MessageDigest ... digests) throws IOException {
+        Validate.isTrue(!ArrayUtils.isEmpty(digests), "No digesters", ArrayUtils.EMPTY_OBJECT_ARRAY);
+
+        byte[]  buf=new byte[MULTI_DIGEST_BUFFER_SIZE];
+        for (int readLen=input.read(buf); readLen != ExtendedIOUtils.EOF_VALUE; readLen = input.read(buf)) {
+            update(buf, 0, readLen, digests);
+        }
+
+        return digestAll(digests);
+    }
+
+    /**
+     * @param algorithm The digest algorithm
+     * @param file The file whose tree hash is requested
+     * @return The tree hash value using the {@link #DEFAULT_TREE_HASH_BLOCK_SIZE}
+     * @throws IOException If failed to access the file
+     * @see #treeHash(String, File, int, ForkJoinPool)
+     */
+    public static final byte[] treeHash(String algorithm, File file) throws IOException {
+        return treeHash(algorithm, file, DEFAULT_TREE_HASH_BLOCK_SIZE);
+    }
+
+    /**
+     * @param algorithm The digest algorithm
+     * @param file The file whose tree hash is requested
+     * @param blockSize The leaf block size
+     * @return The tree hash value - calculated using a shared internal pool
+     * @throws IOException If failed to access the file
+     * @see #treeHash(String, File, int, ForkJoinPool)
+     */
+    public static final byte[] treeHash(String algorithm, File file, int blockSize) throws IOException {
+        return treeHash(algorithm, file, blockSize, TreeHashPoolHolder.POOL);
+    }
+
+    /**
+     * Calculates a Merkle tree hash of the file data (same structure as
+     * <A HREF="http://tools.ietf.org/html/rfc6962#section-2.1">RFC 6962</A>):
+     * the file is divided into fixed size blocks and each block is digested
+     * prefixed by {@link #TREE_HASH_LEAF_PREFIX}. An internal node over <I>n</I>
+     * blocks is the digest of {@link #TREE_HASH_NODE_PREFIX} followed by the
+     * hashes of the left sub-tree (containing the largest power of 2 that
+     * is less than <I>n</I> blocks) and the right one (the rest). An empty file
+     * hash is the digest of no data. Since the sub-trees are independent, they
+     * are calculated in parallel (each leaf block is memory-mapped).
+     * @param algorithm The digest algorithm
+     * @param file The file whose tree hash is requested
+     * @param blockSize The leaf block size
+     * @param pool The {@link ForkJoinPool} used to calculate the sub-trees
+     * @return The tree hash value
+     * @throws IOException If failed to access the file
+     * @see #treeHash(String, byte[], int)
+     */
+    public static final byte[] treeHash(String algorithm, File file, int blockSize, ForkJoinPool pool) throws IOException {
+        Validate.isTrue(blockSize > 0, "Bad block size: %d", blockSize);
+        Validate.notNull(pool, "No pool", ArrayUtils.EMPTY_OBJECT_ARRAY);
+
+        MessageDigest   digest=getPooledDigest(algorithm);    // fail fast if not supported
+        FileChannel     channel=new FileInputStream(file).getChannel();
+        try {
+            long    fileSize=channel.size();
+            if (fileSize <= 0L) {
+                return digest.digest();
+            }
+
+            long    numBlocks=(fileSize + blockSize - 1L) / blockSize;
+            return pool.invoke(new TreeHashTask(algorithm, channel, fileSize, blockSize, 0L, numBlocks));
+        } catch(TreeHashException e) {
+            throw e.getCause();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Calculates the tree hash of in-memory data (sequentially)
+     * @param algorithm The digest algorithm
+     * @param data The data to be hashed
+     * @param blockSize The leaf block size
+     * @return The tree hash value
+     * @see #treeHash(String, File, int, ForkJoinPool)
+     */
+    public static final byte[] treeHash(String algorithm, byte[] data, int blockSize) {
+        Validate.isTrue(blockSize > 0, "Bad block size: %d", blockSize);
+
+        MessageDigest   digest=getPooledDigest(algorithm);
+        if (ArrayUtils.isEmpty(data)) {
+            return digest.digest();
+        }
+
+        return treeHash(digest, data, blockSize, 0L, (data.length + blockSize - 1L) / blockSize);
+    }
+
+    private static byte[] treeHash(MessageDigest digest, byte[] data, int blockSize, long firstBlock, long numBlocks) {
+        if (numBlocks <= 1L) {
+            int offset=(int) (firstBlock * blockSize);
+            digest.update(TREE_HASH_LEAF_PREFIX);
+            digest.update(data, offset, Math.min(blockSize, data.length - offset));
+            return digest.digest();
+        }
+
+        long    leftBlocks=Long.highestOneBit(numBlocks - 1L);
+        byte[]  left=treeHash(digest, data, blockSize, firstBlock, leftBlocks);
+        byte[]  right=treeHash(digest, data, blockSize, firstBlock + leftBlocks, numBlocks - leftBlocks);
+        return treeHashNode(digest, left, right);
+    }
+
+    /**
+     * @param digest The {@link MessageDigest} to use
+     * @param left The left sub-tree hash
+     * @param right The right sub-tree hash
+     * @return The internal node hash
+     */
+    public static final byte[] treeHashNode(MessageDigest digest, byte[] left, byte[] right) {
+        digest.update(TREE_HASH_NODE_PREFIX);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    private static final class TreeHashPoolHolder {
+        static final ForkJoinPool   POOL=new ForkJoinPool();
+    }
+
+    private static final class TreeHashException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TreeHashException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * Calculates the hash of a sub-tree - forking the right sub-tree and
+     * calculating the left one in the current thread
+     */
+    private static final class TreeHashTask extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final String    algorithm;
+        private final FileChannel   channel;
+        private final long  fileSize, firstBlock, numBlocks;
+        private final int   blockSize;
+
+        TreeHashTask(String algo, FileChannel fc, long size, int block, long first, long count) {
+            algorithm = algo;
+            channel = fc;
+            fileSize = size;
+            blockSize = block;
+            firstBlock = first;
+            numBlocks = count;
+        }
+
+        @Override
+        protected byte[] compute() {
+            if (numBlocks <= 1L) {
+                long    offset=firstBlock * blockSize;
+                try {
+                    ByteBuffer      buf=channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(blockSize, fileSize - offset));
+                    MessageDigest   digest=getPooledDigest(algorithm);
+                    digest.update(TREE_HASH_LEAF_PREFIX);
+                    digest.update(buf);
+                    return digest.digest();
+                } catch(IOException e) {
+                    throw new TreeHashException(e);
+                }
+            }
+
+            long            leftBlocks=Long.highestOneBit(numBlocks - 1L);
+            TreeHashTask    left=new TreeHashTask(algorithm, channel, fileSize, blockSize, firstBlock, leftBlocks);
+            TreeHashTask    right=new TreeHashTask(algorithm, channel, fileSize, blockSize, firstBlock + leftBlocks, numBlocks - leftBlocks);
+            right.fork();
+
+            byte[]  leftHash=left.compute(), rightHash=right.join();
+            // NOTE: obtained only after the join since it may execute other tasks using the same pooled instance
+            return treeHashNode(getPooledDigest(algorithm), leftHash, rightHash);
+        }
+    }
 }
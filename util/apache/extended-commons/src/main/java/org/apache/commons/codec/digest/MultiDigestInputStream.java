@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.codec.digest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A {@link FilterInputStream} that feeds the read data to <U>several</U>
+ * {@link MessageDigest}-s in a single pass - e.g., SHA-1 for git, SHA-256
+ * for integrity and MD5 for legacy clients. Once the stream is {@link #close()}-d
+ * the digests are calculated and stored - i.e., repeated calls to {@link #getDigestValues()}
+ * will return the <U>same instance</U>
+ * @author Lyor Goldstein
+ * @since Dec 7, 2013 11:48:26 AM
+ * @see DigestInputStream
+ */
+public class MultiDigestInputStream extends FilterInputStream {
+    private final MessageDigest[]   _digests;
+    private byte[][]    _digestValues;
+
+    public MultiDigestInputStream(InputStream input, String ... algorithms) {
+        this(input, ExtendedDigestUtils.getDigests(algorithms));
+    }
+
+    public MultiDigestInputStream(InputStream input, MessageDigest ... digests) {
+        super(input);
+        Validate.isTrue(!ArrayUtils.isEmpty(digests), "No digesters", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.noNullElements(digests, "Null digester at index=%d", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        _digests = digests;
+    }
+
+    /**
+     * @return The used {@link MessageDigest}-s - in the same order as they
+     * were provided
+     */
+    public final MessageDigest[] getDigests() {
+        return _digests;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int data=in.read();
+        if (data == (-1)) { // ignore EOF
+            return data;
+        }
+
+        for (MessageDigest digest : getDigests()) {
+            digest.update((byte) data);
+        }
+        return data;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int readLen=in.read(b, off, len);
+        if (readLen <= 0) { // ignore EOF/empty
+            return readLen;
+        }
+
+        ExtendedDigestUtils.update(b, off, readLen, getDigests());
+        return readLen;
+    }
+
+    // NOTE: resets the digests as well
+    @Override
+    public synchronized void reset() throws IOException {
+        super.reset();
+
+        for (MessageDigest digest : getDigests()) {
+            digest.reset();
+        }
+    }
+
+    /**
+     * @return The calculated digests values - in the same order as the
+     * digesters - {@code null} if called <U>before</U> {@link #close()} 
+     */
+    public byte[][] getDigestValues() {
+        return _digestValues;
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+
+        if (_digestValues == null) {
+            _digestValues = ExtendedDigestUtils.digestAll(getDigests());
+        }
+    }
+}
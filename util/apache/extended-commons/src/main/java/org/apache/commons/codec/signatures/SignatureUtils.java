@@ -31,17 +31,40 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.security.SignatureException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import org.apache.commons.collections15.ThreadLocalFactory;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.CharSequenceReader;
 import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.io.output.NullWriter;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.tuple.Triplet;
 
 /**
  * @author Lyor G.
  * @since Jul 9, 2013 9:06:40 AM
  */
 public class SignatureUtils {
+    /**
+     * Max. number of tuples verified sequentially by a single batch task
+     */
+    public static final int BATCH_VERIFY_TASK_SIZE=4;
+
+    private static final ThreadLocalFactory<Map<String,Signature>>  POOLED_SIGNATURES=
+            new ThreadLocalFactory<Map<String,Signature>>() {
+                @Override
+                public Map<String,Signature> create() {
+                    return new HashMap<String,Signature>();
+                }
+            };
+
     /**
      * @param prvKey The {@link PrivateKey} to be used to sign the data
      * @param data The data to be signed
@@ -49,7 +72,7 @@ public class SignatureUtils {
      * @throws GeneralSecurityException If bad key or failed to sign
      */
     public static final byte[] signData(PrivateKey prvKey, byte ... data) throws GeneralSecurityException {
-        Signature signer=getInstance(prvKey);
+        Signature signer=getPooledInstance(prvKey);
         signer.initSign(prvKey);
         signer.update(data);
         return signer.sign();
@@ -205,7 +228,7 @@ public class SignatureUtils {
      */
     public static final boolean verifySignature(PublicKey pubKey, byte[] data, byte[] signature)
             throws GeneralSecurityException {
-        Signature signer=getInstance(pubKey);
+        Signature signer=getPooledInstance(pubKey);
         signer.initVerify(pubKey);
         signer.update(data);
         return signer.verify(signature);
@@ -371,4 +394,129 @@ public class SignatureUtils {
         String  algorithm=key.getAlgorithm();
         return Signature.getInstance("SHA1with" + algorithm);
     }
+
+    /**
+     * @param key The {@link Key} instance
+     * @return The SHA-1 {@link Signature} instance matching the key - cached per-thread
+     * @throws NoSuchAlgorithmException If unsupported key algorithm specified
+     * @see #getPooledInstance(String, String)
+     */
+    public static final Signature getPooledInstance(Key key) throws NoSuchAlgorithmException {
+        String  algorithm=key.getAlgorithm();
+        return getPooledInstance("SHA1with" + algorithm, null);
+    }
+
+    /**
+     * Provides a {@link Signature} instance that is cached per-thread so that
+     * the (synchronized and expensive) provider lookup is executed only once
+     * per thread. <B>Note:</B> the caller must initialize the instance (which
+     * resets any previous state) and complete using it before calling any code
+     * that might request the same signature in the same thread, and must not
+     * pass it to other threads
+     * @param algorithm The signature algorithm
+     * @param provider The provider name - if {@code null}/empty then the
+     * default one is used
+     * @return The cached instance
+     * @throws NoSuchAlgorithmException If unsupported algorithm or provider
+     */
+    public static final Signature getPooledInstance(String algorithm, String provider) throws NoSuchAlgorithmException {
+        Map<String,Signature>   signatures=POOLED_SIGNATURES.get();
+        String                  key=StringUtils.isEmpty(provider) ? algorithm : algorithm + "@" + provider;
+        Signature               signer=signatures.get(key);
+        if (signer != null) {
+            return signer;
+        }
+
+        if (StringUtils.isEmpty(provider)) {
+            signer = Signature.getInstance(algorithm);
+        } else {
+            try {
+                signer = Signature.getInstance(algorithm, provider);
+            } catch(GeneralSecurityException e) {
+                throw new NoSuchAlgorithmException("getPooledInstance(" + key + ") " + e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+            }
+        }
+
+        signatures.put(key, signer);
+        return signer;
+    }
+
+    /**
+     * Verifies a batch of signatures using a shared internal pool
+     * @param tuples A {@link List} of {@link Triplet}-s containing the public
+     * key, the signed data and the expected signature
+     * @return The verification results - in the same order as the tuples
+     * @see #verifySignatures(List, ForkJoinPool)
+     */
+    public static final boolean[] verifySignatures(List<? extends Triplet<? extends PublicKey,byte[],byte[]>> tuples) {
+        return verifySignatures(tuples, BatchVerifyPoolHolder.POOL);
+    }
+
+    /**
+     * Verifies a batch of signatures in parallel - e.g., when many public key
+     * authentication requests arrive at once. Each worker thread uses its own
+     * pooled {@link Signature} instances
+     * @param tuples A {@link List} of {@link Triplet}-s containing the public
+     * key, the signed data and the expected signature
+     * @param pool The {@link ForkJoinPool} to use
+     * @return The verification results - in the same order as the tuples.
+     * <B>Note:</B> a tuple whose verification failed due to some exception
+     * (e.g., bad key) is considered as not verified
+     */
+    public static final boolean[] verifySignatures(List<? extends Triplet<? extends PublicKey,byte[],byte[]>> tuples, ForkJoinPool pool) {
+        Validate.notNull(pool, "No pool", ArrayUtils.EMPTY_OBJECT_ARRAY);
+
+        int numTuples=(tuples == null) ? 0 : tuples.size();
+        if (numTuples <= 0) {
+            return ArrayUtils.EMPTY_BOOLEAN_ARRAY;
+        }
+
+        boolean[]           results=new boolean[numTuples];
+        BatchVerifyTask     task=new BatchVerifyTask(tuples, results, 0, numTuples);
+        if (numTuples <= BATCH_VERIFY_TASK_SIZE) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+
+        return results;
+    }
+
+    private static final class BatchVerifyPoolHolder {
+        static final ForkJoinPool   POOL=new ForkJoinPool();
+    }
+
+    private static final class BatchVerifyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends Triplet<? extends PublicKey,byte[],byte[]>> tuples;
+        private final boolean[] results;
+        private final int   startIndex, endIndex;
+
+        BatchVerifyTask(List<? extends Triplet<? extends PublicKey,byte[],byte[]>> tupleList, boolean[] resultsArray, int start, int end) {
+            tuples = tupleList;
+            results = resultsArray;
+            startIndex = start;
+            endIndex = end;
+        }
+
+        @Override
+        protected void compute() {
+            if ((endIndex - startIndex) > BATCH_VERIFY_TASK_SIZE) {
+                int midIndex=(startIndex + endIndex) >>> 1;
+                invokeAll(new BatchVerifyTask(tuples, results, startIndex, midIndex),
+                          new BatchVerifyTask(tuples, results, midIndex, endIndex));
+                return;
+            }
+
+            for (int index=startIndex; index < endIndex; index++) {
+                Triplet<? extends PublicKey,byte[],byte[]>   t=tuples.get(index);
+                try {
+                    results[index] = verifySignature(t.getV1(), t.getV2(), t.getV3());
+                } catch(GeneralSecurityException | RuntimeException e) {
+                    results[index] = false;
+                }
+            }
+        }
+    }
 }
@@ -402,7 +402,22 @@ public class ExtendedCollectionUtils extends CollectionUtils {
 	public static final <E> void filterAccepted(Iterable<E> iterable, Predicate<? super E> predicate) {
 		filter(iterable, PredicateUtils.notPredicate(predicate));
 	}
-	
+
+	/**
+	 * @param source The source {@link Iterable}
+	 * @return A {@link LazyPipeline} over the source elements - unlike the
+	 * {@code collect/select} methods, chained transformations and filters
+	 * are evaluated in a single pass without intermediate collections
+	 */
+	public static final <E> LazyPipeline<E> pipeline(Iterable<? extends E> source) {
+		return LazyPipeline.of(source);
+	}
+
+	@SafeVarargs
+	public static final <E> LazyPipeline<E> pipeline(E ... items) {
+		return LazyPipeline.of(items);
+	}
+
 	@SafeVarargs
 	public static final <E> Set<E> asSet(E ... items) {
 		if (ExtendedArrayUtils.length(items) <= 0) {
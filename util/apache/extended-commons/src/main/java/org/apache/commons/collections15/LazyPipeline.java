@@ -0,0 +1,878 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A lazy pipeline of transformations and filters over some {@link Iterable}
+ * source. The intermediate operations ({@link #transform(Transformer)},
+ * {@link #filter(Predicate)}, {@link #limit(long)}, {@link #skip(long)}) only
+ * record a stage - nothing is evaluated until a terminal operation is invoked.
+ * At that point all the stages are fused into a single chain through which
+ * each source element is pushed exactly once, so no intermediate collections
+ * are created. The short-circuiting terminals ({@link #findFirst()},
+ * {@link #anyMatch(Predicate)}, etc.) and {@link #limit(long)} stop iterating
+ * the source as soon as the result is known.
+ * <P>
+ * The pipeline is immutable - each intermediate operation returns a new
+ * instance, so a common &quot;prefix&quot; can be safely shared and re-used.
+ * </P>
+ * <P>
+ * <B>Parallel mode</B> - activated explicitly via {@link #parallel()}. If the
+ * source has at least the configured threshold number of elements, it is split
+ * into ranges that are processed by a {@link ForkJoinPool}. The results keep
+ * the source order - except for {@link #forEach(Closure)}. <B>Note:</B>
+ * <UL>
+ *      <LI>
+ *      The transformers and predicates must be thread-safe and free of side
+ *      effects.
+ *      </LI>
+ *
+ *      <LI>
+ *      Only the stages preceding the first {@link #limit(long)} or
+ *      {@link #skip(long)} are executed in parallel - the rest are applied
+ *      sequentially to the (ordered) results of the parallel stages.
+ *      </LI>
+ *
+ *      <LI>
+ *      A source that is not a {@link RandomAccess} {@link List} is first
+ *      copied into one so it can be split.
+ *      </LI>
+ *
+ *      <LI>
+ *      The {@link #iterator()} is always sequential.
+ *      </LI>
+ * </UL>
+ * </P>
+ * @param <E> Type of element being produced by the pipeline
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 9:12:46 AM
+ */
+public class LazyPipeline<E> implements Iterable<E> {
+    /**
+     * Default minimum number of source elements required in order to actually
+     * use the fork/join pool when in parallel mode
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD=1024;
+
+    private final Iterable<?>   source;
+    private final List<Stage>   stages;
+    private final ForkJoinPool  pool;   // null == sequential
+    private final int   parallelThreshold;
+
+    LazyPipeline(Iterable<?> src, List<Stage> stageList, ForkJoinPool fjp, int threshold) {
+        source = Validate.notNull(src, "No source", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        stages = stageList;
+        pool = fjp;
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * @param source The source {@link Iterable} - may not be {@code null}
+     * @return A sequential pipeline over the source elements
+     */
+    public static final <E> LazyPipeline<E> of(Iterable<? extends E> source) {
+        return new LazyPipeline<E>(source, Collections.<Stage>emptyList(), null, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param items The source elements
+     * @return A sequential pipeline over the source elements
+     */
+    @SafeVarargs
+    public static final <E> LazyPipeline<E> of(E ... items) {
+        if (ArrayUtils.isEmpty(items)) {
+            return of(Collections.<E>emptyList());
+        } else {
+            return of(Arrays.asList(items));
+        }
+    }
+
+    /**
+     * @return {@code true} if terminal operations may use a fork/join pool
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * @return A parallel pipeline that uses a shared {@link ForkJoinPool}
+     * and the {@link #DEFAULT_PARALLEL_THRESHOLD}
+     * @see #parallel(ForkJoinPool, int)
+     */
+    public LazyPipeline<E> parallel() {
+        return parallel(PipelinePoolHolder.POOL, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param fjp The {@link ForkJoinPool} to use - may not be {@code null}
+     * @param threshold Minimum number of source elements required in order
+     * to actually use the pool - below it the evaluation is sequential
+     * @return A parallel pipeline with the same stages
+     */
+    public LazyPipeline<E> parallel(ForkJoinPool fjp, int threshold) {
+        Validate.notNull(fjp, "No fork/join pool", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.isTrue(threshold > 0, "Bad parallel threshold: %d", threshold);
+        return new LazyPipeline<E>(source, stages, fjp, threshold);
+    }
+
+    /**
+     * @return A sequential pipeline with the same stages
+     */
+    public LazyPipeline<E> sequential() {
+        if (isParallel()) {
+            return new LazyPipeline<E>(source, stages, null, parallelThreshold);
+        } else {
+            return this;
+        }
+    }
+
+    /**
+     * @param transformer The {@link Transformer} to apply to each element
+     * @return A pipeline of the transformed elements
+     */
+    public <O> LazyPipeline<O> transform(Transformer<? super E, ? extends O> transformer) {
+        return new LazyPipeline<O>(source, append(new TransformStage(transformer)), pool, parallelThreshold);
+    }
+
+    /**
+     * @param predicate The {@link Predicate} used to select the elements
+     * @return A pipeline of only the elements that satisfy the predicate
+     */
+    public LazyPipeline<E> filter(Predicate<? super E> predicate) {
+        return new LazyPipeline<E>(source, append(new FilterStage(predicate)), pool, parallelThreshold);
+    }
+
+    /**
+     * @param maxSize Maximum number of elements to produce - once reached,
+     * the source is no longer iterated
+     * @return A pipeline of at most the specified number of elements
+     */
+    public LazyPipeline<E> limit(long maxSize) {
+        Validate.isTrue(maxSize >= 0L, "Bad limit: %d", maxSize);
+        return new LazyPipeline<E>(source, append(new LimitStage(maxSize)), pool, parallelThreshold);
+    }
+
+    /**
+     * @param count Number of elements to discard
+     * @return A pipeline without the first specified number of elements
+     */
+    public LazyPipeline<E> skip(long count) {
+        Validate.isTrue(count >= 0L, "Bad skip count: %d", count);
+        if (count == 0L) {
+            return this;
+        }
+
+        return new LazyPipeline<E>(source, append(new SkipStage(count)), pool, parallelThreshold);
+    }
+
+    /**
+     * @return A {@link List} of the produced elements
+     */
+    public List<E> toList() {
+        return collect(new ArrayList<E>());
+    }
+
+    /**
+     * @return A {@link Set} of the produced elements
+     */
+    public Set<E> toSet() {
+        return collect(new HashSet<E>());
+    }
+
+    /**
+     * @param factory The {@link Factory} used to create the result collection
+     * @return The created collection after all the produced elements have
+     * been added to it
+     */
+    public <C extends Collection<? super E>> C collect(Factory<? extends C> factory) {
+        return collect(factory.create());
+    }
+
+    /**
+     * @param target The target {@link Collection} - may not be {@code null}
+     * @return The same as the input after all the produced elements have
+     * been added to it
+     */
+    public <C extends Collection<? super E>> C collect(final C target) {
+        Validate.notNull(target, "No target collection", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Iterable<?> src=resolveSource();
+        evaluate(src, resolveParallelItems(src), new Sink() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public boolean accept(Object item) {
+                    target.add((E) item);
+                    return true;
+                }
+            });
+        return target;
+    }
+
+    /**
+     * @param closure The {@link Closure} to execute on each produced element.
+     * <B>Note:</B> in parallel mode the closure may be invoked concurrently
+     * and regardless of the elements order
+     */
+    public void forEach(final Closure<? super E> closure) {
+        Validate.notNull(closure, "No closure", ArrayUtils.EMPTY_OBJECT_ARRAY);
+
+        Sink    terminal=new Sink() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public boolean accept(Object item) {
+                    closure.execute((E) item);
+                    return true;
+                }
+            };
+        Iterable<?> src=resolveSource();
+        List<?>     items=resolveParallelItems(src);
+        if ((items != null) && (firstStatefulStage() >= stages.size())) {
+            pool.invoke(new ForEachTask(items, stages, terminal, 0, items.size(), resolveLeafSize(items)));
+        } else {
+            evaluate(src, items, terminal);
+        }
+    }
+
+    /**
+     * @return Number of produced elements
+     */
+    public long count() {
+        Iterable<?> src=resolveSource();
+        List<?>     items=resolveParallelItems(src);
+        if ((items != null) && (firstStatefulStage() >= stages.size())) {
+            return pool.invoke(new CountTask(items, stages, 0, items.size(), resolveLeafSize(items))).longValue();
+        }
+
+        CountingSink    counter=new CountingSink();
+        evaluate(src, items, counter);
+        return counter.count;
+    }
+
+    /**
+     * @return The first produced element - {@code null} if no elements
+     * produced. <B>Note:</B> if the pipeline may produce {@code null} elements
+     * then use {@link #anyMatch(Predicate)} to distinguish between the cases
+     */
+    @SuppressWarnings("unchecked")
+    public E findFirst() {
+        FoundElement    found=find();
+        return (found == null) ? null : (E) found.value;
+    }
+
+    /**
+     * @param predicate The {@link Predicate} to evaluate
+     * @return {@code true} if at least one produced element satisfies it
+     */
+    public boolean anyMatch(Predicate<? super E> predicate) {
+        return filter(predicate).find() != null;
+    }
+
+    /**
+     * @param predicate The {@link Predicate} to evaluate
+     * @return {@code true} if all the produced elements (if any) satisfy it
+     */
+    public boolean allMatch(Predicate<? super E> predicate) {
+        return !anyMatch(PredicateUtils.notPredicate(predicate));
+    }
+
+    /**
+     * @param predicate The {@link Predicate} to evaluate
+     * @return {@code true} if none of the produced elements satisfy it
+     */
+    public boolean noneMatch(Predicate<? super E> predicate) {
+        return !anyMatch(predicate);
+    }
+
+    /**
+     * @return A lazy {@link Iterator} over the produced elements - <B>Note:</B>
+     * always sequential regardless of the parallel mode
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new PipelineIterator<E>(source.iterator(), stages);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[stages=" + stages.size() + ", parallel=" + isParallel() + "]";
+    }
+
+    private FoundElement find() {
+        Iterable<?> src=resolveSource();
+        List<?>     items=resolveParallelItems(src);
+        if ((items != null) && (firstStatefulStage() >= stages.size())) {
+            return pool.invoke(new FindTask(items, stages, new AtomicInteger(Integer.MAX_VALUE), 0, items.size(), resolveLeafSize(items)));
+        }
+
+        FindingSink finder=new FindingSink();
+        evaluate(src, items, finder);
+        return finder.found;
+    }
+
+    /**
+     * @param src The resolved source to evaluate
+     * @param items The resolved parallel items - {@code null} if sequential
+     * evaluation required
+     * @param terminal The terminal {@link Sink}
+     * @see #resolveSource()
+     * @see #resolveParallelItems(Iterable)
+     */
+    private void evaluate(Iterable<?> src, List<?> items, Sink terminal) {
+        List<Stage> remaining=stages;
+        if (items != null) {
+            int statefulIndex=firstStatefulStage();
+            if (statefulIndex > 0) {
+                src = pool.invoke(new CollectTask(items, stages.subList(0, statefulIndex), 0, items.size(), resolveLeafSize(items)));
+                remaining = stages.subList(statefulIndex, stages.size());
+            } else {
+                src = items;    // no need to copy it again
+            }
+        }
+
+        push(src, fuse(remaining, terminal));
+    }
+
+    static boolean push(Iterable<?> src, Sink chain) {
+        if ((src instanceof List<?>) && (src instanceof RandomAccess)) {
+            List<?> items=(List<?>) src;
+            for (int index=0, size=items.size(); index < size; index++) {
+                if (!chain.accept(items.get(index))) {
+                    return false;
+                }
+            }
+        } else {
+            for (Object item : src) {
+                if (!chain.accept(item)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Resolves the source to be used by a terminal operation. <B>Note:</B>
+     * in parallel mode a source that is not a {@link Collection} is copied
+     * (once) since its size must be known and it may not support being
+     * iterated more than once (e.g., a directory stream)
+     * @return The source {@link Iterable} to use for the terminal operation
+     */
+    private Iterable<?> resolveSource() {
+        if ((pool == null) || stages.isEmpty() || (source instanceof Collection<?>)) {
+            return source;
+        }
+
+        List<Object>    copy=new ArrayList<Object>();
+        for (Object item : source) {
+            copy.add(item);
+        }
+        return copy;
+    }
+
+    /**
+     * @param src The resolved source
+     * @return The source as a {@link RandomAccess} {@link List} if the
+     * pipeline is in parallel mode and the source is large enough -
+     * {@code null} otherwise (i.e., sequential evaluation)
+     * @see #resolveSource()
+     */
+    private List<?> resolveParallelItems(Iterable<?> src) {
+        if ((pool == null) || stages.isEmpty() || (!(src instanceof Collection<?>))) {
+            return null;
+        }
+
+        List<?> items;
+        if ((src instanceof List<?>) && (src instanceof RandomAccess)) {
+            items = (List<?>) src;
+        } else {
+            Collection<?>   c=(Collection<?>) src;
+            if (c.size() < parallelThreshold) {
+                return null;
+            }
+            items = new ArrayList<Object>(c);
+        }
+
+        if (items.size() < parallelThreshold) {
+            return null;
+        } else {
+            return items;
+        }
+    }
+
+    private int resolveLeafSize(List<?> items) {
+        // create a few tasks per worker in order to balance uneven ranges
+        return Math.max(1, items.size() / (pool.getParallelism() * 4));
+    }
+
+    private int firstStatefulStage() {
+        for (int index=0; index < stages.size(); index++) {
+            if (!stages.get(index).isStateless()) {
+                return index;
+            }
+        }
+
+        return stages.size();
+    }
+
+    private List<Stage> append(Stage stage) {
+        List<Stage> result=new ArrayList<Stage>(stages.size() + 1);
+        result.addAll(stages);
+        result.add(stage);
+        return result;
+    }
+
+    static Sink fuse(List<Stage> stageList, Sink terminal) {
+        Sink    chain=terminal;
+        for (int index=stageList.size() - 1; index >= 0; index--) {
+            chain = stageList.get(index).wrap(chain);
+        }
+
+        return chain;
+    }
+
+    /**
+     * Receives the elements pushed through the pipeline
+     */
+    static interface Sink {
+        /**
+         * @param item The pushed element
+         * @return {@code false} if no more elements are required
+         */
+        boolean accept(Object item);
+    }
+
+    abstract static class Stage {
+        abstract Sink wrap(Sink downstream);
+
+        /**
+         * @return {@code true} if the stage does not depend on the elements
+         * order - i.e., it can be evaluated on each element separately
+         */
+        boolean isStateless() {
+            return true;
+        }
+    }
+
+    static final class TransformStage extends Stage {
+        private final Transformer<Object,?> transformer;
+
+        @SuppressWarnings("unchecked")
+        TransformStage(Transformer<?,?> xformer) {
+            transformer = (Transformer<Object,?>) Validate.notNull(xformer, "No transformer", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        }
+
+        @Override
+        Sink wrap(final Sink downstream) {
+            return new Sink() {
+                @Override
+                public boolean accept(Object item) {
+                    return downstream.accept(transformer.transform(item));
+                }
+            };
+        }
+    }
+
+    static final class FilterStage extends Stage {
+        private final Predicate<Object> predicate;
+
+        @SuppressWarnings("unchecked")
+        FilterStage(Predicate<?> selector) {
+            predicate = (Predicate<Object>) Validate.notNull(selector, "No predicate", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        }
+
+        @Override
+        Sink wrap(final Sink downstream) {
+            return new Sink() {
+                @Override
+                public boolean accept(Object item) {
+                    if (predicate.evaluate(item)) {
+                        return downstream.accept(item);
+                    } else {
+                        return true;
+                    }
+                }
+            };
+        }
+    }
+
+    static final class LimitStage extends Stage {
+        private final long  maxSize;
+
+        LimitStage(long limit) {
+            maxSize = limit;
+        }
+
+        @Override
+        boolean isStateless() {
+            return false;
+        }
+
+        @Override
+        Sink wrap(final Sink downstream) {
+            return new Sink() {
+                private long    produced;
+
+                @Override
+                public boolean accept(Object item) {
+                    if (produced >= maxSize) {
+                        return false;
+                    }
+
+                    produced++;
+                    return downstream.accept(item) && (produced < maxSize);
+                }
+            };
+        }
+    }
+
+    static final class SkipStage extends Stage {
+        private final long  skipCount;
+
+        SkipStage(long count) {
+            skipCount = count;
+        }
+
+        @Override
+        boolean isStateless() {
+            return false;
+        }
+
+        @Override
+        Sink wrap(final Sink downstream) {
+            return new Sink() {
+                private long    skipped;
+
+                @Override
+                public boolean accept(Object item) {
+                    if (skipped < skipCount) {
+                        skipped++;
+                        return true;
+                    }
+
+                    return downstream.accept(item);
+                }
+            };
+        }
+    }
+
+    static final class CountingSink implements Sink {
+        long    count;
+
+        CountingSink() {
+            super();
+        }
+
+        @Override
+        public boolean accept(Object item) {
+            count++;
+            return true;
+        }
+    }
+
+    static final class FoundElement {
+        final Object    value;
+
+        FoundElement(Object v) {
+            value = v;
+        }
+    }
+
+    static final class FindingSink implements Sink {
+        FoundElement    found;
+
+        FindingSink() {
+            super();
+        }
+
+        @Override
+        public boolean accept(Object item) {
+            found = new FoundElement(item);
+            return false;
+        }
+    }
+
+    static final class PipelineIterator<E> implements Iterator<E>, Sink {
+        private final Iterator<?>   sourceIterator;
+        private final Sink  chain;
+        private Object  pending;
+        private boolean hasPending, exhausted;
+
+        PipelineIterator(Iterator<?> iter, List<Stage> stageList) {
+            sourceIterator = iter;
+            chain = fuse(stageList, this);
+        }
+
+        @Override
+        public boolean accept(Object item) {
+            pending = item;
+            hasPending = true;
+            return true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            // each source element yields at most one produced element
+            while ((!hasPending) && (!exhausted)) {
+                if (!sourceIterator.hasNext()) {
+                    exhausted = true;
+                } else if (!chain.accept(sourceIterator.next())) {
+                    exhausted = true;   // NOTE: may still have a pending element
+                }
+            }
+
+            return hasPending;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more elements");
+            }
+
+            Object  item=pending;
+            pending = null;
+            hasPending = false;
+            return (E) item;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove() N/A");
+        }
+    }
+
+    private static final class PipelinePoolHolder {
+        static final ForkJoinPool   POOL=new ForkJoinPool();
+    }
+
+    /**
+     * Processes a range of the source elements - forking the right half and
+     * processing the left one in the current thread
+     * @param <R> Type of range result
+     */
+    abstract static class RangeTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        protected final List<?>     items;
+        protected final List<Stage> chainStages;
+        protected final int lo, hi, leafSize;
+
+        RangeTask(List<?> elements, List<Stage> stageList, int from, int to, int leaf) {
+            items = elements;
+            chainStages = stageList;
+            lo = from;
+            hi = to;
+            leafSize = leaf;
+        }
+
+        @Override
+        protected R compute() {
+            if ((hi - lo) <= leafSize) {
+                return computeRange();
+            }
+
+            int         mid=(lo + hi) >>> 1;
+            RangeTask<R>    left=createSubTask(lo, mid), right=createSubTask(mid, hi);
+            right.fork();
+
+            R   leftResult=left.compute();
+            if (isFinalResult(leftResult) && right.tryUnfork()) {
+                return leftResult;
+            }
+
+            return combine(leftResult, right.join());
+        }
+
+        protected boolean pushRange(Sink terminal) {
+            Sink    chain=fuse(chainStages, terminal);
+            for (int index=lo; index < hi; index++) {
+                if (!chain.accept(items.get(index))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * @param leftResult The result of the left half
+         * @return {@code true} if there is no need for the right half result
+         */
+        protected boolean isFinalResult(R leftResult) {
+            return false;
+        }
+
+        protected abstract R computeRange();
+        protected abstract RangeTask<R> createSubTask(int from, int to);
+        protected abstract R combine(R leftResult, R rightResult);
+    }
+
+    static final class CollectTask extends RangeTask<List<Object>> {
+        private static final long serialVersionUID = 1L;
+
+        CollectTask(List<?> elements, List<Stage> stageList, int from, int to, int leaf) {
+            super(elements, stageList, from, to, leaf);
+        }
+
+        @Override
+        protected List<Object> computeRange() {
+            final List<Object>  result=new ArrayList<Object>(hi - lo);
+            pushRange(new Sink() {
+                    @Override
+                    public boolean accept(Object item) {
+                        result.add(item);
+                        return true;
+                    }
+                });
+            return result;
+        }
+
+        @Override
+        protected CollectTask createSubTask(int from, int to) {
+            return new CollectTask(items, chainStages, from, to, leafSize);
+        }
+
+        @Override
+        protected List<Object> combine(List<Object> leftResult, List<Object> rightResult) {
+            leftResult.addAll(rightResult);
+            return leftResult;
+        }
+    }
+
+    static final class CountTask extends RangeTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        CountTask(List<?> elements, List<Stage> stageList, int from, int to, int leaf) {
+            super(elements, stageList, from, to, leaf);
+        }
+
+        @Override
+        protected Long computeRange() {
+            CountingSink    counter=new CountingSink();
+            pushRange(counter);
+            return Long.valueOf(counter.count);
+        }
+
+        @Override
+        protected CountTask createSubTask(int from, int to) {
+            return new CountTask(items, chainStages, from, to, leafSize);
+        }
+
+        @Override
+        protected Long combine(Long leftResult, Long rightResult) {
+            return Long.valueOf(leftResult.longValue() + rightResult.longValue());
+        }
+    }
+
+    static final class ForEachTask extends RangeTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final Sink  terminal;
+
+        ForEachTask(List<?> elements, List<Stage> stageList, Sink sink, int from, int to, int leaf) {
+            super(elements, stageList, from, to, leaf);
+            terminal = sink;
+        }
+
+        @Override
+        protected Void computeRange() {
+            pushRange(terminal);
+            return null;
+        }
+
+        @Override
+        protected ForEachTask createSubTask(int from, int to) {
+            return new ForEachTask(items, chainStages, terminal, from, to, leafSize);
+        }
+
+        @Override
+        protected Void combine(Void leftResult, Void rightResult) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the left-most produced element. Ranges that start beyond an
+     * already found element are skipped
+     */
+    static final class FindTask extends RangeTask<FoundElement> {
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicInteger foundIndex;
+
+        FindTask(List<?> elements, List<Stage> stageList, AtomicInteger found, int from, int to, int leaf) {
+            super(elements, stageList, from, to, leaf);
+            foundIndex = found;
+        }
+
+        @Override
+        protected FoundElement computeRange() {
+            FindingSink finder=new FindingSink();
+            Sink        chain=fuse(chainStages, finder);
+            for (int index=lo; index < hi; index++) {
+                if (index > foundIndex.get()) {
+                    return null;    // some element to our left has been found
+                }
+
+                chain.accept(items.get(index));
+                if (finder.found != null) {
+                    for (int curIndex=foundIndex.get(); index < curIndex; curIndex=foundIndex.get()) {
+                        if (foundIndex.compareAndSet(curIndex, index)) {
+                            break;
+                        }
+                    }
+                    return finder.found;
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        protected FindTask createSubTask(int from, int to) {
+            return new FindTask(items, chainStages, foundIndex, from, to, leafSize);
+        }
+
+        @Override
+        protected boolean isFinalResult(FoundElement leftResult) {
+            return leftResult != null;
+        }
+
+        @Override
+        protected FoundElement combine(FoundElement leftResult, FoundElement rightResult) {
+            return (leftResult != null) ? leftResult : rightResult;
+        }
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>Recycles instances that are expensive to allocate (or simply allocated
+ * very frequently) - e.g., work buffers, {@link StringBuilder}s, etc.. Each
+ * thread has its own bounded free list (held by a {@link ThreadLocalFactory}),
+ * so {@link #acquire()} and {@link #release(Object)} usually do not involve
+ * any synchronization. Instances released when the free list is full go into
+ * a bounded shared overflow pool from which other threads may take them,
+ * and beyond that they are simply discarded (i.e., left to the GC).</P>
+ *
+ * <P>An optional reset hook is invoked on every released instance so that
+ * it is ready for re-use when acquired again.</P>
+ *
+ * <P><B>Note(s):</B></P>
+ * <UL>
+ *      <LI>
+ *      An instance must not be used after it has been released, nor released
+ *      more than once - otherwise it may be handed out to 2 users. When leak
+ *      detection is enabled (see {@link #DEBUG_PROP}) both of these errors
+ *      are detected - at the cost of synchronization and a stack trace per
+ *      {@link #acquire()} call, so it should be used only for debugging.
+ *      </LI>
+ *
+ *      <LI>
+ *      The {@link Statistics} are collected by each thread without any
+ *      synchronization and therefore they are approximate.
+ *      </LI>
+ * </UL>
+ * @param <T> Type of recycled instance
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 4:12:38 PM
+ */
+public class ThreadLocalRecycler<T> {
+    /**
+     * System property used to determine the default leak detection mode
+     */
+    public static final String  DEBUG_PROP="org.apache.commons.collections15.recycler.debug";
+    public static final int DEFAULT_MAX_PER_THREAD=8, DEFAULT_MAX_SHARED=64;
+
+    private final Factory<? extends T>  factory;
+    private final Closure<? super T>    resetHook;
+    private final int   maxPerThread, maxShared;
+    private final Queue<Object> shared=new ConcurrentLinkedQueue<Object>();
+    private final AtomicInteger sharedCount=new AtomicInteger(0);
+    private final Map<Object,Throwable> outstanding;  // null if no leak detection
+    private final Queue<LocalPool>  localPoolsRegistry=new ConcurrentLinkedQueue<LocalPool>();
+    // statistics of threads that are no longer alive
+    private final AtomicLong    retiredCreated=new AtomicLong(0L), retiredReused=new AtomicLong(0L),
+            retiredSharedReused=new AtomicLong(0L), retiredReleased=new AtomicLong(0L), retiredDiscarded=new AtomicLong(0L);
+    private final ThreadLocalFactory<LocalPool> localPools=new ThreadLocalFactory<LocalPool>() {
+            @Override
+            public LocalPool create() {
+                purgeDeadThreadsPools();
+
+                LocalPool   pool=new LocalPool(Thread.currentThread(), maxPerThread);
+                localPoolsRegistry.add(pool);
+                return pool;
+            }
+        };
+
+    public ThreadLocalRecycler(Factory<? extends T> instanceFactory) {
+        this(instanceFactory, null);
+    }
+
+    public ThreadLocalRecycler(Factory<? extends T> instanceFactory, Closure<? super T> resetter) {
+        this(instanceFactory, resetter, DEFAULT_MAX_PER_THREAD, DEFAULT_MAX_SHARED, Boolean.getBoolean(DEBUG_PROP));
+    }
+
+    /**
+     * @param instanceFactory The {@link Factory} used to create new instances
+     * @param resetter The {@link Closure} invoked on each released instance
+     * - may be {@code null}
+     * @param maxLocal Max. number of instances kept by each thread
+     * @param maxSharedInstances Max. number of instances kept in the shared
+     * overflow pool
+     * @param leakDetection If {@code true} then instances that have not been
+     * released are tracked (see {@link #getOutstandingAllocations()}) and
+     * releasing an instance that is not outstanding is considered an error
+     */
+    public ThreadLocalRecycler(Factory<? extends T> instanceFactory, Closure<? super T> resetter,
+                               int maxLocal, int maxSharedInstances, boolean leakDetection) {
+        factory = Validate.notNull(instanceFactory, "No instance factory", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        resetHook = resetter;
+        Validate.isTrue(maxLocal >= 0, "Bad max. per-thread instances: %d", maxLocal);
+        Validate.isTrue(maxSharedInstances >= 0, "Bad max. shared instances: %d", maxSharedInstances);
+        maxPerThread = maxLocal;
+        maxShared = maxSharedInstances;
+        outstanding = leakDetection ? Collections.synchronizedMap(new IdentityHashMap<Object,Throwable>()) : null;
+    }
+
+    public final int getMaxPerThread() {
+        return maxPerThread;
+    }
+
+    public final int getMaxShared() {
+        return maxShared;
+    }
+
+    public final boolean isLeakDetectionEnabled() {
+        return outstanding != null;
+    }
+
+    /**
+     * @return A recycled instance if one available - otherwise a newly created one
+     */
+    public T acquire() {
+        LocalPool   pool=localPools.get();
+        Object      obj=pool.pop();
+        if (obj != null) {
+            pool.reused++;
+        } else if ((obj=shared.poll()) != null) {
+            sharedCount.decrementAndGet();
+            pool.sharedReused++;
+        } else {
+            obj = Validate.notNull(factory.create(), "No instance created", ArrayUtils.EMPTY_OBJECT_ARRAY);
+            pool.created++;
+        }
+
+        if (outstanding != null) {
+            outstanding.put(obj, new Throwable("Acquired by " + Thread.currentThread().getName()));
+        }
+
+        @SuppressWarnings("unchecked")
+        T   instance=(T) obj;
+        return instance;
+    }
+
+    /**
+     * @param instance The instance to recycle - ignored if {@code null}. The
+     * reset hook (if any) is invoked before the instance is recycled
+     * @return {@code true} if the instance is kept for re-use - {@code false}
+     * if discarded because the pools are full
+     * @throws IllegalStateException If leak detection enabled and the instance
+     * is not an outstanding one - e.g., already released
+     */
+    public boolean release(T instance) throws IllegalStateException {
+        if (instance == null) {
+            return false;
+        }
+
+        if ((outstanding != null) && (outstanding.remove(instance) == null)) {
+            throw new IllegalStateException("Released instance not outstanding: " + instance);
+        }
+
+        if (resetHook != null) {
+            resetHook.execute(instance);
+        }
+
+        LocalPool   pool=localPools.get();
+        pool.released++;
+        if (pool.push(instance)) {
+            return true;
+        }
+
+        if (sharedCount.incrementAndGet() <= maxShared) {
+            shared.offer(instance);
+            return true;
+        }
+
+        sharedCount.decrementAndGet();
+        pool.discarded++;
+        return false;
+    }
+
+    /**
+     * @return Number of instances acquired and not released yet - {@code -1}
+     * if leak detection not enabled
+     */
+    public int getOutstandingCount() {
+        return (outstanding == null) ? (-1) : outstanding.size();
+    }
+
+    /**
+     * @return A {@link List} of {@link Throwable}s whose stack traces show
+     * where the currently outstanding instances were acquired - empty if
+     * none or leak detection not enabled
+     */
+    public List<Throwable> getOutstandingAllocations() {
+        if (outstanding == null) {
+            return Collections.emptyList();
+        }
+
+        synchronized(outstanding) {
+            return new ArrayList<Throwable>(outstanding.values());
+        }
+    }
+
+    /**
+     * Discards the shared pool instances and the ones held by the <U>current</U>
+     * thread (other threads' free lists are not accessible)
+     */
+    public void clear() {
+        localPools.get().clear();
+        while (shared.poll() != null) {
+            sharedCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return A (approximate) snapshot of the usage {@link Statistics}
+     */
+    public Statistics getStatistics() {
+        purgeDeadThreadsPools();
+
+        long    created=retiredCreated.get(), reused=retiredReused.get(), sharedReused=retiredSharedReused.get(),
+                released=retiredReleased.get(), discarded=retiredDiscarded.get();
+        int     threads=0;
+        for (LocalPool pool : localPoolsRegistry) {
+            created += pool.created;
+            reused += pool.reused;
+            sharedReused += pool.sharedReused;
+            released += pool.released;
+            discarded += pool.discarded;
+            threads++;
+        }
+
+        return new Statistics(created, reused, sharedReused, released, discarded, sharedCount.get(), threads);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[perThread=" + getMaxPerThread() + ", shared=" + getMaxShared() + "]: " + getStatistics();
+    }
+
+    /**
+     * @param size Size of each array
+     * @return A recycler of {@code byte[]}s of the specified size (e.g., copy buffers).
+     * <B>Note:</B> the arrays are not cleared when released
+     */
+    public static final ThreadLocalRecycler<byte[]> byteArrays(final int size) {
+        Validate.isTrue(size > 0, "Bad array size: %d", size);
+        return new ThreadLocalRecycler<byte[]>(new Factory<byte[]>() {
+                @Override
+                public byte[] create() {
+                    return new byte[size];
+                }
+            });
+    }
+
+    /**
+     * @param size Size of each array
+     * @return A recycler of {@code char[]}s of the specified size (e.g., copy buffers).
+     * <B>Note:</B> the arrays are not cleared when released
+     */
+    public static final ThreadLocalRecycler<char[]> charArrays(final int size) {
+        Validate.isTrue(size > 0, "Bad array size: %d", size);
+        return new ThreadLocalRecycler<char[]>(new Factory<char[]>() {
+                @Override
+                public char[] create() {
+                    return new char[size];
+                }
+            });
+    }
+
+    /**
+     * @param initialCapacity Initial capacity of created builders
+     * @param maxRetainedCapacity Max. capacity of a released builder - if
+     * the builder has grown beyond it, it is trimmed back to the initial
+     * capacity so that a few large requests do not keep a lot of memory around
+     * @return A recycler of {@link StringBuilder}s - whose length is reset
+     * to zero when released
+     */
+    public static final ThreadLocalRecycler<StringBuilder> stringBuilders(final int initialCapacity, final int maxRetainedCapacity) {
+        Validate.isTrue(initialCapacity >= 0, "Bad initial capacity: %d", initialCapacity);
+        Validate.isTrue(maxRetainedCapacity >= initialCapacity, "Bad max. retained capacity: %d", maxRetainedCapacity);
+        return new ThreadLocalRecycler<StringBuilder>(new Factory<StringBuilder>() {
+                @Override
+                public StringBuilder create() {
+                    return new StringBuilder(initialCapacity);
+                }
+            }, new Closure<StringBuilder>() {
+                @Override
+                public void execute(StringBuilder sb) {
+                    if (sb.capacity() > maxRetainedCapacity) {
+                        sb.setLength(initialCapacity);
+                        sb.trimToSize();
+                    }
+                    sb.setLength(0);
+                }
+            });
+    }
+
+    // folds the statistics of dead threads and releases their free lists
+    private void purgeDeadThreadsPools() {
+        for (Iterator<LocalPool> iter=localPoolsRegistry.iterator(); iter.hasNext(); ) {
+            LocalPool   pool=iter.next();
+            if (pool.isOwnerAlive()) {
+                continue;
+            }
+
+            // only whoever actually removed it accumulates its statistics
+            if (localPoolsRegistry.remove(pool)) {
+                retiredCreated.addAndGet(pool.created);
+                retiredReused.addAndGet(pool.reused);
+                retiredSharedReused.addAndGet(pool.sharedReused);
+                retiredReleased.addAndGet(pool.released);
+                retiredDiscarded.addAndGet(pool.discarded);
+                pool.clear();
+            }
+        }
+    }
+
+    /**
+     * A per-thread free list - the counters are updated only by the owner thread
+     */
+    static final class LocalPool {
+        private final Reference<Thread> owner;
+        private final Object[]  free;
+        private int count;
+        long    created, reused, sharedReused, released, discarded;
+
+        LocalPool(Thread thread, int maxSize) {
+            owner = new WeakReference<Thread>(thread);
+            free = new Object[maxSize];
+        }
+
+        boolean isOwnerAlive() {
+            Thread  thread=owner.get();
+            return (thread != null) && thread.isAlive();
+        }
+
+        Object pop() {
+            if (count <= 0) {
+                return null;
+            }
+
+            Object  obj=free[--count];
+            free[count] = null;
+            return obj;
+        }
+
+        boolean push(Object obj) {
+            if (count >= free.length) {
+                return false;
+            }
+
+            free[count++] = obj;
+            return true;
+        }
+
+        void clear() {
+            while (count > 0) {
+                free[--count] = null;
+            }
+        }
+    }
+
+    /**
+     * An immutable snapshot of the recycler usage statistics
+     */
+    public static final class Statistics {
+        private final long  created, reused, sharedReused, released, discarded;
+        private final int   sharedPooled, threads;
+
+        Statistics(long createdCount, long reusedCount, long sharedReusedCount,
+                   long releasedCount, long discardedCount, int sharedPooledCount, int threadsCount) {
+            created = createdCount;
+            reused = reusedCount;
+            sharedReused = sharedReusedCount;
+            released = releasedCount;
+            discarded = discardedCount;
+            sharedPooled = sharedPooledCount;
+            threads = threadsCount;
+        }
+
+        /**
+         * @return Number of newly created instances
+         */
+        public long getCreatedCount() {
+            return created;
+        }
+
+        /**
+         * @return Number of instances re-used from the threads free lists
+         */
+        public long getReusedCount() {
+            return reused;
+        }
+
+        /**
+         * @return Number of instances re-used from the shared overflow pool
+         */
+        public long getSharedReusedCount() {
+            return sharedReused;
+        }
+
+        public long getReleasedCount() {
+            return released;
+        }
+
+        /**
+         * @return Number of released instances that were discarded since
+         * both the thread free list and the shared pool were full
+         */
+        public long getDiscardedCount() {
+            return discarded;
+        }
+
+        /**
+         * @return Number of instances currently in the shared overflow pool
+         */
+        public int getSharedPooledCount() {
+            return sharedPooled;
+        }
+
+        /**
+         * @return Number of live threads that have used the recycler
+         */
+        public int getThreadsCount() {
+            return threads;
+        }
+
+        /**
+         * @return Ratio of re-used instances out of all the acquired ones -
+         * zero if none acquired
+         */
+        public double getReuseRatio() {
+            long    total=created + reused + sharedReused;
+            return (total <= 0L) ? 0.0d : (double) (reused + sharedReused) / total;
+        }
+
+        @Override
+        public String toString() {
+            return "created=" + getCreatedCount()
+                 + ", reused=" + getReusedCount()
+                 + ", sharedReused=" + getSharedReusedCount()
+                 + ", released=" + getReleasedCount()
+                 + ", discarded=" + getDiscardedCount()
+                 + ", sharedPooled=" + getSharedPooledCount()
+                 + ", threads=" + getThreadsCount();
+        }
+    }
+}
@@ -0,0 +1,814 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.cache;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>A bounded thread-safe cache that uses the <A HREF="http://arxiv.org/abs/1512.00727">W-TinyLFU</A>
+ * eviction policy. New entries are admitted into a small LRU &quot;window&quot;
+ * (1% of the maximum weight). Entries that overflow the window become candidates
+ * for the main space, which is a segmented LRU (probation + protected). A candidate
+ * is admitted only if its estimated access frequency (kept in a compact
+ * {@link FrequencySketch}) is higher than that of the main space victim it would
+ * replace, so a one-off scan of many keys cannot flush the frequently used ones.</P>
+ *
+ * <P>Reads do not lock - the map lookup is lock-free, and the access is recorded
+ * in a lossy striped ring buffer which is replayed against the eviction policy
+ * in batches by whichever thread manages to acquire the policy lock. Writes are
+ * recorded in a (non-lossy) queue and replayed under the same lock.</P>
+ *
+ * <P>Entries may have a time-to-live - either the cache default or a per-entry one
+ * (see {@link #put(Object, Object, long, TimeUnit)}). Expired entries are never
+ * returned and are removed lazily - when accessed or during {@link #cleanUp()}.
+ * The cache may be bounded by the entries count or by their total weight (see {@link Weigher}).</P>
+ * @param <K> Type of key
+ * @param <V> Type of value
+ * @author Lyor Goldstein
+ * @since Dec 8, 2013 3:38:27 PM
+ */
+public class ConcurrentTinyLFUCache<K,V> {
+    /**
+     * A {@link Weigher} that assigns a weight of 1 to each entry - i.e., the
+     * maximum weight is the maximum number of entries
+     */
+    public static final Weigher<Object,Object>  SINGLETON_WEIGHER=new Weigher<Object,Object>() {
+            @Override
+            public int weigh(Object key, Object value) {
+                return 1;
+            }
+        };
+
+    private static final long   NO_EXPIRY=Long.MAX_VALUE;
+    private static final long   INITIAL_SKETCH_SIZE=Byte.MAX_VALUE + 1;
+    private static final int    READ_BUFFER_SIZE=16, READ_BUFFER_MASK=READ_BUFFER_SIZE - 1, READ_BUFFER_DRAIN_THRESHOLD=READ_BUFFER_SIZE / 2;
+    private static final int    WINDOW, PROBATION, PROTECTED, DEAD, NONE;
+    static {
+        int index=0;
+        WINDOW = index++;
+        PROBATION = index++;
+        PROTECTED = index++;
+        DEAD = index++;
+        NONE = index++;
+    }
+
+    private final long  maximumWeight, windowMaximum, protectedMaximum, defaultTimeToLive;
+    private final Weigher<? super K,? super V>  weigher;
+    private final ConcurrentMap<K,Node<K,V>>    data;
+    private final ReadBuffer[]  readBuffers;
+    private final Queue<Runnable>   writeBuffer=new ConcurrentLinkedQueue<Runnable>();
+    private final ReentrantLock evictionLock=new ReentrantLock();
+    private final StripedCounter    hits=new StripedCounter(), misses=new StripedCounter();
+    private final AtomicLong    evictions=new AtomicLong(0L), evictionsWeight=new AtomicLong(0L);
+    // guarded by the eviction lock
+    private final FrequencySketch   sketch;
+    private final AccessOrderQueue<K,V> windowQueue=new AccessOrderQueue<K,V>(), probationQueue=new AccessOrderQueue<K,V>(), protectedQueue=new AccessOrderQueue<K,V>();
+    private long    windowWeight, protectedWeight;
+    private volatile long   weightedSize;
+
+    public ConcurrentTinyLFUCache(long maximumSize) {
+        this(maximumSize, SINGLETON_WEIGHER);
+    }
+
+    public ConcurrentTinyLFUCache(long maxWeight, Weigher<? super K,? super V> entryWeigher) {
+        this(maxWeight, entryWeigher, 0L, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param maxWeight Maximum total weight of the entries
+     * @param entryWeigher The {@link Weigher} used to calculate each entry's weight
+     * @param timeToLive Default time-to-live of the entries since they were written
+     * - non-positive means no default expiry
+     * @param unit The time-to-live {@link TimeUnit}
+     */
+    public ConcurrentTinyLFUCache(long maxWeight, Weigher<? super K,? super V> entryWeigher, long timeToLive, TimeUnit unit) {
+        Validate.isTrue(maxWeight > 0L, "Bad maximum weight: %d", maxWeight);
+        weigher = Validate.notNull(entryWeigher, "No weigher", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.notNull(unit, "No time-to-live unit", ArrayUtils.EMPTY_OBJECT_ARRAY);
+
+        maximumWeight = maxWeight;
+        windowMaximum = Math.max(1L, maxWeight / 100L);
+        protectedMaximum = Math.max(1L, (long) (0.8d * (maxWeight - windowMaximum)));
+        defaultTimeToLive = (timeToLive > 0L) ? unit.toNanos(timeToLive) : 0L;
+        data = new ConcurrentHashMap<K,Node<K,V>>((int) Math.min(maxWeight, 1024L), 0.75f, StripedCounter.stripesCount());
+        // the sketch tracks entries - if weighted, start small and grow it as entries are added
+        sketch = new FrequencySketch(isWeighted() ? Math.min(maxWeight, INITIAL_SKETCH_SIZE) : maxWeight);
+
+        readBuffers = new ReadBuffer[StripedCounter.stripesCount()];
+        for (int index=0; index < readBuffers.length; index++) {
+            readBuffers[index] = new ReadBuffer();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the maximum weight is not simply the maximum
+     * number of entries - i.e., a {@link Weigher} other than {@link #SINGLETON_WEIGHER}
+     */
+    public final boolean isWeighted() {
+        return weigher != SINGLETON_WEIGHER;
+    }
+
+    public final long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * @return The default entry time-to-live (nanoseconds) - zero if none
+     */
+    public final long getDefaultTimeToLive() {
+        return defaultTimeToLive;
+    }
+
+    /**
+     * @param key The key
+     * @return The cached value - {@code null} if no entry or entry expired
+     */
+    public V get(K key) {
+        Node<K,V>   node=data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (isExpired(node)) {
+            misses.increment();
+            expire(node);
+            return null;
+        }
+
+        V   value=node.value;
+        hits.increment();
+        afterRead(node);
+        return value;
+    }
+
+    /**
+     * @param key The key
+     * @return <code>true</code> if a non-expired entry exists for the key -
+     * <B>Note:</B> does not count as an access for statistics or eviction purposes
+     */
+    public boolean containsKey(K key) {
+        Node<K,V>   node=data.get(key);
+        return (node != null) && (!isExpired(node));
+    }
+
+    /**
+     * @param key The key
+     * @param value The value
+     * @return The previous (non-expired) value - {@code null} if none
+     */
+    public V put(K key, V value) {
+        return put(key, value, defaultTimeToLive, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param key The key
+     * @param value The value
+     * @param timeToLive Entry specific time-to-live - non-positive means never expires
+     * @param unit The time-to-live {@link TimeUnit}
+     * @return The previous (non-expired) value - {@code null} if none
+     */
+    public V put(K key, V value, long timeToLive, TimeUnit unit) {
+        return put(key, value, timeToLive, unit, false);
+    }
+
+    /**
+     * @param key The key
+     * @param value The value to set if no mapping (or an expired one) exists
+     * @return The existing (non-expired) value - {@code null} if none, in which
+     * case the new value has been mapped
+     */
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, defaultTimeToLive, TimeUnit.NANOSECONDS, true);
+    }
+
+    protected V put(K key, V value, long timeToLive, TimeUnit unit, boolean onlyIfAbsent) {
+        Validate.notNull(key, "No key", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.notNull(value, "No value", ArrayUtils.EMPTY_OBJECT_ARRAY);
+
+        int weight=weigher.weigh(key, value);
+        Validate.isTrue(weight >= 0, "Bad weight: %d", weight);
+
+        long    expireAt=(timeToLive > 0L) ? System.nanoTime() + unit.toNanos(timeToLive) : NO_EXPIRY;
+        for ( ; ; ) {
+            Node<K,V>   prior=data.get(key);
+            if (prior == null) {
+                Node<K,V>   node=new Node<K,V>(key, value, weight, expireAt);
+                if ((prior=data.putIfAbsent(key, node)) == null) {
+                    afterWrite(new AddTask(node));
+                    return null;
+                }
+            }
+
+            if (isExpired(prior)) {
+                expire(prior);
+                continue;
+            }
+
+            if (onlyIfAbsent) {
+                afterRead(prior);
+                return prior.value;
+            }
+
+            V   oldValue;
+            synchronized(prior) {
+                if (prior.removed) {
+                    continue;   // lost a race with a removal
+                }
+
+                oldValue = prior.value;
+                prior.value = value;
+                prior.weight = weight;
+                prior.expireAt = expireAt;
+            }
+
+            afterWrite(new UpdateTask(prior));
+            return oldValue;
+        }
+    }
+
+    /**
+     * @param key The key
+     * @return The removed (non-expired) value - {@code null} if none
+     */
+    public V remove(K key) {
+        Node<K,V>   node=data.remove(key);
+        if (node == null) {
+            return null;
+        }
+
+        V       value;
+        boolean expired;
+        synchronized(node) {
+            node.removed = true;
+            value = node.value;
+            expired = isExpired(node);
+        }
+
+        afterWrite(new RemoveTask(node));
+        return expired ? null : value;
+    }
+
+    /**
+     * @return Number of entries - including expired ones that have not been removed yet
+     */
+    public int size() {
+        return data.size();
+    }
+
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    /**
+     * @return Total weight of the entries as known to the eviction policy - i.e.,
+     * not including pending additions
+     */
+    public long getWeightedSize() {
+        return weightedSize;
+    }
+
+    // NOTE: used for testing purposes
+    int getFrequencySketchCapacity() {
+        evictionLock.lock();
+        try {
+            return sketch.capacity();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return An unmodifiable weakly consistent view of the keys - may include
+     * expired entries that have not been removed yet
+     */
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(data.keySet());
+    }
+
+    /**
+     * @return An iterator over the keys - weakly consistent (may include expired
+     * entries that have not been removed yet) that supports removal
+     */
+    public Iterator<K> keysIterator() {
+        final Iterator<K>   iter=data.keySet().iterator();
+        return new Iterator<K>() {
+            private K   lastKey;
+
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public K next() {
+                lastKey = iter.next();
+                return lastKey;
+            }
+
+            @Override
+            public void remove() {
+                if (lastKey == null) {
+                    throw new IllegalStateException("No current key");
+                }
+                ConcurrentTinyLFUCache.this.remove(lastKey);
+                lastKey = null;
+            }
+        };
+    }
+
+    /**
+     * Removes all the entries - <B>Note:</B> does not reset the statistics
+     */
+    public void clear() {
+        evictionLock.lock();
+        try {
+            drainBuffers();
+            for (Map.Entry<K,Node<K,V>> e : data.entrySet()) {
+                Node<K,V>   node=e.getValue();
+                if (data.remove(e.getKey(), node)) {
+                    synchronized(node) {
+                        node.removed = true;
+                    }
+                    retire(node);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Replays all the pending reads/writes against the eviction policy and
+     * removes all the expired entries
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+            for (Node<K,V> node : data.values()) {
+                if (isExpired(node) && evict(node)) {
+                    evictions.incrementAndGet();
+                    evictionsWeight.addAndGet(node.weight);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Number of entries evicted due to size/weight limits or expiry
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getEvictionsWeight() {
+        return evictionsWeight.get();
+    }
+
+    /**
+     * @return The ratio of hits out of all the lookups - zero if no lookups
+     * made yet
+     */
+    public double getHitRate() {
+        long    numHits=getHits(), numLookups=numHits + getMisses();
+        return (numLookups <= 0L) ? 0.0d : (double) numHits / (double) numLookups;
+    }
+
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        evictions.set(0L);
+        evictionsWeight.set(0L);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[size=" + size() + ", weight=" + getWeightedSize() + "/" + getMaximumWeight()
+             + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+             + "]";
+    }
+
+    private static boolean isExpired(Node<?,?> node) {
+        long    expireAt=node.expireAt;
+        return (expireAt != NO_EXPIRY) && ((expireAt - System.nanoTime()) <= 0L);
+    }
+
+    private void expire(Node<K,V> node) {
+        if (!data.remove(node.key, node)) {
+            return; // someone else removed it
+        }
+
+        synchronized(node) {
+            node.removed = true;
+        }
+
+        evictions.incrementAndGet();
+        evictionsWeight.addAndGet(node.weight);
+        afterWrite(new RemoveTask(node));
+    }
+
+    private void afterRead(Node<K,V> node) {
+        ReadBuffer  buffer=readBuffers[StripedCounter.threadProbe() & (readBuffers.length - 1)];
+        long        pending=buffer.record(node);
+        if ((pending >= READ_BUFFER_DRAIN_THRESHOLD) && evictionLock.tryLock()) {
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    // NOTE: assumes the eviction lock is held
+    private void maintenance() {
+        drainBuffers();
+        evictEntries();
+    }
+
+    // NOTE: assumes the eviction lock is held
+    private void drainBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            buffer.drainTo(this);
+        }
+
+        for (Runnable task=writeBuffer.poll(); task != null; task = writeBuffer.poll()) {
+            task.run();
+        }
+    }
+
+    // NOTE: assumes the eviction lock is held
+    void onAccess(Node<K,V> node) {
+        int queue=node.queue;
+        if ((queue == DEAD) || (queue == NONE)) {
+            return;
+        }
+
+        sketch.increment(node.key);
+        if (queue == WINDOW) {
+            windowQueue.moveToBack(node);
+        } else if (queue == PROBATION) {    // promote to protected
+            probationQueue.remove(node);
+            protectedQueue.add(node);
+            node.queue = PROTECTED;
+            protectedWeight += node.policyWeight;
+            demoteFromProtected();
+        } else {
+            protectedQueue.moveToBack(node);
+        }
+    }
+
+    // NOTE: assumes the eviction lock is held
+    private void demoteFromProtected() {
+        while (protectedWeight > protectedMaximum) {
+            Node<K,V>   node=protectedQueue.poll();
+            if (node == null) {
+                break;
+            }
+
+            protectedWeight -= node.policyWeight;
+            probationQueue.add(node);
+            node.queue = PROBATION;
+        }
+    }
+
+    // NOTE: assumes the eviction lock is held
+    private void evictEntries() {
+        // overflowing window entries become candidates for the main space
+        while (windowWeight > windowMaximum) {
+            Node<K,V>   node=windowQueue.poll();
+            if (node == null) {
+                break;
+            }
+
+            windowWeight -= node.policyWeight;
+            probationQueue.add(node);
+            node.queue = PROBATION;
+        }
+
+        while (weightedSize > maximumWeight) {
+            Node<K,V>   victim=probationQueue.peekFirst(), candidate=probationQueue.peekLast();
+            if (victim == null) {
+                if ((victim=protectedQueue.peekFirst()) == null) {
+                    victim = windowQueue.peekFirst();
+                }
+            } else if ((candidate != victim) && (sketch.frequency(candidate.key) <= sketch.frequency(victim.key))) {
+                victim = candidate; // the candidate is not admitted
+            }
+
+            if (victim == null) {
+                break;  // should not happen
+            }
+
+            if (evict(victim)) {
+                evictions.incrementAndGet();
+                evictionsWeight.addAndGet(victim.policyWeight);
+            }
+        }
+    }
+
+    /**
+     * Removes the node from the map and the eviction policy
+     * @param node The evicted node
+     * @return <code>true</code> if the node was removed from the map by this call
+     */
+    // NOTE: assumes the eviction lock is held
+    private boolean evict(Node<K,V> node) {
+        boolean removed=data.remove(node.key, node);
+        if (removed) {
+            synchronized(node) {
+                node.removed = true;
+            }
+        }
+
+        retire(node);
+        return removed;
+    }
+
+    // NOTE: assumes the eviction lock is held
+    void retire(Node<K,V> node) {
+        int queue=node.queue;
+        if (queue == WINDOW) {
+            windowQueue.remove(node);
+            windowWeight -= node.policyWeight;
+        } else if (queue == PROBATION) {
+            probationQueue.remove(node);
+        } else if (queue == PROTECTED) {
+            protectedQueue.remove(node);
+            protectedWeight -= node.policyWeight;
+        }
+
+        if ((queue == WINDOW) || (queue == PROBATION) || (queue == PROTECTED)) {
+            weightedSize -= node.policyWeight;
+        }
+        node.queue = DEAD;
+    }
+
+    private final class AddTask implements Runnable {
+        private final Node<K,V> node;
+
+        AddTask(Node<K,V> n) {
+            node = n;
+        }
+
+        @Override
+        public void run() {
+            if ((node.queue != NONE) || node.removed) {
+                return; // removed before being added
+            }
+
+            node.policyWeight = node.weight;
+            windowQueue.add(node);
+            node.queue = WINDOW;
+            windowWeight += node.policyWeight;
+            weightedSize += node.policyWeight;
+            if (isWeighted()) {
+                sketch.ensureCapacity(data.size());
+            }
+            sketch.increment(node.key);
+        }
+    }
+
+    private final class UpdateTask implements Runnable {
+        private final Node<K,V> node;
+
+        UpdateTask(Node<K,V> n) {
+            node = n;
+        }
+
+        @Override
+        public void run() {
+            int queue=node.queue;
+            if ((queue == DEAD) || (queue == NONE)) {
+                return; // the add task (if any) uses the latest weight
+            }
+
+            int delta=node.weight - node.policyWeight;
+            node.policyWeight += delta;
+            weightedSize += delta;
+            if (queue == WINDOW) {
+                windowWeight += delta;
+            } else if (queue == PROTECTED) {
+                protectedWeight += delta;
+            }
+
+            onAccess(node);
+        }
+    }
+
+    private final class RemoveTask implements Runnable {
+        private final Node<K,V> node;
+
+        RemoveTask(Node<K,V> n) {
+            node = n;
+        }
+
+        @Override
+        public void run() {
+            retire(node);
+        }
+    }
+
+    static final class Node<K,V> {
+        final K key;
+        volatile V  value;
+        volatile int    weight;
+        volatile long   expireAt;
+        volatile boolean    removed;
+        // guarded by the eviction lock
+        int queue=NONE, policyWeight;
+        Node<K,V>   prev, next;
+
+        Node(K k, V v, int w, long expiry) {
+            key = k;
+            value = v;
+            weight = w;
+            expireAt = expiry;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * A doubly-linked LRU list - <B>Note:</B> not thread-safe
+     */
+    static final class AccessOrderQueue<K,V> {
+        private Node<K,V>   head, tail;
+
+        Node<K,V> peekFirst() {
+            return head;
+        }
+
+        Node<K,V> peekLast() {
+            return tail;
+        }
+
+        void add(Node<K,V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        Node<K,V> poll() {
+            Node<K,V>   node=head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void remove(Node<K,V> node) {
+            Node<K,V>   prev=node.prev, next=node.next;
+            if (prev == null) {
+                head = next;
+            } else {
+                prev.next = next;
+            }
+
+            if (next == null) {
+                tail = prev;
+            } else {
+                next.prev = prev;
+            }
+
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node<K,V> node) {
+            if (node != tail) {
+                remove(node);
+                add(node);
+            }
+        }
+
+        Iterator<Node<K,V>> iterator() {
+            return new Iterator<Node<K,V>>() {
+                private Node<K,V>   cursor=head;
+
+                @Override
+                public boolean hasNext() {
+                    return cursor != null;
+                }
+
+                @Override
+                public Node<K,V> next() {
+                    if (cursor == null) {
+                        throw new NoSuchElementException("No more nodes");
+                    }
+
+                    Node<K,V>   node=cursor;
+                    cursor = node.next;
+                    return node;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("remove N/A");
+                }
+            };
+        }
+    }
+
+    /**
+     * A bounded lossy ring buffer of accessed nodes - multiple producers,
+     * single consumer (the eviction lock holder)
+     */
+    static final class ReadBuffer {
+        private final AtomicReferenceArray<Node<?,?>>   slots=new AtomicReferenceArray<Node<?,?>>(READ_BUFFER_SIZE);
+        private final AtomicLong    writeCount=new AtomicLong(0L);
+        private volatile long   readCount;
+
+        /**
+         * @param node The accessed node
+         * @return Number of pending accesses - including this one unless dropped
+         */
+        long record(Node<?,?> node) {
+            long    head=readCount, tail=writeCount.get(), size=tail - head;
+            if (size >= READ_BUFFER_SIZE) {
+                return size;    // full - drop the access
+            }
+
+            if (writeCount.compareAndSet(tail, tail + 1L)) {
+                slots.lazySet((int) (tail & READ_BUFFER_MASK), node);
+                return size + 1L;
+            }
+
+            return size;    // contended - drop the access
+        }
+
+        // NOTE: assumes the eviction lock is held
+        @SuppressWarnings("unchecked")
+        <K,V> void drainTo(ConcurrentTinyLFUCache<K,V> cache) {
+            long    head=readCount, tail=writeCount.get();
+            for ( ; head < tail; head++) {
+                int         index=(int) (head & READ_BUFFER_MASK);
+                Node<?,?>   node=slots.get(index);
+                if (node == null) {
+                    break;  // not published yet
+                }
+
+                slots.lazySet(index, null);
+                cache.onAccess((Node<K,V>) node);
+            }
+            readCount = head;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.cache;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A bounded thread-safe {@link java.util.Set} backed by a {@link ConcurrentTinyLFUCache}
+ * - i.e., when the maximum size is exceeded the elements are evicted according
+ * to their estimated usage frequency. {@link #contains(Object)} counts as an access
+ * of the element. May be used instead of the (non thread-safe) {@link org.apache.commons.collections15.set.LRUSet}
+ * @param <E> Type of element
+ * @author Lyor Goldstein
+ * @since Dec 8, 2013 4:47:11 PM
+ */
+public class ConcurrentTinyLFUSet<E> extends AbstractSet<E> {
+    private final ConcurrentTinyLFUCache<E,Boolean> cache;
+
+    public ConcurrentTinyLFUSet(int maxSize) {
+        this(new ConcurrentTinyLFUCache<E,Boolean>(maxSize));
+    }
+
+    /**
+     * @param maxSize Maximum number of elements
+     * @param timeToLive Time-to-live of each element since added - non-positive
+     * means no expiry
+     * @param unit The time-to-live {@link TimeUnit}
+     */
+    public ConcurrentTinyLFUSet(int maxSize, long timeToLive, TimeUnit unit) {
+        this(new ConcurrentTinyLFUCache<E,Boolean>(maxSize, ConcurrentTinyLFUCache.SINGLETON_WEIGHER, timeToLive, unit));
+    }
+
+    public ConcurrentTinyLFUSet(int maxSize, Collection<? extends E> c) {
+        this(maxSize);
+        addAll(c);
+    }
+
+    public ConcurrentTinyLFUSet(ConcurrentTinyLFUCache<E,Boolean> backingCache) {
+        cache = Validate.notNull(backingCache, "No backing cache", ArrayUtils.EMPTY_OBJECT_ARRAY);
+    }
+
+    /**
+     * @return The backing {@link ConcurrentTinyLFUCache} - e.g., for statistics
+     */
+    public final ConcurrentTinyLFUCache<E,Boolean> getCache() {
+        return cache;
+    }
+
+    @Override
+    public boolean add(E e) {
+        return cache.putIfAbsent(e, Boolean.TRUE) == null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+
+        try {
+            return cache.get((E) o) != null;
+        } catch(ClassCastException e) {
+            return false;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+
+        try {
+            return cache.remove((E) o) != null;
+        } catch(ClassCastException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return cache.keysIterator();
+    }
+
+    @Override
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.cache;
+
+/**
+ * <P>A probabilistic frequency estimator (a Count-Min sketch) of 4-bit
+ * counters - 16 counters packed in each {@code long}. Each element updates
+ * 4 counters (one per hash function) and its estimated frequency is the
+ * minimum of them. Once the number of updates reaches the sample size
+ * (10 times the number of tracked elements) all counters are halved, so that
+ * the frequencies reflect the recent history. The sketch is sized according
+ * to the number of elements it tracks and can be grown as this number
+ * increases (see {@link #ensureCapacity(long)}).</P>
+ *
+ * <B>Note:</B> not thread-safe - access must be guarded by the caller
+ * @author Lyor Goldstein
+ * @since Dec 8, 2013 3:12:40 PM
+ */
+final class FrequencySketch {
+    private static final long[] SEEDS={ 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long   RESET_MASK=0x7777777777777777L;
+    private static final int    MAX_COUNTER=0x0F;
+    private static final int    MIN_CAPACITY=8, MAX_CAPACITY=1 << 30;
+
+    private long[]  table;
+    private int tableMask, sampleSize, size;
+
+    /**
+     * @param expectedSize The expected number of tracked elements
+     */
+    FrequencySketch(long expectedSize) {
+        ensureCapacity(expectedSize);
+    }
+
+    /**
+     * @return The number of counters groups (16 counters each)
+     */
+    int capacity() {
+        return table.length;
+    }
+
+    /**
+     * Grows the sketch if it is too small to track the specified number of
+     * elements. <B>Note:</B> growing the sketch discards the frequencies
+     * accumulated so far
+     * @param expectedSize The expected number of tracked elements
+     */
+    void ensureCapacity(long expectedSize) {
+        int maxSize=(int) Math.max(MIN_CAPACITY, Math.min(expectedSize, MAX_CAPACITY));
+        if ((table != null) && (table.length >= maxSize)) {
+            return;
+        }
+
+        table = new long[ceilingPowerOfTwo(maxSize)];
+        tableMask = table.length - 1;
+        sampleSize = (int) Math.min(10L * maxSize, Integer.MAX_VALUE);
+        size = 0;
+    }
+
+    /**
+     * @param e The element
+     * @return The estimated number of occurrences - up to 15
+     */
+    int frequency(Object e) {
+        int hash=spread(e.hashCode()), start=(hash & 3) << 2, frequency=Integer.MAX_VALUE;
+        for (int i=0; i < 4; i++) {
+            int index=indexOf(hash, i), count=(int) ((table[index] >>> ((start + i) << 2)) & MAX_COUNTER);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Increments the element's occurrences (if not already at the maximum)
+     * @param e The element
+     */
+    void increment(Object e) {
+        int     hash=spread(e.hashCode()), start=(hash & 3) << 2;
+        boolean added=false;
+        for (int i=0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+
+        if (added && ((++size) >= sampleSize)) {
+            reset();
+        }
+    }
+
+    /**
+     * Halves all the counters
+     */
+    void reset() {
+        int count=0;
+        for (int index=0; index < table.length; index++) {
+            count += Long.bitCount(table[index] & 0x1111111111111111L);   // odd counters lose half a unit
+            table[index] = (table[index] >>> 1) & RESET_MASK;
+        }
+        size = (size - (count >>> 2)) >>> 1;
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int     offset=counter << 2;
+        long    mask=((long) MAX_COUNTER) << offset;
+        if ((table[index] & mask) == mask) {
+            return false;
+        }
+
+        table[index] += 1L << offset;
+        return true;
+    }
+
+    private int indexOf(int hash, int i) {
+        long    h=(hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int spread(int x) {
+        int h=((x >>> 16) ^ x) * 0x45d9f3b;
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        return (h >>> 16) ^ h;
+    }
+
+    static int ceilingPowerOfTwo(int x) {
+        return (x <= 1) ? 1 : Integer.highestOneBit(x - 1) << 1;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that spreads the updates over several (cache line padded) cells
+ * according to the updating thread, so that frequent concurrent updates do
+ * not contend on the same memory location. The value is the sum of the cells.
+ * @author Lyor Goldstein
+ * @since Dec 8, 2013 3:24:02 PM
+ */
+final class StripedCounter {
+    // 8 longs = 64 bytes = typical cache line
+    private static final int    PADDING_SHIFT=3;
+
+    private final AtomicLongArray   cells;
+    private final int   mask;
+
+    StripedCounter() {
+        this(stripesCount());
+    }
+
+    StripedCounter(int numStripes) {
+        int stripes=FrequencySketch.ceilingPowerOfTwo(numStripes);
+        cells = new AtomicLongArray(stripes << PADDING_SHIFT);
+        mask = stripes - 1;
+    }
+
+    void increment() {
+        cells.incrementAndGet((threadProbe() & mask) << PADDING_SHIFT);
+    }
+
+    long sum() {
+        long    total=0L;
+        for (int index=0; index <= mask; index++) {
+            total += cells.get(index << PADDING_SHIFT);
+        }
+        return total;
+    }
+
+    void reset() {
+        for (int index=0; index <= mask; index++) {
+            cells.set(index << PADDING_SHIFT, 0L);
+        }
+    }
+
+    /**
+     * @return Recommended number of stripes - based on the available processors
+     */
+    static int stripesCount() {
+        return FrequencySketch.ceilingPowerOfTwo(Math.max(4, Math.min(64, 2 * Runtime.getRuntime().availableProcessors())));
+    }
+
+    /**
+     * @return A (well spread) hash value of the current thread
+     */
+    static int threadProbe() {
+        long    id=Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (id ^ (id >>> 32));
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.cache;
+
+/**
+ * Calculates the weight of a cache entry - used to bound a cache by the total
+ * weight of its entries rather than by their number
+ * @param <K> Type of key
+ * @param <V> Type of value
+ * @author Lyor Goldstein
+ * @since Dec 8, 2013 3:05:11 PM
+ */
+public interface Weigher<K,V> {
+    /**
+     * @param key The entry key
+     * @param value The entry value
+     * @return The (non-negative) entry weight - <B>Note:</B> it is calculated
+     * once when the entry is written and is not re-calculated afterwards
+     */
+    int weigh(K key, V value);
+}
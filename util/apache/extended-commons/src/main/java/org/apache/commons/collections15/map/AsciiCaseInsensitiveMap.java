@@ -0,0 +1,546 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.map;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>An open-addressing (linear probing) hash map whose {@link String} keys
+ * are compared ignoring the case of <U>ASCII</U> letters only - e.g., HTTP
+ * headers names. Unlike a {@link java.util.TreeMap} with
+ * {@link String#CASE_INSENSITIVE_ORDER} the look-up is O(1) and neither the
+ * hashing nor the comparison allocate any (lower/upper case) strings. Non-ASCII
+ * characters are compared as-is. As with the {@link java.util.TreeMap}, the
+ * key is kept as it was when first mapped.</P>
+ *
+ * <P>Each key may be mapped to several values (see {@link #add(String, Object)}
+ * and {@link #getAll(String)}) - the {@link Map} methods refer to the
+ * <U>first</U> value, and {@link #put(String, Object)} replaces all of them.</P>
+ *
+ * <P><B>Note:</B> not thread-safe</P>
+ * @param <V> Type of mapped value
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 1:42:17 PM
+ */
+public class AsciiCaseInsensitiveMap<V> extends AbstractMap<String,V> {
+    public static final int DEFAULT_INITIAL_SIZE=16;
+    public static final float   DEFAULT_LOAD_FACTOR=0.5f;
+
+    private final float loadFactor;
+    private String[]    keys;   // null == free slot
+    private int[]   hashes;
+    private Object[]    values; // a MultiValue if more than one value mapped
+    private int size, mask, threshold, modCount;
+    private transient Set<Map.Entry<String,V>>  entries;
+
+    public AsciiCaseInsensitiveMap() {
+        this(DEFAULT_INITIAL_SIZE);
+    }
+
+    public AsciiCaseInsensitiveMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * @param expectedSize Expected number of keys - the map is re-sized
+     * automatically if more are added
+     * @param factor Load factor - the map is re-sized when the ratio of keys
+     * to slots exceeds it
+     */
+    public AsciiCaseInsensitiveMap(int expectedSize, float factor) {
+        Validate.isTrue(expectedSize >= 0, "Bad expected size: %d", expectedSize);
+        Validate.isTrue((factor > 0.0f) && (factor < 1.0f), "Bad load factor: %s", factor);
+        loadFactor = factor;
+
+        long    required=Math.max(2L, (long) Math.ceil(expectedSize / factor));
+        Validate.isTrue(required <= (1 << 30), "Expected size too big: %d", expectedSize);
+        allocate((int) Long.highestOneBit(required - 1L) << 1);
+    }
+
+    public AsciiCaseInsensitiveMap(Map<String,? extends V> m) {
+        this(m.size());
+        putAll(m);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (key instanceof String) && (indexOf((String) key) >= 0);
+    }
+
+    /**
+     * @param key The key
+     * @return The <U>first</U> mapped value - {@code null} if no mapping
+     * @see #getAll(String)
+     */
+    @Override
+    public V get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        int index=indexOf((String) key);
+        return (index < 0) ? null : AsciiCaseInsensitiveMap.<V>firstValue(values[index]);
+    }
+
+    /**
+     * @param key The key
+     * @return An unmodifiable {@link List} of all the mapped values -
+     * empty if no mapping
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> getAll(String key) {
+        int index=(key == null) ? (-1) : indexOf(key);
+        if (index < 0) {
+            return Collections.emptyList();
+        }
+
+        Object  v=values[index];
+        if (v instanceof MultiValue) {
+            return Collections.unmodifiableList((List<V>) v);
+        } else {
+            return Collections.singletonList((V) v);
+        }
+    }
+
+    /**
+     * @param key The key
+     * @return The existing key instance that matches the given one - {@code null}
+     * if no mapping. Can be used to &quot;intern&quot; keys
+     */
+    public String getKey(String key) {
+        int index=(key == null) ? (-1) : indexOf(key);
+        return (index < 0) ? null : keys[index];
+    }
+
+    /**
+     * Replaces <U>all</U> the values mapped to the key
+     * @param key The key - may not be {@code null}
+     * @param value The value
+     * @return The previous <U>first</U> value - {@code null} if none
+     */
+    @Override
+    public V put(String key, V value) {
+        int index=insertionIndex(key);
+        if (keys[index] == null) {
+            insert(index, key, value);
+            return null;
+        }
+
+        V   prev=firstValue(values[index]);
+        values[index] = value;
+        return prev;
+    }
+
+    /**
+     * Adds a value to the ones (if any) already mapped to the key
+     * @param key The key - may not be {@code null}
+     * @param value The value to add
+     * @return Number of values now mapped to the key
+     */
+    public int add(String key, V value) {
+        int index=insertionIndex(key);
+        if (keys[index] == null) {
+            insert(index, key, value);
+            return 1;
+        }
+
+        Object  v=values[index];
+        if (v instanceof MultiValue) {
+            ((MultiValue) v).add(value);
+            return ((MultiValue) v).size();
+        }
+
+        values[index] = new MultiValue(v, value);
+        return 2;
+    }
+
+    /**
+     * @param key The key
+     * @return The removed <U>first</U> value - {@code null} if no mapping
+     */
+    @Override
+    public V remove(Object key) {
+        int index=(key instanceof String) ? indexOf((String) key) : (-1);
+        if (index < 0) {
+            return null;
+        }
+
+        V   prev=firstValue(values[index]);
+        shiftKeys(index, null);
+        size--;
+        modCount++;
+        return prev;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, null);
+            Arrays.fill(values, null);
+            size = 0;
+            modCount++;
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<String,V>> entrySet() {
+        if (entries == null) {
+            entries = new AbstractSet<Map.Entry<String,V>>() {
+                    @Override
+                    public Iterator<Map.Entry<String,V>> iterator() {
+                        return new EntryIterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+        }
+
+        return entries;
+    }
+
+    /**
+     * @param cs The {@link CharSequence} to hash
+     * @return A hash code that is the same for sequences that differ only in
+     * the case of their ASCII letters
+     */
+    public static final int hashIgnoreAsciiCase(CharSequence cs) {
+        int h=0;
+        for (int index=0, len=cs.length(); index < len; index++) {
+            h = 31 * h + toLowerAscii(cs.charAt(index));
+        }
+
+        // spread the bits since the index is calculated using the lower ones
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @param s1 1st string
+     * @param s2 2nd string
+     * @return {@code true} if both strings are {@code null} or differ only in
+     * the case of their ASCII letters
+     */
+    public static final boolean equalsIgnoreAsciiCase(String s1, String s2) {
+        if (s1 == s2) {
+            return true;
+        }
+
+        if ((s1 == null) || (s2 == null) || (s1.length() != s2.length())) {
+            return false;
+        }
+
+        for (int index=0, len=s1.length(); index < len; index++) {
+            char    c1=s1.charAt(index), c2=s2.charAt(index);
+            if ((c1 != c2) && (toLowerAscii(c1) != toLowerAscii(c2))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public static final char toLowerAscii(char c) {
+        if ((c >= 'A') && (c <= 'Z')) {
+            return (char) (c + ('a' - 'A'));
+        } else {
+            return c;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> V firstValue(Object v) {
+        if (v instanceof MultiValue) {
+            return (V) ((MultiValue) v).get(0);
+        } else {
+            return (V) v;
+        }
+    }
+
+    private int indexOf(String key) {
+        int h=hashIgnoreAsciiCase(key);
+        for (int index=h & mask; keys[index] != null; index = (index + 1) & mask) {
+            if ((hashes[index] == h) && equalsIgnoreAsciiCase(keys[index], key)) {
+                return index;
+            }
+        }
+
+        return (-1);
+    }
+
+    // returns the index of the existing key or the free slot where it should be inserted
+    private int insertionIndex(String key) {
+        Validate.notNull(key, "No key", ArrayUtils.EMPTY_OBJECT_ARRAY);
+
+        int h=hashIgnoreAsciiCase(key), index=h & mask;
+        for ( ; keys[index] != null; index = (index + 1) & mask) {
+            if ((hashes[index] == h) && equalsIgnoreAsciiCase(keys[index], key)) {
+                break;
+            }
+        }
+
+        return index;
+    }
+
+    private void insert(int index, String key, Object value) {
+        keys[index] = key;
+        hashes[index] = hashIgnoreAsciiCase(key);
+        values[index] = value;
+        modCount++;
+        if ((++size) > threshold) {
+            rehash(2 * keys.length);
+        }
+    }
+
+    // closes the gap left by a removed entry by moving back entries that probed past it
+    private void shiftKeys(int removed, EntryIterator iter) {
+        for (int last=removed, pos=removed; ; ) {
+            pos = (pos + 1) & mask;
+            for ( ; ; pos = (pos + 1) & mask) {
+                if (keys[pos] == null) {
+                    keys[last] = null;
+                    values[last] = null;
+                    return;
+                }
+
+                int slot=hashes[pos] & mask;
+                if ((last <= pos) ? ((last >= slot) || (slot > pos)) : ((last >= slot) && (slot > pos))) {
+                    break;
+                }
+            }
+
+            if ((iter != null) && (pos < last)) {
+                iter.addWrapped(keys[pos]);
+            }
+
+            keys[last] = keys[pos];
+            hashes[last] = hashes[pos];
+            values[last] = values[pos];
+            last = pos;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = Math.min(capacity - 1, (int) (capacity * loadFactor));
+    }
+
+    private void rehash(int capacity) {
+        String[]    oldKeys=keys;
+        int[]       oldHashes=hashes;
+        Object[]    oldValues=values;
+        allocate(capacity);
+
+        for (int index=0; index < oldKeys.length; index++) {
+            String  k=oldKeys[index];
+            if (k == null) {
+                continue;
+            }
+
+            int pos=oldHashes[index] & mask;
+            while (keys[pos] != null) {
+                pos = (pos + 1) & mask;
+            }
+            keys[pos] = k;
+            hashes[pos] = oldHashes[index];
+            values[pos] = oldValues[index];
+        }
+    }
+
+    /**
+     * Holds the values of a multi-valued key - a dedicated class so it cannot
+     * be confused with a {@link List} value mapped by the user
+     */
+    static final class MultiValue extends ArrayList<Object> {
+        private static final long serialVersionUID = 1L;
+
+        MultiValue(Object v1, Object v2) {
+            super(4);
+            add(v1);
+            add(v2);
+        }
+    }
+
+    /**
+     * Scans the slots from last to first, so that when the last returned entry
+     * is removed only entries that were already visited are moved back into
+     * its slot - except for those that wrap around from the start of the
+     * table, which are remembered and returned once the scan is done
+     */
+    final class EntryIterator implements Iterator<Map.Entry<String,V>> {
+        private int expectedModCount=modCount;
+        private int nextPos=advance(keys.length - 1), lastPos=(-1);
+        private List<String>    wrapped;    // not yet visited entries moved into already visited slots
+        private int wrappedIndex;
+        private String  lastWrappedKey;
+
+        EntryIterator() {
+            super();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return (nextPos >= 0) || ((wrapped != null) && (wrappedIndex < wrapped.size()));
+        }
+
+        @Override
+        public Map.Entry<String,V> next() {
+            ensureUnmodified();
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more entries");
+            }
+
+            if (nextPos >= 0) {
+                lastPos = nextPos;
+                nextPos = advance(nextPos - 1);
+                return new SlotEntry(lastPos);
+            }
+
+            lastPos = (-1);
+            lastWrappedKey = wrapped.get(wrappedIndex++);
+            return new SlotEntry(indexOf(lastWrappedKey));
+        }
+
+        @Override
+        public void remove() {
+            ensureUnmodified();
+            if (lastPos >= 0) {
+                shiftKeys(lastPos, this);
+                // the not yet visited slots may have changed as well
+                nextPos = advance(lastPos - 1);
+                lastPos = (-1);
+            } else if (lastWrappedKey != null) {
+                shiftKeys(indexOf(lastWrappedKey), null);
+                lastWrappedKey = null;
+            } else {
+                throw new IllegalStateException("No current entry to remove");
+            }
+
+            size--;
+            expectedModCount = ++modCount;
+        }
+
+        void addWrapped(String key) {
+            if (wrapped == null) {
+                wrapped = new ArrayList<String>(2);
+            }
+            wrapped.add(key);
+        }
+
+        private void ensureUnmodified() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException("Map modified while iterating");
+            }
+        }
+
+        private int advance(int pos) {
+            while ((pos >= 0) && (keys[pos] == null)) {
+                pos--;
+            }
+            return pos;
+        }
+    }
+
+    final class SlotEntry implements Map.Entry<String,V> {
+        private final int   pos;
+        private final String    key;
+
+        SlotEntry(int slot) {
+            pos = slot;
+            key = keys[slot];
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            ensureUnchanged();
+            return firstValue(values[pos]);
+        }
+
+        /**
+         * Replaces <U>all</U> the values mapped to the key
+         */
+        @Override
+        public V setValue(V value) {
+            ensureUnchanged();
+            V   prev=firstValue(values[pos]);
+            values[pos] = value;
+            return prev;
+        }
+
+        @Override
+        public int hashCode() {
+            V   value=getValue();
+            return key.hashCode() ^ ((value == null) ? 0 : value.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry<?,?>)) {
+                return false;
+            }
+
+            Map.Entry<?,?>  other=(Map.Entry<?,?>) obj;
+            V               value=getValue();
+            return key.equals(other.getKey())
+                && ((value == null) ? (other.getValue() == null) : value.equals(other.getValue()));
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+
+        private void ensureUnchanged() {
+            if (keys[pos] != key) {
+                throw new ConcurrentModificationException("Entry of " + key + " no longer mapped");
+            }
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.numbers.longs;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>An open-addressing (linear probing) hash map from primitive {@code long}
+ * keys to primitive {@code long} values - i.e., no boxing and no entry objects.
+ * Besides the usual mapping methods, it can be used as a set of counters (see
+ * {@link #addTo(long, long)}) - e.g., for histograms.</P>
+ *
+ * <P>Since values are primitives, a non-existing mapping is reported via the
+ * &quot;missing&quot; value specified at construction (default=0). The entries
+ * are traversed via an {@link EntryCursor} (see {@link #cursor()}) rather than
+ * an iterator. <B>Note:</B> not thread-safe</P>
+ * @author Lyor Goldstein
+ * @since Dec 9, 2013 11:47:52 AM
+ */
+public class LongLongMap {
+    public static final int DEFAULT_INITIAL_SIZE=16;
+    public static final float   DEFAULT_LOAD_FACTOR=0.75f;
+
+    // the zero key marks a free slot, so its mapping (if any) is kept separately
+    private static final long    FREE_KEY=0;
+
+    private final float loadFactor;
+    private final long   missingValue;
+    private long[]   keys, values;
+    private int size, mask, threshold;
+    private boolean hasFreeKey;
+    private long    freeKeyValue;
+
+    public LongLongMap() {
+        this(DEFAULT_INITIAL_SIZE);
+    }
+
+    public LongLongMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR, 0);
+    }
+
+    /**
+     * @param expectedSize Expected number of entries - the map is re-sized
+     * automatically if more are added
+     * @param factor Load factor - the map is re-sized when the ratio of entries
+     * to slots exceeds it
+     * @param noValue The value returned for non-existing mappings
+     */
+    public LongLongMap(int expectedSize, float factor, long noValue) {
+        Validate.isTrue(expectedSize >= 0, "Bad expected size: %d", expectedSize);
+        Validate.isTrue((factor > 0.0f) && (factor < 1.0f), "Bad load factor: %s", factor);
+        loadFactor = factor;
+        missingValue = noValue;
+        allocate(arraySize(expectedSize, factor));
+    }
+
+    /**
+     * @return The value returned for non-existing mappings
+     */
+    public final long getMissingValue() {
+        return missingValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param key The key
+     * @return The mapped value - {@link #getMissingValue()} if no mapping
+     */
+    public long get(long key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : missingValue;
+        }
+
+        int index=indexOf(key);
+        return (index < 0) ? missingValue : values[index];
+    }
+
+    public boolean containsKey(long key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        } else {
+            return indexOf(key) >= 0;
+        }
+    }
+
+    /**
+     * @param key The key
+     * @param value The value
+     * @return The previously mapped value - {@link #getMissingValue()} if no
+     * previous mapping
+     */
+    public long put(long key, long value) {
+        if (key == FREE_KEY) {
+            long    prev=hasFreeKey ? freeKeyValue : missingValue;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeKeyValue = value;
+            return prev;
+        }
+
+        int index=insertionIndex(key);
+        if (keys[index] == key) {
+            long    prev=values[index];
+            values[index] = value;
+            return prev;
+        }
+
+        insertAt(index, key, value);
+        return missingValue;
+    }
+
+    /**
+     * Adds a delta to the mapped value - if no mapping exists, then one is
+     * created with the delta as its value (i.e., the value is assumed to have
+     * been zero - regardless of the {@link #getMissingValue()})
+     * @param key The key
+     * @param delta The delta to add
+     * @return The updated value
+     */
+    public long addTo(long key, long delta) {
+        if (key == FREE_KEY) {
+            if (hasFreeKey) {
+                freeKeyValue += delta;
+            } else {
+                hasFreeKey = true;
+                freeKeyValue = delta;
+                size++;
+            }
+            return freeKeyValue;
+        }
+
+        int index=insertionIndex(key);
+        if (keys[index] == key) {
+            values[index] += delta;
+            return values[index];
+        }
+
+        insertAt(index, key, delta);
+        return delta;
+    }
+
+    /**
+     * Increments the mapped value by one
+     * @param key The key
+     * @return The updated value
+     * @see #addTo(long, long)
+     */
+    public long increment(long key) {
+        return addTo(key, 1);
+    }
+
+    /**
+     * @param key The key
+     * @return The removed value - {@link #getMissingValue()} if no mapping
+     */
+    public long remove(long key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                return missingValue;
+            }
+
+            hasFreeKey = false;
+            size--;
+            return freeKeyValue;
+        }
+
+        int index=indexOf(key);
+        if (index < 0) {
+            return missingValue;
+        }
+
+        long    prev=values[index];
+        shiftKeys(index);
+        size--;
+        return prev;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, FREE_KEY);
+            hasFreeKey = false;
+            size = 0;
+        }
+    }
+
+    /**
+     * @return The mapped keys - in no particular order
+     */
+    public long[] keys() {
+        long[]   result=new long[size];
+        int     count=0;
+        if (hasFreeKey) {
+            result[count++] = FREE_KEY;
+        }
+
+        for (int index=0; count < size; index++) {
+            if (keys[index] != FREE_KEY) {
+                result[count++] = keys[index];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return An {@link EntryCursor} positioned <U>before</U> the first entry
+     */
+    public EntryCursor cursor() {
+        return new EntryCursor();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder   sb=new StringBuilder(size * 16).append('{');
+        for (EntryCursor c=cursor(); c.moveNext(); ) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(c.key()).append('=').append(c.value());
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * @param key The key
+     * @return A well distributed hash of the key
+     */
+    static int mix(long key) {
+        long    h=key * 0x9E3779B97F4A7C15L;
+        int     x=(int) (h ^ (h >>> 32));
+        return x ^ (x >>> 16);
+    }
+
+    /**
+     * @param expectedSize Expected number of entries
+     * @param factor Load factor
+     * @return A power of 2 slots count that can hold the entries without re-sizing
+     */
+    static int arraySize(int expectedSize, float factor) {
+        long    required=Math.max(2L, (long) Math.ceil(expectedSize / factor));
+        Validate.isTrue(required <= (1 << 30), "Expected size too big: %d", expectedSize);
+        return (int) Long.highestOneBit(required - 1L) << 1;
+    }
+
+    private int indexOf(long key) {
+        for (int index=mix(key) & mask; keys[index] != FREE_KEY; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                return index;
+            }
+        }
+
+        return (-1);
+    }
+
+    // returns either the key's index or the free slot where it should be inserted
+    private int insertionIndex(long key) {
+        int index=mix(key) & mask;
+        while ((keys[index] != FREE_KEY) && (keys[index] != key)) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void insertAt(int index, long key, long value) {
+        keys[index] = key;
+        values[index] = value;
+        if ((++size) > threshold) {
+            rehash(2 * keys.length);
+        }
+    }
+
+    // closes the gap left by a removed entry by moving back entries that probed past it
+    private void shiftKeys(int removed) {
+        for (int last=removed, pos=removed; ; ) {
+            pos = (pos + 1) & mask;
+            for ( ; ; pos = (pos + 1) & mask) {
+                if (keys[pos] == FREE_KEY) {
+                    keys[last] = FREE_KEY;
+                    return;
+                }
+
+                int slot=mix(keys[pos]) & mask;
+                if ((last <= pos) ? ((last >= slot) || (slot > pos)) : ((last >= slot) && (slot > pos))) {
+                    break;
+                }
+            }
+
+            keys[last] = keys[pos];
+            values[last] = values[pos];
+            last = pos;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        threshold = Math.min(capacity - 1, (int) (capacity * loadFactor));
+    }
+
+    private void rehash(int capacity) {
+        long[]   oldKeys=keys, oldValues=values;
+        allocate(capacity);
+
+        for (int index=0; index < oldKeys.length; index++) {
+            long    key=oldKeys[index];
+            if (key == FREE_KEY) {
+                continue;
+            }
+
+            int pos=mix(key) & mask;
+            while (keys[pos] != FREE_KEY) {
+                pos = (pos + 1) & mask;
+            }
+            keys[pos] = key;
+            values[pos] = oldValues[index];
+        }
+    }
+
+    /**
+     * A cursor over the map entries - <B>Note:</B> the map must not be modified
+     * while the cursor is used (other than via {@link #setValue(long)})
+     */
+    public class EntryCursor {
+        // -1=before start, keys.length=on the free key entry (if any)
+        private int pos=(-1);
+        private boolean done;
+
+        EntryCursor() {
+            super();
+        }
+
+        /**
+         * @return <code>true</code> if moved to the next entry - <code>false</code>
+         * if no more entries
+         */
+        public boolean moveNext() {
+            if (done) {
+                return false;
+            }
+
+            while ((++pos) < keys.length) {
+                if (keys[pos] != FREE_KEY) {
+                    return true;
+                }
+            }
+
+            if ((pos == keys.length) && hasFreeKey) {
+                return true;
+            }
+
+            done = true;
+            return false;
+        }
+
+        public long key() {
+            ensurePosition();
+            return (pos == keys.length) ? FREE_KEY : keys[pos];
+        }
+
+        public long value() {
+            ensurePosition();
+            return (pos == keys.length) ? freeKeyValue : values[pos];
+        }
+
+        /**
+         * @param value The new value
+         * @return The previous value
+         */
+        public long setValue(long value) {
+            long    prev=value();
+            if (pos == keys.length) {
+                freeKeyValue = value;
+            } else {
+                values[pos] = value;
+            }
+            return prev;
+        }
+
+        private void ensurePosition() {
+            if ((pos < 0) || done) {
+                throw new NoSuchElementException("Cursor not positioned on an entry");
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.numbers.longs;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>An open-addressing (linear probing) hash map from primitive {@code long}
+ * keys to objects - i.e., no key boxing and no entry objects, so populating it
+ * creates no garbage other than re-sizing the keys and values arrays.
+ * {@code null} values are not allowed, so {@link #get(long)} returning {@code null}
+ * means that there is no mapping for the key.</P>
+ *
+ * <P>The entries are traversed via an {@link EntryCursor} (see {@link #cursor()})
+ * rather than an iterator - again in order to avoid creating any entry objects.
+ * <B>Note:</B> not thread-safe</P>
+ * @param <V> Type of mapped value
+ * @author Lyor Goldstein
+ * @since Dec 9, 2013 11:41:08 AM
+ */
+public class LongObjectMap<V> {
+    public static final int DEFAULT_INITIAL_SIZE=16;
+    public static final float   DEFAULT_LOAD_FACTOR=0.75f;
+
+    private final float loadFactor;
+    private long[]   keys;
+    private Object[]    values; // null == free slot
+    private int size, mask, threshold;
+
+    public LongObjectMap() {
+        this(DEFAULT_INITIAL_SIZE);
+    }
+
+    public LongObjectMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * @param expectedSize Expected number of entries - the map is re-sized
+     * automatically if more are added
+     * @param factor Load factor - the map is re-sized when the ratio of entries
+     * to slots exceeds it
+     */
+    public LongObjectMap(int expectedSize, float factor) {
+        Validate.isTrue(expectedSize >= 0, "Bad expected size: %d", expectedSize);
+        Validate.isTrue((factor > 0.0f) && (factor < 1.0f), "Bad load factor: %s", factor);
+        loadFactor = factor;
+        allocate(LongLongMap.arraySize(expectedSize, factor));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param key The key
+     * @return The mapped value - {@code null} if no mapping
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int index=indexOf(key);
+        return (index < 0) ? null : (V) values[index];
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @param key The key
+     * @param value The value - may not be {@code null}
+     * @return The previously mapped value - {@code null} if none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        Validate.notNull(value, "No value", ArrayUtils.EMPTY_OBJECT_ARRAY);
+
+        int index=LongLongMap.mix(key) & mask;
+        for (Object v=values[index]; v != null; index = (index + 1) & mask, v = values[index]) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return (V) v;
+            }
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        if ((++size) > threshold) {
+            rehash(2 * values.length);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param key The key
+     * @return The removed value - {@code null} if no mapping
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int index=indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+
+        V   prev=(V) values[index];
+        shiftKeys(index);
+        size--;
+        return prev;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(values, null);
+            size = 0;
+        }
+    }
+
+    /**
+     * @return The mapped keys - in no particular order
+     */
+    public long[] keys() {
+        long[]   result=new long[size];
+        for (int index=0, count=0; count < size; index++) {
+            if (values[index] != null) {
+                result[count++] = keys[index];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return An {@link EntryCursor} positioned <U>before</U> the first entry
+     */
+    public EntryCursor cursor() {
+        return new EntryCursor();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder   sb=new StringBuilder(size * 16).append('{');
+        for (EntryCursor c=cursor(); c.moveNext(); ) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(c.key()).append('=').append(c.value());
+        }
+        return sb.append('}').toString();
+    }
+
+    private int indexOf(long key) {
+        for (int index=LongLongMap.mix(key) & mask; values[index] != null; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                return index;
+            }
+        }
+
+        return (-1);
+    }
+
+    // closes the gap left by a removed entry by moving back entries that probed past it
+    private void shiftKeys(int removed) {
+        for (int last=removed, pos=removed; ; ) {
+            pos = (pos + 1) & mask;
+            for ( ; ; pos = (pos + 1) & mask) {
+                if (values[pos] == null) {
+                    values[last] = null;
+                    return;
+                }
+
+                int slot=LongLongMap.mix(keys[pos]) & mask;
+                if ((last <= pos) ? ((last >= slot) || (slot > pos)) : ((last >= slot) && (slot > pos))) {
+                    break;
+                }
+            }
+
+            keys[last] = keys[pos];
+            values[last] = values[pos];
+            last = pos;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = Math.min(capacity - 1, (int) (capacity * loadFactor));
+    }
+
+    private void rehash(int capacity) {
+        long[]   oldKeys=keys;
+        Object[]    oldValues=values;
+        allocate(capacity);
+
+        for (int index=0; index < oldValues.length; index++) {
+            Object  v=oldValues[index];
+            if (v == null) {
+                continue;
+            }
+
+            int pos=LongLongMap.mix(oldKeys[index]) & mask;
+            while (values[pos] != null) {
+                pos = (pos + 1) & mask;
+            }
+            keys[pos] = oldKeys[index];
+            values[pos] = v;
+        }
+    }
+
+    /**
+     * A cursor over the map entries - <B>Note:</B> the map must not be modified
+     * while the cursor is used (other than via {@link #setValue(Object)})
+     */
+    public class EntryCursor {
+        private int pos=(-1);
+
+        EntryCursor() {
+            super();
+        }
+
+        /**
+         * @return <code>true</code> if moved to the next entry - <code>false</code>
+         * if no more entries
+         */
+        public boolean moveNext() {
+            while ((++pos) < values.length) {
+                if (values[pos] != null) {
+                    return true;
+                }
+            }
+
+            pos = values.length;
+            return false;
+        }
+
+        public long key() {
+            ensurePosition();
+            return keys[pos];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V value() {
+            ensurePosition();
+            return (V) values[pos];
+        }
+
+        /**
+         * @param value The new value - may not be {@code null}
+         * @return The previous value
+         */
+        public V setValue(V value) {
+            Validate.notNull(value, "No value", ArrayUtils.EMPTY_OBJECT_ARRAY);
+            V   prev=value();
+            values[pos] = value;
+            return prev;
+        }
+
+        private void ensurePosition() {
+            if ((pos < 0) || (pos >= values.length)) {
+                throw new NoSuchElementException("Cursor not positioned on an entry");
+            }
+        }
+    }
+}
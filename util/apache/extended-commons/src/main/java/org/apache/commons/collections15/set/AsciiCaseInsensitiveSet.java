@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.set;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.apache.commons.collections15.map.AsciiCaseInsensitiveMap;
+
+/**
+ * A {@link java.util.Set} of strings backed by an {@link AsciiCaseInsensitiveMap}
+ * - i.e., an O(1) replacement for a {@link java.util.TreeSet} with
+ * {@link String#CASE_INSENSITIVE_ORDER} when the strings are ASCII (e.g.,
+ * HTTP header names). <B>Note:</B> not thread-safe
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 2:31:05 PM
+ */
+public class AsciiCaseInsensitiveSet extends AbstractSet<String> {
+    private final AsciiCaseInsensitiveMap<Boolean>  map;
+
+    public AsciiCaseInsensitiveSet() {
+        this(AsciiCaseInsensitiveMap.DEFAULT_INITIAL_SIZE);
+    }
+
+    public AsciiCaseInsensitiveSet(int expectedSize) {
+        map = new AsciiCaseInsensitiveMap<Boolean>(expectedSize);
+    }
+
+    public AsciiCaseInsensitiveSet(Collection<String> c) {
+        this(c.size());
+        addAll(c);
+    }
+
+    public AsciiCaseInsensitiveSet(String ... values) {
+        this(values.length);
+        for (String v : values) {
+            add(v);
+        }
+    }
+
+    @Override
+    public boolean add(String e) {
+        return map.put(e, Boolean.TRUE) == null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return map.remove(o) != null;
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return map.keySet().iterator();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+}
@@ -23,6 +23,8 @@ import java.util.Iterator;
 import org.apache.commons.collections15.map.LRUMap;
 
 /**
+ * <B>Note:</B> not thread-safe - for a bounded concurrent set with a better
+ * hit rate see {@link org.apache.commons.collections15.cache.ConcurrentTinyLFUSet}
  * @param <E> Type of value being collected in the set
  * @author Lyor G.
  * @since Oct 3, 2011 8:10:18 AM
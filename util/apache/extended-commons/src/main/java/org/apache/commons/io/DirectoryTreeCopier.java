@@ -0,0 +1,492 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.collections15.AbstractExtendedPredicate;
+import org.apache.commons.collections15.ExtendedPredicate;
+import org.apache.commons.collections15.Predicate;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.logging.AbstractLoggingBean;
+
+/**
+ * <P>Copies a directory tree using a {@link ForkJoinPool} - each sub-folder
+ * and file is handled by a separate task. Files can be either copied or
+ * linked - see {@link LinkMode}. If a link cannot be created the file is
+ * copied instead (and no more link attempts are made by the instance).</P>
+ *
+ * <P>The copy can be {@link #cancel()}-ed from any thread, in which case
+ * {@link #copy(File, File)} throws an {@link InterruptedIOException}. Note:
+ * an instance is not re-usable once cancelled.</P>
+ * @author Lyor Goldstein
+ * @since Dec 5, 2013 1:21:08 PM
+ */
+public class DirectoryTreeCopier extends AbstractLoggingBean {
+    /**
+     * How files are &quot;copied&quot;
+     */
+    public static enum LinkMode {
+        /**
+         * Full data copy
+         */
+        COPY,
+        /**
+         * Hard-link the target to the source file - only for files accepted
+         * by the {@link DirectoryTreeCopier#getLinkPredicate()}. <B>Note:</B>
+         * since both files share the same data, the source should not be
+         * modified in-place afterwards
+         */
+        HARDLINK,
+        /**
+         * Copy-on-write clone (&quot;reflink&quot;) of the source file - only
+         * for files accepted by the {@link DirectoryTreeCopier#getLinkPredicate()}.
+         * There is no Java API for it so it is done via <code>cp --reflink=always</code>
+         * and hence supported only on Linux file systems that provide it
+         * (e.g., BTRFS, XFS) - for files of at least {@link #REFLINK_MIN_SIZE}
+         * bytes (for smaller ones launching a process costs more than the copy)
+         */
+        REFLINK;
+
+        public static final long    REFLINK_MIN_SIZE=1024L * 1024L;
+    }
+
+    /**
+     * Informed of the copy progress - <B>Note:</B> called from multiple threads
+     */
+    public static interface ProgressListener {
+        /**
+         * @param srcFile The source file
+         * @param dstFile The target file
+         * @param mode The {@link LinkMode} actually used for the file
+         * @param size The file size
+         */
+        void fileCopied(File srcFile, File dstFile, LinkMode mode, long size);
+    }
+
+    /**
+     * Accepts files that are immutable once created in a git repository -
+     * i.e., loose objects and pack/index files
+     */
+    public static final ExtendedPredicate<File> GIT_IMMUTABLE_FILES=new AbstractExtendedPredicate<File>(File.class) {
+            @Override
+            public boolean evaluate(File file) {
+                File    parent=(file == null) ? null : file.getParentFile();
+                File    grandParent=(parent == null) ? null : parent.getParentFile();
+                if ((grandParent == null) || (!GIT_OBJECTS_FOLDER.equals(grandParent.getName()))) {
+                    return false;
+                }
+
+                String  parentName=parent.getName();
+                if (GIT_PACK_FOLDER.equals(parentName)) {
+                    String  name=file.getName();
+                    return name.endsWith(".pack") || name.endsWith(".idx") || name.endsWith(".bitmap");
+                }
+
+                // loose objects are in sub-folders named after 1st 2 hex digits of their ID
+                return (parentName.length() == 2) && isHexDigit(parentName.charAt(0)) && isHexDigit(parentName.charAt(1));
+            }
+
+            private boolean isHexDigit(char ch) {
+                return ((ch >= '0') && (ch <= '9')) || ((ch >= 'a') && (ch <= 'f'));
+            }
+        };
+
+    public static final String  GIT_OBJECTS_FOLDER="objects", GIT_PACK_FOLDER="pack";
+
+    private final ForkJoinPool  pool;
+    private final LinkMode  mode;
+    private Predicate<? super File> linkPredicate=GIT_IMMUTABLE_FILES;
+    private FileFilter  filter;
+    private Predicate<Pair<File,File>>  predicate;
+    private boolean preserveFileDate=true;
+    private ProgressListener    listener;
+    private final AtomicBoolean cancelled=new AtomicBoolean(false);
+    private final AtomicBoolean linkSupported=new AtomicBoolean(true);
+    private final AtomicLong    copiedFiles=new AtomicLong(0L), linkedFiles=new AtomicLong(0L),
+                                copiedBytes=new AtomicLong(0L), createdFolders=new AtomicLong(0L);
+
+    public DirectoryTreeCopier(LinkMode linkMode) {
+        this(linkMode, null);
+    }
+
+    /**
+     * @param linkMode The {@link LinkMode}
+     * @param fjPool The {@link ForkJoinPool} to use - if {@code null} then
+     * a new one is created (and shut down) for each {@link #copy(File, File)} call
+     */
+    public DirectoryTreeCopier(LinkMode linkMode, ForkJoinPool fjPool) {
+        mode = Validate.notNull(linkMode, "No link mode", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        pool = fjPool;
+    }
+
+    public final LinkMode getLinkMode() {
+        return mode;
+    }
+
+    public Predicate<? super File> getLinkPredicate() {
+        return linkPredicate;
+    }
+
+    /**
+     * @param p A {@link Predicate} that decides which source files may be
+     * linked (default={@link #GIT_IMMUTABLE_FILES}) - if {@code null} then
+     * all files may be linked. Ignored for {@link LinkMode#COPY}
+     */
+    public void setLinkPredicate(Predicate<? super File> p) {
+        linkPredicate = p;
+    }
+
+    public FileFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @param f A {@link FileFilter} applied to the listed source files - if
+     * {@code null} then all files are accepted
+     */
+    public void setFilter(FileFilter f) {
+        filter = f;
+    }
+
+    public Predicate<Pair<File,File>> getPredicate() {
+        return predicate;
+    }
+
+    /**
+     * @param p A {@link Predicate} invoked with the source/target pair - if
+     * it returns {@code false} the entry (file or sub-tree) is skipped
+     */
+    public void setPredicate(Predicate<Pair<File,File>> p) {
+        predicate = p;
+    }
+
+    public boolean isPreserveFileDate() {
+        return preserveFileDate;
+    }
+
+    public void setPreserveFileDate(boolean preserve) {
+        preserveFileDate = preserve;
+    }
+
+    public ProgressListener getProgressListener() {
+        return listener;
+    }
+
+    public void setProgressListener(ProgressListener l) {
+        listener = l;
+    }
+
+    public void cancel() {
+        if (cancelled.compareAndSet(false, true)) {
+            logger.info("cancel() copied=" + getCopiedFiles() + ", linked=" + getLinkedFiles());
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * @return Number of files whose data was actually copied
+     */
+    public long getCopiedFiles() {
+        return copiedFiles.get();
+    }
+
+    /**
+     * @return Number of files that were hard-linked/reflink-ed
+     */
+    public long getLinkedFiles() {
+        return linkedFiles.get();
+    }
+
+    /**
+     * @return Total size of all processed files - copied or linked
+     */
+    public long getCopiedBytes() {
+        return copiedBytes.get();
+    }
+
+    public long getCreatedFolders() {
+        return createdFolders.get();
+    }
+
+    /**
+     * @param srcDir The source folder
+     * @param destDir The target folder - created if necessary
+     * @throws IOException If failed to copy
+     * @throws InterruptedIOException If {@link #cancel()}-ed
+     */
+    public void copy(File srcDir, File destDir) throws IOException {
+        Validate.notNull(srcDir, "No source", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.notNull(destDir, "No destination", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        if (!srcDir.exists()) {
+            throw new FileNotFoundException("Source '" + srcDir + "' directory does not exist");
+        }
+        if (!srcDir.isDirectory()) {
+            throw new IOException("Source '" + srcDir + "' exists but is not a directory");
+        }
+
+        String  srcPath=srcDir.getCanonicalPath(), dstPath=destDir.getCanonicalPath();
+        if (FilenameUtils.isSystemWindows() ? srcPath.equalsIgnoreCase(dstPath) : srcPath.equals(dstPath)) {
+            throw new IOException("Source '" + srcDir + "' and destination '" + destDir + "' are the same");
+        }
+
+        // Cater for destination being directory within the source directory (see IO-141)
+        String  excluded=dstPath.startsWith(srcPath) ? dstPath : null;
+        ForkJoinPool    fjPool=(pool == null) ? new ForkJoinPool() : pool;
+        try {
+            fjPool.invoke(new FolderCopyTask(srcDir, destDir, excluded));
+        } catch(TaskIOException e) {
+            throw e.getCause();
+        } finally {
+            if (fjPool != pool) {
+                fjPool.shutdown();
+            }
+        }
+    }
+
+    protected void copyFolder(File srcDir, File destDir, String excluded) throws IOException {
+        checkCancelled();
+
+        if (destDir.exists()) {
+            if (!destDir.isDirectory()) {
+                throw new IOException("Destination '" + destDir + "' exists but is not a directory");
+            }
+        } else {
+            if ((!destDir.mkdirs()) && (!destDir.isDirectory())) {
+                throw new IOException("Destination '" + destDir + "' directory cannot be created");
+            }
+            createdFolders.incrementAndGet();
+        }
+
+        File[]  files=(filter == null) ? srcDir.listFiles() : srcDir.listFiles(filter);
+        if (files == null) {  // null if security restricted
+            throw new IOException("Failed to list contents of " + srcDir);
+        }
+
+        List<RecursiveAction>   tasks=new ArrayList<RecursiveAction>(files.length);
+        for (File srcFile : files) {
+            File    dstFile=new File(destDir, srcFile.getName());
+            if ((predicate != null) && (!predicate.evaluate(Pair.of(srcFile, dstFile)))) {
+                continue;
+            }
+
+            if (srcFile.isDirectory()) {
+                if ((excluded != null) && excluded.equals(srcFile.getCanonicalPath())) {
+                    continue;
+                }
+                tasks.add(new FolderCopyTask(srcFile, dstFile, excluded));
+            } else {
+                tasks.add(new FileCopyTask(srcFile, dstFile));
+            }
+        }
+
+        if (tasks.size() > 0) {
+            RecursiveAction.invokeAll(tasks);
+        }
+
+        // done last since creating the files modifies the folder's timestamp
+        if (preserveFileDate) {
+            destDir.setLastModified(srcDir.lastModified());
+        }
+    }
+
+    protected void copyFile(File srcFile, File dstFile) throws IOException {
+        checkCancelled();
+
+        long        size=srcFile.length();
+        LinkMode    used=LinkMode.COPY;
+        if (isLinkCandidate(srcFile, size)) {
+            if (createLink(srcFile, dstFile, mode)) {
+                used = mode;
+            } else if (linkSupported.compareAndSet(true, false)) {
+                logger.warn("copyFile(" + srcFile + ") " + mode + " not supported - using " + LinkMode.COPY);
+            }
+        }
+
+        if (used == LinkMode.COPY) {
+            ExtendedFileUtils.quickCopyFile(srcFile, dstFile);
+            if (preserveFileDate) {
+                dstFile.setLastModified(srcFile.lastModified());
+            }
+            copiedFiles.incrementAndGet();
+        } else {
+            linkedFiles.incrementAndGet();
+        }
+
+        copiedBytes.addAndGet(size);
+        if (listener != null) {
+            listener.fileCopied(srcFile, dstFile, used, size);
+        }
+    }
+
+    protected boolean isLinkCandidate(File srcFile, long size) {
+        if ((mode == LinkMode.COPY) || (!linkSupported.get())) {
+            return false;
+        }
+
+        if ((mode == LinkMode.REFLINK) && (size < LinkMode.REFLINK_MIN_SIZE)) {
+            return false;
+        }
+
+        return (linkPredicate == null) || linkPredicate.evaluate(srcFile);
+    }
+
+    /**
+     * @param srcFile The source file
+     * @param dstFile The target file - deleted if already exists
+     * @param linkMode The {@link LinkMode} to use
+     * @return {@code true} if link created, {@code false} if not supported
+     * @throws IOException If failed to delete an existing target file
+     */
+    protected boolean createLink(File srcFile, File dstFile, LinkMode linkMode) throws IOException {
+        if (dstFile.exists() && (!dstFile.delete())) {
+            throw new IOException("Failed to delete existing destination " + dstFile);
+        }
+
+        switch(linkMode) {
+            case HARDLINK   :
+                try {
+                    Files.createLink(dstFile.toPath(), srcFile.toPath());
+                    return true;
+                } catch(IOException | UnsupportedOperationException e) {
+                    // e.g., different file store
+                    logger.debug("createLink(" + srcFile + " => " + dstFile + ") " + e.getClass().getSimpleName() + ": " + e.getMessage());
+                    return false;
+                }
+
+            case REFLINK    :
+                return reflink(srcFile, dstFile);
+
+            default         :
+                return false;
+        }
+    }
+
+    protected boolean reflink(File srcFile, File dstFile) throws IOException {
+        if (!SystemUtils.IS_OS_LINUX) {
+            return false;
+        }
+
+        ProcessBuilder  builder=new ProcessBuilder("cp", "--reflink=always", preserveFileDate ? "--preserve=timestamps" : "--no-preserve=all",
+                                                   srcFile.getAbsolutePath(), dstFile.getAbsolutePath());
+        builder.redirectErrorStream(true);
+
+        Process process=builder.start();
+        try {
+            String  output=IOUtils.toString(process.getInputStream());
+            int     exitCode=process.waitFor();
+            if (exitCode != 0) {
+                logger.debug("reflink(" + srcFile + " => " + dstFile + ") exit code=" + exitCode + ": " + StringUtils.trimToEmpty(output));
+                dstFile.delete();   // in case some partial file created
+                return false;
+            }
+            return true;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reflink-ing " + srcFile);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+        if (isCancelled()) {
+            throw new InterruptedIOException("Copy cancelled");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[mode=" + getLinkMode()
+             + ", copied=" + getCopiedFiles()
+             + ", linked=" + getLinkedFiles()
+             + ", bytes=" + getCopiedBytes()
+             + "]";
+    }
+
+    /**
+     * Used to propagate {@link IOException}s out of the tasks
+     */
+    private static final class TaskIOException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TaskIOException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    private final class FolderCopyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final File  srcDir, destDir;
+        private final String    excluded;
+
+        FolderCopyTask(File src, File dst, String excludedPath) {
+            srcDir = src;
+            destDir = dst;
+            excluded = excludedPath;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                copyFolder(srcDir, destDir, excluded);
+            } catch(IOException e) {
+                throw new TaskIOException(e);
+            }
+        }
+    }
+
+    private final class FileCopyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final File  srcFile, dstFile;
+
+        FileCopyTask(File src, File dst) {
+            srcFile = src;
+            dstFile = dst;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                copyFile(srcFile, dstFile);
+            } catch(IOException e) {
+                throw new TaskIOException(e);
+            }
+        }
+    }
+}
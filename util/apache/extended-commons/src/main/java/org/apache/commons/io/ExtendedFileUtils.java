@@ -30,6 +30,9 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -37,6 +40,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections15.AbstractExtendedTransformer;
 import org.apache.commons.collections15.ExtendedCollectionUtils;
@@ -52,6 +58,7 @@ import org.apache.commons.io.filefilter.HiddenFileFilter;
 import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.io.filefilter.NotFileFilter;
 import org.apache.commons.io.filefilter.OrFileFilter;
+import org.apache.commons.io.nio.DirectBufferPool;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.ExtendedArrayUtils;
 import org.apache.commons.lang3.ExtendedStringUtils;
@@ -157,10 +164,11 @@ public class ExtendedFileUtils extends FileUtils {
             srcChannel = new FileInputStream(srcFile).getChannel();
             dstChannel = new FileOutputStream(dstFile).getChannel();
 
-            // Copy file contents from source to destination
-            long  srcLen=srcFile.length(), copyLen=dstChannel.transferFrom(srcChannel, 0, (cpySize < 0L) ? srcLen : cpySize);
-            if ((cpySize < 0L) && (copyLen != srcLen)) { // make sure full copy
-                throw new StreamCorruptedException("Mismatched copy length: expected=" + srcLen + ", actual=" + copyLen);
+            // Copy file contents from source to destination - retrying partial transfers
+            long  srcLen=srcChannel.size(), reqLen=(cpySize < 0L) ? srcLen : Math.min(cpySize, srcLen);
+            long  copyLen=ExtendedIOUtils.transferTo(srcChannel, 0L, reqLen, dstChannel, DirectBufferPool.DEFAULT);
+            if (copyLen != reqLen) { // make sure full copy
+                throw new StreamCorruptedException("Mismatched copy length: expected=" + reqLen + ", actual=" + copyLen);
             }
 
             return copyLen;
@@ -766,6 +774,27 @@ public class ExtendedFileUtils extends FileUtils {
         doCopyDirectory(srcDir, destDir, filter, predicate, preserveFileDate, exclusionList);
     }
 
+    /**
+     * Copies the directory tree in parallel using a {@link DirectoryTreeCopier}
+     * @param srcDir The source folder
+     * @param destDir The target folder
+     * @param mode The {@link DirectoryTreeCopier.LinkMode} to use - <B>Note:</B> for
+     * the link modes only immutable git objects/packs are linked - all other files
+     * are copied
+     * @param predicate An (optional) {@link Predicate} to filter the copied
+     * entries - if {@code null} then all entries are copied
+     * @return The {@link DirectoryTreeCopier} used - can be queried for statistics
+     * @throws IOException If failed to copy
+     * @see DirectoryTreeCopier#GIT_IMMUTABLE_FILES
+     */
+    public static final DirectoryTreeCopier copyDirectoryParallel(File srcDir, File destDir, DirectoryTreeCopier.LinkMode mode, Predicate<Pair<File,File>> predicate)
+            throws IOException {
+        DirectoryTreeCopier copier=new DirectoryTreeCopier(mode);
+        copier.setPredicate(predicate);
+        copier.copy(srcDir, destDir);
+        return copier;
+    }
+
     private static void doCopyDirectory(File srcDir, File destDir, FileFilter filter, Predicate<Pair<File,File>> predicate,
             boolean preserveFileDate, Collection<String> exclusionList) throws IOException {
         if (destDir.exists()) {
@@ -877,6 +906,15 @@ public class ExtendedFileUtils extends FileUtils {
         Validate.notNull(dstFile, "No 2nd file", ArrayUtils.EMPTY_OBJECT_ARRAY);
         ExtendedValidate.isTrue(dstFile.isFile(), "2nd file not a file: %s", dstFile);
 
+        long    cmpLen=Math.max(srcFile.length(), dstFile.length());
+        if (maxRead >= 0L) {
+            cmpLen = Math.min(cmpLen, maxRead);
+        }
+
+        if (cmpLen >= MAPPED_COMPARE_MIN_SIZE) {
+            return findMappedDifference(srcFile, dstFile, maxRead);
+        }
+
         InputStream src=null, dst=null;
         try {
             src = new FileInputStream(srcFile);
@@ -888,6 +926,200 @@ public class ExtendedFileUtils extends FileUtils {
         }
     }
 
+    /**
+     * Min. compared size for which {@link #findDifference(File, File, long, int)}
+     * uses {@link #findMappedDifference(File, File, long)}
+     */
+    public static final long    MAPPED_COMPARE_MIN_SIZE=4L * 1024L * 1024L;
+    /**
+     * Size of each region compared by {@link #findMappedDifference(File, File, long)}
+     * - if there is more than one region then they are compared in parallel
+     */
+    public static final long    MAPPED_COMPARE_CHUNK_SIZE=32L * 1024L * 1024L;
+
+    /**
+     * Compares the contents of the {@link File}-s by mapping them into memory
+     * and comparing 8 bytes at a time. Large files are split into
+     * {@link #MAPPED_COMPARE_CHUNK_SIZE} regions that are compared in parallel -
+     * the <U>first</U> difference offset is still reported. If the files have
+     * different sizes and their common prefix is identical then the reported
+     * offset is the size of the shorter file and its reported value is {@code null}
+     * @param srcFile First file
+     * @param dstFile Second file
+     * @param maxRead Max. number of bytes to compare - if negative then
+     * <U>all</U> bytes are compared
+     * @return A {@link Triplet} containing the difference offset and the
+     * different {@link Byte} value(s) - <code>null</code> if no difference
+     * @throws IOException If failed to access the file(s)
+     */
+    public static final Triplet<Long,Byte,Byte> findMappedDifference(File srcFile, File dstFile, long maxRead) throws IOException {
+        return findMappedDifference(srcFile, dstFile, maxRead, MAPPED_COMPARE_CHUNK_SIZE);
+    }
+
+    /**
+     * @param srcFile First file
+     * @param dstFile Second file
+     * @param maxRead Max. number of bytes to compare - if negative then
+     * <U>all</U> bytes are compared
+     * @param chunkSize Size of each compared region - must be a positive
+     * multiple of 8
+     * @return A {@link Triplet} containing the difference offset and the
+     * different {@link Byte} value(s) - <code>null</code> if no difference
+     * @throws IOException If failed to access the file(s)
+     * @see #findMappedDifference(File, File, long)
+     */
+    public static final Triplet<Long,Byte,Byte> findMappedDifference(File srcFile, File dstFile, long maxRead, long chunkSize) throws IOException {
+        Validate.notNull(srcFile, "No 1st file", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.notNull(dstFile, "No 2nd file", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.isTrue((chunkSize > 0L) && (chunkSize <= Integer.MAX_VALUE) && ((chunkSize % (Long.SIZE / Byte.SIZE)) == 0L), "Bad chunk size: %d", chunkSize);
+
+        FileChannel srcChannel=null, dstChannel=null;
+        try {
+            srcChannel = new FileInputStream(srcFile).getChannel();
+            dstChannel = new FileInputStream(dstFile).getChannel();
+
+            long    srcSize=srcChannel.size(), dstSize=dstChannel.size();
+            if (maxRead >= 0L) {
+                srcSize = Math.min(srcSize, maxRead);
+                dstSize = Math.min(dstSize, maxRead);
+            }
+
+            // compare the common prefix even if sizes differ since we need the 1st difference
+            long                cmpLen=Math.min(srcSize, dstSize);
+            MappedCompareTask   task=new MappedCompareTask(srcChannel, dstChannel, 0L, cmpLen, chunkSize, new AtomicLong(Long.MAX_VALUE));
+            Triplet<Long,Byte,Byte> result=null;
+            if (cmpLen > chunkSize) {
+                result = MappedComparePoolHolder.POOL.invoke(task);
+            } else if (cmpLen > 0L) {
+                result = task.compareRegion();
+            }
+
+            if (result != null) {
+                return result;
+            }
+
+            if (srcSize == dstSize) {
+                return null;
+            }
+
+            // common prefix is identical - report the 1st byte beyond it
+            ByteBuffer  buf=ByteBuffer.allocate(1);
+            if (srcSize > dstSize) {
+                srcChannel.read(buf, cmpLen);
+                return new Triplet<Long,Byte,Byte>(Long.valueOf(cmpLen), Byte.valueOf(buf.get(0)), null);
+            } else {
+                dstChannel.read(buf, cmpLen);
+                return new Triplet<Long,Byte,Byte>(Long.valueOf(cmpLen), null, Byte.valueOf(buf.get(0)));
+            }
+        } catch(MappedCompareException e) {
+            throw e.getCause();
+        } finally {
+            ExtendedIOUtils.closeAll(srcChannel, dstChannel);
+        }
+    }
+
+    private static final class MappedComparePoolHolder {
+        static final ForkJoinPool   POOL=new ForkJoinPool();
+    }
+
+    private static final class MappedCompareException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        MappedCompareException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * Compares a region - splitting it in half if larger than the chunk size.
+     * All the tasks share the lowest difference offset found so far so that tasks
+     * for regions beyond it can stop early
+     */
+    private static final class MappedCompareTask extends RecursiveTask<Triplet<Long,Byte,Byte>> {
+        private static final long serialVersionUID = 1L;
+        private static final int    CANCEL_CHECK_BLOCK_SIZE=1024 * 1024;
+
+        private final FileChannel   srcChannel, dstChannel;
+        private final long  startOffset, length, chunkSize;
+        private final AtomicLong    firstDiff;
+
+        MappedCompareTask(FileChannel src, FileChannel dst, long offset, long len, long chunk, AtomicLong diffOffset) {
+            srcChannel = src;
+            dstChannel = dst;
+            startOffset = offset;
+            length = len;
+            chunkSize = chunk;
+            firstDiff = diffOffset;
+        }
+
+        @Override
+        protected Triplet<Long,Byte,Byte> compute() {
+            if (length > chunkSize) {
+                long                chunks=(length + chunkSize - 1L) / chunkSize;
+                long                splitLen=(chunks / 2L) * chunkSize;
+                MappedCompareTask   low=new MappedCompareTask(srcChannel, dstChannel, startOffset, splitLen, chunkSize, firstDiff);
+                MappedCompareTask   high=new MappedCompareTask(srcChannel, dstChannel, startOffset + splitLen, length - splitLen, chunkSize, firstDiff);
+                high.fork();
+
+                Triplet<Long,Byte,Byte> lowResult=low.compute(), highResult=high.join();
+                return (lowResult != null) ? lowResult : highResult;
+            }
+
+            try {
+                return compareRegion();
+            } catch(IOException e) {
+                throw new MappedCompareException(e);
+            }
+        }
+
+        Triplet<Long,Byte,Byte> compareRegion() throws IOException {
+            if (startOffset >= firstDiff.get()) {
+                return null;    // a difference was already found before this region
+            }
+
+            ByteBuffer  srcBuf=srcChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, length).order(ByteOrder.nativeOrder());
+            ByteBuffer  dstBuf=dstChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, length).order(ByteOrder.nativeOrder());
+            LongBuffer  srcLongs=srcBuf.asLongBuffer(), dstLongs=dstBuf.asLongBuffer();
+            int         numLongs=srcLongs.remaining(), blockLongs=CANCEL_CHECK_BLOCK_SIZE / (Long.SIZE / Byte.SIZE);
+            for (int    blockStart=0; blockStart < numLongs; blockStart += blockLongs) {
+                if (startOffset >= firstDiff.get()) {
+                    return null;
+                }
+
+                for (int index=blockStart, blockEnd=Math.min(numLongs, blockStart + blockLongs); index < blockEnd; index++) {
+                    if (srcLongs.get(index) != dstLongs.get(index)) {
+                        return reportDifference(srcBuf, dstBuf, index * (Long.SIZE / Byte.SIZE));
+                    }
+                }
+            }
+
+            // compare the remainder that does not fill a long
+            return reportDifference(srcBuf, dstBuf, numLongs * (Long.SIZE / Byte.SIZE));
+        }
+
+        private Triplet<Long,Byte,Byte> reportDifference(ByteBuffer srcBuf, ByteBuffer dstBuf, int fromIndex) {
+            for (int index=fromIndex, maxIndex=srcBuf.limit(); index < maxIndex; index++) {
+                byte    srcValue=srcBuf.get(index), dstValue=dstBuf.get(index);
+                if (srcValue == dstValue) {
+                    continue;
+                }
+
+                long    offset=startOffset + index;
+                for (long curDiff=firstDiff.get(); (offset < curDiff) && (!firstDiff.compareAndSet(curDiff, offset)); curDiff = firstDiff.get()) {
+                    // retry until updated or a lower difference found
+                }
+                return new Triplet<Long,Byte,Byte>(Long.valueOf(offset), Byte.valueOf(srcValue), Byte.valueOf(dstValue));
+            }
+
+            return null;
+        }
+    }
+
     /**
      * Compares the contents of the {@link File}-s
      * @param srcFile First file
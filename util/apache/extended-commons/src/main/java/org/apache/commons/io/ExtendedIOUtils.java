@@ -17,17 +17,27 @@
 package org.apache.commons.io;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections15.ExtendedCollectionUtils;
+import org.apache.commons.collections15.ThreadLocalRecycler;
+import org.apache.commons.io.nio.DirectBufferPool;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.ExtendedArrayUtils;
 import org.apache.commons.lang3.Validate;
@@ -41,6 +51,22 @@ public class ExtendedIOUtils extends IOUtils {
 	// these are equivalent PUBLIC values to the ones in IOUtils which are private
 	public static final int	EOF_VALUE=(-1);
 	public static final int DEFAULT_BUFFER_SIZE_VALUE=4 * 1024;
+	/**
+	 * Max. number of bytes requested from a single {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+	 * or {@link FileChannel#transferFrom(ReadableByteChannel, long, long)} call - some
+	 * platforms fail or silently truncate very large requests
+	 */
+	public static final long MAX_TRANSFER_CHUNK_SIZE=8L * 1024L * 1024L;
+	/**
+	 * Number of pooled buffers used for scatter/gather copies
+	 */
+	public static final int SCATTER_GATHER_BUFFERS_COUNT=4;
+	/**
+	 * Recycled {@link #DEFAULT_BUFFER_SIZE_VALUE} sized copy buffers - used
+	 * by the methods that do not receive a work buffer from the caller
+	 */
+	public static final ThreadLocalRecycler<byte[]> COPY_BUFFERS=ThreadLocalRecycler.byteArrays(DEFAULT_BUFFER_SIZE_VALUE);
+	public static final ThreadLocalRecycler<char[]> COPY_CHAR_BUFFERS=ThreadLocalRecycler.charArrays(DEFAULT_BUFFER_SIZE_VALUE);
 
 	public ExtendedIOUtils() {
 		super();
@@ -98,7 +124,21 @@ public class ExtendedIOUtils extends IOUtils {
 
     public static final long copyLarge(InputStream input, File output)
             throws IOException {
-        return copyLarge(input, output, new byte[DEFAULT_BUFFER_SIZE_VALUE]);
+        if (!(input instanceof FileInputStream)) {
+            byte[]  buffer=COPY_BUFFERS.acquire();
+            try {
+                return copyLarge(input, output, buffer);
+            } finally {
+                COPY_BUFFERS.release(buffer);
+            }
+        }
+
+        OutputStream  outStream=new FileOutputStream(output);
+        try {
+            return copyLarge(input, outStream, (-1L));
+        } finally {
+            outStream.close();
+        }
     }
 
     public static final long copyLarge(InputStream input, File output, byte[] buffer)
@@ -113,7 +153,12 @@ public class ExtendedIOUtils extends IOUtils {
 
     public static final long copyLarge(InputStream input, File output, long inputOffset, long length)
             throws IOException {
-        return copyLarge(input, output, inputOffset, length, new byte[DEFAULT_BUFFER_SIZE_VALUE]);
+        byte[]  buffer=COPY_BUFFERS.acquire();
+        try {
+            return copyLarge(input, output, inputOffset, length, buffer);
+        } finally {
+            COPY_BUFFERS.release(buffer);
+        }
     }
 
     public static final long copyLarge(InputStream input, File output, long inputOffset, long length, byte[] buffer)  throws IOException {
@@ -133,24 +178,430 @@ public class ExtendedIOUtils extends IOUtils {
         	return (int) count;
     }
 
+	/**
+	 * Copies data between the streams. If either stream is a file stream then
+	 * the copy is done via {@link #copyChannels(ReadableByteChannel, WritableByteChannel, long)}
+	 * on the underlying {@link FileChannel}
+	 * @param input The {@link InputStream} to read from
+	 * @param output The {@link OutputStream} to write to
+	 * @param copySize Max. number of bytes to copy - if negative then till EOF
+	 * @return Number of copied bytes
+	 * @throws IOException If failed to read/write the data
+	 */
 	public static final long copyLarge (InputStream input, OutputStream output, long copySize) throws IOException {
+		if ((input instanceof FileInputStream) || (output instanceof FileOutputStream)) {
+			return copyChannels(toChannel(input), toChannel(output), copySize);
+		}
+
 		if (copySize < 0L)
 			return copyLarge(input, output);
 
-		final byte[]	buffer=new byte[DEFAULT_BUFFER_SIZE_VALUE];
-        for (long	count=0L, remSize=copySize; count < copySize; )
-        {
-        	final int	readSize=(remSize > buffer.length) ? buffer.length : (int) remSize;
-        	final int	n=input.read(buffer, 0, readSize);
-        	if (n == (-1))
-        		return count;
+		final byte[]	buffer=COPY_BUFFERS.acquire();
+		try {
+	        for (long	count=0L, remSize=copySize; count < copySize; )
+	        {
+	        	final int	readSize=(remSize > buffer.length) ? buffer.length : (int) remSize;
+	        	final int	n=input.read(buffer, 0, readSize);
+	        	if (n == (-1))
+	        		return count;
+	
+	        	output.write(buffer, 0, n);
+	         	count += n;
+	         	remSize -= n;
+	        }
+		} finally {
+			COPY_BUFFERS.release(buffer);
+		}
+
+        return copySize;
+    }
+
+    /**
+     * <P>Copies data between channels choosing the most efficient available mechanism:</P>
+     * <UL>
+     *      <LI>
+     *      If the source is a {@link FileChannel} then {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+     *      is used - which may use the O/S &quot;zero-copy&quot; (e.g., <code>sendfile</code>) mechanism
+     *      </LI>
+     *
+     *      <LI>
+     *      If the target is a {@link FileChannel} then {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}
+     *      is used
+     *      </LI>
+     *
+     *      <LI>
+     *      If the source is a {@link ScatteringByteChannel} and the target a {@link GatheringByteChannel}
+     *      (e.g., sockets or pipes) then the data is read and written via several
+     *      pooled direct buffers at once
+     *      </LI>
+     *
+     *      <LI>
+     *      Otherwise a single pooled direct buffer is used
+     *      </LI>
+     * </UL>
+     *
+     * <P><B>Note:</B> the channels are assumed to be in <U>blocking</U> mode. The
+     * source/target file channel position is updated to reflect the copied data</P>
+     * @param src The {@link ReadableByteChannel} to read from
+     * @param dst The {@link WritableByteChannel} to write to
+     * @param copySize Max. number of bytes to copy - if negative then till EOF
+     * @return Number of copied bytes
+     * @throws IOException If failed to read/write the data
+     */
+    public static final long copyChannels(ReadableByteChannel src, WritableByteChannel dst, long copySize) throws IOException {
+        return copyChannels(src, dst, copySize, DirectBufferPool.DEFAULT);
+    }
+
+    public static final long copyChannels(ReadableByteChannel src, WritableByteChannel dst, long copySize, DirectBufferPool pool)
+            throws IOException {
+        Validate.notNull(src, "No source channel", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.notNull(dst, "No destination channel", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.notNull(pool, "No buffers pool", ArrayUtils.EMPTY_OBJECT_ARRAY);
 
-        	output.write(buffer, 0, n);
-         	count += n;
-         	remSize -= n;
+        if (copySize == 0L) {
+            return 0L;
         }
 
-        return copySize;
+        if (src instanceof FileChannel) {
+            FileChannel srcChannel=(FileChannel) src;
+            long        position=srcChannel.position(), available=Math.max(0L, srcChannel.size() - position);
+            long        count=transferTo(srcChannel, position, (copySize < 0L) ? available : Math.min(copySize, available), dst, pool);
+            srcChannel.position(position + count);
+            return count;
+        }
+
+        if (dst instanceof FileChannel) {
+            FileChannel dstChannel=(FileChannel) dst;
+            long        position=dstChannel.position(), count=transferFrom(src, dstChannel, position, copySize);
+            dstChannel.position(position + count);
+            return count;
+        }
+
+        return copyBuffered(src, dst, copySize, pool);
+    }
+
+    /**
+     * Transfers data from the source file using {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+     * - retrying partial transfers until the requested amount has been transferred.
+     * If the channel stops making progress before the source end is reached then
+     * the remaining data is copied via pooled direct buffers. <B>Note:</B> the
+     * source channel position is <U>not</U> modified
+     * @param src The source {@link FileChannel}
+     * @param position Position in the source to start the transfer from
+     * @param count Number of bytes to transfer
+     * @param dst The target {@link WritableByteChannel}
+     * @param pool The {@link DirectBufferPool} to use for the fallback copy
+     * @return Number of transferred bytes - may be less than requested only if
+     * source end reached
+     * @throws IOException If failed to transfer the data
+     */
+    public static final long transferTo(FileChannel src, long position, long count, WritableByteChannel dst, DirectBufferPool pool)
+            throws IOException {
+        Validate.isTrue(position >= 0L, "Bad transfer position: %d", position);
+        Validate.isTrue(count >= 0L, "Bad transfer count: %d", count);
+
+        long    transferred=0L;
+        while (transferred < count) {
+            long    curPos=position + transferred, n=src.transferTo(curPos, Math.min(count - transferred, MAX_TRANSFER_CHUNK_SIZE), dst);
+            if (n > 0L) {
+                transferred += n;
+                continue;
+            }
+
+            if (curPos >= src.size()) {
+                break;  // source end reached
+            }
+
+            // no progress although data is available - copy the rest "manually"
+            transferred += copyBuffered(src, curPos, count - transferred, dst, pool);
+            break;
+        }
+
+        return transferred;
+    }
+
+    /**
+     * Transfers data into the target file using {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}
+     * - retrying partial transfers until the requested amount has been transferred
+     * or the source is exhausted. <B>Note:</B> the target channel position is
+     * <U>not</U> modified
+     * @param src The {@link ReadableByteChannel} source
+     * @param dst The target {@link FileChannel}
+     * @param position Position in the target to start writing at
+     * @param count Number of bytes to transfer - if negative then till source EOF
+     * @return Number of transferred bytes
+     * @throws IOException If failed to transfer the data
+     */
+    public static final long transferFrom(ReadableByteChannel src, FileChannel dst, long position, long count) throws IOException {
+        Validate.isTrue(position >= 0L, "Bad transfer position: %d", position);
+
+        long    transferred=0L, srcSize=(-1L), srcPos=(-1L);
+        if (src instanceof FileChannel) {
+            FileChannel srcChannel=(FileChannel) src;
+            srcPos = srcChannel.position();
+            srcSize = srcChannel.size();
+        }
+
+        while ((count < 0L) || (transferred < count)) {
+            long    remaining=(count < 0L) ? MAX_TRANSFER_CHUNK_SIZE : Math.min(count - transferred, MAX_TRANSFER_CHUNK_SIZE);
+            long    n=dst.transferFrom(src, position + transferred, remaining);
+            if (n > 0L) {
+                transferred += n;
+                continue;
+            }
+
+            /*
+             * A zero result from a non-file source means EOF (the JDK reads
+             * until the requested amount or EOF). For a file source we can
+             * tell whether data remains - in which case something is wrong
+             */
+            if ((srcSize >= 0L) && ((srcPos + transferred) < srcSize)) {
+                throw new EOFException("Transfer stalled at " + transferred + " out of " + (srcSize - srcPos) + " bytes");
+            }
+            break;
+        }
+
+        return transferred;
+    }
+
+    /**
+     * Copies data via {@link DirectBufferPool} buffers - using scatter/gather
+     * I/O if both channels support it
+     * @param src The {@link ReadableByteChannel} to read from
+     * @param dst The {@link WritableByteChannel} to write to
+     * @param copySize Max. number of bytes to copy - if negative then till EOF
+     * @param pool The {@link DirectBufferPool} to use
+     * @return Number of copied bytes
+     * @throws IOException If failed to read/write the data
+     */
+    public static final long copyBuffered(ReadableByteChannel src, WritableByteChannel dst, long copySize, DirectBufferPool pool)
+            throws IOException {
+        boolean         scatterGather=(src instanceof ScatteringByteChannel) && (dst instanceof GatheringByteChannel);
+        ByteBuffer[]    buffers=new ByteBuffer[scatterGather ? SCATTER_GATHER_BUFFERS_COUNT : 1];
+        for (int index=0; index < buffers.length; index++) {
+            buffers[index] = pool.acquire();
+        }
+
+        try {
+            long    count=0L;
+            while ((copySize < 0L) || (count < copySize)) {
+                prepareBuffers(buffers, (copySize < 0L) ? Long.MAX_VALUE : (copySize - count));
+
+                long    n=scatterGather ? ((ScatteringByteChannel) src).read(buffers) : src.read(buffers[0]);
+                if (n < 0L) {
+                    break;
+                }
+
+                flipBuffers(buffers);
+                if (scatterGather) {
+                    writeFully((GatheringByteChannel) dst, buffers);
+                } else {
+                    writeFully(dst, buffers[0]);
+                }
+                count += n;
+            }
+
+            return count;
+        } finally {
+            for (ByteBuffer buf : buffers) {
+                pool.release(buf);
+            }
+        }
+    }
+
+    /**
+     * Writes <U>all</U> the remaining data in the buffer
+     * @param dst The {@link WritableByteChannel} to write to
+     * @param buf The {@link ByteBuffer} whose remaining data is to be written
+     * @return Number of written bytes
+     * @throws IOException If failed to write the data
+     */
+    public static final int writeFully(WritableByteChannel dst, ByteBuffer buf) throws IOException {
+        int count=0;
+        while (buf.hasRemaining()) {
+            count += dst.write(buf);
+        }
+        return count;
+    }
+
+    /**
+     * Writes <U>all</U> the remaining data in the buffers
+     * @param dst The {@link GatheringByteChannel} to write to
+     * @param buffers The {@link ByteBuffer}s whose remaining data is to be written
+     * @return Number of written bytes
+     * @throws IOException If failed to write the data
+     */
+    public static final long writeFully(GatheringByteChannel dst, ByteBuffer ... buffers) throws IOException {
+        long    count=0L;
+        for (int offset=0; offset < buffers.length; ) {
+            if (!buffers[offset].hasRemaining()) {
+                offset++;   // skip the fully written ones
+                continue;
+            }
+
+            count += dst.write(buffers, offset, buffers.length - offset);
+        }
+        return count;
+    }
+
+    /**
+     * @param stream An {@link InputStream}
+     * @return A {@link ReadableByteChannel} - the underlying {@link FileChannel}
+     * for a {@link FileInputStream}, otherwise one that wraps the stream
+     */
+    public static final ReadableByteChannel toChannel(InputStream stream) {
+        if (stream instanceof FileInputStream) {
+            return ((FileInputStream) stream).getChannel();
+        } else {
+            return new ReadableByteChannelAdapter(stream);
+        }
+    }
+
+    /**
+     * @param stream An {@link OutputStream}
+     * @return A {@link WritableByteChannel} - the underlying {@link FileChannel}
+     * for a {@link FileOutputStream}, otherwise one that wraps the stream
+     */
+    public static final WritableByteChannel toChannel(OutputStream stream) {
+        if (stream instanceof FileOutputStream) {
+            return ((FileOutputStream) stream).getChannel();
+        } else {
+            return new WritableByteChannelAdapter(stream);
+        }
+    }
+
+    // uses positional reads so the source channel position is not affected
+    private static long copyBuffered(FileChannel src, long position, long copySize, WritableByteChannel dst, DirectBufferPool pool)
+            throws IOException {
+        ByteBuffer  buf=pool.acquire();
+        try {
+            long    count=0L;
+            while (count < copySize) {
+                prepareBuffers(new ByteBuffer[] { buf }, copySize - count);
+
+                int n=src.read(buf, position + count);
+                if (n < 0) {
+                    break;
+                }
+
+                buf.flip();
+                writeFully(dst, buf);
+                count += n;
+            }
+
+            return count;
+        } finally {
+            pool.release(buf);
+        }
+    }
+
+    private static void prepareBuffers(ByteBuffer[] buffers, long maxSize) {
+        long    remaining=maxSize;
+        for (ByteBuffer buf : buffers) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), remaining));
+            remaining -= buf.limit();
+        }
+    }
+
+    private static void flipBuffers(ByteBuffer[] buffers) {
+        for (ByteBuffer buf : buffers) {
+            buf.flip();
+        }
+    }
+
+    /**
+     * Unlike {@link java.nio.channels.Channels#newChannel(InputStream)} it does not
+     * synchronize or allocate an intermediate buffer for every read if the
+     * buffer has an accessible array
+     */
+    private static final class ReadableByteChannelAdapter implements ReadableByteChannel {
+        private final InputStream   stream;
+        private byte[]  workBuf;
+        private boolean open=true;
+
+        ReadableByteChannelAdapter(InputStream in) {
+            stream = in;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            open = false;   // the stream is not ours to close
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int len=dst.remaining();
+            if (len <= 0) {
+                return 0;
+            }
+
+            if (dst.hasArray()) {
+                int n=stream.read(dst.array(), dst.arrayOffset() + dst.position(), len);
+                if (n > 0) {
+                    dst.position(dst.position() + n);
+                }
+                return n;
+            }
+
+            if (workBuf == null) {
+                workBuf = new byte[DirectBufferPool.DEFAULT_BUFFER_SIZE];
+            }
+
+            int n=stream.read(workBuf, 0, Math.min(len, workBuf.length));
+            if (n > 0) {
+                dst.put(workBuf, 0, n);
+            }
+            return n;
+        }
+    }
+
+    private static final class WritableByteChannelAdapter implements WritableByteChannel {
+        private final OutputStream  stream;
+        private byte[]  workBuf;
+        private boolean open=true;
+
+        WritableByteChannelAdapter(OutputStream out) {
+            stream = out;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            open = false;   // the stream is not ours to close
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int len=src.remaining();
+            if (len <= 0) {
+                return 0;
+            }
+
+            if (src.hasArray()) {
+                stream.write(src.array(), src.arrayOffset() + src.position(), len);
+                src.position(src.position() + len);
+                return len;
+            }
+
+            if (workBuf == null) {
+                workBuf = new byte[DirectBufferPool.DEFAULT_BUFFER_SIZE];
+            }
+
+            int n=Math.min(len, workBuf.length);
+            src.get(workBuf, 0, n);
+            stream.write(workBuf, 0, n);
+            return n;
+        }
     }
 
     public static final int append(Reader input, Appendable output) throws IOException {
@@ -174,7 +625,12 @@ public class ExtendedIOUtils extends IOUtils {
     }
 
     public static final long appendLarge(Reader input, Appendable output) throws IOException {
-        return appendLarge(input, output, new char[DEFAULT_BUFFER_SIZE_VALUE]);
+        char[]  buffer=COPY_CHAR_BUFFERS.acquire();
+        try {
+            return appendLarge(input, output, buffer);
+        } finally {
+            COPY_CHAR_BUFFERS.release(buffer);
+        }
     }
     
     public static final long appendLarge(Reader input, Appendable output, char[] buffer) throws IOException {
@@ -247,9 +703,9 @@ public class ExtendedIOUtils extends IOUtils {
                 return null;
             }
 
-            return new Triplet<Long,Byte,Byte>(Long.valueOf(readOffset), null, Byte.valueOf(dstBuf[0]));
+            return new Triplet<Long,Byte,Byte>(Long.valueOf(readOffset), null, Byte.valueOf(dstBuf[dstOffset]));
         } else if (dstRead <= 0) {
-            return new Triplet<Long,Byte,Byte>(Long.valueOf(readOffset), Byte.valueOf(srcBuf[0]), null);
+            return new Triplet<Long,Byte,Byte>(Long.valueOf(readOffset), Byte.valueOf(srcBuf[srcOffset]), null);
         }
 
         final int   cmpLen=Math.min(srcRead, dstRead);
@@ -260,9 +716,9 @@ public class ExtendedIOUtils extends IOUtils {
         }
 
         if (cmpLen < srcRead) {
-            return new Triplet<Long,Byte,Byte>(Long.valueOf(readOffset + cmpLen), null, Byte.valueOf(dstBuf[cmpLen]));
+            return new Triplet<Long,Byte,Byte>(Long.valueOf(readOffset + cmpLen), Byte.valueOf(srcBuf[srcOffset + cmpLen]), null);
         } else if (cmpLen < dstRead) {
-            return new Triplet<Long,Byte,Byte>(Long.valueOf(readOffset + cmpLen), Byte.valueOf(srcBuf[cmpLen]), null);
+            return new Triplet<Long,Byte,Byte>(Long.valueOf(readOffset + cmpLen), null, Byte.valueOf(dstBuf[dstOffset + cmpLen]));
         } else {
             return null;
         }
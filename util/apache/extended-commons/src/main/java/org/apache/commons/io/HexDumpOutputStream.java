@@ -19,9 +19,10 @@ package org.apache.commons.io;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.CharBuffer;
 import java.nio.channels.Channel;
+import java.util.Arrays;
 
-import org.apache.commons.codec.binary.ExtendedHex;
 import org.apache.commons.io.output.LineLevelAppender;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.Validate;
@@ -30,7 +31,9 @@ import org.apache.commons.lang3.Validate;
  * An {@link OutputStream} that formats its written bytes in the same way that
  * {@link HexDump#dump(byte[], long, OutputStream, int)} does by default. It
  * can be modified to format data slightly different - e.g., use lowercase
- * instead of uppercase, use {@code long} offset instead of {@code int}
+ * instead of uppercase, use {@code long} offset instead of {@code int}.
+ * <B>Note:</B> each line is rendered via lookup tables directly into a
+ * re-used {@code char[]} buffer, so no allocations take place while dumping
  * @author Lyor G.
  * @since Sep 25, 2013 9:40:27 AM
  */
@@ -41,11 +44,23 @@ public class HexDumpOutputStream extends OutputStream implements Channel {
     private int _filledLen;
     private boolean _closed;
     private long    _displayOffset;
-    private final StringBuilder _lineData;
+    private final char[]    _lineChars, _digits, _pairs;
+    private final CharBuffer    _lineData;
 
     public static final int DEFAULT_BYTES_PER_LINE=16;
     public static final boolean DEFAULT_HEX_CASE=false, DEFAULT_LONG_OFFSET=false;
 
+    private static final char[] DIGITS_UPPER="0123456789ABCDEF".toCharArray(), DIGITS_LOWER="0123456789abcdef".toCharArray();
+    // the 2 HEX characters of each byte value - at index 2 * (value & 0xFF)
+    private static final char[] PAIRS_UPPER=createHexPairs(DIGITS_UPPER), PAIRS_LOWER=createHexPairs(DIGITS_LOWER);
+    // the character displayed for each byte value in the ASCII gutter
+    private static final char[] GUTTER=new char[0x100];
+    static {
+        for (int index=0; index < GUTTER.length; index++) {
+            GUTTER[index] = ((index < ' ') || (index > 0x7E)) ? '.' : (char) index;
+        }
+    }
+
     public HexDumpOutputStream(LineLevelAppender appender) {
         this(appender, DEFAULT_BYTES_PER_LINE);
     }
@@ -62,9 +77,13 @@ public class HexDumpOutputStream extends OutputStream implements Channel {
         _appender = Validate.notNull(appender, "No appender", ArrayUtils.EMPTY_OBJECT_ARRAY);
         Validate.isTrue(bytesPerLine > 0, "Bad bytes-per-line value: %d", bytesPerLine);
         _workBuf = new byte[bytesPerLine];
-        _lineData = new StringBuilder((2 /* HEX */ + 1 /* space */ + 1 /* character */) * bytesPerLine + Long.SIZE /* some extra for the offset */);
         _lowercase = useLowercase;
         _longOffset = longOffset;
+        _digits = useLowercase ? DIGITS_LOWER : DIGITS_UPPER;
+        _pairs = useLowercase ? PAIRS_LOWER : PAIRS_UPPER;
+        _lineChars = new char[(longOffset ? Long.SIZE : Integer.SIZE) / 4 + 1 /* space */
+                            + (2 /* HEX */ + 1 /* space */ + 1 /* character */) * bytesPerLine];
+        _lineData = CharBuffer.wrap(_lineChars);
     }
 
     public final LineLevelAppender getLineLevelAppender() {
@@ -147,34 +166,49 @@ public class HexDumpOutputStream extends OutputStream implements Channel {
     }
 
     protected void writeAccumulatedData(LineLevelAppender appender, long offset, byte[] data, int off, int len, int bytesPerLine) throws IOException {
-        _lineData.setLength(0);
-        
-        if (isLongOffset()) {
-            ExtendedHex.appendHex(_lineData, isLowercase(), offset);
-        } else {
-            ExtendedHex.appendHex(_lineData, isLowercase(), (int) offset);
+        int lineLen=renderLine(_lineChars, offset, data, off, len, bytesPerLine);
+        _lineData.clear();
+        _lineData.limit(lineLen);
+        appender.writeLineData(_lineData);
+    }
+
+    /**
+     * Renders a single dump line
+     * @param buf The buffer to render into - assumed to be large enough
+     * @param offset The displayed offset of the line
+     * @param data The data buffer
+     * @param off Offset of line data in buffer
+     * @param len Number of line data bytes
+     * @param bytesPerLine Number of bytes per line - if more than the data
+     * length then the line is padded so the ASCII gutter is aligned
+     * @return Number of rendered characters
+     */
+    protected int renderLine(char[] buf, long offset, byte[] data, int off, int len, int bytesPerLine) {
+        int pos=0;
+        for (int shift=(isLongOffset() ? Long.SIZE : Integer.SIZE) - 4; shift >= 0; shift -= 4) {
+            buf[pos++] = _digits[(int) (offset >>> shift) & 0x0F];
         }
-        _lineData.append(' ');
+        buf[pos++] = ' ';
 
-        for (int    index=0, pos=off; index < len; index++, pos++) {
-            ExtendedHex.appendHex(_lineData, isLowercase(), data[pos]).append(' ');
+        for (int index=off, endIndex=off + len; index < endIndex; index++) {
+            int pairIndex=(data[index] & 0xFF) << 1;
+            buf[pos++] = _pairs[pairIndex];
+            buf[pos++] = _pairs[pairIndex + 1];
+            buf[pos++] = ' ';
         }
-        
+
         // if less than bytes per line, then pad with spaces
-        for (int    index=len; index < bytesPerLine; index++) {
-            _lineData.append("   ");
+        if (len < bytesPerLine) {
+            int padLen=3 * (bytesPerLine - len);
+            Arrays.fill(buf, pos, pos + padLen, ' ');
+            pos += padLen;
         }
-        
-        for (int    index=0, pos=off; index < len; index++, pos++) {
-            char    ch=(char) (data[pos] & 0xFF);
-            if ((ch < ' ') || (ch > 0x7E)) {
-                _lineData.append('.');
-            } else {
-                _lineData.append(ch);
-            }
+
+        for (int index=off, endIndex=off + len; index < endIndex; index++) {
+            buf[pos++] = GUTTER[data[index] & 0xFF];
         }
-        
-        appender.writeLineData(_lineData);
+
+        return pos;
     }
 
     @Override
@@ -198,4 +232,12 @@ public class HexDumpOutputStream extends OutputStream implements Channel {
         }
     }
 
+    private static char[] createHexPairs(char[] digits) {
+        char[]  pairs=new char[0x100 * 2];
+        for (int value=0, pos=0; value < 0x100; value++) {
+            pairs[pos++] = digits[(value >> 4) & 0x0F];
+            pairs[pos++] = digits[value & 0x0F];
+        }
+        return pairs;
+    }
 }
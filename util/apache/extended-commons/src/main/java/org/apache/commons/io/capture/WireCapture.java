@@ -0,0 +1,297 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.capture;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.collections15.ExtendedCollectionUtils;
+import org.apache.commons.io.Charsets;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.AbstractLoggingBean;
+
+/**
+ * <P>Decides which sessions are sampled and copies their data into a
+ * {@link WireCaptureBuffer}. A background (daemon) thread drains the
+ * buffer into a {@link WireCaptureBuffer.RecordHandler} - usually a
+ * {@link WireCaptureFileWriter}, so the cost paid by the captured request
+ * is only copying the data into a pre-allocated slot.</P>
+ *
+ * <P>A session is sampled if either its repository or its user appear in
+ * the configured filters, or according to the configured sampling rate
+ * (0=none, 1=all).</P>
+ * @author Lyor Goldstein
+ * @since Dec 3, 2013 11:27:39 AM
+ */
+public class WireCapture extends AbstractLoggingBean implements Channel {
+    public static final double  DEFAULT_SAMPLE_RATE=0.0d;
+    public static final int DEFAULT_DRAIN_BATCH_SIZE=Byte.SIZE * Byte.SIZE;
+    public static final long    DEFAULT_IDLE_PARK_NANOS=TimeUnit.MILLISECONDS.toNanos(1L);
+    public static final long    DEFAULT_CLOSE_TIMEOUT=TimeUnit.SECONDS.toMillis(5L);
+
+    public static final String  REPO_ATTR="repo", USER_ATTR="user", DESCRIPTION_ATTR="description";
+
+    private final WireCaptureBuffer buffer;
+    private final WireCaptureBuffer.RecordHandler   handler;
+    private final double    sampleRate;
+    private final Set<String>   repos, users;
+    private final AtomicLong    sessionIds=new AtomicLong(0L);
+    private final AtomicLong    skippedSessions=new AtomicLong(0L);
+    private final AtomicLong    writeErrors=new AtomicLong(0L);
+    private final AtomicBoolean started=new AtomicBoolean(false);
+    private final Thread    writer;
+    private volatile boolean    closed;
+
+    public WireCapture(WireCaptureBuffer captureBuffer, WireCaptureBuffer.RecordHandler recHandler, double rate) {
+        this(captureBuffer, recHandler, rate, Collections.<String>emptyList(), Collections.<String>emptyList());
+    }
+
+    /**
+     * @param captureBuffer The {@link WireCaptureBuffer} used to hold the captured data
+     * @param recHandler The {@link WireCaptureBuffer.RecordHandler} used to write
+     * the captured data - if it is also {@link Flushable} then it is flushed
+     * whenever the buffer is empty. If it is also {@link Closeable} then it is
+     * closed when capture is closed - by the background writer thread once it
+     * has written the remaining data (or by the closing thread if the writer
+     * was never started)
+     * @param rate Sampling rate - 0=none, 1=all
+     * @param repoNames Names of repositories whose sessions are always captured
+     * @param userNames Names of users whose sessions are always captured
+     */
+    public WireCapture(WireCaptureBuffer captureBuffer, WireCaptureBuffer.RecordHandler recHandler, double rate,
+                        Collection<String> repoNames, Collection<String> userNames) {
+        buffer = Validate.notNull(captureBuffer, "No capture buffer", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        handler = Validate.notNull(recHandler, "No records handler", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.isTrue((rate >= 0.0d) && (rate <= 1.0d), "Bad sample rate: %s", rate);
+        sampleRate = rate;
+        repos = toFilterSet(repoNames);
+        users = toFilterSet(userNames);
+
+        writer = new Thread(new Runnable() {
+                @Override
+                @SuppressWarnings("synthetic-access")
+                public void run() {
+                    drainLoop();
+                }
+            }, getClass().getSimpleName());
+        writer.setDaemon(true);
+    }
+
+    public final double getSampleRate() {
+        return sampleRate;
+    }
+
+    public final Set<String> getRepositoriesFilter() {
+        return repos;
+    }
+
+    public final Set<String> getUsersFilter() {
+        return users;
+    }
+
+    public final WireCaptureBuffer getBuffer() {
+        return buffer;
+    }
+
+    public long getSampledSessions() {
+        return sessionIds.get();
+    }
+
+    public long getSkippedSessions() {
+        return skippedSessions.get();
+    }
+
+    public long getDroppedRecords() {
+        return buffer.getDroppedRecords();
+    }
+
+    public long getDroppedBytes() {
+        return buffer.getDroppedBytes();
+    }
+
+    public long getWriteErrors() {
+        return writeErrors.get();
+    }
+
+    /**
+     * Starts the background writer thread
+     */
+    public void start() {
+        Validate.validState(isOpen(), "Capture closed", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.validState(started.compareAndSet(false, true), "Writer already started", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        writer.start();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * @param repo The repository name - may be {@code null}/empty
+     * @param user The user name - may be {@code null}/empty
+     * @return {@code true} if a session for the repository/user should be sampled
+     */
+    public boolean isSampled(String repo, String user) {
+        if ((!StringUtils.isEmpty(repo)) && repos.contains(repo)) {
+            return true;
+        }
+
+        if ((!StringUtils.isEmpty(user)) && users.contains(user)) {
+            return true;
+        }
+
+        if (sampleRate <= 0.0d) {
+            return false;
+        } else if (sampleRate >= 1.0d) {
+            return true;
+        } else {
+            return ThreadLocalRandom.current().nextDouble() < sampleRate;
+        }
+    }
+
+    /**
+     * @param repo The repository name - may be {@code null}/empty
+     * @param user The user name - may be {@code null}/empty
+     * @param description An (optional) description of the session - e.g., the request URI
+     * @return A {@link WireCaptureSession} if the session has been sampled,
+     * {@code null} otherwise (or if capture closed)
+     */
+    public WireCaptureSession openSession(String repo, String user, String description) {
+        if ((!isOpen()) || (!isSampled(repo, user))) {
+            skippedSessions.incrementAndGet();
+            return null;
+        }
+
+        WireCaptureSession  session=new WireCaptureSession(buffer, sessionIds.incrementAndGet());
+        StringBuilder       sb=new StringBuilder(Byte.MAX_VALUE);
+        appendAttribute(sb, REPO_ATTR, repo);
+        appendAttribute(sb, USER_ATTR, user);
+        appendAttribute(sb, DESCRIPTION_ATTR, description);
+
+        byte[]  data=sb.toString().getBytes(Charsets.UTF_8);
+        session.capture(WireCaptureRecordType.SESSION_START, data, 0, data.length);
+        return session;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isOpen()) {
+            return;
+        }
+
+        closed = true;
+
+        // if the writer was never started then it is safe to drain here since no other thread does
+        if (started.compareAndSet(false, true)) {
+            drainRemaining();
+            return;
+        }
+
+        // the writer drains whatever is left once it notices the closure - if it does not exit in time it keeps draining
+        LockSupport.unpark(writer);
+        try {
+            writer.join(DEFAULT_CLOSE_TIMEOUT);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // NOTE: must be invoked only by the thread that does the final drain
+    private void drainRemaining() throws IOException {
+        try {
+            while (buffer.drain(handler, DEFAULT_DRAIN_BATCH_SIZE) > 0) {
+                continue;
+            }
+        } finally {
+            if (handler instanceof Closeable) {
+                ((Closeable) handler).close();
+            } else if (handler instanceof Flushable) {
+                ((Flushable) handler).flush();
+            }
+        }
+    }
+
+    private void drainLoop() {
+        boolean dirty=false;
+        while (isOpen()) {
+            try {
+                if (buffer.drain(handler, DEFAULT_DRAIN_BATCH_SIZE) > 0) {
+                    dirty = true;
+                    continue;
+                }
+
+                if (dirty && (handler instanceof Flushable)) {
+                    ((Flushable) handler).flush();
+                }
+                dirty = false;
+            } catch(IOException e) {
+                if (writeErrors.incrementAndGet() == 1L) {  // avoid flooding the log
+                    logger.warn("drainLoop() failed (" + e.getClass().getSimpleName() + ") to write captured data: " + e.getMessage());
+                }
+            } catch(RuntimeException e) {
+                writeErrors.incrementAndGet();
+                logger.error("drainLoop() unexpected " + e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+            }
+
+            LockSupport.parkNanos(DEFAULT_IDLE_PARK_NANOS);
+        }
+
+        // write whatever was captured before the closure
+        try {
+            drainRemaining();
+        } catch(IOException | RuntimeException e) {
+            writeErrors.incrementAndGet();
+            logger.warn("drainLoop() failed (" + e.getClass().getSimpleName() + ") to write remaining captured data: " + e.getMessage());
+        }
+    }
+
+    private static void appendAttribute(StringBuilder sb, String name, String value) {
+        if (StringUtils.isEmpty(value)) {
+            return;
+        }
+
+        sb.append(name).append('=').append(value).append('\n');
+    }
+
+    private static Set<String> toFilterSet(Collection<String> names) {
+        if (ExtendedCollectionUtils.isEmpty(names)) {
+            return Collections.emptySet();
+        }
+
+        Set<String> result=new TreeSet<String>();
+        for (String n : names) {
+            n = StringUtils.trimToEmpty(n);
+            if (!StringUtils.isEmpty(n)) {
+                result.add(n);
+            }
+        }
+
+        return Collections.unmodifiableSet(result);
+    }
+}
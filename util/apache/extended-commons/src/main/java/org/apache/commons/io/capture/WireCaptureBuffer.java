@@ -0,0 +1,203 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.capture;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>A lock-free multi-producer, single-consumer ring buffer of pre-allocated
+ * fixed size slots. Producers claim a slot using a CAS on the tail sequence,
+ * copy their data into it and publish it - i.e., the cost on the producer side
+ * is a {@link System#arraycopy(Object, int, Object, int, int)}. Data that
+ * does not fit a single slot is split across several consecutive records.</P>
+ *
+ * <P>If the buffer is full the data is <U>dropped</U> (and counted) rather
+ * than blocking the producer.</P>
+ * @author Lyor Goldstein
+ * @since Dec 3, 2013 9:24:02 AM
+ */
+public class WireCaptureBuffer {
+    public static final int DEFAULT_SLOTS_COUNT=1024;
+    public static final int DEFAULT_SLOT_SIZE=4096;
+
+    /**
+     * Invoked by the consumer for each published record
+     */
+    public static interface RecordHandler {
+        /**
+         * @param type The {@link WireCaptureRecordType}
+         * @param sessionId The session identifier
+         * @param timestamp The record's timestamp (msec.)
+         * @param data The data buffer - <B>Note:</B> valid only for the
+         * duration of the call
+         * @param off Offset of data in buffer
+         * @param len Number of valid data bytes
+         * @throws IOException If failed to handle the record
+         */
+        void handleRecord(WireCaptureRecordType type, long sessionId, long timestamp, byte[] data, int off, int len) throws IOException;
+    }
+
+    private static final class Slot {
+        volatile long   published;  // seq + 1 of the record in it (0=never used)
+        WireCaptureRecordType   type;
+        long    sessionId;
+        long    timestamp;
+        int     length;
+        final byte[]    data;
+
+        Slot(int size) {
+            data = new byte[size];
+        }
+    }
+
+    private final Slot[]    slots;
+    private final int   mask, slotSize;
+    private final AtomicLong    tail=new AtomicLong(0L);
+    private final AtomicLong    head=new AtomicLong(0L);
+    private final AtomicLong    droppedRecords=new AtomicLong(0L);
+    private final AtomicLong    droppedBytes=new AtomicLong(0L);
+
+    public WireCaptureBuffer() {
+        this(DEFAULT_SLOTS_COUNT, DEFAULT_SLOT_SIZE);
+    }
+
+    /**
+     * @param slotsCount Number of slots - must be a power of 2
+     * @param dataSize Max. data size of each slot
+     */
+    public WireCaptureBuffer(int slotsCount, int dataSize) {
+        Validate.isTrue((slotsCount > 0) && (Integer.bitCount(slotsCount) == 1), "Slots count not a power of 2: %d", slotsCount);
+        Validate.isTrue(dataSize > 0, "Bad slot size: %d", dataSize);
+
+        slots = new Slot[slotsCount];
+        for (int index=0; index < slots.length; index++) {
+            slots[index] = new Slot(dataSize);
+        }
+
+        mask = slotsCount - 1;
+        slotSize = dataSize;
+    }
+
+    public final int getSlotsCount() {
+        return slots.length;
+    }
+
+    public final int getSlotSize() {
+        return slotSize;
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes.get();
+    }
+
+    /**
+     * @return Number of published (or being published) records that have
+     * not been consumed yet
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * @param type The {@link WireCaptureRecordType}
+     * @param sessionId The session identifier
+     * @param timestamp The record timestamp
+     * @param b The data buffer - ignored if {@code null}
+     * @param off Offset of data in buffer
+     * @param len Number of data bytes
+     * @return {@code true} if all the data was published, {@code false}
+     * if some/all of it was dropped due to the buffer being full
+     */
+    public boolean publish(WireCaptureRecordType type, long sessionId, long timestamp, byte[] b, int off, int len) {
+        if ((b == null) || (len <= 0)) {
+            return publishRecord(type, sessionId, timestamp, ArrayUtils.EMPTY_BYTE_ARRAY, 0, 0);
+        }
+
+        for (int curPos=off, remain=len; remain > 0; ) {
+            int chunkLen=Math.min(remain, slotSize);
+            if (!publishRecord(type, sessionId, timestamp, b, curPos, chunkLen)) {
+                droppedBytes.addAndGet(remain - chunkLen);   // the rest of the data is also dropped
+                return false;
+            }
+
+            curPos += chunkLen;
+            remain -= chunkLen;
+        }
+
+        return true;
+    }
+
+    private boolean publishRecord(WireCaptureRecordType type, long sessionId, long timestamp, byte[] b, int off, int len) {
+        long    seq;
+        for ( ; ; ) {
+            seq = tail.get();
+            if ((seq - head.get()) >= slots.length) {
+                droppedRecords.incrementAndGet();
+                droppedBytes.addAndGet(len);
+                return false;
+            }
+
+            if (tail.compareAndSet(seq, seq + 1L)) {
+                break;
+            }
+        }
+
+        Slot    slot=slots[(int) (seq & mask)];
+        slot.type = type;
+        slot.sessionId = sessionId;
+        slot.timestamp = timestamp;
+        slot.length = len;
+        if (len > 0) {
+            System.arraycopy(b, off, slot.data, 0, len);
+        }
+        slot.published = seq + 1L;  // volatile write publishes all the above
+        return true;
+    }
+
+    /**
+     * Consumes the available records - <B>Note:</B> must be called by a
+     * single consumer thread
+     * @param handler The {@link RecordHandler} to invoke
+     * @param maxRecords Max. records to consume
+     * @return Number of consumed records
+     * @throws IOException If the handler threw an exception - <B>Note:</B>
+     * the record that caused the exception is considered consumed
+     */
+    public int drain(RecordHandler handler, int maxRecords) throws IOException {
+        int count=0;
+        for (long seq=head.get(); count < maxRecords; seq++, count++) {
+            Slot    slot=slots[(int) (seq & mask)];
+            if (slot.published != (seq + 1L)) {
+                break;  // not published yet
+            }
+
+            try {
+                handler.handleRecord(slot.type, slot.sessionId, slot.timestamp, slot.data, 0, slot.length);
+            } finally {
+                head.lazySet(seq + 1L); // frees the slot
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,116 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.HexDumpOutputStream;
+import org.apache.commons.io.output.LineLevelAppender;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.FastDateFormat;
+
+/**
+ * Offline tool that renders the contents of capture files written by
+ * {@link WireCaptureFileWriter} as hex dumps - one block per record, prefixed
+ * by the session identifier and the data direction
+ * @author Lyor Goldstein
+ * @since Dec 3, 2013 12:02:51 PM
+ */
+public class WireCaptureDump {
+    private static final FastDateFormat   TIMESTAMP_FORMAT=FastDateFormat.getInstance("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private final PrintStream   out;
+
+    public WireCaptureDump(PrintStream output) {
+        out = Validate.notNull(output, "No output", ArrayUtils.EMPTY_OBJECT_ARRAY);
+    }
+
+    public void dump(File file) throws IOException {
+        WireCaptureFileReader   reader=new WireCaptureFileReader(file);
+        try {
+            dump(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void dump(WireCaptureFileReader reader) throws IOException {
+        for (WireCaptureFileReader.Record rec=reader.readRecord(); rec != null; rec = reader.readRecord()) {
+            dump(rec);
+        }
+    }
+
+    public void dump(WireCaptureFileReader.Record rec) throws IOException {
+        final WireCaptureRecordType type=rec.getType();
+        final long                  sessionId=rec.getSessionId();
+        byte[]                      data=rec.getData();
+        out.append(TIMESTAMP_FORMAT.format(rec.getTimestamp()))
+           .append(" [").append(String.valueOf(sessionId)).append("] ")
+           .append(type.name())
+           .append(" (").append(String.valueOf(data.length)).append(" bytes)")
+           .println();
+
+        if (ArrayUtils.isEmpty(data)) {
+            return;
+        }
+
+        if (!type.isDataRecord()) {
+            out.println(new String(data, Charsets.UTF_8));
+            return;
+        }
+
+        HexDumpOutputStream hexOut=new HexDumpOutputStream(new LineLevelAppender() {
+                @Override
+                @SuppressWarnings("synthetic-access")
+                public void writeLineData(CharSequence lineData) throws IOException {
+                    out.append('[').append(String.valueOf(sessionId)).append("] ")
+                       .append(type.getCode()).append(": ")
+                       .append(lineData)
+                       .println();
+                }
+
+                @Override
+                public boolean isWriteEnabled() {
+                    return true;
+                }
+            });
+        try {
+            hexOut.write(data);
+        } finally {
+            hexOut.close();
+        }
+    }
+
+    /**
+     * @param args The capture files to dump
+     * @throws IOException If failed to read the files
+     */
+    public static void main(String[] args) throws IOException {
+        if (ArrayUtils.isEmpty(args)) {
+            System.err.println("Usage: " + WireCaptureDump.class.getSimpleName() + " file1" + WireCaptureFileWriter.FILE_SUFFIX + " ...");
+            return;
+        }
+
+        WireCaptureDump dumper=new WireCaptureDump(System.out);
+        for (String path : args) {
+            System.out.append("===== ").append(path).append(" =====").println();
+            dumper.dump(new File(path));
+        }
+    }
+}
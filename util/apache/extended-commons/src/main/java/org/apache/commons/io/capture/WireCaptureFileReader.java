@@ -0,0 +1,133 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.capture;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+
+import org.apache.commons.io.ExtendedIOUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.ExtendedArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Reads the records written by a {@link WireCaptureFileWriter}
+ * @author Lyor Goldstein
+ * @since Dec 3, 2013 10:41:15 AM
+ */
+public class WireCaptureFileReader implements Closeable {
+    /**
+     * Represents a single read record
+     */
+    public static class Record {
+        private final WireCaptureRecordType type;
+        private final long  sessionId, timestamp;
+        private final byte[]    data;
+
+        public Record(WireCaptureRecordType recType, long session, long ts, byte[] recData) {
+            type = recType;
+            sessionId = session;
+            timestamp = ts;
+            data = recData;
+        }
+
+        public WireCaptureRecordType getType() {
+            return type;
+        }
+
+        public long getSessionId() {
+            return sessionId;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        @Override
+        public String toString() {
+            return getType() + "[" + getSessionId() + "]@" + getTimestamp() + ": " + ExtendedArrayUtils.length(getData());
+        }
+    }
+
+    private final DataInputStream   in;
+
+    public WireCaptureFileReader(File file) throws IOException {
+        this(new FileInputStream(Validate.notNull(file, "No file", ArrayUtils.EMPTY_OBJECT_ARRAY)));
+    }
+
+    public WireCaptureFileReader(InputStream input) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(
+                    Validate.notNull(input, "No input", ArrayUtils.EMPTY_OBJECT_ARRAY), ExtendedIOUtils.DEFAULT_BUFFER_SIZE_VALUE * 4));
+
+        byte[]  magic=new byte[WireCaptureFileWriter.FILE_MAGIC.length];
+        try {
+            in.readFully(magic);
+        } catch(EOFException e) {
+            in.close();
+            throw new StreamCorruptedException("Missing capture file header");
+        }
+
+        if (!Arrays.equals(magic, WireCaptureFileWriter.FILE_MAGIC)) {
+            in.close();
+            throw new StreamCorruptedException("Bad capture file header: " + Arrays.toString(magic));
+        }
+    }
+
+    /**
+     * @return The next {@link Record} - {@code null} if no more records
+     * @throws IOException If failed to read the record
+     */
+    public Record readRecord() throws IOException {
+        int code=in.read();
+        if (code == ExtendedIOUtils.EOF_VALUE) {
+            return null;
+        }
+
+        WireCaptureRecordType   type=WireCaptureRecordType.fromCode(code);
+        if (type == null) {
+            throw new StreamCorruptedException("Unknown record type: " + code);
+        }
+
+        long    sessionId=in.readLong(), timestamp=in.readLong();
+        int     len=in.readInt();
+        if (len < 0) {
+            throw new StreamCorruptedException("Bad record length: " + len);
+        }
+
+        byte[]  data=(len > 0) ? new byte[len] : ArrayUtils.EMPTY_BYTE_ARRAY;
+        if (len > 0) {
+            in.readFully(data);
+        }
+
+        return new Record(type, sessionId, timestamp, data);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
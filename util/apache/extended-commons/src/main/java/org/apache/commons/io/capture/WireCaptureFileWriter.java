@@ -0,0 +1,182 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.capture;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.util.Arrays;
+
+import org.apache.commons.io.ExtendedIOUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.ExtendedArrayUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.FastDateFormat;
+
+/**
+ * Writes captured records into rotating binary capture files. Each file
+ * starts with a {@link #FILE_MAGIC} header followed by records having the
+ * following format:</BR>
+ * <pre>
+ *      type        1 byte  - the {@link WireCaptureRecordType#getCode()}
+ *      session     8 bytes - session identifier
+ *      timestamp   8 bytes - msec.
+ *      length      4 bytes - data length
+ *      data        length bytes
+ * </pre>
+ * <B>Note:</B> not thread-safe - intended to be used by the single consumer
+ * of a {@link WireCaptureBuffer}
+ * @author Lyor Goldstein
+ * @since Dec 3, 2013 10:02:47 AM
+ */
+public class WireCaptureFileWriter implements WireCaptureBuffer.RecordHandler, Channel, Flushable {
+    public static final byte[]  FILE_MAGIC={ 'W', 'C', 'A', 'P', 0, 0, 0, 1 };
+    public static final String  FILE_SUFFIX=".wcap";
+    public static final int     RECORD_HEADER_SIZE=1 + 8 + 8 + 4;
+    public static final long    DEFAULT_MAX_FILE_SIZE=64L * 1024L * 1024L;
+    public static final int     DEFAULT_MAX_FILES=16;
+
+    private static final FastDateFormat   FILE_TIMESTAMP_FORMAT=FastDateFormat.getInstance("yyyyMMdd-HHmmss-SSS");
+
+    private final File  dir;
+    private final String    prefix;
+    private final long  maxFileSize;
+    private final int   maxFiles;
+    private DataOutputStream    out;
+    private long    curSize;
+    private int     fileIndex;
+    private boolean closed;
+
+    public WireCaptureFileWriter(File captureDir, String filePrefix) {
+        this(captureDir, filePrefix, DEFAULT_MAX_FILE_SIZE, DEFAULT_MAX_FILES);
+    }
+
+    /**
+     * @param captureDir The folder where capture files are written
+     * @param filePrefix Prefix of the generated capture files
+     * @param maxSize Max. size of a capture file before rotating
+     * @param maxNumFiles Max. number of files to keep - older ones are deleted
+     */
+    public WireCaptureFileWriter(File captureDir, String filePrefix, long maxSize, int maxNumFiles) {
+        dir = Validate.notNull(captureDir, "No capture folder", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        prefix = Validate.notEmpty(filePrefix, "No file prefix", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.isTrue(maxSize > FILE_MAGIC.length, "Bad max. file size: %d", maxSize);
+        Validate.isTrue(maxNumFiles > 0, "Bad max. files number: %d", maxNumFiles);
+        maxFileSize = maxSize;
+        maxFiles = maxNumFiles;
+    }
+
+    public final File getCaptureDirectory() {
+        return dir;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void handleRecord(WireCaptureRecordType type, long sessionId, long timestamp, byte[] data, int off, int len)
+            throws IOException {
+        if (!isOpen()) {
+            throw new IOException("handleRecord(" + type + ")[" + sessionId + "] writer closed");
+        }
+
+        long    recSize=RECORD_HEADER_SIZE + len;
+        if ((out == null) || ((curSize + recSize) > maxFileSize)) {
+            rotate(timestamp);
+        }
+
+        out.writeByte(type.getCode());
+        out.writeLong(sessionId);
+        out.writeLong(timestamp);
+        out.writeInt(len);
+        if (len > 0) {
+            out.write(data, off, len);
+        }
+        curSize += recSize;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    protected void rotate(long timestamp) throws IOException {
+        closeCurrentFile();
+
+        if ((!dir.exists()) && (!dir.mkdirs())) {
+            throw new IOException("Failed to create capture folder: " + dir.getAbsolutePath());
+        }
+
+        fileIndex++;
+        File    file=new File(dir, prefix + "-" + FILE_TIMESTAMP_FORMAT.format(timestamp) + "-" + fileIndex + FILE_SUFFIX);
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), ExtendedIOUtils.DEFAULT_BUFFER_SIZE_VALUE * 4));
+        out.write(FILE_MAGIC);
+        curSize = FILE_MAGIC.length;
+
+        removeOldFiles();
+    }
+
+    protected void removeOldFiles() {
+        File[]  files=dir.listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(File d, String name) {
+                    return name.startsWith(prefix + "-") && name.endsWith(FILE_SUFFIX);
+                }
+            });
+        if (ExtendedArrayUtils.length(files) <= maxFiles) {
+            return;
+        }
+
+        // the names contain the timestamp so the natural order is also chronological
+        Arrays.sort(files);
+        for (int index=0; index < (files.length - maxFiles); index++) {
+            File    f=files[index];
+            if (!f.delete()) {
+                f.deleteOnExit();
+            }
+        }
+    }
+
+    protected void closeCurrentFile() throws IOException {
+        if (out != null) {
+            try {
+                out.close();
+            } finally {
+                out = null;
+                curSize = 0L;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isOpen()) {
+            try {
+                closeCurrentFile();
+            } finally {
+                closed = true;
+            }
+        }
+    }
+}
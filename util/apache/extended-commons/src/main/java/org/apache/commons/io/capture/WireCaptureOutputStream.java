@@ -0,0 +1,66 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.capture;
+
+import java.io.OutputStream;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * An {@link OutputStream} that publishes its written data as records of
+ * a {@link WireCaptureSession} - intended to be used as the &quot;branch&quot;
+ * of a {@code TeeInputStream} or {@code TeeOutputStream}. <B>Note:</B> closing
+ * the stream has no effect on the session
+ * @author Lyor Goldstein
+ * @since Dec 3, 2013 11:06:44 AM
+ */
+public class WireCaptureOutputStream extends OutputStream {
+    private final WireCaptureSession    session;
+    private final WireCaptureRecordType type;
+    private final byte[]    oneByte=new byte[1];
+
+    public WireCaptureOutputStream(WireCaptureSession captureSession, WireCaptureRecordType recType) {
+        session = Validate.notNull(captureSession, "No session", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        type = Validate.notNull(recType, "No record type", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.isTrue(recType.isDataRecord(), "Not a data record type: %s", recType);
+    }
+
+    public final WireCaptureSession getSession() {
+        return session;
+    }
+
+    public final WireCaptureRecordType getRecordType() {
+        return type;
+    }
+
+    @Override
+    public void write(int b) {
+        oneByte[0] = (byte) (b & 0xFF);
+        write(oneByte, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b) {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (len > 0) {
+            session.capture(type, b, off, len);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.capture;
+
+/**
+ * The type of a captured record - the code is the value written in the
+ * capture files and is also used as the &quot;direction&quot; indicator
+ * when the data is rendered
+ * @author Lyor Goldstein
+ * @since Dec 3, 2013 9:11:26 AM
+ */
+public enum WireCaptureRecordType {
+    /**
+     * Session start - the record data contains the session's attributes
+     * as UTF-8 encoded {@code name=value} lines
+     */
+    SESSION_START('B'),
+    /**
+     * Data sent by the client
+     */
+    CLIENT('C'),
+    /**
+     * Data sent by the server
+     */
+    SERVER('S'),
+    /**
+     * Side-band messages sent by the server
+     */
+    MESSAGES('M'),
+    /**
+     * Session end - no data
+     */
+    SESSION_END('E');
+
+    private final char  code;
+
+    private WireCaptureRecordType(char c) {
+        code = c;
+    }
+
+    public final char getCode() {
+        return code;
+    }
+
+    public final boolean isDataRecord() {
+        return (this != SESSION_START) && (this != SESSION_END);
+    }
+
+    private static final WireCaptureRecordType[]    VALUES=values();
+
+    public static final WireCaptureRecordType fromCode(int c) {
+        for (WireCaptureRecordType t : VALUES) {
+            if (t.getCode() == c) {
+                return t;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,101 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.capture;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Represents a single sampled session (e.g., a git request) whose data is
+ * being captured. Closing the session publishes a {@link WireCaptureRecordType#SESSION_END}
+ * record - any data captured afterwards is ignored
+ * @author Lyor Goldstein
+ * @since Dec 3, 2013 11:12:08 AM
+ */
+public class WireCaptureSession implements Channel {
+    private final WireCaptureBuffer buffer;
+    private final long  id;
+    private final AtomicBoolean open=new AtomicBoolean(true);
+
+    public WireCaptureSession(WireCaptureBuffer captureBuffer, long sessionId) {
+        buffer = Validate.notNull(captureBuffer, "No capture buffer", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        id = sessionId;
+    }
+
+    public final long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open.get();
+    }
+
+    /**
+     * @param type The {@link WireCaptureRecordType}
+     * @param b The data buffer
+     * @param off Offset of data in buffer
+     * @param len Number of data bytes
+     * @return {@code true} if data was captured, {@code false} if session
+     * closed or the data was dropped
+     * @see WireCaptureBuffer#publish(WireCaptureRecordType, long, long, byte[], int, int)
+     */
+    public boolean capture(WireCaptureRecordType type, byte[] b, int off, int len) {
+        if (!isOpen()) {
+            return false;
+        }
+
+        return buffer.publish(type, getId(), System.currentTimeMillis(), b, off, len);
+    }
+
+    /**
+     * @param in The original {@link InputStream}
+     * @param type The {@link WireCaptureRecordType} to use for the read data
+     * @return An {@link InputStream} that captures all the data read from the
+     * original one - <B>Note:</B> closing it also closes the original stream
+     */
+    public InputStream wrapInput(InputStream in, WireCaptureRecordType type) {
+        return new TeeInputStream(in, new WireCaptureOutputStream(this, type), false);
+    }
+
+    /**
+     * @param out The original {@link OutputStream}
+     * @param type The {@link WireCaptureRecordType} to use for the written data
+     * @return An {@link OutputStream} that captures all the data written to the
+     * original one - <B>Note:</B> closing it also closes the original stream
+     */
+    public OutputStream wrapOutput(OutputStream out, WireCaptureRecordType type) {
+        return new TeeOutputStream(out, new WireCaptureOutputStream(this, type));
+    }
+
+    @Override
+    public void close() {
+        if (open.getAndSet(false)) {
+            buffer.publish(WireCaptureRecordType.SESSION_END, getId(), System.currentTimeMillis(), null, 0, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WireCaptureSession[" + getId() + "]";
+    }
+}
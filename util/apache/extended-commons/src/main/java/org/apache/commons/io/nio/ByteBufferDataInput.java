@@ -0,0 +1,347 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.io.nio;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>An {@link ExtendedDataInput} that decodes the values directly from a
+ * {@link ByteBuffer} - heap, direct or memory-mapped. The byte order is set
+ * once at construction on a private duplicate of the buffer, so the original
+ * buffer's position, limit and order are not affected and all multi-byte
+ * values are decoded by the buffer itself (without per-byte calls).</P>
+ *
+ * <P>Besides the {@link java.io.DataInput} relative reads, it provides absolute
+ * ones (which do not affect the current position) and bulk primitive arrays
+ * reads. Attempting to read beyond the limit throws an {@link EOFException}.
+ * <B>Note:</B> not thread-safe</P>
+ * @author Lyor Goldstein
+ * @since Dec 6, 2013 2:20:11 PM
+ */
+public class ByteBufferDataInput implements ExtendedDataInput {
+    private final ByteBuffer    buffer;
+
+    public ByteBufferDataInput(byte[] data, ByteOrder order) {
+        this(ByteBuffer.wrap(data), order);
+    }
+
+    /**
+     * @param buf The {@link ByteBuffer} to read from - starting at its current
+     * position and up to its limit
+     * @param order The {@link ByteOrder} used to decode multi-byte values
+     */
+    public ByteBufferDataInput(ByteBuffer buf, ByteOrder order) {
+        Validate.notNull(buf, "No buffer", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.notNull(order, "No byte order", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        buffer = buf.duplicate().order(order);
+    }
+
+    /**
+     * Maps the <U>entire</U> file into memory (read-only)
+     * @param file The {@link File} to map
+     * @param order The {@link ByteOrder} used to decode multi-byte values
+     * @return A {@link ByteBufferDataInput} over the mapped data - <B>Note:</B>
+     * the file is closed, but the mapping remains valid until garbage collected
+     * @throws IOException If failed to map the file
+     */
+    public static final ByteBufferDataInput map(File file, ByteOrder order) throws IOException {
+        FileChannel channel=new FileInputStream(file).getChannel();
+        try {
+            long    size=channel.size();
+            Validate.isTrue(size <= Integer.MAX_VALUE, "File too large to map: %d", size);
+            return new ByteBufferDataInput(channel.map(FileChannel.MapMode.READ_ONLY, 0L, size), order);
+        } finally {
+            channel.close();
+        }
+    }
+
+    public final ByteOrder getByteOrder() {
+        return buffer.order();
+    }
+
+    /**
+     * @return The underlying (private duplicate) {@link ByteBuffer}
+     */
+    public final ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    public void position(int newPosition) {
+        buffer.position(newPosition);
+    }
+
+    public int remaining() {
+        return buffer.remaining();
+    }
+
+    public int limit() {
+        return buffer.limit();
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        ensureAvailable(len);
+        buffer.get(b, off, len);
+    }
+
+    public void readFully(short[] values, int off, int len) throws IOException {
+        ensureAvailable(len, Short.SIZE);
+        buffer.asShortBuffer().get(values, off, len);
+        skipConsumed(len, Short.SIZE);
+    }
+
+    public void readFully(char[] values, int off, int len) throws IOException {
+        ensureAvailable(len, Character.SIZE);
+        buffer.asCharBuffer().get(values, off, len);
+        skipConsumed(len, Character.SIZE);
+    }
+
+    public void readFully(int[] values, int off, int len) throws IOException {
+        ensureAvailable(len, Integer.SIZE);
+        buffer.asIntBuffer().get(values, off, len);
+        skipConsumed(len, Integer.SIZE);
+    }
+
+    public void readFully(long[] values, int off, int len) throws IOException {
+        ensureAvailable(len, Long.SIZE);
+        buffer.asLongBuffer().get(values, off, len);
+        skipConsumed(len, Long.SIZE);
+    }
+
+    public void readFully(float[] values, int off, int len) throws IOException {
+        ensureAvailable(len, Float.SIZE);
+        buffer.asFloatBuffer().get(values, off, len);
+        skipConsumed(len, Float.SIZE);
+    }
+
+    public void readFully(double[] values, int off, int len) throws IOException {
+        ensureAvailable(len, Double.SIZE);
+        buffer.asDoubleBuffer().get(values, off, len);
+        skipConsumed(len, Double.SIZE);
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        int skipped=Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        ensureAvailable(1);
+        return buffer.get();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0x00FF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        ensureAvailable(Short.SIZE / Byte.SIZE);
+        return buffer.getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0x00FFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        ensureAvailable(Character.SIZE / Byte.SIZE);
+        return buffer.getChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        ensureAvailable(Integer.SIZE / Byte.SIZE);
+        return buffer.getInt();
+    }
+
+    @Override
+    public long readUnsignedInt() throws IOException {
+        return readInt() & 0x00FFFFFFFFL;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        ensureAvailable(Long.SIZE / Byte.SIZE);
+        return buffer.getLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        ensureAvailable(Float.SIZE / Byte.SIZE);
+        return buffer.getFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        ensureAvailable(Double.SIZE / Byte.SIZE);
+        return buffer.getDouble();
+    }
+
+    /**
+     * Reads a line of 8-bit characters (same semantics as {@link DataInputStream#readLine()})
+     */
+    @Override
+    public String readLine() throws IOException {
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+
+        StringBuilder   sb=new StringBuilder(Byte.MAX_VALUE);
+        while (buffer.hasRemaining()) {
+            char    ch=(char) (buffer.get() & 0x00FF);
+            if (ch == '\n') {
+                break;
+            }
+
+            if (ch == '\r') {
+                if (buffer.hasRemaining() && (buffer.get(buffer.position()) == '\n')) {
+                    buffer.get();
+                }
+                break;
+            }
+
+            sb.append(ch);
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+
+    // absolute reads - do not affect the current position
+
+    public byte getByte(int index) {
+        return buffer.get(index);
+    }
+
+    public int getUnsignedByte(int index) {
+        return buffer.get(index) & 0x00FF;
+    }
+
+    public short getShort(int index) {
+        return buffer.getShort(index);
+    }
+
+    public int getUnsignedShort(int index) {
+        return buffer.getShort(index) & 0x00FFFF;
+    }
+
+    public char getChar(int index) {
+        return buffer.getChar(index);
+    }
+
+    public int getInt(int index) {
+        return buffer.getInt(index);
+    }
+
+    public long getUnsignedInt(int index) {
+        return buffer.getInt(index) & 0x00FFFFFFFFL;
+    }
+
+    public long getLong(int index) {
+        return buffer.getLong(index);
+    }
+
+    public float getFloat(int index) {
+        return buffer.getFloat(index);
+    }
+
+    public double getDouble(int index) {
+        return buffer.getDouble(index);
+    }
+
+    /**
+     * @param index Absolute index to start reading from
+     * @param dst The target array
+     * @param off Offset in target array
+     * @param len Number of bytes to read
+     */
+    public void get(int index, byte[] dst, int off, int len) {
+        ByteBuffer  view=buffer.duplicate();
+        view.position(index);
+        view.get(dst, off, len);
+    }
+
+    /**
+     * @param len Number of bytes
+     * @return A {@link ByteBufferDataInput} over the next {@code len} bytes -
+     * sharing the same data and byte order. The current position is advanced
+     * beyond them
+     * @throws EOFException If not enough data remaining
+     */
+    public ByteBufferDataInput slice(int len) throws EOFException {
+        ensureAvailable(len);
+
+        ByteBuffer  view=buffer.duplicate();
+        view.limit(view.position() + len);
+        buffer.position(buffer.position() + len);
+        return new ByteBufferDataInput(view.slice(), buffer.order());
+    }
+
+    protected void ensureAvailable(int numBytes) throws EOFException {
+        if (numBytes > buffer.remaining()) {
+            throw new EOFException("Required " + numBytes + " bytes but only " + buffer.remaining() + " remaining");
+        }
+    }
+
+    private void ensureAvailable(int count, int bitsSize) throws EOFException {
+        ensureAvailable((int) Math.min(Integer.MAX_VALUE, (long) count * (bitsSize / Byte.SIZE)));
+    }
+
+    private void skipConsumed(int count, int bitsSize) {
+        buffer.position(buffer.position() + count * (bitsSize / Byte.SIZE));
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + buffer + " - " + getByteOrder() + "]";
+    }
+}
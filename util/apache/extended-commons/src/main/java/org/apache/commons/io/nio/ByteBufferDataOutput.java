@@ -0,0 +1,361 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.io.nio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>An {@link ExtendedDataOutput} that encodes the values directly into a
+ * {@link ByteBuffer} - heap, direct or memory-mapped. The byte order is set
+ * once at construction on a private duplicate of the buffer.</P>
+ *
+ * <P>If constructed via {@link #ByteBufferDataOutput(int, ByteOrder)} the
+ * (heap) buffer grows as needed - otherwise attempting to write beyond the
+ * limit throws a {@link BufferOverflowException}. <B>Note:</B> not thread-safe</P>
+ * @author Lyor Goldstein
+ * @since Dec 6, 2013 2:51:33 PM
+ */
+public class ByteBufferDataOutput implements ExtendedDataOutput {
+    private ByteBuffer  buffer;
+    private final boolean   growable;
+
+    /**
+     * Creates a growable heap buffer
+     * @param initialCapacity Initial buffer capacity
+     * @param order The {@link ByteOrder} used to encode multi-byte values
+     */
+    public ByteBufferDataOutput(int initialCapacity, ByteOrder order) {
+        Validate.isTrue(initialCapacity > 0, "Bad initial capacity: %d", initialCapacity);
+        Validate.notNull(order, "No byte order", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        buffer = ByteBuffer.allocate(initialCapacity).order(order);
+        growable = true;
+    }
+
+    /**
+     * @param buf The {@link ByteBuffer} to write into - starting at its current
+     * position and up to its limit
+     * @param order The {@link ByteOrder} used to encode multi-byte values
+     */
+    public ByteBufferDataOutput(ByteBuffer buf, ByteOrder order) {
+        Validate.notNull(buf, "No buffer", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.notNull(order, "No byte order", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        buffer = buf.duplicate().order(order);
+        growable = false;
+    }
+
+    /**
+     * Maps (read-write) the specified size of the file into memory - extending
+     * the file if required
+     * @param file The {@link File} to map
+     * @param size Number of bytes to map
+     * @param order The {@link ByteOrder} used to encode multi-byte values
+     * @return A {@link ByteBufferDataOutput} over the mapped data - <B>Note:</B>
+     * the file is closed, but the mapping remains valid until garbage collected
+     * @throws IOException If failed to map the file
+     */
+    public static final ByteBufferDataOutput map(File file, int size, ByteOrder order) throws IOException {
+        Validate.isTrue(size >= 0, "Bad mapped size: %d", size);
+
+        RandomAccessFile    raf=new RandomAccessFile(file, "rw");
+        try {
+            return new ByteBufferDataOutput(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, size), order);
+        } finally {
+            raf.close();
+        }
+    }
+
+    public final ByteOrder getByteOrder() {
+        return buffer.order();
+    }
+
+    public final boolean isGrowable() {
+        return growable;
+    }
+
+    /**
+     * @return The underlying {@link ByteBuffer} - <B>Note:</B> may change if
+     * the buffer is growable
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    public void position(int newPosition) {
+        buffer.position(newPosition);
+    }
+
+    /**
+     * @return A read-only {@link ByteBuffer} containing the written data - i.e.,
+     * up to the current position
+     */
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer  view=buffer.asReadOnlyBuffer();
+        view.flip();
+        return view.order(buffer.order());
+    }
+
+    /**
+     * @return A copy of the written data - i.e., up to the current position
+     */
+    public byte[] toByteArray() {
+        ByteBuffer  view=toByteBuffer();
+        byte[]      data=new byte[view.remaining()];
+        view.get(data);
+        return data;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        writeByte(b);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureSpace(len);
+        buffer.put(b, off, len);
+    }
+
+    public void write(short[] values, int off, int len) throws IOException {
+        ensureSpace(len, Short.SIZE);
+        buffer.asShortBuffer().put(values, off, len);
+        skipWritten(len, Short.SIZE);
+    }
+
+    public void write(char[] values, int off, int len) throws IOException {
+        ensureSpace(len, Character.SIZE);
+        buffer.asCharBuffer().put(values, off, len);
+        skipWritten(len, Character.SIZE);
+    }
+
+    public void write(int[] values, int off, int len) throws IOException {
+        ensureSpace(len, Integer.SIZE);
+        buffer.asIntBuffer().put(values, off, len);
+        skipWritten(len, Integer.SIZE);
+    }
+
+    public void write(long[] values, int off, int len) throws IOException {
+        ensureSpace(len, Long.SIZE);
+        buffer.asLongBuffer().put(values, off, len);
+        skipWritten(len, Long.SIZE);
+    }
+
+    public void write(float[] values, int off, int len) throws IOException {
+        ensureSpace(len, Float.SIZE);
+        buffer.asFloatBuffer().put(values, off, len);
+        skipWritten(len, Float.SIZE);
+    }
+
+    public void write(double[] values, int off, int len) throws IOException {
+        ensureSpace(len, Double.SIZE);
+        buffer.asDoubleBuffer().put(values, off, len);
+        skipWritten(len, Double.SIZE);
+    }
+
+    @Override
+    public void writeBoolean(boolean v) throws IOException {
+        writeByte(v ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(int v) throws IOException {
+        ensureSpace(1);
+        buffer.put((byte) v);
+    }
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        ensureSpace(Short.SIZE / Byte.SIZE);
+        buffer.putShort((short) v);
+    }
+
+    @Override
+    public void writeChar(int v) throws IOException {
+        ensureSpace(Character.SIZE / Byte.SIZE);
+        buffer.putChar((char) v);
+    }
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        ensureSpace(Integer.SIZE / Byte.SIZE);
+        buffer.putInt(v);
+    }
+
+    @Override
+    public void writeUnsignedInt(long value) throws IOException {
+        Validate.isTrue((value >= 0L) && (value <= 0x00FFFFFFFFL), "Bad unsigned 32-bit value: %d", value);
+        writeInt((int) value);
+    }
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        ensureSpace(Long.SIZE / Byte.SIZE);
+        buffer.putLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        ensureSpace(Float.SIZE / Byte.SIZE);
+        buffer.putFloat(v);
+    }
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        ensureSpace(Double.SIZE / Byte.SIZE);
+        buffer.putDouble(v);
+    }
+
+    @Override
+    public void writeBytes(String s) throws IOException {
+        int len=s.length();
+        ensureSpace(len);
+        for (int index=0; index < len; index++) {
+            buffer.put((byte) s.charAt(index));
+        }
+    }
+
+    @Override
+    public void writeChars(String s) throws IOException {
+        int len=s.length();
+        ensureSpace(len, Character.SIZE);
+        for (int index=0; index < len; index++) {
+            buffer.putChar(s.charAt(index));
+        }
+    }
+
+    /**
+     * Writes the string using the same modified UTF-8 encoding as
+     * {@link java.io.DataOutputStream#writeUTF(String)} - <B>Note:</B> the
+     * length prefix is written using the configured byte order
+     */
+    @Override
+    public void writeUTF(String s) throws IOException {
+        int strLen=s.length(), utfLen=0;
+        for (int index=0; index < strLen; index++) {
+            char    c=s.charAt(index);
+            if ((c >= 0x0001) && (c <= 0x007F)) {
+                utfLen++;
+            } else if (c > 0x07FF) {
+                utfLen += 3;
+            } else {
+                utfLen += 2;
+            }
+        }
+
+        if (utfLen > 0x00FFFF) {
+            throw new UTFDataFormatException("Encoded string too long: " + utfLen + " bytes");
+        }
+
+        ensureSpace(utfLen + Short.SIZE / Byte.SIZE);
+        buffer.putShort((short) utfLen);
+        for (int index=0; index < strLen; index++) {
+            char    c=s.charAt(index);
+            if ((c >= 0x0001) && (c <= 0x007F)) {
+                buffer.put((byte) c);
+            } else if (c > 0x07FF) {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    // absolute writes - do not affect the current position
+
+    public void putByte(int index, byte v) {
+        buffer.put(index, v);
+    }
+
+    public void putShort(int index, short v) {
+        buffer.putShort(index, v);
+    }
+
+    public void putChar(int index, char v) {
+        buffer.putChar(index, v);
+    }
+
+    public void putInt(int index, int v) {
+        buffer.putInt(index, v);
+    }
+
+    public void putLong(int index, long v) {
+        buffer.putLong(index, v);
+    }
+
+    public void putFloat(int index, float v) {
+        buffer.putFloat(index, v);
+    }
+
+    public void putDouble(int index, double v) {
+        buffer.putDouble(index, v);
+    }
+
+    protected void ensureSpace(int numBytes) {
+        if (numBytes <= buffer.remaining()) {
+            return;
+        }
+
+        if (!growable) {
+            throw new BufferOverflowException();
+        }
+
+        long    required=(long) buffer.position() + numBytes;
+        Validate.isTrue(required <= Integer.MAX_VALUE, "Required capacity too large: %d", required);
+
+        int         newCapacity=(int) Math.min(Integer.MAX_VALUE, Math.max(required, 2L * buffer.capacity()));
+        ByteBuffer  newBuffer=ByteBuffer.allocate(newCapacity).order(buffer.order());
+        buffer.flip();
+        newBuffer.put(buffer);
+        buffer = newBuffer;
+    }
+
+    private void ensureSpace(int count, int bitsSize) {
+        long    required=(long) count * (bitsSize / Byte.SIZE);
+        Validate.isTrue(required <= Integer.MAX_VALUE, "Required space too large: %d", required);
+        ensureSpace((int) required);
+    }
+
+    private void skipWritten(int count, int bitsSize) {
+        buffer.position(buffer.position() + count * (bitsSize / Byte.SIZE));
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + buffer + " - " + getByteOrder() + "]";
+    }
+}
@@ -0,0 +1,149 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.nio;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>A thread-safe pool of equally sized <U>direct</U> {@link ByteBuffer}s.
+ * Allocating a direct buffer is expensive and its memory is reclaimed only
+ * when the buffer is garbage collected, so code that copies data through
+ * channels should {@link #acquire()} its buffers from a pool and
+ * {@link #release(ByteBuffer)} them when done.</P>
+ *
+ * <P>The pool never blocks - if no pooled buffer is available a new one is
+ * allocated, and released buffers beyond the configured max. are simply
+ * discarded.</P>
+ * @author Lyor Goldstein
+ * @since Dec 5, 2013 8:41:17 AM
+ */
+public class DirectBufferPool {
+    public static final int DEFAULT_BUFFER_SIZE=64 * 1024;
+    public static final int DEFAULT_MAX_POOLED=Byte.MAX_VALUE + 1;
+
+    /**
+     * A default shared pool
+     */
+    public static final DirectBufferPool    DEFAULT=new DirectBufferPool();
+
+    private final int   bufferSize, maxPooled;
+    private final Queue<ByteBuffer> buffers=new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger pooledCount=new AtomicInteger(0);
+    private final AtomicLong    allocatedCount=new AtomicLong(0L), reusedCount=new AtomicLong(0L);
+
+    public DirectBufferPool() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+    }
+
+    /**
+     * @param size Size of each buffer
+     * @param maxBuffers Max. number of buffers kept in the pool
+     */
+    public DirectBufferPool(int size, int maxBuffers) {
+        Validate.isTrue(size > 0, "Bad buffer size: %d", size);
+        Validate.isTrue(maxBuffers >= 0, "Bad max. pooled buffers: %d", maxBuffers);
+        bufferSize = size;
+        maxPooled = maxBuffers;
+    }
+
+    public final int getBufferSize() {
+        return bufferSize;
+    }
+
+    public final int getMaxPooled() {
+        return maxPooled;
+    }
+
+    /**
+     * @return Number of buffers currently available in the pool
+     */
+    public int getPooledCount() {
+        return pooledCount.get();
+    }
+
+    /**
+     * @return Total number of buffers allocated by the pool
+     */
+    public long getAllocatedCount() {
+        return allocatedCount.get();
+    }
+
+    /**
+     * @return Total number of times a pooled buffer was re-used
+     */
+    public long getReusedCount() {
+        return reusedCount.get();
+    }
+
+    /**
+     * @return A cleared direct {@link ByteBuffer} of {@link #getBufferSize()}
+     * capacity - either a pooled one or a newly allocated one
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer  buf=buffers.poll();
+        if (buf == null) {
+            allocatedCount.incrementAndGet();
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        pooledCount.decrementAndGet();
+        reusedCount.incrementAndGet();
+        buf.clear();
+        return buf;
+    }
+
+    /**
+     * @param buf The {@link ByteBuffer} to return to the pool - ignored if
+     * {@code null}, not direct, read-only or not of the pool's buffer size
+     * @return {@code true} if buffer was pooled
+     */
+    public boolean release(ByteBuffer buf) {
+        if ((buf == null) || (!buf.isDirect()) || buf.isReadOnly() || (buf.capacity() != bufferSize)) {
+            return false;
+        }
+
+        if (pooledCount.incrementAndGet() > maxPooled) {
+            pooledCount.decrementAndGet();
+            return false;
+        }
+
+        buffers.offer(buf);
+        return true;
+    }
+
+    /**
+     * Discards all currently pooled buffers
+     */
+    public void clear() {
+        while (buffers.poll() != null) {
+            pooledCount.decrementAndGet();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[size=" + getBufferSize()
+             + ", pooled=" + getPooledCount() + "/" + getMaxPooled()
+             + ", allocated=" + getAllocatedCount()
+             + ", reused=" + getReusedCount()
+             + "]";
+    }
+}
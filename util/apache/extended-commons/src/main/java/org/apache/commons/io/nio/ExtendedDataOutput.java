@@ -0,0 +1,33 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.io.nio;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 6, 2013 2:14:39 PM
+ */
+public interface ExtendedDataOutput extends DataOutput {
+    /**
+     * @param value The value to write as a 32-bit unsigned integer
+     * @throws IOException If failed to write the value
+     * @throws IllegalArgumentException If value is negative or beyond 32-bit range
+     */
+    void writeUnsignedInt(long value) throws IOException;
+}
@@ -41,12 +41,14 @@ public class AsciiLineOutputStream extends LineOutputStream {
             return;
         }
         
-        char[]  chars=ensureCharDataCapacity(len);
-        for (int index=0, pos=off; index < len; index++, pos++) {
+        int         dataLen=(b[off + len - 1] == '\r') ? (len - 1) : len;
+        CharBuffer  lineData=ensureCharView(dataLen);
+        char[]      chars=lineData.array();
+        for (int index=0, pos=off; index < dataLen; index++, pos++) {
             chars[index] = (char) (b[pos] & 0x00FF);
         }
-        
-        CharSequence    lineData=(chars[len - 1] == '\r') ? CharBuffer.wrap(chars, 0, len - 1) : CharBuffer.wrap(chars, 0, len);
+
+        lineData.limit(dataLen);
         appender.writeLineData(lineData);
     }
 }
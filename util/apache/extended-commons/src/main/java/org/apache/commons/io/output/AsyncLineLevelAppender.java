@@ -0,0 +1,394 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.output;
+
+import java.nio.CharBuffer;
+import java.nio.channels.Channel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+import org.apache.commons.collections15.Closure;
+import org.apache.commons.collections15.Predicate;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.ExtendedLogUtils;
+import org.apache.commons.logging.Log;
+
+/**
+ * <P>A {@link LineLevelAppender} that copies each line into a multi-producer,
+ * single-consumer ring buffer of re-usable {@code char[]} slots - each slot's
+ * buffer is allocated when a line is first written into it, so an appender
+ * that is never (or rarely) written costs very little memory. A dedicated (daemon) consumer thread - started when the first line
+ * is written - builds the actual log messages and writes them to the target
+ * {@link Log}, so the writing threads never block on log I/O (unless the
+ * {@link OverflowPolicy#BLOCK} policy is used).</P>
+ *
+ * <P>Lines longer than the slot size are truncated. Additional appenders
+ * that share the same buffer but use a different lines prefix can be created
+ * via {@link #createAppender(String)}.</P>
+ * @author Lyor Goldstein
+ * @since Dec 4, 2013 9:08:14 AM
+ */
+public class AsyncLineLevelAppender implements LineLevelAppender, Channel {
+    /**
+     * What to do when the buffer is full
+     */
+    public static enum OverflowPolicy {
+        /**
+         * Drop the line
+         */
+        DROP,
+        /**
+         * Wait for the consumer to free a slot
+         */
+        BLOCK,
+        /**
+         * Once the buffer is more than 3/4 full, accept only one out of
+         * every {@link AsyncLineLevelAppender#getSampleRate()} lines - drop
+         * the line if the buffer is full
+         */
+        SAMPLE
+    }
+
+    public static final int DEFAULT_SLOTS_COUNT=1024;
+    public static final int DEFAULT_SLOT_SIZE=2 * Byte.MAX_VALUE + 2;
+    public static final int DEFAULT_SAMPLE_RATE=Byte.SIZE;
+    public static final String  TRUNCATION_INDICATOR="...";
+    public static final long    DEFAULT_IDLE_PARK_NANOS=TimeUnit.MILLISECONDS.toNanos(1L);
+    public static final long    DEFAULT_CLOSE_TIMEOUT=TimeUnit.SECONDS.toMillis(5L);
+
+    private static final class Slot {
+        volatile long   published;  // seq + 1 of the line in it (0=never used)
+        String  prefix;
+        int     length;
+        boolean truncated;
+        char[]  data;   // allocated on first use by the producer that claimed the slot
+
+        Slot() {
+            super();
+        }
+    }
+
+    private final Log   target;
+    private final Level level;
+    private final Predicate<? super Log>    enabled;
+    private final Closure<? super String>   sink;
+    private final String    prefix;
+    private final OverflowPolicy    policy;
+    private final int   sampleRate;
+    private final Slot[]    slots;
+    private final int   mask, slotSize, highWatermark;
+    private final AtomicLong    tail=new AtomicLong(0L);
+    private final AtomicLong    head=new AtomicLong(0L);
+    private final AtomicLong    droppedLines=new AtomicLong(0L);
+    private final AtomicLong    truncatedLines=new AtomicLong(0L);
+    private final AtomicLong    sampleCounter=new AtomicLong(0L);
+    private final AtomicBoolean started=new AtomicBoolean(false);
+    private final Thread    consumer;
+    private volatile long   writtenLines;
+    private volatile boolean    closed;
+
+    public AsyncLineLevelAppender(Log log, Level logLevel) {
+        this(log, logLevel, "");
+    }
+
+    public AsyncLineLevelAppender(Log log, Level logLevel, String linesPrefix) {
+        this(log, logLevel, linesPrefix, DEFAULT_SLOTS_COUNT, DEFAULT_SLOT_SIZE, OverflowPolicy.DROP, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * @param log The target {@link Log}-ger
+     * @param logLevel The {@link Level} used to write the lines
+     * @param linesPrefix A prefix prepended to each line written via this instance
+     * @param slotsCount Number of slots - must be a power of 2
+     * @param maxLineLength Max. line length - longer lines are truncated
+     * @param overflowPolicy The {@link OverflowPolicy}
+     * @param rate The {@link OverflowPolicy#SAMPLE} rate - one out of how
+     * many lines is accepted when the buffer is nearly full
+     */
+    public AsyncLineLevelAppender(Log log, Level logLevel, String linesPrefix,
+                                  int slotsCount, int maxLineLength, OverflowPolicy overflowPolicy, int rate) {
+        target = Validate.notNull(log, "No target log", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        level = Validate.notNull(logLevel, "No log level", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        policy = Validate.notNull(overflowPolicy, "No overflow policy", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.isTrue((slotsCount > 1) && (Integer.bitCount(slotsCount) == 1), "Slots count not a power of 2: %d", slotsCount);
+        Validate.isTrue(maxLineLength > 0, "Bad max. line length: %d", maxLineLength);
+        Validate.isTrue(rate > 0, "Bad sample rate: %d", rate);
+
+        enabled = ExtendedLogUtils.loggablePredicate(level);
+        sink = ExtendedLogUtils.loggingClosure(target, level);
+        prefix = (linesPrefix == null) ? "" : linesPrefix;
+        sampleRate = rate;
+
+        slots = new Slot[slotsCount];
+        for (int index=0; index < slots.length; index++) {
+            slots[index] = new Slot();
+        }
+        mask = slotsCount - 1;
+        slotSize = maxLineLength;
+        highWatermark = slotsCount - (slotsCount >> 2);
+
+        consumer = new Thread(new Runnable() {
+                @Override
+                @SuppressWarnings("synthetic-access")
+                public void run() {
+                    drainLoop();
+                }
+            }, getClass().getSimpleName());
+        consumer.setDaemon(true);
+    }
+
+    public final Log getTarget() {
+        return target;
+    }
+
+    public final Level getLevel() {
+        return level;
+    }
+
+    public final OverflowPolicy getOverflowPolicy() {
+        return policy;
+    }
+
+    public final int getSampleRate() {
+        return sampleRate;
+    }
+
+    public final int getSlotsCount() {
+        return slots.length;
+    }
+
+    // NOTE: used for testing purposes - the result is only approximate while lines are being written
+    int getAllocatedSlotsCount() {
+        int count=0;
+        for (Slot slot : slots) {
+            if (slot.data != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public final int getMaxLineLength() {
+        return slotSize;
+    }
+
+    /**
+     * @return Number of lines that were dropped due to the buffer being
+     * full (or sampled out)
+     */
+    public long getDroppedLines() {
+        return droppedLines.get();
+    }
+
+    public long getTruncatedLines() {
+        return truncatedLines.get();
+    }
+
+    public long getWrittenLines() {
+        return writtenLines;
+    }
+
+    /**
+     * @return Number of lines waiting to be written
+     */
+    public int getPendingLines() {
+        return (int) (tail.get() - head.get());
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public boolean isWriteEnabled() {
+        return isOpen() && enabled.evaluate(target);
+    }
+
+    @Override
+    public void writeLineData(CharSequence lineData) {
+        publish(prefix, lineData);
+    }
+
+    /**
+     * @param linesPrefix The prefix to prepend to each line
+     * @return A {@link LineLevelAppender} that shares this instance's buffer
+     * and consumer but uses a different prefix
+     */
+    public LineLevelAppender createAppender(final String linesPrefix) {
+        return new LineLevelAppender() {
+            @Override
+            public boolean isWriteEnabled() {
+                return AsyncLineLevelAppender.this.isWriteEnabled();
+            }
+
+            @Override
+            public void writeLineData(CharSequence lineData) {
+                publish(linesPrefix, lineData);
+            }
+        };
+    }
+
+    /**
+     * @param linesPrefix The line prefix - may be {@code null}
+     * @param lineData The line data
+     * @return {@code true} if line accepted, {@code false} if dropped
+     */
+    protected boolean publish(String linesPrefix, CharSequence lineData) {
+        if (!isOpen()) {
+            return false;
+        }
+
+        if (!started.get()) {
+            startConsumer();
+        }
+
+        long    seq;
+        for ( ; ; ) {
+            seq = tail.get();
+
+            long    used=seq - head.get();
+            if (used >= slots.length) {
+                if ((policy == OverflowPolicy.BLOCK) && isOpen()) {
+                    LockSupport.parkNanos(DEFAULT_IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                droppedLines.incrementAndGet();
+                return false;
+            }
+
+            if ((policy == OverflowPolicy.SAMPLE) && (used >= highWatermark)
+             && ((sampleCounter.incrementAndGet() % sampleRate) != 0L)) {
+                droppedLines.incrementAndGet();
+                return false;
+            }
+
+            if (tail.compareAndSet(seq, seq + 1L)) {
+                break;
+            }
+        }
+
+        Slot    slot=slots[(int) (seq & mask)];
+        int     len=(lineData == null) ? 0 : lineData.length(), cpyLen=Math.min(len, slotSize);
+        if (slot.data == null) {
+            slot.data = new char[slotSize];
+        }
+        copyChars(lineData, cpyLen, slot.data);
+        slot.prefix = linesPrefix;
+        slot.length = cpyLen;
+        if (slot.truncated = (cpyLen < len)) {
+            truncatedLines.incrementAndGet();
+        }
+        slot.published = seq + 1L;  // volatile write publishes all the above
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (!isOpen()) {
+            return;
+        }
+
+        closed = true;
+
+        // if the consumer was never started then it is safe to drain here since no other thread does
+        if (started.compareAndSet(false, true)) {
+            drain(new StringBuilder(slotSize + Byte.MAX_VALUE));
+            return;
+        }
+
+        // the consumer writes whatever is left once it notices the closure - if it does not exit in time it keeps draining
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(DEFAULT_CLOSE_TIMEOUT);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void startConsumer() {
+        if (started.compareAndSet(false, true)) {
+            consumer.start();
+        }
+    }
+
+    private void drainLoop() {
+        StringBuilder   sb=new StringBuilder(slotSize + Byte.MAX_VALUE);
+        while (isOpen()) {
+            if (drain(sb) <= 0) {
+                LockSupport.parkNanos(DEFAULT_IDLE_PARK_NANOS);
+            }
+        }
+
+        // write whatever was published before the closure
+        drain(sb);
+    }
+
+    private int drain(StringBuilder sb) {
+        int count=0;
+        for (long seq=head.get(); ; seq++, count++) {
+            Slot    slot=slots[(int) (seq & mask)];
+            if (slot.published != (seq + 1L)) {
+                break;  // not published yet
+            }
+
+            sb.setLength(0);
+            if (slot.prefix != null) {
+                sb.append(slot.prefix);
+            }
+            sb.append(slot.data, 0, slot.length);
+            if (slot.truncated) {
+                sb.append(TRUNCATION_INDICATOR);
+            }
+            slot.prefix = null; // release the reference
+            head.lazySet(seq + 1L); // frees the slot
+
+            try {
+                sink.execute(sb.toString());
+            } catch(RuntimeException e) {
+                // ignored - nothing much we can do if the log fails
+            }
+        }
+
+        if (count > 0) {
+            writtenLines += count;  // only the consumer updates it
+        }
+        return count;
+    }
+
+    private static void copyChars(CharSequence cs, int len, char[] dst) {
+        if (len <= 0) {
+            return;
+        }
+
+        if (cs instanceof String) {
+            ((String) cs).getChars(0, len, dst, 0);
+        } else if (cs instanceof StringBuilder) {
+            ((StringBuilder) cs).getChars(0, len, dst, 0);
+        } else if ((cs instanceof CharBuffer) && ((CharBuffer) cs).hasArray()) {
+            CharBuffer  cb=(CharBuffer) cs;
+            System.arraycopy(cb.array(), cb.arrayOffset() + cb.position(), dst, 0, len);
+        } else {
+            for (int index=0; index < len; index++) {
+                dst[index] = cs.charAt(index);
+            }
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.output;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>A rope-style {@link Writer} that appends the characters into a list of
+ * <U>fixed-size</U> segments. Unlike the {@link java.io.CharArrayWriter} nothing
+ * written so far is ever copied when more space is needed - a new segment is
+ * simply added. Since all segments have the same size, locating a character
+ * is a simple division, so the written data can be exposed as a zero-copy
+ * {@link CharSequence} (see {@link #asCharSequence()}) and {@link Reader}
+ * (see {@link #toReader()}) and written out segment by segment (see
+ * {@link #writeTo(Writer)}).</P>
+ *
+ * <P>The segments size should be kept moderate (the default is {@link #DEFAULT_SEGMENT_SIZE})
+ * so that large outputs do not require huge contiguous arrays. Closing the
+ * writer has no effect and {@link #reset()} recycles the allocated segments.</P>
+ * @author Lyor Goldstein
+ * @since Dec 7, 2013 9:42:18 AM
+ */
+public class ChunkedCharArrayWriter extends Writer {
+    /**
+     * Default size (in characters) of each segment
+     */
+    public static final int DEFAULT_SEGMENT_SIZE=4 * 1024;
+
+    private final int   segmentSize;
+    private final List<char[]>  segments=new ArrayList<char[]>();
+    private int count;
+
+    public ChunkedCharArrayWriter() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    public ChunkedCharArrayWriter(int chunkSize) {
+        Validate.isTrue(chunkSize > 0, "Bad segment size: %d", chunkSize);
+        segmentSize = chunkSize;
+    }
+
+    public final int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @return Number of characters written so far
+     */
+    public int size() {
+        synchronized(lock) {
+            return count;
+        }
+    }
+
+    /**
+     * @return Number of currently allocated segments
+     */
+    public int getSegmentsCount() {
+        synchronized(lock) {
+            return segments.size();
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        synchronized(lock) {
+            currentSegment()[count % segmentSize] = (char) c;
+            count++;
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if ((off < 0) || (len < 0) || (off > (cbuf.length - len))) {
+            throw new IndexOutOfBoundsException("write(" + off + "/" + len + ") bad range for length=" + cbuf.length);
+        }
+
+        synchronized(lock) {
+            for (int curOffset=off, remaining=len; remaining > 0; ) {
+                char[]  segment=currentSegment();
+                int     segPos=count % segmentSize, part=Math.min(remaining, segmentSize - segPos);
+                System.arraycopy(cbuf, curOffset, segment, segPos, part);
+                curOffset += part;
+                remaining -= part;
+                count += part;
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        if ((off < 0) || (len < 0) || (off > (str.length() - len))) {
+            throw new IndexOutOfBoundsException("write(" + off + "/" + len + ") bad range for length=" + str.length());
+        }
+
+        synchronized(lock) {
+            for (int curOffset=off, remaining=len; remaining > 0; ) {
+                char[]  segment=currentSegment();
+                int     segPos=count % segmentSize, part=Math.min(remaining, segmentSize - segPos);
+                str.getChars(curOffset, curOffset + part, segment, segPos);
+                curOffset += part;
+                remaining -= part;
+                count += part;
+            }
+        }
+    }
+
+    @Override
+    public ChunkedCharArrayWriter append(CharSequence csq) throws IOException {
+        CharSequence    cs=(csq == null) ? "null" : csq;
+        return append(cs, 0, cs.length());
+    }
+
+    @Override
+    public ChunkedCharArrayWriter append(CharSequence csq, int start, int end) throws IOException {
+        CharSequence    cs=(csq == null) ? "null" : csq;
+        if (cs instanceof String) {
+            write((String) cs, start, end - start);
+            return this;
+        }
+
+        if ((start < 0) || (start > end) || (end > cs.length())) {
+            throw new IndexOutOfBoundsException("append(" + start + "-" + end + ") bad range for length=" + cs.length());
+        }
+
+        synchronized(lock) {
+            for (int index=start; index < end; index++) {
+                currentSegment()[count % segmentSize] = cs.charAt(index);
+                count++;
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public ChunkedCharArrayWriter append(char c) throws IOException {
+        write(c);
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // nop
+    }
+
+    @Override
+    public void close() throws IOException {
+        // nop
+    }
+
+    /**
+     * Writes the entire contents segment by segment - i.e., without any
+     * intermediate copy
+     * @param out The {@link Writer} to write to
+     * @throws IOException If failed to write the data
+     */
+    public void writeTo(Writer out) throws IOException {
+        synchronized(lock) {
+            for (int index=0, remaining=count; remaining > 0; index++) {
+                int len=Math.min(remaining, segmentSize);
+                out.write(segments.get(index), 0, len);
+                remaining -= len;
+            }
+        }
+    }
+
+    /**
+     * Appends the entire contents segment by segment - i.e., without any
+     * intermediate copy (other than the one made by the target itself)
+     * @param sb The {@link StringBuilder} to append to
+     * @return Same as input builder
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        synchronized(lock) {
+            sb.ensureCapacity(sb.length() + count);
+            for (int index=0, remaining=count; remaining > 0; index++) {
+                int len=Math.min(remaining, segmentSize);
+                sb.append(segments.get(index), 0, len);
+                remaining -= len;
+            }
+        }
+
+        return sb;
+    }
+
+    /**
+     * @return A <U>copy</U> of the written characters
+     */
+    public char[] toCharArray() {
+        synchronized(lock) {
+            if (count <= 0) {
+                return ArrayUtils.EMPTY_CHAR_ARRAY;
+            }
+
+            char[]  data=new char[count];
+            for (int index=0, pos=0; pos < count; index++) {
+                int len=Math.min(count - pos, segmentSize);
+                System.arraycopy(segments.get(index), 0, data, pos, len);
+                pos += len;
+            }
+
+            return data;
+        }
+    }
+
+    /**
+     * @return A {@link CharSequence} view of the characters written so far.
+     * <B>Note:</B> the view does not copy any data - it simply refers to the
+     * segments, and its length is fixed when it is created. Therefore, any
+     * subsequent {@link #reset()} invalidates it (though additional data may
+     * be written without affecting it)
+     */
+    public CharSequence asCharSequence() {
+        synchronized(lock) {
+            return new SegmentsCharSequence(0, count);
+        }
+    }
+
+    /**
+     * @return A {@link Reader} of the characters written so far that reads
+     * directly from the segments (same caveats as {@link #asCharSequence()})
+     */
+    public Reader toReader() {
+        synchronized(lock) {
+            return new SegmentsReader(count);
+        }
+    }
+
+    /**
+     * Clears the written data, but keeps the already allocated segments for re-use
+     */
+    public void reset() {
+        synchronized(lock) {
+            count = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized(lock) {
+            return appendTo(new StringBuilder(count)).toString();
+        }
+    }
+
+    // NOTE: assumes the lock is held
+    private char[] currentSegment() {
+        int segIndex=count / segmentSize;
+        if (segIndex < segments.size()) {
+            return segments.get(segIndex);
+        }
+
+        char[]  segment=new char[segmentSize];
+        segments.add(segment);
+        return segment;
+    }
+
+    char charAtIndex(int index) {
+        return segments.get(index / segmentSize)[index % segmentSize];
+    }
+
+    /**
+     * Copies characters from the segments
+     * @param srcPos Absolute start position
+     * @param dst Target array
+     * @param dstPos Offset in target array
+     * @param len Number of characters to copy
+     */
+    void copyChars(int srcPos, char[] dst, int dstPos, int len) {
+        for (int pos=srcPos, offset=dstPos, remaining=len; remaining > 0; ) {
+            int segPos=pos % segmentSize, part=Math.min(remaining, segmentSize - segPos);
+            System.arraycopy(segments.get(pos / segmentSize), segPos, dst, offset, part);
+            pos += part;
+            offset += part;
+            remaining -= part;
+        }
+    }
+
+    private class SegmentsCharSequence implements CharSequence {
+        private final int   startPos, seqLen;
+
+        SegmentsCharSequence(int start, int len) {
+            startPos = start;
+            seqLen = len;
+        }
+
+        @Override
+        public int length() {
+            return seqLen;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((index < 0) || (index >= seqLen)) {
+                throw new IndexOutOfBoundsException("charAt(" + index + ") beyond length=" + seqLen);
+            }
+            return charAtIndex(startPos + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if ((start < 0) || (start > end) || (end > seqLen)) {
+                throw new IndexOutOfBoundsException("subSequence(" + start + "-" + end + ") bad range for length=" + seqLen);
+            }
+            return new SegmentsCharSequence(startPos + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            char[]  data=new char[seqLen];
+            copyChars(startPos, data, 0, seqLen);
+            return new String(data);
+        }
+    }
+
+    private class SegmentsReader extends Reader {
+        private final int   limit;
+        private int pos, markPos;
+        private boolean closed;
+
+        SegmentsReader(int maxPos) {
+            limit = maxPos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ensureOpen();
+            if (pos >= limit) {
+                return (-1);
+            }
+            return charAtIndex(pos++);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            ensureOpen();
+            if ((off < 0) || (len < 0) || (off > (cbuf.length - len))) {
+                throw new IndexOutOfBoundsException("read(" + off + "/" + len + ") bad range for length=" + cbuf.length);
+            }
+
+            if (len == 0) {
+                return 0;
+            }
+
+            if (pos >= limit) {
+                return (-1);
+            }
+
+            int readLen=Math.min(len, limit - pos);
+            copyChars(pos, cbuf, off, readLen);
+            pos += readLen;
+            return readLen;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            ensureOpen();
+            long    skipLen=Math.max(0L, Math.min(n, limit - pos));
+            pos += (int) skipLen;
+            return skipLen;
+        }
+
+        @Override
+        public boolean ready() throws IOException {
+            ensureOpen();
+            return true;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readAheadLimit) throws IOException {
+            ensureOpen();
+            markPos = pos;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            ensureOpen();
+            pos = markPos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) {
+                throw new IOException("Reader is closed");
+            }
+        }
+    }
+}
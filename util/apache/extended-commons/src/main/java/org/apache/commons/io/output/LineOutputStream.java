@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StreamCorruptedException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.CharBuffer;
 import java.nio.channels.Channel;
 import java.nio.charset.Charset;
@@ -25,18 +26,36 @@ import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
 
 import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.ExtendedArrayUtils;
+import org.apache.commons.lang3.SystemUtils;
 import org.apache.commons.lang3.Validate;
 
 /**
  * <P>Accumulates all written data into a work buffer and calls the actual
  * writing method only when LF detected. <B>Note:</B> it strips CR if found
  * before the LF</P>
+ *
+ * <P>The LF is located by scanning 8 bytes at a time (see {@link #indexOfLineFeed(ByteBuffer, int, int)})
+ * and the decoding buffers are re-used for all the lines. <B>Note:</B> the
+ * word scan is used only if {@link #WORD_SCAN_ENABLED} - which is <code>false</code>
+ * on Java 7/8, where a simple byte scan is used instead</P>
  * @author Lyor Goldstein
  * @since Sep 15, 2013 10:14:24 AM
  */
 public class LineOutputStream extends OutputStream implements Channel {
+    private static final long   LF_WORD=0x0A0A0A0A0A0A0A0AL;
+    private static final long   LOW_BITS=0x0101010101010101L, HIGH_BITS=0x8080808080808080L;
+    private static final int    WORD_BYTES=Long.SIZE / Byte.SIZE;
+    /**
+     * Whether LF(s) are located by scanning 8 bytes at a time - this pays off
+     * only if {@link ByteBuffer#getLong(int)} is an intrinsic (Java 9+) - on
+     * older JVM(s) it is assembled byte by byte and is slower than a simple scan
+     */
+    public static final boolean WORD_SCAN_ENABLED=!SystemUtils.JAVA_SPECIFICATION_VERSION.startsWith("1.");
+
     private boolean _closed;
+    private ByteBuffer  _workView;  // view of the work buffer
+    private ByteBuffer  _dataView;  // view of the last scanned/decoded caller array
+    private CharBuffer  _charView;  // view of the current line buffer
     protected byte[]  _workBuf;
     protected char[]  _lineBuf;
     protected int _usedLen;
@@ -93,7 +112,7 @@ public class LineOutputStream extends OutputStream implements Channel {
 
         int remLen=len, curOffset=off;
         while (remLen > 0) {
-            int lfIndex=ExtendedArrayUtils.indexOf(b, (byte) '\n', curOffset, remLen);
+            int lfIndex=indexOfLineFeed(byteView(b), curOffset, remLen);
             if (lfIndex < curOffset) {
                 break;  // no more lines
             }
@@ -127,9 +146,12 @@ public class LineOutputStream extends OutputStream implements Channel {
             return;
         }
         
-        ByteBuffer  bb=(b[off+len-1] == '\r') ? ByteBuffer.wrap(b, off, len - 1) : ByteBuffer.wrap(b, off, len);
-        CharBuffer  cc=CharBuffer.wrap(ensureCharDataCapacity(len));
-        
+        ByteBuffer  bb=byteView(b);
+        bb.clear();
+        bb.position(off);
+        bb.limit((b[off+len-1] == '\r') ? (off + len - 1) : (off + len));
+
+        CharBuffer  cc=ensureCharView(len);
         _decoder.reset();
         CoderResult res=_decoder.decode(bb, cc, true);
         if (res.isError() || res.isMalformed() || res.isOverflow() || res.isUnmappable()) {
@@ -140,6 +162,45 @@ public class LineOutputStream extends OutputStream implements Channel {
         appender.writeLineData(cc);
     }
 
+    /**
+     * @param numBytes Number of bytes to be decoded
+     * @return A cleared {@link CharBuffer} view of the line buffer - which
+     * has enough capacity for the decoded characters
+     * @see #ensureCharDataCapacity(int)
+     */
+    protected CharBuffer ensureCharView(int numBytes) {
+        char[]  chars=ensureCharDataCapacity(numBytes);
+        if ((_charView == null) || (_charView.array() != chars)) {
+            _charView = CharBuffer.wrap(chars);
+        } else {
+            _charView.clear();
+        }
+
+        return _charView;
+    }
+
+    /**
+     * @param b The data array
+     * @return A (cached) {@link ByteBuffer} view of the array - separate
+     * views are cached for the work buffer and the caller's array so that
+     * alternating between them does not re-wrap the arrays
+     */
+    protected ByteBuffer byteView(byte[] b) {
+        if ((b == _workBuf) && (b != null)) {
+            if ((_workView == null) || (_workView.array() != b)) {
+                _workView = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            return _workView;
+        }
+
+        if ((_dataView == null) || (_dataView.array() != b)) {
+            _dataView = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        return _dataView;
+    }
+
     protected char[] ensureCharDataCapacity(int numBytes) {
         float   grwFactor=_decoder.maxCharsPerByte();   // worst case
         int     reqChars=(grwFactor > 0.0f) ? (int) (numBytes * grwFactor) : numBytes;
@@ -156,7 +217,7 @@ public class LineOutputStream extends OutputStream implements Channel {
             return;
         }
 
-        byte[]  accBuf=ensureWorkBufCapacity(len);
+        byte[]  accBuf=ensureWorkBufCapacity(_usedLen + len);
         System.arraycopy(b, off, accBuf, _usedLen, len);
         _usedLen += len;
     }
@@ -194,4 +255,45 @@ public class LineOutputStream extends OutputStream implements Channel {
             }
         }
     }
+
+    /**
+     * Locates the first LF by examining 8 bytes at a time - each word is
+     * XOR-ed with a word of LF(s) so that matching bytes become zero, and
+     * then the &quot;has zero byte&quot; bit trick is used to detect them.
+     * The trick may yield false positives only <U>above</U> a real zero byte,
+     * so the lowest flagged byte is always an exact match
+     * @param view A {@link ByteBuffer} view of the data array - <B>Note:</B>
+     * its position and limit are reset
+     * @param off Offset of data in the array
+     * @param len Number of bytes to scan
+     * @return The index of the first LF - negative if not found
+     * @see #WORD_SCAN_ENABLED
+     */
+    public static final int indexOfLineFeed(ByteBuffer view, int off, int len) {
+        return indexOfLineFeed(view, off, len, WORD_SCAN_ENABLED);
+    }
+
+    static int indexOfLineFeed(ByteBuffer view, int off, int len, boolean useWords) {
+        byte[]  b=view.array();
+        int     pos=off, endOffset=off + len;
+        if (useWords && (view.order() == ByteOrder.LITTLE_ENDIAN)) {
+            view.clear();   // make sure limit does not interfere with absolute access
+
+            for (int lastWord=endOffset - WORD_BYTES; pos <= lastWord; pos += WORD_BYTES) {
+                long    word=view.getLong(pos) ^ LF_WORD;
+                long    found=(word - LOW_BITS) & (~word) & HIGH_BITS;
+                if (found != 0L) {
+                    return pos + (Long.numberOfTrailingZeros(found) >>> 3);
+                }
+            }
+        }
+
+        for ( ; pos < endOffset; pos++) {
+            if (b[pos] == '\n') {
+                return pos;
+            }
+        }
+
+        return (-1);
+    }
 }
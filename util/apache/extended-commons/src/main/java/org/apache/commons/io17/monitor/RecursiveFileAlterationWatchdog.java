@@ -0,0 +1,623 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.io17.monitor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchEvent.Kind;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.ExtendedFileUtils;
+import org.apache.commons.io.IOCase;
+import org.apache.commons.io.monitor.FileAlterationListener;
+import org.apache.commons.io.monitor.FileAlterationListenerMultiplexer;
+import org.apache.commons.io.monitor.FileAlterationObserver;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>Monitors a <U>whole</U> directory tree using JDK 1.7 {@link WatchService}
+ * API(s). Sub-folders are registered as they are created. Unlike
+ * {@link FileAlterationWatchdog} the raw events are not delivered immediately -
+ * instead, events for the same path are coalesced until no new event arrives
+ * for it during the <I>debounce</I> period (e.g., create + several modifications
+ * are delivered as a single create, create + delete are not delivered at all).</P>
+ *
+ * <P>Memory usage is bounded by the max. number of pending paths - once it is
+ * exceeded, new events mark their parent folder as <I>dirty</I> instead. Dirty
+ * folders (as well as folders for which an {@link StandardWatchEventKinds#OVERFLOW}
+ * was reported) are re-scanned once their debounce period expires: new sub-folders
+ * are registered (and reported as created), files modified since the folder was
+ * marked are reported as changed and finally the folder itself is reported as
+ * changed - since deletions cannot be detected without keeping a snapshot of
+ * the whole tree, listeners should treat such a notification as &quot;anything
+ * under this folder may have changed&quot;.</P>
+ * @author Lyor Goldstein
+ * @since Dec 6, 2013 9:12:44 AM
+ */
+public class RecursiveFileAlterationWatchdog extends FileAlterationObserver implements Closeable {
+    private static final long serialVersionUID = -4188564137226310728L;
+
+    public static final long    DEFAULT_DEBOUNCE_MILLIS=250L;
+    public static final int     DEFAULT_MAX_PENDING_EVENTS=4096;
+    /**
+     * Files modified up to this long before a folder was marked as dirty are
+     * reported as changed when it is re-scanned - compensates for file systems
+     * with coarse timestamps
+     */
+    public static final long    RESCAN_TIMESTAMP_SLACK=TimeUnit.SECONDS.toMillis(2L);
+
+    private static final class PendingEvent {
+        Kind<?> kind;
+        boolean directory;
+        long    lastSeen;
+
+        PendingEvent(Kind<?> eventKind, boolean isDirectory, long now) {
+            kind = eventKind;
+            directory = isDirectory;
+            lastSeen = now;
+        }
+    }
+
+    private static final class DirtyFolder {
+        long    firstSeen;
+        long    lastSeen;
+
+        DirtyFolder(long now) {
+            firstSeen = now;
+            lastSeen = now;
+        }
+    }
+
+    private final Path  rootPath;
+    private final long  debounceMillis;
+    private final int   maxPending;
+    private final Map<WatchKey,Path>    keys=new ConcurrentHashMap<>();
+    private final Map<Path,WatchKey>    folders=new ConcurrentHashMap<>();
+    // accessed only while holding the instance lock
+    private final Map<Path,PendingEvent>    pending=new LinkedHashMap<>();
+    private final Map<Path,DirtyFolder>     dirty=new LinkedHashMap<>();
+    private final AtomicLong    rawEvents=new AtomicLong(0L), deliveredEvents=new AtomicLong(0L),
+                                overflows=new AtomicLong(0L), rescans=new AtomicLong(0L);
+    private volatile WatchService   watcher;
+
+    public RecursiveFileAlterationWatchdog(File directory) {
+        this(directory, null);
+    }
+
+    public RecursiveFileAlterationWatchdog(File directory, FileFilter fileFilter) {
+        this(directory, fileFilter, null, DEFAULT_DEBOUNCE_MILLIS, DEFAULT_MAX_PENDING_EVENTS);
+    }
+
+    /**
+     * @param directory The root folder to watch
+     * @param fileFilter An (optional) {@link FileFilter} applied to the paths of
+     * the events - if {@code null} then all paths are accepted. <B>Note:</B> it
+     * is also applied to the sub-folders - i.e., rejected ones are not watched
+     * @param caseSensitivity The {@link IOCase} - {@code null} means system default
+     * @param debounce The period (msec.) during which a path must not receive any new
+     * events before its (coalesced) event is delivered - zero means deliver
+     * on the next check
+     * @param maxPendingEvents Max. number of paths with pending events
+     */
+    public RecursiveFileAlterationWatchdog(File directory, FileFilter fileFilter, IOCase caseSensitivity, long debounce, int maxPendingEvents) {
+        super(directory, fileFilter, caseSensitivity);
+        Validate.isTrue(debounce >= 0L, "Bad debounce period: %d", debounce);
+        Validate.isTrue(maxPendingEvents > 0, "Bad max. pending events: %d", maxPendingEvents);
+        rootPath = getDirectory().toPath();
+        debounceMillis = debounce;
+        maxPending = maxPendingEvents;
+    }
+
+    public final long getDebounceMillis() {
+        return debounceMillis;
+    }
+
+    public final int getMaxPendingEvents() {
+        return maxPending;
+    }
+
+    /**
+     * @return Number of raw events received from the {@link WatchService}
+     */
+    public long getRawEvents() {
+        return rawEvents.get();
+    }
+
+    /**
+     * @return Number of notifications delivered to the listeners
+     */
+    public long getDeliveredEvents() {
+        return deliveredEvents.get();
+    }
+
+    public long getOverflows() {
+        return overflows.get();
+    }
+
+    public long getRescans() {
+        return rescans.get();
+    }
+
+    /**
+     * @return Number of currently watched folders
+     */
+    public int getWatchedFolders() {
+        return keys.size();
+    }
+
+    public synchronized int getPendingEvents() {
+        return pending.size();
+    }
+
+    @Override
+    public void initialize () throws Exception {
+        if (watcher != null) {
+            throw new IllegalStateException("Watcher already initialized");
+        }
+
+        watcher = FileSystems.getDefault().newWatchService();
+        registerTree(rootPath, null);
+    }
+
+    /**
+     * Processes all currently available events and delivers the ones whose
+     * debounce period has expired - does not block
+     */
+    @Override
+    public void checkAndNotify () {
+        try {
+            checkAndNotify(TimeUnit.MILLISECONDS, 0L);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits (up to the specified timeout) for events, processes all available
+     * ones and delivers those whose debounce period has expired
+     * @param unit The timeout {@link TimeUnit}
+     * @param count The timeout count - non-positive means do not wait
+     * @return Number of delivered notifications
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public int checkAndNotify(TimeUnit unit, long count) throws InterruptedException {
+        WatchService    service=watcher;
+        if (service == null) {
+            throw new IllegalStateException("Watcher not initialized");
+        }
+
+        WatchKey    key=(count <= 0L) ? service.poll() : service.poll(count, unit);
+        for ( ; key != null; key = service.poll()) {
+            processKey(key);
+        }
+
+        return deliverReadyEvents(System.currentTimeMillis(), false);
+    }
+
+    /**
+     * Delivers <U>all</U> pending events regardless of their debounce period
+     * @return Number of delivered notifications
+     */
+    public int flush() {
+        return deliverReadyEvents(System.currentTimeMillis(), true);
+    }
+
+    public Runnable createMonitor() {
+        return new Runnable() {
+            @Override
+            public void run () {
+                for (Thread t=Thread.currentThread(); !t.isInterrupted(); ) {
+                    try {
+                        checkAndNotify(TimeUnit.MILLISECONDS, getWaitTime(System.currentTimeMillis()));
+                    } catch(InterruptedException e) {
+                        t.interrupt();
+                        break;
+                    } catch(RuntimeException e) {
+                        if (watcher == null) {
+                            break;  // closed
+                        }
+                        throw e;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * @param now Current time (msec.)
+     * @return How long to wait for new events before some pending ones
+     * become ready for delivery
+     */
+    protected synchronized long getWaitTime(long now) {
+        long    nextDue=Long.MAX_VALUE;
+        for (PendingEvent event : pending.values()) {
+            nextDue = Math.min(nextDue, event.lastSeen + debounceMillis);
+        }
+        for (DirtyFolder folder : dirty.values()) {
+            nextDue = Math.min(nextDue, folder.lastSeen + debounceMillis);
+        }
+
+        if (nextDue == Long.MAX_VALUE) {
+            return TimeUnit.SECONDS.toMillis(1L);   // nothing pending - still wake up occasionally
+        } else {
+            return Math.max(1L, nextDue - now);
+        }
+    }
+
+    protected void processKey(WatchKey key) {
+        Path    dir=keys.get(key);
+        try {
+            if (dir == null) {
+                key.pollEvents();   // stale key
+                return;
+            }
+
+            long    now=System.currentTimeMillis();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                rawEvents.incrementAndGet();
+
+                Kind<?> kind=event.kind();
+                if (StandardWatchEventKinds.OVERFLOW.equals(kind)) {
+                    overflows.incrementAndGet();
+                    markDirty(dir, now);
+                    continue;
+                }
+
+                Path    child=dir.resolve((Path) event.context());
+                if (!isAccepted(child)) {
+                    continue;
+                }
+
+                boolean isDirectory;
+                if (StandardWatchEventKinds.ENTRY_DELETE.equals(kind)) {
+                    // its key may have already been invalidated so we cannot check its validity
+                    isDirectory = (folders.remove(child) != null);
+                } else {
+                    isDirectory = Files.isDirectory(child);
+                }
+
+                if (isDirectory && StandardWatchEventKinds.ENTRY_CREATE.equals(kind)) {
+                    // register right away so we do not miss events in it
+                    registerTree(child, Long.valueOf(now));
+                }
+
+                addPendingEvent(child, kind, isDirectory, now);
+            }
+        } finally {
+            /*
+             * If the key is no longer valid, the directory is inaccessible - most
+             * likely deleted. NOTE: the folder mapping is removed when the deletion
+             * event is received from the parent so we can tell it was a folder
+             */
+            if ((!key.reset()) && (dir != null)) {
+                keys.remove(key);
+            }
+        }
+    }
+
+    protected synchronized void addPendingEvent(Path path, Kind<?> kind, boolean isDirectory, long now) {
+        PendingEvent    event=pending.get(path);
+        if (event == null) {
+            if (pending.size() >= maxPending) {
+                Path    parent=path.getParent();
+                markDirty((parent == null) ? rootPath : parent, now);
+                return;
+            }
+
+            pending.put(path, new PendingEvent(kind, isDirectory, now));
+            return;
+        }
+
+        Kind<?> coalesced=coalesce(event.kind, kind);
+        if (coalesced == null) {
+            pending.remove(path);   // e.g., created and deleted
+        } else {
+            event.kind = coalesced;
+            event.directory = isDirectory;
+            event.lastSeen = now;
+        }
+    }
+
+    /**
+     * @param prev The previous (pending) event kind
+     * @param next The newly arrived event kind
+     * @return The coalesced kind - {@code null} if the events cancel each other
+     */
+    public static final Kind<?> coalesce(Kind<?> prev, Kind<?> next) {
+        if (prev == null) {
+            return next;
+        }
+
+        if (StandardWatchEventKinds.ENTRY_CREATE.equals(prev)) {
+            return StandardWatchEventKinds.ENTRY_DELETE.equals(next) ? null : prev;
+        } else if (StandardWatchEventKinds.ENTRY_DELETE.equals(prev)) {
+            // re-created after being deleted - looks like a modification to an observer
+            return StandardWatchEventKinds.ENTRY_CREATE.equals(next) ? StandardWatchEventKinds.ENTRY_MODIFY : next;
+        } else {    // MODIFY
+            return StandardWatchEventKinds.ENTRY_DELETE.equals(next) ? next : prev;
+        }
+    }
+
+    protected synchronized void markDirty(Path dir, long now) {
+        // if an ancestor is already dirty then its rescan covers this folder as well
+        for (Map.Entry<Path,DirtyFolder> de : dirty.entrySet()) {
+            if (dir.startsWith(de.getKey())) {
+                de.getValue().lastSeen = now;
+                return;
+            }
+        }
+
+        // bound the memory - fall back to re-scanning the whole tree
+        if (dirty.size() >= Math.max(1, maxPending / Byte.SIZE)) {
+            dir = rootPath;
+        }
+
+        // remove the descendants - the new rescan covers them
+        long    firstSeen=now;
+        for (Iterator<Map.Entry<Path,DirtyFolder>> iter=dirty.entrySet().iterator(); iter.hasNext(); ) {
+            Map.Entry<Path,DirtyFolder> de=iter.next();
+            if (de.getKey().startsWith(dir)) {
+                firstSeen = Math.min(firstSeen, de.getValue().firstSeen);
+                iter.remove();
+            }
+        }
+
+        DirtyFolder folder=new DirtyFolder(firstSeen);
+        folder.lastSeen = now;
+        dirty.put(dir, folder);
+
+        // pending events in the folder are covered by the rescan
+        for (Iterator<Map.Entry<Path,PendingEvent>> iter=pending.entrySet().iterator(); iter.hasNext(); ) {
+            Map.Entry<Path,PendingEvent>    pe=iter.next();
+            PendingEvent                    event=pe.getValue();
+            // deletions cannot be detected by the rescan so keep them
+            if (pe.getKey().startsWith(dir) && (!pe.getKey().equals(dir))
+             && (!StandardWatchEventKinds.ENTRY_DELETE.equals(event.kind))) {
+                folder.firstSeen = Math.min(folder.firstSeen, event.lastSeen);
+                iter.remove();
+            }
+        }
+    }
+
+    protected int deliverReadyEvents(long now, boolean all) {
+        List<Map.Entry<Path,PendingEvent>>  ready=new ArrayList<>();
+        List<Map.Entry<Path,DirtyFolder>>   rescan=new ArrayList<>();
+        synchronized(this) {
+            for (Iterator<Map.Entry<Path,PendingEvent>> iter=pending.entrySet().iterator(); iter.hasNext(); ) {
+                Map.Entry<Path,PendingEvent>    pe=iter.next();
+                if (all || ((now - pe.getValue().lastSeen) >= debounceMillis)) {
+                    ready.add(pe);
+                    iter.remove();
+                }
+            }
+
+            for (Iterator<Map.Entry<Path,DirtyFolder>> iter=dirty.entrySet().iterator(); iter.hasNext(); ) {
+                Map.Entry<Path,DirtyFolder> de=iter.next();
+                if (all || ((now - de.getValue().lastSeen) >= debounceMillis)) {
+                    rescan.add(de);
+                    iter.remove();
+                }
+            }
+        }
+
+        if (ready.isEmpty() && rescan.isEmpty()) {
+            return 0;
+        }
+
+        FileAlterationListener  listenersWrapper=new FileAlterationListenerMultiplexer(getListeners());
+        int                     count=0;
+        listenersWrapper.onStart(this);
+        try {
+            for (Map.Entry<Path,PendingEvent> pe : ready) {
+                PendingEvent    event=pe.getValue();
+                notifyListeners(pe.getKey().toFile(), event.kind, event.directory, listenersWrapper);
+                count++;
+            }
+
+            for (Map.Entry<Path,DirtyFolder> de : rescan) {
+                count += rescan(de.getKey(), de.getValue().firstSeen - RESCAN_TIMESTAMP_SLACK, listenersWrapper);
+            }
+        } finally {
+            listenersWrapper.onStop(this);
+        }
+
+        deliveredEvents.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * @param dir The folder to re-scan
+     * @param sinceTime Files modified since this time are reported as changed
+     * @param listenersWrapper The {@link FileAlterationListener} to notify
+     * @return Number of delivered notifications
+     */
+    protected int rescan(Path dir, long sinceTime, final FileAlterationListener listenersWrapper) {
+        rescans.incrementAndGet();
+        if (!Files.isDirectory(dir)) {
+            return 0;   // the deletion is reported by the parent
+        }
+
+        final long  since=sinceTime;
+        final int[] count={ 0 };
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs) throws IOException {
+                    if (!isAccepted(subDir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+
+                    if (!isWatched(subDir)) {
+                        register(subDir);
+                        listenersWrapper.onDirectoryCreate(subDir.toFile());
+                        count[0]++;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (isAccepted(file) && (attrs.lastModifiedTime().toMillis() >= since)) {
+                        listenersWrapper.onFileChange(file.toFile());
+                        count[0]++;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    return FileVisitResult.CONTINUE;    // e.g., deleted while scanning
+                }
+            });
+        } catch(IOException e) {
+            throw new IllegalStateException("rescan(" + dir + ") failed: " + e.getMessage(), e);
+        }
+
+        listenersWrapper.onDirectoryChange(dir.toFile());
+        return count[0] + 1;
+    }
+
+    /**
+     * @param dir The root of the tree to register
+     * @param createTime If non-{@code null} then the tree has just been created
+     * and all the files/folders found in it are reported as created (they may have
+     * been created before the registration) - using this time as the event time
+     */
+    protected void registerTree(final Path treeRoot, final Long createTime) {
+        try {
+            Files.walkFileTree(treeRoot, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs) throws IOException {
+                    if (!isAccepted(subDir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+
+                    register(subDir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if ((createTime != null) && isAccepted(file)) {
+                        addPendingEvent(file, StandardWatchEventKinds.ENTRY_CREATE, false, createTime.longValue());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    return FileVisitResult.CONTINUE;    // e.g., deleted while registering
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path subDir, IOException exc) throws IOException {
+                    if ((createTime != null) && (!subDir.equals(treeRoot))) {
+                        addPendingEvent(subDir, StandardWatchEventKinds.ENTRY_CREATE, true, createTime.longValue());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch(IOException e) {
+            throw new IllegalStateException("registerTree(" + treeRoot + ") failed: " + e.getMessage(), e);
+        }
+    }
+
+    protected void register(Path dir) throws IOException {
+        if (isWatched(dir)) {
+            return;
+        }
+
+        WatchKey    key=dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        keys.put(key, dir);
+        folders.put(dir, key);
+    }
+
+    protected boolean isWatched(Path dir) {
+        WatchKey    key=folders.get(dir);
+        return (key != null) && key.isValid();
+    }
+
+    protected boolean isAccepted(Path path) {
+        FileFilter  filter=getFileFilter();
+        return (filter == null) || path.equals(rootPath) || filter.accept(path.toFile());
+    }
+
+    protected void notifyListeners(File file, Kind<?> eventKind, boolean isDirectory, FileAlterationListener listenersWrapper) {
+        if (StandardWatchEventKinds.ENTRY_CREATE.equals(eventKind)) {
+            if (isDirectory) {
+                listenersWrapper.onDirectoryCreate(file);
+            } else {
+                listenersWrapper.onFileCreate(file);
+            }
+        } else if (StandardWatchEventKinds.ENTRY_MODIFY.equals(eventKind)) {
+            if (isDirectory) {
+                listenersWrapper.onDirectoryChange(file);
+            } else {
+                listenersWrapper.onFileChange(file);
+            }
+        } else if (StandardWatchEventKinds.ENTRY_DELETE.equals(eventKind)) {
+            if (isDirectory) {
+                listenersWrapper.onDirectoryDelete(file);
+            } else {
+                listenersWrapper.onFileDelete(file);
+            }
+        } else {
+            throw new IllegalArgumentException("notifyListeners(" + ExtendedFileUtils.toString(file) + ")[" + eventKind + "] unknown event kind");
+        }
+    }
+
+    @Override
+    public void destroy () throws Exception {
+        close();
+    }
+
+    @Override
+    public void close () throws IOException {
+        for (WatchKey key : keys.keySet()) {
+            key.cancel();
+        }
+        keys.clear();
+        folders.clear();
+
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } finally {
+                watcher = null;
+            }
+        }
+    }
+}
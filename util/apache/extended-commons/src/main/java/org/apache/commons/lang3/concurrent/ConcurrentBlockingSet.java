@@ -0,0 +1,450 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.lang3.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>A high-concurrency variant of {@link BlockingSet} - the elements are kept
+ * in concurrent hash sets (&quot;stripes&quot;) selected by the element's hash,
+ * so adding, removing and querying elements never lock. Polling threads start
+ * scanning at a different stripe (according to the thread) so they do not all
+ * compete for the same elements. Locks are used only to park and wake up
+ * waiting threads, and only when there are such waiters:</P>
+ * <UL>
+ *      <LI>
+ *      Threads waiting for <U>any</U> element to become available - see
+ *      {@link #take()} and {@link #poll(long, TimeUnit)}
+ *      </LI>
+ *
+ *      <LI>
+ *      Threads waiting for a <U>specific</U> element to be removed - see
+ *      {@link #waitForRemoval(Object, long, TimeUnit)}. These are parked on
+ *      striped conditions - i.e., removing an element wakes up only the waiters
+ *      whose elements map to the same stripe.
+ *      </LI>
+ * </UL>
+ *
+ * <P>This makes it a suitable coordination point for &quot;in-flight&quot;
+ * operations - e.g., an operation adds its key when it starts and removes it
+ * when done, while other threads can check if it is in progress and wait for
+ * it to complete. <B>Note:</B> unlike the {@link BlockingSet} no ordering of
+ * the polled elements is guaranteed</P>
+ * @param <E> Type of element being queued
+ * @author Lyor Goldstein
+ * @since Dec 9, 2013 8:42:17 AM
+ */
+public class ConcurrentBlockingSet<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    /**
+     * Default number of stripes
+     */
+    public static final int DEFAULT_STRIPES_COUNT=16;
+
+    private final ConcurrentMap<E,Boolean>[]    stripes;
+    private final ReentrantLock takeLock=new ReentrantLock();
+    private final Condition notEmpty=takeLock.newCondition();
+    private final AtomicInteger takeWaiters=new AtomicInteger(0);
+    private final ReentrantLock[]   stripeLocks;
+    private final Condition[]   stripeConditions;
+    private final AtomicIntegerArray    stripeWaiters;
+
+    public ConcurrentBlockingSet() {
+        this(DEFAULT_STRIPES_COUNT);
+    }
+
+    /**
+     * @param numStripes Number of elements (and removal waiters) stripes -
+     * rounded up to a power of 2
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentBlockingSet(int numStripes) {
+        Validate.isTrue((numStripes > 0) && (numStripes <= (1 << 16)), "Bad stripes count: %d", numStripes);
+
+        int count=(numStripes <= 1) ? 1 : Integer.highestOneBit(numStripes - 1) << 1;
+        stripes = new ConcurrentMap[count];
+        stripeLocks = new ReentrantLock[count];
+        stripeConditions = new Condition[count];
+        stripeWaiters = new AtomicIntegerArray(count);
+        for (int index=0; index < count; index++) {
+            stripes[index] = new ConcurrentHashMap<E,Boolean>();
+            stripeLocks[index] = new ReentrantLock();
+            stripeConditions[index] = stripeLocks[index].newCondition();
+        }
+    }
+
+    public ConcurrentBlockingSet(Collection<? extends E> c) {
+        this();
+        addAll(c);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Validate.notNull(e, "Null item offered", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        if ((stripes[stripeOf(e)].putIfAbsent(e, Boolean.TRUE) == null) && (takeWaiters.get() > 0)) {
+            signalNotEmpty();
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        Validate.notNull(unit, "No time unit", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        return offer(e);    // never full
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        offer(e);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return (o != null) && stripes[stripeOf(o)].containsKey(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+
+        int stripe=stripeOf(o);
+        if (stripes[stripe].remove(o) == null) {
+            return false;
+        }
+
+        signalRemoved(stripe);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        int mask=stripes.length - 1, start=threadStripe();
+        for (int index=0; index < stripes.length; index++) {
+            int                         stripe=(start + index) & mask;
+            ConcurrentMap<E,Boolean>    elements=stripes[stripe];
+            if (elements.isEmpty()) {
+                continue;
+            }
+
+            for (E e : elements.keySet()) {
+                if (elements.remove(e) != null) {   // otherwise lost a race with another remover
+                    signalRemoved(stripe);
+                    return e;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E   e=poll();
+        if (e != null) {
+            return e;
+        }
+
+        return awaitElement(true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E   e=poll();
+        if (e != null) {
+            return e;
+        }
+
+        return awaitElement(false, 0L);
+    }
+
+    /**
+     * Waits until the specified element is not in the set
+     * @param o The element
+     * @param timeout Maximum time to wait - non-positive means check without waiting
+     * @param unit The timeout {@link TimeUnit}
+     * @return <code>true</code> if the element is not in the set - <code>false</code>
+     * if timeout expired while it was still there
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean waitForRemoval(Object o, long timeout, TimeUnit unit) throws InterruptedException {
+        if (!contains(o)) {
+            return true;
+        }
+
+        long    nanos=unit.toNanos(timeout);
+        if (nanos <= 0L) {
+            return false;
+        }
+
+        int                         stripe=stripeOf(o);
+        ConcurrentMap<E,Boolean>    elements=stripes[stripe];
+        ReentrantLock               lock=stripeLocks[stripe];
+        Condition                   removed=stripeConditions[stripe];
+        lock.lockInterruptibly();
+        try {
+            stripeWaiters.incrementAndGet(stripe);
+            try {
+                // re-check after registering as waiter so the removal signal is not missed
+                while (elements.containsKey(o)) {
+                    if (nanos <= 0L) {
+                        return false;
+                    }
+                    nanos = removed.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                stripeWaiters.decrementAndGet(stripe);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits indefinitely until the specified element is not in the set
+     * @param o The element
+     * @throws InterruptedException If interrupted while waiting
+     * @see #waitForRemoval(Object, long, TimeUnit)
+     */
+    public void waitForRemoval(Object o) throws InterruptedException {
+        while (!waitForRemoval(o, Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+            continue;   // practically infinite wait expired
+        }
+    }
+
+    @Override
+    public int size() {
+        long    count=0L;
+        for (ConcurrentMap<E,Boolean> elements : stripes) {
+            count += elements.size();
+        }
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (ConcurrentMap<E,Boolean> elements : stripes) {
+            if (!elements.isEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public E peek() {
+        for (ConcurrentMap<E,Boolean> elements : stripes) {
+            Iterator<E> iter=elements.keySet().iterator();
+            if (iter.hasNext()) {
+                return iter.next();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return A weakly consistent iterator over the elements - removing an
+     * element via the iterator wakes up any thread waiting for its removal
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int stripe;
+            private Iterator<E> iter=stripes[0].keySet().iterator();
+            private E   lastElement;
+
+            @Override
+            public boolean hasNext() {
+                while (!iter.hasNext()) {
+                    if ((++stripe) >= stripes.length) {
+                        return false;
+                    }
+                    iter = stripes[stripe].keySet().iterator();
+                }
+
+                return true;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more elements");
+                }
+
+                lastElement = iter.next();
+                return lastElement;
+            }
+
+            @Override
+            public void remove() {
+                if (lastElement == null) {
+                    throw new IllegalStateException("No current element");
+                }
+
+                ConcurrentBlockingSet.this.remove(lastElement);
+                lastElement = null;
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    @Override
+    public void clear() {
+        for (Iterator<E> iter=iterator(); iter.hasNext(); ) {
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if ((c == null) || (maxElements < 0)) {
+            throw new IllegalArgumentException("Bad arguments: " + maxElements + "/" + (c == null));
+        }
+
+        if (c == this) {
+            throw new IllegalArgumentException("Cannot drain to self");
+        }
+
+        int count=0;
+        for (E e=null; (count < maxElements) && ((e=poll()) != null); count++) {
+            c.add(e);
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    private List<E> snapshot() {
+        List<E> result=new ArrayList<E>(size());
+        for (ConcurrentMap<E,Boolean> elements : stripes) {
+            result.addAll(elements.keySet());
+        }
+        return result;
+    }
+
+    private E awaitElement(boolean timed, long timeout) throws InterruptedException {
+        long    nanos=timeout;
+        takeLock.lockInterruptibly();
+        try {
+            takeWaiters.incrementAndGet();
+            try {
+                // re-check after registering as waiter so the offer signal is not missed
+                for (E e=poll(); ; e = poll()) {
+                    if (e != null) {
+                        return e;
+                    }
+
+                    if (timed) {
+                        if (nanos <= 0L) {
+                            return null;
+                        }
+                        nanos = notEmpty.awaitNanos(nanos);
+                    } else {
+                        notEmpty.await();
+                    }
+                }
+            } catch(InterruptedException e) {
+                notEmpty.signal();  // propagate to non-interrupted thread
+                throw e;
+            } finally {
+                takeWaiters.decrementAndGet();
+            }
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    private void signalNotEmpty() {
+        takeLock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    private void signalRemoved(int stripe) {
+        if (stripeWaiters.get(stripe) <= 0) {
+            return;
+        }
+
+        ReentrantLock   lock=stripeLocks[stripe];
+        lock.lock();
+        try {
+            // other elements may share the stripe, so wake up all its waiters
+            stripeConditions[stripe].signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int stripeOf(Object o) {
+        int h=o.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & (stripes.length - 1);
+    }
+
+    private int threadStripe() {
+        long    id=Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 32)) * 0x9E3779B9 >>> 16;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.lang3.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.Period;
+
+/**
+ * A lock-free variant of {@link BlockingReferenceHolder} with the same semantics.
+ * Setting, consuming and peeking at the value are simple atomic operations
+ * on the held reference - i.e., they never block each other. Only threads
+ * that actually need to wait for a value are parked, and setting a value
+ * wakes up just one of them (instead of all of them)
+ * @param <T> Type of object being passed
+ * @author Lyor Goldstein
+ * @since Dec 9, 2013 9:37:52 AM
+ */
+public class ConcurrentReferenceHolder<T> {
+    /**
+     * Value that can be used to specify infinite wait
+     */
+    public static final long    INFINITE_WAIT=BlockingReferenceHolder.INFINITE_WAIT;
+
+    private final AtomicReference<T>    holder=new AtomicReference<T>(null);
+    private final Queue<Thread> waiters=new ConcurrentLinkedQueue<Thread>();
+
+    /**
+     * Empty holder
+     */
+    public ConcurrentReferenceHolder() {
+        super();
+    }
+
+    /**
+     * A pre-initialized holder - which means that any call to
+     * {@code waitForValue} method(s) will succeed immediately
+     * @param initialValue The initial value - may not be {@code null}
+     */
+    public ConcurrentReferenceHolder(T initialValue) {
+        holder.set(Validate.notNull(initialValue, "Initial value may not be null", ArrayUtils.EMPTY_OBJECT_ARRAY));
+    }
+
+    /**
+     * @return The currently pending value - {@code null} if none. <B>Note:</B>
+     * the value is <U>not</U> consumed
+     */
+    public T peekValue() {
+        return holder.get();
+    }
+
+    /**
+     * Wait indefinitely for a value, and when one arrives, return it (and
+     * clear the holder). If there's already a value present, there's no need
+     * to wait - the existing value is returned.
+     * @return The waited-for value
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public T waitForValue() throws InterruptedException {
+        return awaitValue(false, 0L);
+    }
+
+    /**
+     * @param period The wait {@link Period} - if {@code null} then infinite
+     * wait (consider using {@link #waitForValue()})
+     * @return The waited value - {@code null} if timeout expired before value
+     * has been provided
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public T waitForValue(Period period) throws InterruptedException {
+        if (period == null) {
+            return waitForValue();
+        } else {
+            return waitForValue(period.getUnit(), period.getCount());
+        }
+    }
+
+    /**
+     * @param unit The wait {@link TimeUnit}
+     * @param count The number of units to wait - use {@link #INFINITE_WAIT}
+     * to specify infinity (or consider using {@link #waitForValue()})
+     * @return The waited value - {@code null} if timeout expired before value
+     * has been provided
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public T waitForValue(TimeUnit unit, long count) throws InterruptedException {
+        Validate.notNull(unit, "No time unit", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        if (count == INFINITE_WAIT) {
+            return waitForValue();
+        }
+
+        Validate.isTrue(count >= 0L, "Negative timeout - use " + INFINITE_WAIT + " for infinity: %s", count);
+        return awaitValue(true, unit.toNanos(count));
+    }
+
+    /**
+     * @param timeout timeout in milliseconds - use {@link #INFINITE_WAIT} to
+     * specify infinity (or consider using {@link #waitForValue()})
+     * @return The waited value - {@code null} if timeout expired before value
+     * has been provided
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public T waitForValue(long timeout) throws InterruptedException {
+        return waitForValue(TimeUnit.MILLISECONDS, timeout);
+    }
+
+    /**
+     * Sets the holder value and wakes up one of the waiting threads (if any)
+     * @param value The value to be set - cannot be {@code null}
+     * @param overrideExisting If {@code false} then the method will fail with
+     * and {@link IllegalStateException} if a value was set but not consumed.
+     * Otherwise, it will override whatever waiting value there is
+     * @return The previous held value (if not consumed) - {@code null} if no
+     * previous pending (un-consumed) value
+     * @throws IllegalStateException if not allowed to override an existing
+     * (pending) value and one is still pending
+     */
+    public T setValue(T value, boolean overrideExisting) throws IllegalStateException {
+        Validate.notNull(value, "No value", ArrayUtils.EMPTY_OBJECT_ARRAY);
+
+        T   prevValue=null;
+        if (overrideExisting) {
+            prevValue = holder.getAndSet(value);
+        } else if (!holder.compareAndSet(null, value)) {
+            throw new IllegalStateException("Not allowed to override existing value");
+        }
+
+        signalWaiter();
+        return prevValue;
+    }
+
+    private T awaitValue(boolean timed, long nanos) throws InterruptedException {
+        T   value=holder.getAndSet(null);
+        if ((value != null) || (timed && (nanos <= 0L))) {
+            return value;
+        }
+
+        Thread  curThread=Thread.currentThread();
+        long    deadline=timed ? System.nanoTime() + nanos : 0L;
+        waiters.add(curThread);
+        try {
+            // re-check after registering as waiter so the wake-up is not missed
+            while ((value=holder.getAndSet(null)) == null) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("Interrupted while waiting for value");
+                }
+
+                if (timed) {
+                    long    remaining=deadline - System.nanoTime();
+                    if (remaining <= 0L) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        } finally {
+            waiters.remove(curThread);
+            /*
+             * If a value is pending, pass on the wake-up - it may have been
+             * meant for this thread, but it is leaving (timeout, interrupt) or
+             * has already consumed a previous value
+             */
+            if (holder.get() != null) {
+                signalWaiter();
+            }
+        }
+
+        return value;
+    }
+
+    private void signalWaiter() {
+        Thread  waiter=waiters.peek();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.commons.math3.timeseries;
 import java.io.Serializable;
 import java.util.Map;
 
+import org.apache.commons.collections15.numbers.ints.IntObjectMap;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.math.ExtendedNumberUtils;
 
@@ -134,4 +135,30 @@ public class BucketValue implements Cloneable, Serializable  {
         
         return sumValue;
     }
+
+    /**
+     * Adds a value to a buckets map at the specified index - same as
+     * {@link #addToBucket(Map, int, double)} but without boxing the index
+     * @param bucketsMap The buckets {@link IntObjectMap} - key=bucket index, value=bucket data
+     * @param index Bucket index-  if a bucket entry does not exist for the
+     * index, then it is created and mapped. Otherwise, the new value is added
+     * to the existing entry
+     * @param value The value to add
+     * @return The mapped/created {@link BucketValue} entry
+     * @throws IllegalArgumentException if index is negative or NaN value
+     */
+    public static final BucketValue addToBucket(IntObjectMap<BucketValue> bucketsMap, int index, double value) {
+        Validate.isTrue(index >= 0, "Invalid index value: %d", index);
+        Validate.isTrue(!Double.isNaN(value), "NaN value N/A for index=%d", index);
+
+        BucketValue sumValue=bucketsMap.get(index);
+        if (sumValue == null) {
+            sumValue = new BucketValue(value);
+            bucketsMap.put(index, sumValue);
+        } else {
+            sumValue.add(value);
+        }
+
+        return sumValue;
+    }
 }
@@ -20,12 +20,12 @@ package org.apache.commons.math3.timeseries;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections15.ExtendedCollectionUtils;
+import org.apache.commons.collections15.numbers.ints.IntObjectMap;
+import org.apache.commons.collections15.numbers.longs.LongLongMap;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.Validate;
 
@@ -100,7 +100,7 @@ public class DataPointUtils {
         int             numIntervals=1 + (int) (dpInterval / msecInterval);
         List<DataPoint> result=new ArrayList<DataPoint>(numIntervals);
 
-        Map<Integer,BucketValue>  bucketsMap=new HashMap<Integer, BucketValue>(numIntervals);
+        IntObjectMap<BucketValue>   bucketsMap=new IntObjectMap<BucketValue>(numIntervals);
         for (DataPoint p : data) {
             if (!DataPoint.VALID_SELECTOR.evaluate(p)) {
                 throw new IllegalArgumentException("Bad data point: " + p);
@@ -140,10 +140,10 @@ public class DataPointUtils {
             }
         }
         
-        for (Map.Entry<? extends Number,BucketValue> e : bucketsMap.entrySet()) {
-            int             index=e.getKey().intValue();
+        for (IntObjectMap<BucketValue>.EntryCursor c=bucketsMap.cursor(); c.moveNext(); ) {
+            int             index=c.key();
             long            timestamp=minTimestamp + index * msecInterval;
-            double          value=e.getValue().getAverageValue();
+            double          value=c.value().getAverageValue();
             DataPoint    p=new DataPoint(timestamp, value);
             result.add(p);
         }
@@ -152,6 +152,79 @@ public class DataPointUtils {
         return result;
     }
     
+    /**
+     * Aggregates the points values into fixed size time buckets
+     * @param msecInterval The bucket interval (msec.)
+     * @param baseTimestamp The start timestamp of bucket #0 - points that
+     * precede it are not allowed
+     * @param points The {@link DataPoint}s to aggregate - must have a valid
+     * timestamp and value
+     * @return An {@link IntObjectMap} where key=bucket index, value=the {@link BucketValue}
+     * of all the points whose timestamp is within the bucket interval. <B>Note:</B>
+     * only buckets that have at least one point are mapped
+     * @throws IllegalArgumentException if bad interval, invalid point or point
+     * precedes the base timestamp
+     */
+    public static final IntObjectMap<BucketValue> aggregateByBuckets(long msecInterval, long baseTimestamp, Collection<? extends DataPoint> points) {
+        Validate.isTrue(msecInterval > 0L, "Non-positive interval: %d", msecInterval);
+
+        IntObjectMap<BucketValue>   bucketsMap=new IntObjectMap<BucketValue>();
+        if (ExtendedCollectionUtils.isEmpty(points)) {
+            return bucketsMap;
+        }
+
+        for (DataPoint p : points) {
+            if (!DataPoint.VALID_SELECTOR.evaluate(p)) {
+                throw new IllegalArgumentException("Bad data point: " + p);
+            }
+
+            long    offset=p.getTimestamp() - baseTimestamp, index=offset / msecInterval;
+            Validate.isTrue((offset >= 0L) && (index <= Integer.MAX_VALUE), "Point out of buckets range: %s", p);
+            BucketValue.addToBucket(bucketsMap, (int) index, p.getValue());
+        }
+
+        return bucketsMap;
+    }
+
+    /**
+     * Builds a histogram of values - e.g., request latencies
+     * @param bucketWidth The width of each histogram bucket
+     * @param values The values to count
+     * @return A {@link LongLongMap} where key=bucket index (i.e., the value
+     * divided by the bucket width - rounded towards negative infinity), value=number
+     * of values in the bucket. <B>Note:</B> only buckets that have at least
+     * one value are mapped
+     */
+    public static final LongLongMap countByBuckets(long bucketWidth, long ... values) {
+        return countByBuckets(bucketWidth, values, 0, ArrayUtils.getLength(values));
+    }
+
+    /**
+     * Builds a histogram of values - e.g., request latencies
+     * @param bucketWidth The width of each histogram bucket
+     * @param values The values to count
+     * @param offset Offset of first value to count
+     * @param len Number of values to count
+     * @return A {@link LongLongMap} where key=bucket index (i.e., the value
+     * divided by the bucket width - rounded towards negative infinity), value=number
+     * of values in the bucket. <B>Note:</B> only buckets that have at least
+     * one value are mapped
+     */
+    public static final LongLongMap countByBuckets(long bucketWidth, long[] values, int offset, int len) {
+        Validate.isTrue(bucketWidth > 0L, "Non-positive bucket width: %d", bucketWidth);
+
+        LongLongMap histogram=new LongLongMap();
+        for (int index=0; index < len; index++) {
+            long    value=values[offset + index], bucket=value / bucketWidth;
+            if ((value < 0L) && ((bucket * bucketWidth) != value)) {
+                bucket--;   // round towards negative infinity
+            }
+            histogram.increment(bucket);
+        }
+
+        return histogram;
+    }
+
     public static final List<DataPoint> largestTriangleThreeBucketsDownsample(TimeUnit unit, long count, Collection<? extends DataPoint> points) {
         Validate.notNull(unit, "No time unit specified", ArrayUtils.EMPTY_OBJECT_ARRAY);
         Validate.isTrue(count > 0L, "Non-positive count", count);
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.net.ssh.der;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>A cursor based DER decoder that works directly on a {@link ByteBuffer}.
+ * Unlike the {@link DERParser} it does not copy the encoded values - each call
+ * to {@link #next()} decodes only the tag and length of the next object and
+ * records the position of its value in the buffer. The value is converted
+ * only when (and if) requested - e.g., {@link #asInteger()}, {@link #asInt()},
+ * {@link #asString()}. Nested constructs are parsed by a cursor over the
+ * current value (see {@link #createParser()}) that shares the same buffer.</P>
+ *
+ * <P><B>Note:</B> the source buffer position, limit and contents are not modified,
+ * but any change to the contents while parsing affects the results. The
+ * cursor is not thread-safe</P>
+ * @author Lyor Goldstein
+ * @since Dec 8, 2013 9:14:35 AM
+ */
+public class DERBufferParser {
+    private final ByteBuffer    buffer;
+    private final int   startPos, endPos;
+    private int pos, tag=(-1), valueOffset, valueLength;
+
+    public DERBufferParser(byte ... bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    public DERBufferParser(byte[] bytes, int offset, int len) {
+        this(ByteBuffer.wrap(bytes, offset, len));
+    }
+
+    /**
+     * @param buf The {@link ByteBuffer} to parse - from its current position
+     * up to its limit
+     */
+    public DERBufferParser(ByteBuffer buf) {
+        this(Validate.notNull(buf, "No buffer", ArrayUtils.EMPTY_OBJECT_ARRAY), buf.position(), buf.limit());
+    }
+
+    protected DERBufferParser(ByteBuffer buf, int start, int end) {
+        Validate.isTrue((start >= 0) && (start <= end) && (end <= buf.limit()), "Bad range: %d-%d", start, end);
+        buffer = buf;
+        startPos = start;
+        endPos = end;
+        pos = start;
+    }
+
+    /**
+     * @return <code>true</code> if there is more data following the current object
+     */
+    public boolean hasNext() {
+        return pos < endPos;
+    }
+
+    /**
+     * Moves the cursor to the next object
+     * @return <code>true</code> if found another object - <code>false</code>
+     * if reached the end of the data
+     * @throws IOException If the object's tag or length are malformed or the
+     * value extends beyond the data end
+     */
+    public boolean next() throws IOException {
+        if (pos >= endPos) {
+            tag = (-1);
+            valueOffset = endPos;
+            valueLength = 0;
+            return false;
+        }
+
+        int curTag=buffer.get(pos) & 0xFF, curPos=pos + 1;
+        if (curPos >= endPos) {
+            throw new StreamCorruptedException("Invalid DER: length missing at offset=" + (curPos - startPos));
+        }
+
+        int lenByte=buffer.get(curPos) & 0xFF, curLength;
+        curPos++;
+        // A single byte short length
+        if ((lenByte & ~0x7F) == 0) {
+            curLength = lenByte;
+        } else {
+            int num=lenByte & 0x7F;
+            if ((lenByte >= 0xFF) || (num > 4)) {
+                throw new StreamCorruptedException("Invalid DER: length field too big: " + lenByte);
+            }
+
+            if ((curPos + num) > endPos) {
+                throw new StreamCorruptedException("Invalid DER: length too short: " + (endPos - curPos));
+            }
+
+            long    l=0L;
+            for (int index=0; index < num; index++, curPos++) {
+                l = (l << 8) | (buffer.get(curPos) & 0xFF);
+            }
+
+            if (l > Integer.MAX_VALUE) {
+                throw new StreamCorruptedException("Invalid DER: length too big: " + l);
+            }
+            curLength = (int) l;
+        }
+
+        if (curLength > (endPos - curPos)) {
+            throw new StreamCorruptedException("Invalid DER: stream too short, missing value:"
+                                             + " available " + (endPos - curPos) + " out of required " + curLength);
+        }
+
+        tag = curTag;
+        valueOffset = curPos;
+        valueLength = curLength;
+        pos = curPos + curLength;
+        return true;
+    }
+
+    /**
+     * Moves to the next object and makes sure it has the expected type
+     * @param type The expected {@link ASN1Type}
+     * @return The cursor itself - for chaining
+     * @throws IOException If no more objects or mismatched type
+     */
+    public DERBufferParser next(ASN1Type type) throws IOException {
+        if (!next()) {
+            throw new StreamCorruptedException("Invalid DER: missing " + type + " object");
+        }
+
+        ASN1Type    actual=getObjType();
+        if (!type.equals(actual)) {
+            throw new StreamCorruptedException("Invalid DER: expected " + type + " but got " + actual);
+        }
+
+        return this;
+    }
+
+    /**
+     * @return The raw tag byte of the current object - negative if no current object
+     */
+    public int getTag() {
+        return tag;
+    }
+
+    public ASN1Class getObjClass() {
+        return (tag < 0) ? null : ASN1Class.fromDERValue((byte) tag);
+    }
+
+    public ASN1Type getObjType() {
+        return (tag < 0) ? null : ASN1Type.fromDERValue((byte) tag);
+    }
+
+    public boolean isConstructed() {
+        return (tag >= 0) && ((tag & ASN1Object.CONSTRUCTED) == ASN1Object.CONSTRUCTED);
+    }
+
+    /**
+     * @return Absolute offset of the current object's value in the buffer
+     */
+    public int getValueOffset() {
+        return valueOffset;
+    }
+
+    public int getValueLength() {
+        return valueLength;
+    }
+
+    /**
+     * @return A read-only {@link ByteBuffer} view of the current object's value
+     */
+    public ByteBuffer getValue() {
+        ByteBuffer  view=buffer.asReadOnlyBuffer();
+        view.limit(valueOffset + valueLength);
+        view.position(valueOffset);
+        return view.slice();
+    }
+
+    /**
+     * @return A <U>copy</U> of the current object's value bytes
+     */
+    public byte[] getValueBytes() {
+        if (valueLength <= 0) {
+            return ArrayUtils.EMPTY_BYTE_ARRAY;
+        }
+
+        byte[]      data=new byte[valueLength];
+        ByteBuffer  view=buffer.duplicate();
+        view.position(valueOffset);
+        view.get(data);
+        return data;
+    }
+
+    /**
+     * @return A parser for the current object's value - sharing the same buffer
+     */
+    public DERBufferParser createParser() {
+        return new DERBufferParser(buffer, valueOffset, valueOffset + valueLength);
+    }
+
+    /**
+     * @return An {@link ASN1Object} holding a <U>copy</U> of the current object's value
+     */
+    public ASN1Object toASN1Object() {
+        return new ASN1Object((byte) tag, valueLength, getValueBytes());
+    }
+
+    /**
+     * @return The current {@link ASN1Type#INTEGER} value as {@link BigInteger}
+     * @throws IOException If not an integer
+     */
+    public BigInteger asInteger() throws IOException {
+        assertIntegerValue();
+        return new BigInteger(getValueBytes());
+    }
+
+    /**
+     * Decodes the current {@link ASN1Type#INTEGER} value without creating a {@link BigInteger}
+     * @return The value as {@code long}
+     * @throws IOException If not an integer or value does not fit
+     */
+    public long asLong() throws IOException {
+        assertIntegerValue();
+        if (valueLength > (Long.SIZE / Byte.SIZE)) {
+            throw new StreamCorruptedException("Invalid DER: integer too big for long: " + valueLength + " bytes");
+        }
+
+        long    value=buffer.get(valueOffset);  // sign extended
+        for (int index=1; index < valueLength; index++) {
+            value = (value << 8) | (buffer.get(valueOffset + index) & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * @return The current {@link ASN1Type#INTEGER} value as {@code int}
+     * @throws IOException If not an integer or value does not fit
+     * @see #asLong()
+     */
+    public int asInt() throws IOException {
+        long    value=asLong();
+        if ((value < Integer.MIN_VALUE) || (value > Integer.MAX_VALUE)) {
+            throw new StreamCorruptedException("Invalid DER: integer too big for int: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * @return The current {@link ASN1Type#OBJECT_IDENTIFIER} value in its
+     * &quot;dotted&quot; form - e.g., <code>1.2.840.113549.1.1.1</code>
+     * @throws IOException If not an OID or value cannot be decoded
+     */
+    public String asObjectIdentifier() throws IOException {
+        if (!ASN1Type.OBJECT_IDENTIFIER.equals(getObjType())) {
+            throw new StreamCorruptedException("Invalid DER: object is not an OID: " + getObjType());
+        }
+
+        if (valueLength <= 0) {
+            throw new StreamCorruptedException("Invalid DER: empty OID");
+        }
+
+        StringBuilder   sb=new StringBuilder(valueLength * 4);
+        long            arc=0L;
+        boolean         first=true;
+        for (int index=0; index < valueLength; index++) {
+            int b=buffer.get(valueOffset + index) & 0xFF;
+            if ((arc >>> (Long.SIZE - 8)) != 0L) {
+                throw new StreamCorruptedException("Invalid DER: OID arc too big");
+            }
+
+            arc = (arc << 7) | (b & 0x7F);
+            if ((b & 0x80) != 0) {
+                continue;   // arc continues in next byte
+            }
+
+            if (first) {    // first byte encodes 2 arcs
+                int root=(int) Math.min(2L, arc / 40L);
+                sb.append(root).append('.').append(arc - root * 40L);
+                first = false;
+            } else {
+                sb.append('.').append(arc);
+            }
+            arc = 0L;
+        }
+
+        if (arc != 0L) {
+            throw new StreamCorruptedException("Invalid DER: truncated OID");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @return The current string object value
+     * @throws IOException If not a string type
+     * @see ASN1Object#asString()
+     */
+    public String asString() throws IOException {
+        ASN1Type    type=getObjType();
+        if (type == null) {
+            throw new IOException("No type set");
+        }
+
+        final Charset   charset;
+        switch (type) {
+            // Not all are Latin-1 but it's the closest thing
+            case NUMERIC_STRING:
+            case PRINTABLE_STRING:
+            case VIDEOTEX_STRING:
+            case IA5_STRING:
+            case GRAPHIC_STRING:
+            case ISO646_STRING:
+            case GENERAL_STRING:
+                charset = Charset.forName("ISO-8859-1");
+                break;
+
+            case BMP_STRING:
+                charset = Charset.forName("UTF-16BE");
+                break;
+
+            case UTF8_STRING:
+                charset = Charset.forName("UTF-8");
+                break;
+
+            case UNIVERSAL_STRING:
+                throw new IOException("Invalid DER: can't handle UCS-4 string");
+
+            default:
+                throw new IOException("Invalid DER: object is not a string: " + type);
+        }
+
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + valueOffset, valueLength, charset);
+        } else {
+            return charset.decode(getValue()).toString();
+        }
+    }
+
+    private void assertIntegerValue() throws IOException {
+        if (!ASN1Type.INTEGER.equals(getObjType())) {
+            throw new IOException("Invalid DER: object is not integer: " + getObjType());
+        }
+
+        if (valueLength <= 0) {
+            throw new StreamCorruptedException("Invalid DER: empty integer");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + getObjClass() + "/" + getObjType() + "/" + isConstructed()
+             + "@" + getValueOffset() + "[" + getValueLength() + "]]";
+    }
+}
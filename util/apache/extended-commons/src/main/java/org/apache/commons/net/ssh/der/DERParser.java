@@ -21,7 +21,6 @@ import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StreamCorruptedException;
-import java.math.BigInteger;
 
 import org.apache.commons.lang3.ExtendedArrayUtils;
 
@@ -36,6 +35,9 @@ import org.apache.commons.lang3.ExtendedArrayUtils;
  * <p/>There are many DER decoders in JRE but using them will tie this
  * program to a specific JCE/JVM.
  * 
+ * <p/><B>Note:</B> each object value is copied - if the encoded data is
+ * already available in memory, the {@link DERBufferParser} is more efficient.
+ * 
  * Based on code from <A HREF="http://oauth.googlecode.com/svn-history/r1178/code/branches/jmeter/jmeter/src/main/java/org/apache/jmeter/protocol/oauth/sampler/PrivateKeyReader.java">here</A>
  * @author Lyor G.
  * @since Jul 3, 2013 3:43:00 PM
@@ -107,13 +109,15 @@ public class DERParser extends FilterInputStream {
             throw new StreamCorruptedException("Invalid DER: length field too big: " + i);
         }
         
-        byte[]  bytes=new byte[num];           
-        int     n=read(bytes);
-        if (n < num) {
-            throw new StreamCorruptedException("Invalid DER: length too short: " + n);
+        int len=0;
+        for (int index=0; index < num; index++) {
+            int b=read();
+            if (b == -1) {
+                throw new StreamCorruptedException("Invalid DER: length too short: " + index);
+            }
+            len = (len << 8) | b;
         }
 
-        // TODO try to avoid using a BigInteger
-        return new BigInteger(1, bytes).intValue();
+        return len;
     }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.net.ssh.keys;
+
+import java.nio.charset.Charset;
+import java.security.Key;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.ExtendedDigestUtils;
+import org.apache.commons.collections15.cache.ConcurrentTinyLFUCache;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * <P>A bounded thread-safe cache of decoded {@link Key}-s keyed by a digest
+ * of the <U>raw</U> (encoded) key data, so that re-loading the same key data
+ * costs only the hashing instead of the full decoding and key generation.
+ * When the maximum number of entries is reached, entries are evicted according
+ * to their estimated usage frequency (see {@link ConcurrentTinyLFUCache}), so
+ * the frequently used keys survive a burst of one-off decodings.</P>
+ *
+ * <P><B>Note:</B> the cached instances are shared by all callers - which is
+ * OK since {@link Key}-s are immutable</P>
+ * @param <K> Type of cached {@link Key}
+ * @author Lyor Goldstein
+ * @since Dec 7, 2013 4:21:37 PM
+ */
+public class DecodedKeysCache<K extends Key> {
+    /**
+     * Default maximum number of cached entries
+     */
+    public static final int DEFAULT_MAX_ENTRIES=1024;
+    /**
+     * The digest algorithm used to calculate the cache keys
+     */
+    public static final String  CACHE_KEY_DIGEST_ALGORITHM="SHA-256";
+
+    private static final Charset    KEY_DATA_CHARSET=Charset.forName("UTF-8");
+
+    private final int   maxEntries;
+    private final ConcurrentTinyLFUCache<String,K>  entries;
+
+    public DecodedKeysCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public DecodedKeysCache(int maxSize) {
+        Validate.isTrue(maxSize > 0, "Bad max. entries: %d", maxSize);
+        maxEntries = maxSize;
+        entries = new ConcurrentTinyLFUCache<String,K>(maxSize);
+    }
+
+    public final int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @param data The raw key data
+     * @param off Offset of data in array
+     * @param len Number of data bytes
+     * @return The cache key - a hex encoded {@link #CACHE_KEY_DIGEST_ALGORITHM}
+     * of the data
+     */
+    public static final String getCacheKey(byte[] data, int off, int len) {
+        MessageDigest   digest=ExtendedDigestUtils.getPooledDigest(CACHE_KEY_DIGEST_ALGORITHM);
+        digest.update(data, off, len);
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * @param parts The textual components of the raw key data - <B>Note:</B>
+     * {@code null} components are allowed and are distinct from empty ones
+     * @return The cache key - a hex encoded {@link #CACHE_KEY_DIGEST_ALGORITHM}
+     * of the data
+     */
+    public static final String getCacheKey(String ... parts) {
+        MessageDigest   digest=ExtendedDigestUtils.getPooledDigest(CACHE_KEY_DIGEST_ALGORITHM);
+        for (String p : parts) {
+            if (p == null) {
+                digest.update((byte) 0);
+            } else {
+                byte[]  data=p.getBytes(KEY_DATA_CHARSET);
+                digest.update((byte) 1);
+                // prefix each part with its length so that different splits yield different keys
+                digest.update(new byte[] { (byte) (data.length >>> 24), (byte) (data.length >>> 16), (byte) (data.length >>> 8), (byte) data.length });
+                digest.update(data);
+            }
+        }
+
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * @param cacheKey The cache key
+     * @return The cached {@link Key} - {@code null} if not cached
+     * @see #getCacheKey(byte[], int, int)
+     * @see #getCacheKey(String...)
+     */
+    public K get(String cacheKey) {
+        Validate.notEmpty(cacheKey, "No cache key", ArrayUtils.EMPTY_OBJECT_ARRAY);
+
+        return entries.get(cacheKey);
+    }
+
+    /**
+     * @param cacheKey The cache key
+     * @param key The decoded {@link Key} to cache
+     * @return The cached instance - if another thread has already cached a key
+     * for the same data, then its instance is kept and returned
+     */
+    public K put(String cacheKey, K key) {
+        Validate.notEmpty(cacheKey, "No cache key", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.notNull(key, "No key to cache", ArrayUtils.EMPTY_OBJECT_ARRAY);
+
+        K   prev=entries.putIfAbsent(cacheKey, key);
+        return (prev == null) ? key : prev;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all cached entries - <B>Note:</B> does not reset the statistics
+     * @see #resetStatistics()
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return entries.getHits();
+    }
+
+    public long getMisses() {
+        return entries.getMisses();
+    }
+
+    public long getEvictions() {
+        return entries.getEvictions();
+    }
+
+    /**
+     * @return The ratio of hits out of all the lookups - zero if no lookups
+     * made yet
+     */
+    public double getHitRate() {
+        return entries.getHitRate();
+    }
+
+    public void resetStatistics() {
+        entries.resetStatistics();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[size=" + size() + "/" + getMaxEntries()
+             + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+             + "]";
+    }
+}
@@ -45,6 +45,8 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.ExtendedDigestUtils;
 import org.apache.commons.collections15.AbstractExtendedTransformer;
 import org.apache.commons.collections15.ExtendedCollectionUtils;
 import org.apache.commons.collections15.ExtendedTransformer;
@@ -71,6 +73,8 @@ import org.apache.commons.net.ssh.keys.rsa.RSAKeyDecoder;
 public class KeyUtils {
     private static final Map<String,KeyDecoder> byKeyTypeDecodersMap=new TreeMap<String,KeyDecoder>(String.CASE_INSENSITIVE_ORDER);
     private static final Map<String,KeyDecoder> byAlgorithmDecodersMap=new TreeMap<String,KeyDecoder>(String.CASE_INSENSITIVE_ORDER);
+    private static final DecodedKeysCache<PublicKey>    publicKeysCache=new DecodedKeysCache<PublicKey>();
+    private static final DecodedKeysCache<PrivateKey>   privateKeysCache=new DecodedKeysCache<PrivateKey>();
 
     // pre-register some built in decoders
     static {
@@ -157,6 +161,39 @@ public class KeyUtils {
                     return 0;
                 }
             };
+    /**
+     * The digest algorithm used to calculate a key fingerprint
+     * @see #getFingerprint(Key)
+     */
+    public static final String  KEY_FINGERPRINT_ALGORITHM="SHA-256";
+
+    /**
+     * @param key The {@link Key} instance
+     * @return A fingerprint composed of the key algorithm followed by a colon
+     * and the lowercase hex {@link #KEY_FINGERPRINT_ALGORITHM} digest of its
+     * {@link Key#getEncoded()} form - {@code null} if no key or no encoded form
+     */
+    public static final String getFingerprint(Key key) {
+        byte[]  encoded=ENCODED_KEY_DATA_EXTRACTOR.transform(key);
+        if (ArrayUtils.isEmpty(encoded)) {
+            return null;
+        }
+
+        byte[]  digest=ExtendedDigestUtils.getPooledDigest(KEY_FINGERPRINT_ALGORITHM).digest(encoded);
+        return key.getAlgorithm() + ":" + Hex.encodeHexString(digest);
+    }
+
+    /**
+     * An {@link ExtendedTransformer} that invokes {@link #getFingerprint(Key)}
+     */
+    public static final ExtendedTransformer<Key,String> KEY_FINGERPRINT_EXTRACTOR=
+            new AbstractExtendedTransformer<Key,String>(Key.class, String.class) {
+                @Override
+                public String transform(Key input) {
+                    return getFingerprint(input);
+                }
+            };
+
     /**
      * @param decoder Registers the specified {@link KeyDecoder} in the cached
      * map(s) - replacing any previous one
@@ -173,6 +210,26 @@ public class KeyUtils {
         synchronized(byAlgorithmDecodersMap) {
             byAlgorithmDecodersMap.put(decoder.getAlgorithm(), decoder);
         }
+
+        // the replaced decoder may have generated the cached keys
+        publicKeysCache.clear();
+        privateKeysCache.clear();
+    }
+
+    /**
+     * @return The {@link DecodedKeysCache} used by the public key decoding
+     * methods - e.g., {@link #decodeOpenSSHPublicKey(byte[], int, int)}
+     */
+    public static final DecodedKeysCache<PublicKey> getPublicKeysCache() {
+        return publicKeysCache;
+    }
+
+    /**
+     * @return The {@link DecodedKeysCache} used by the private key decoding
+     * methods - e.g., {@link #decodePEMPrivateKeyPKCS8(byte...)}
+     */
+    public static final DecodedKeysCache<PrivateKey> getPrivateKeysCache() {
+        return privateKeysCache;
     }
 
     /**
@@ -690,11 +747,19 @@ public class KeyUtils {
      * @param keyBytes The public key bytes
      * @param off Offset of key bytes in the array
      * @param len Number of key bytes
-     * @return The decoded {@link PublicKey} instance
+     * @return The decoded {@link PublicKey} instance - <B>Note:</B> may be
+     * a cached instance if same bytes already decoded
      * @throws IOException If invalid bytes contents
+     * @see #getPublicKeysCache()
      */
     public static final PublicKey decodeOpenSSHPublicKey(byte[] keyBytes, int off, int len) throws IOException {
-        return decodeOpenSSHPublicKey(new ByteArrayInputStream(keyBytes, off, len));
+        String      cacheKey=DecodedKeysCache.getCacheKey(keyBytes, off, len);
+        PublicKey   key=publicKeysCache.get(cacheKey);
+        if (key != null) {
+            return key;
+        }
+
+        return publicKeysCache.put(cacheKey, decodeOpenSSHPublicKey(new ByteArrayInputStream(keyBytes, off, len)));
     }
 
     /**
@@ -867,8 +932,14 @@ public class KeyUtils {
 
     // TODO add support for DSS decoder as well
     public static final PrivateKey decodePEMPrivateKeyPKCS8(byte... keyBytes) throws IOException {
+        String      cacheKey=DecodedKeysCache.getCacheKey(keyBytes, 0, keyBytes.length);
+        PrivateKey  key=privateKeysCache.get(cacheKey);
+        if (key != null) {
+            return key;
+        }
+
         try {
-            return RSAKeyDecoder.DECODER.generatePrivateKey(new PKCS8EncodedKeySpec(keyBytes));
+            return privateKeysCache.put(cacheKey, RSAKeyDecoder.DECODER.generatePrivateKey(new PKCS8EncodedKeySpec(keyBytes)));
         } catch(GeneralSecurityException e) {
             throw new IOException("Failed (" + e.getClass().getSimpleName() + ") to generate key: " + e.getMessage(), e);
         }
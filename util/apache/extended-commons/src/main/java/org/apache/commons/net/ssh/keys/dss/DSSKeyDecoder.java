@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StreamCorruptedException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
@@ -41,6 +42,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.net.ssh.der.ASN1Object;
 import org.apache.commons.net.ssh.der.ASN1Type;
+import org.apache.commons.net.ssh.der.DERBufferParser;
 import org.apache.commons.net.ssh.der.DERParser;
 import org.apache.commons.net.ssh.der.DERWriter;
 import org.apache.commons.net.ssh.keys.AbstractKeyDecoder;
@@ -152,6 +154,19 @@ public class DSSKeyDecoder extends AbstractKeyDecoder {
         return sb;
     }
 
+    @Override
+    public PrivateKey decodePEMPrivateKey(byte[] keyBytes, int off, int len, String password) throws IOException {
+        if (!StringUtils.isEmpty(password)) {
+            return super.decodePEMPrivateKey(keyBytes, off, len, password);
+        }
+
+        try {
+            return generatePrivateKey(decodeDSSKeySpec(ByteBuffer.wrap(keyBytes, off, len)));
+        } catch(GeneralSecurityException t) {
+            throw new IOException("Failed (" + t.getClass().getSimpleName() + ") to generate key: " + t.getMessage(), t);
+        }
+    }
+
     @Override
     public PrivateKey decodePEMPrivateKey(InputStream s, boolean okToClose, String password) throws IOException {
         try {
@@ -226,6 +241,29 @@ public class DSSKeyDecoder extends AbstractKeyDecoder {
         }
     }
     
+    /**
+     * Same as {@link #decodeDSSKeySpec(InputStream, boolean)} but decodes
+     * the data directly from the buffer - without copying any of the values
+     * @param buf The {@link ByteBuffer} containing the encoded bytes - from
+     * its current position up to its limit (which are not modified)
+     * @return The recovered {@link DSAPrivateKeySpec}
+     * @throws IOException If failed to decode the bytes
+     * @see DERBufferParser
+     */
+    public static final DSAPrivateKeySpec decodeDSSKeySpec(ByteBuffer buf) throws IOException {
+        DERBufferParser parser=new DERBufferParser(buf).next(ASN1Type.SEQUENCE).createParser();
+        if (!parser.next()) {   // Skip version
+            throw new StreamCorruptedException("No version");
+        }
+
+        BigInteger p=parser.next(ASN1Type.INTEGER).asInteger();
+        BigInteger q=parser.next(ASN1Type.INTEGER).asInteger();
+        BigInteger g=parser.next(ASN1Type.INTEGER).asInteger();
+        parser.next(ASN1Type.INTEGER);  // skip y - no need to materialize it in order to get to x
+        BigInteger x=parser.next(ASN1Type.INTEGER).asInteger();
+        return new DSAPrivateKeySpec(x, p, q, g);
+    }
+
     public static final void encodeDSSKey(DSAPrivateKey key, OutputStream s, boolean okToClose) throws IOException {
         Validate.notNull(key, "No private key", ArrayUtils.EMPTY_OBJECT_ARRAY);
 
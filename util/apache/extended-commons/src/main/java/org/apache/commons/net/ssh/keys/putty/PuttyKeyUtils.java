@@ -39,6 +39,7 @@ import org.apache.commons.io.input.CloseShieldReader;
 import org.apache.commons.io.input.ExtendedCloseShieldInputStream;
 import org.apache.commons.lang3.ExtendedValidate;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.net.ssh.keys.DecodedKeysCache;
 import org.apache.commons.net.ssh.keys.KeyUtils;
 import org.apache.commons.net.ssh.keys.dss.DSSPuttyKeyDecoder;
 import org.apache.commons.net.ssh.keys.rsa.RSAPuttyKeyDecoder;
@@ -73,6 +74,9 @@ public class PuttyKeyUtils {
         synchronized(byAlgorithmDecodersMap) {
             byAlgorithmDecodersMap.put(decoder.getAlgorithm(), decoder);
         }
+
+        // the replaced decoder may have generated the cached keys
+        KeyUtils.getPrivateKeysCache().clear();
     }
 
     /**
@@ -344,12 +348,32 @@ public class PuttyKeyUtils {
             throw new NoSuchAlgorithmException("No decoder found for " + algorithm);
         }
 
+        // password protected keys are not cached since the password may be wrong
+        DecodedKeysCache<PrivateKey>    cache=KeyUtils.getPrivateKeysCache();
+        String                          cacheKey=isEncrypted(prvEncryption) ? null : DecodedKeysCache.getCacheKey(algorithm, pubData, prvData);
+        if (cacheKey != null) {
+            PrivateKey  key=cache.get(cacheKey);
+            if (key != null) {
+                return key;
+            }
+        }
+
         try {
-            return decoder.decodePrivateKey(pubData, prvData, prvEncryption, password);
+            PrivateKey  key=decoder.decodePrivateKey(pubData, prvData, prvEncryption, password);
+            return (cacheKey == null) ? key : cache.put(cacheKey, key);
         } catch(IOException e) {
             throw new InvalidKeySpecException("decodePrivateKey(" + algorithm + ")"
                                             + " failed (" + e.getClass().getSimpleName() + ")"
                                             + " to decode: " + e.getMessage());
         }
     }
+
+    private static boolean isEncrypted(String prvEncryption) {
+        if (StringUtils.isEmpty(prvEncryption)
+         || PuttyKeyDecoder.NO_PRIVATE_KEY_ENCRYPTION_VALUE.equalsIgnoreCase(prvEncryption)) {
+            return false;
+        } else {
+            return true;
+        }
+    }
 }
@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StreamCorruptedException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
@@ -40,6 +41,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.net.ssh.der.ASN1Object;
 import org.apache.commons.net.ssh.der.ASN1Type;
+import org.apache.commons.net.ssh.der.DERBufferParser;
 import org.apache.commons.net.ssh.der.DERParser;
 import org.apache.commons.net.ssh.der.DERWriter;
 import org.apache.commons.net.ssh.keys.AbstractKeyDecoder;
@@ -126,6 +128,19 @@ public class RSAKeyDecoder extends AbstractKeyDecoder {
         return generatePublicKey(new RSAPublicKeySpec(n, e));
     }
 
+    @Override
+    public PrivateKey decodePEMPrivateKey(byte[] keyBytes, int off, int len, String password) throws IOException {
+        if (!StringUtils.isEmpty(password)) {
+            return super.decodePEMPrivateKey(keyBytes, off, len, password);
+        }
+
+        try {
+            return generatePrivateKey(decodeRSAKeySpec(ByteBuffer.wrap(keyBytes, off, len)));
+        } catch(GeneralSecurityException t) {
+            throw new IOException("Failed (" + t.getClass().getSimpleName() + ") to generate key: " + t.getMessage(), t);
+        }
+    }
+
     @Override
     public PrivateKey decodePEMPrivateKey(InputStream s, boolean okToClose, String password) throws IOException {
         try {
@@ -233,6 +248,36 @@ public class RSAKeyDecoder extends AbstractKeyDecoder {
         }
     }
     
+    /**
+     * Same as {@link #decodeRSAKeySpec(InputStream, boolean)} but decodes
+     * the data directly from the buffer - without copying any of the values
+     * @param buf The {@link ByteBuffer} containing the encoded bytes - from
+     * its current position up to its limit (which are not modified)
+     * @return The recovered {@link RSAPrivateCrtKeySpec}
+     * @throws IOException If failed to decode the bytes
+     * @see DERBufferParser
+     */
+    public static final RSAPrivateCrtKeySpec decodeRSAKeySpec(ByteBuffer buf) throws IOException {
+        DERBufferParser parser=new DERBufferParser(buf).next(ASN1Type.SEQUENCE).createParser();
+        if (!parser.next()) {
+            throw new StreamCorruptedException("No version");
+        }
+
+        if (parser.asLong() != 0L) { // as per RFC-3447 section A.1.2
+            throw new StreamCorruptedException("Multi-primes N/A");
+        }
+
+        BigInteger modulus=parser.next(ASN1Type.INTEGER).asInteger();
+        BigInteger publicExp=parser.next(ASN1Type.INTEGER).asInteger();
+        BigInteger privateExp=parser.next(ASN1Type.INTEGER).asInteger();
+        BigInteger prime1=parser.next(ASN1Type.INTEGER).asInteger();
+        BigInteger prime2=parser.next(ASN1Type.INTEGER).asInteger();
+        BigInteger exp1=parser.next(ASN1Type.INTEGER).asInteger();
+        BigInteger exp2=parser.next(ASN1Type.INTEGER).asInteger();
+        BigInteger crtCoef=parser.next(ASN1Type.INTEGER).asInteger();
+        return new RSAPrivateCrtKeySpec(modulus, publicExp, privateExp, prime1, prime2, exp1, exp2, crtCoef);
+    }
+
     public static final void encodeRSAKey(RSAPrivateCrtKey key, OutputStream s, boolean okToClose) throws IOException {
         Validate.notNull(key, "No private key", ArrayUtils.EMPTY_OBJECT_ARRAY);
 
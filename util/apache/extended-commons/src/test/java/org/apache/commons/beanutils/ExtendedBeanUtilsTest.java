@@ -27,16 +27,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections15.ExtendedMapUtils;
 import org.apache.commons.collections15.Factory;
 import org.apache.commons.collections15.FactoryUtils;
 import org.apache.commons.collections15.Transformer;
+import org.apache.commons.lang3.reflect.ExtendedMethodUtils;
 import org.apache.commons.lang3.reflect.ProxyUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.test.AbstractTestSupport;
+import org.apache.commons.test.MicroBenchmark;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 import org.junit.runners.MethodSorters;
 import org.mockito.Mockito;
 
@@ -205,6 +209,128 @@ public class ExtendedBeanUtilsTest extends AbstractTestSupport {
         }
     }
 
+    @Test
+    public void testDescribeBeanUsesCachedModel() {
+        BeanAccessorModel   model=BeanAccessorModel.of(DummyBean.class, true);
+        assertSame("Model not cached", model, BeanAccessorModel.of(DummyBean.class, true));
+        assertNotSame("Public and accessible models not separated", model, BeanAccessorModel.of(DummyBean.class, false));
+
+        Map<String,Pair<Method,Method>> expected=model.getDescriptors();
+        Map<String,Pair<Method,Method>> actual=ExtendedBeanUtils.describeBean(DummyBean.class);
+        assertNotSame("Cached descriptors exposed", expected, actual);
+        assertEquals("Mismatched descriptors", expected, actual);
+
+        // make sure modifying the result does not affect the cached model
+        ExtendedBeanUtils.removeNonModifiableAttributes(actual);
+        assertTrue("Non-modifiable attribute not removed", actual.size() < expected.size());
+        assertEquals("Cached model modified", expected, ExtendedBeanUtils.describeBean(DummyBean.class));
+
+        for (BeanPropertyAccessor accessor : model.getAccessors().values()) {
+            assertTrue("Accessor not compiled: " + accessor, accessor.isCompiled());
+        }
+    }
+
+    @Test
+    public void testBeanPropertyAccessor() {
+        BeanAccessorModel   model=BeanAccessorModel.of(DummyBean.class, true);
+        DummyBean           bean=new DummyBean();
+        Long                value=Long.valueOf(System.nanoTime());
+        BeanPropertyAccessor    accessor=model.getAccessor("LONGVALUE");
+        assertNotNull("No case insensitive accessor", accessor);
+        accessor.setValue(bean, value);
+        assertEquals("Mismatched set value", value.longValue(), bean.getLongValue());
+        assertEquals("Mismatched get value", value, accessor.getValue(bean));
+
+        try {
+            accessor.setValue(bean, null);
+            fail("Unexpected success to set null primitive value");
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+
+        accessor = model.getAccessor("class");
+        assertFalse("Unexpected class setter", accessor.isWriteable());
+        assertSame("Mismatched class value", DummyBean.class, accessor.getValue(bean));
+        try {
+            accessor.setValue(bean, getClass());
+            fail("Unexpected success to set read-only value");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNonPublicBeanPropertyAccessor() {
+        BeanAccessorModel       model=BeanAccessorModel.of(MixedAccessAccessors.class, false);
+        MixedAccessAccessors    bean=new MixedAccessAccessors();
+        for (String access : Arrays.asList("public", "protected", "private", "package")) {
+            BeanPropertyAccessor    accessor=model.getAccessor(access + "Getter");
+            assertNotNull(access + ": no accessor", accessor);
+            assertTrue(access + ": accessor not compiled", accessor.isCompiled());
+            assertNotNull(access + ": no value", accessor.getValue(bean));
+        }
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testBeanTransformersBenchmark() {
+        final int   NUM_BEANS=512 * 1024;
+        Map<String,Pair<Method,Method>>     attrsMap=ExtendedBeanUtils.removeNonModifiableAttributes(ExtendedBeanUtils.describeBean(DummyBean.class));
+        Transformer<DummyBean,SortedMap<String,Object>> beanXformer=ExtendedBeanUtils.beanToPropertiesTransformer(DummyBean.class, attrsMap);
+        Transformer<Map<String,?>,DummyBean>            attrsXformer=
+                ExtendedBeanUtils.propertiesToBeanTransformer(FactoryUtils.instantiateFactory(DummyBean.class), attrsMap);
+        DummyBean   bean=new DummyBean();
+        bean.setStringValue(getCurrentTestName());
+        bean.setLongValue(System.currentTimeMillis());
+        bean.setDateValue(new Date(bean.getLongValue()));
+        bean.setBoolValue(true);
+
+        System.out.append('\t').append(getCurrentTestName()).append(": beans=").println(NUM_BEANS);
+        for (int round=0; round < 3; round++) {
+            long    start=System.nanoTime();
+            for (int index=0; index < NUM_BEANS; index++) {
+                SortedMap<String,Object>    valuesMap=new TreeMap<String,Object>(String.CASE_INSENSITIVE_ORDER);
+                for (Map.Entry<String,Pair<Method,Method>> pe : attrsMap.entrySet()) {
+                    valuesMap.put(pe.getKey(), ExtendedMethodUtils.invoke(pe.getValue().getLeft(), bean));
+                }
+
+                DummyBean   copy=new DummyBean();
+                for (Map.Entry<String,Pair<Method,Method>> pe : attrsMap.entrySet()) {
+                    ExtendedMethodUtils.invoke(pe.getValue().getRight(), copy, valuesMap.get(pe.getKey()));
+                }
+            }
+            long    reflectTime=System.nanoTime() - start;
+
+            encourageGC();
+            start = System.nanoTime();
+            for (int index=0; index < NUM_BEANS; index++) {
+                attrsXformer.transform(beanXformer.transform(bean));
+            }
+            long    handlesTime=System.nanoTime() - start;
+
+            encourageGC();
+            start = System.nanoTime();
+            for (int index=0; index < NUM_BEANS; index++) {
+                SortedMap<String,Object>    valuesMap=new TreeMap<String,Object>(String.CASE_INSENSITIVE_ORDER);
+                valuesMap.put("boolValue", Boolean.valueOf(bean.isBoolValue()));
+                valuesMap.put("dateValue", bean.getDateValue());
+                valuesMap.put("longValue", Long.valueOf(bean.getLongValue()));
+                valuesMap.put("stringValue", bean.getStringValue());
+
+                DummyBean   copy=new DummyBean();
+                copy.setBoolValue(((Boolean) valuesMap.get("boolValue")).booleanValue());
+                copy.setDateValue((Date) valuesMap.get("dateValue"));
+                copy.setLongValue(((Long) valuesMap.get("longValue")).longValue());
+                copy.setStringValue((String) valuesMap.get("stringValue"));
+            }
+            long    manualTime=System.nanoTime() - start;
+
+            System.out.printf("\t\tround #%d: reflection=%d, handles=%d, hand-written=%d msec.%n", round,
+                              TimeUnit.NANOSECONDS.toMillis(reflectTime), TimeUnit.NANOSECONDS.toMillis(handlesTime), TimeUnit.NANOSECONDS.toMillis(manualTime));
+            encourageGC();
+        }
+    }
+
     private static SortedMap<String,Pair<Method,Method>> introspectTestInterfaces() {
         try {
             Map<String,Pair<Method,Method>> gettersMap=ExtendedBeanUtils.describeBean(Introspector.getBeanInfo(GetterInterface.class));
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.collections15.keyvalue.KeyedAccessUtils;
+import org.apache.commons.lang3.ExtendedClassUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.reflect.ProxyUtils;
+import org.apache.commons.test.AbstractTestSupport;
+import org.apache.commons.test.MicroBenchmark;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 7:31:54 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class MappedPropertyBeanClassGeneratorTest extends AbstractTestSupport {
+    public MappedPropertyBeanClassGeneratorTest() {
+        super();
+    }
+
+    @Test
+    public void testGeneratedClassCached() {
+        Class<?>    beanClass=MappedPropertyBeanClassGenerator.getGeneratedBeanClass(PrimitivesBean.class);
+        assertNotNull("No class generated", beanClass);
+        assertSame("Generated class not cached", beanClass, MappedPropertyBeanClassGenerator.getGeneratedBeanClass(PrimitivesBean.class));
+        assertTrue("Not a bean implementation", PrimitivesBean.class.isAssignableFrom(beanClass));
+        assertTrue("Not a mapped bean", AbstractMappedPropertyBean.class.isAssignableFrom(beanClass));
+        assertEquals("Mismatched class name", PrimitivesBean.class.getName() + MappedPropertyBeanClassGenerator.GENERATED_CLASS_SUFFIX, beanClass.getName());
+    }
+
+    @Test
+    public void testUnsupportedTypes() {
+        for (Class<?> type : new Class<?>[] { NonPublicBean.class, NonBeanMethodBean.class, NonPublicPropertyBean.class, Map.class, String.class }) {
+            assertFalse("Unexpected generation support for " + type.getSimpleName(), MappedPropertyBeanClassGenerator.isGeneratedBeanSupported(type));
+        }
+
+        // make sure we fall back to a proxy
+        Map<String,Object>  valuesMap=new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        valuesMap.put("name", getCurrentTestName());
+        NonPublicBean   bean=MappedPropertyBeanReadProxy.createPropertyBeanProxy(valuesMap, NonPublicBean.class);
+        assertTrue("Not a proxy", Proxy.isProxyClass(bean.getClass()));
+        assertEquals("Mismatched proxy value", getCurrentTestName(), bean.getName());
+    }
+
+    @Test
+    public void testGeneratedReadBean() {
+        Map<String,Object>  valuesMap=createPrimitivesValues();
+        valuesMap.put("text", ObjectUtils.NULL);
+        valuesMap.remove("array");
+
+        PrimitivesBean  bean=MappedPropertyBeanReadProxy.createPropertyBeanProxy(valuesMap, PrimitivesBean.class);
+        assertFalse("Unexpected proxy", Proxy.isProxyClass(bean.getClass()));
+        assertPrimitiveValues(valuesMap, bean);
+        assertNull("Unexpected null value", bean.getText());
+
+        try {
+            fail("Unexpected array value: " + Arrays.toString(bean.getArray()));
+        } catch(NoSuchElementException e) {
+            // expected
+        }
+
+        try {
+            bean.setCount(7365);
+            fail("Unexpected success to update read-only bean");
+        } catch(UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGeneratedReaderBean() {
+        Map<String,Object>  methodValuesMap=new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        PrimitivesBean      bean=MappedPropertyBeanReadProxy.createPropertyBeanProxy(
+                KeyedAccessUtils.keyedAccessor(methodValuesMap), PrimitivesBean.class);
+        assertFalse("Unexpected proxy", Proxy.isProxyClass(bean.getClass()));
+
+        // make sure the values are read "live"
+        methodValuesMap.put("getText", getCurrentTestName());
+        assertEquals("Mismatched live value", getCurrentTestName(), bean.getText());
+    }
+
+    @Test
+    public void testGeneratedAccessBean() {
+        Map<String,Object>  valuesMap=createPrimitivesValues();
+        PrimitivesBean      bean=MappedPropertyBeanAccessProxy.createPropertyBeanAccessor(valuesMap, PrimitivesBean.class);
+        assertFalse("Unexpected proxy", Proxy.isProxyClass(bean.getClass()));
+        assertPrimitiveValues(valuesMap, bean);
+
+        bean.setCount(bean.getCount() + 1);
+        bean.setSize(bean.getSize() + 1L);
+        bean.setRatio(bean.getRatio() / 2.0d);
+        bean.setEnabled(!bean.isEnabled());
+        bean.setLetter(Character.toUpperCase(bean.getLetter()));
+        bean.setArray(new byte[] { 1, 2, 3 });
+        bean.setText(getClass().getSimpleName());
+        assertPrimitiveValues(valuesMap, bean);
+
+        bean.setText(null);
+        assertFalse("Null value still mapped", valuesMap.containsKey("text"));
+        assertNull("Null value not returned", bean.getText());
+    }
+
+    @Test
+    public void testGeneratedMethodsAccessBean() {
+        Map<String,Object>  valuesMap=createPrimitivesValues();
+        PrimitivesBean      bean=MappedPropertyBeanAccessProxy.createPropertyBeanAccessor(
+                MappedPropertyBeanAccessProxy.createMethodsAccessor(valuesMap, PrimitivesBean.class), PrimitivesBean.class);
+        assertFalse("Unexpected proxy", Proxy.isProxyClass(bean.getClass()));
+        assertPrimitiveValues(valuesMap, bean);
+
+        bean.setText(getCurrentTestName());
+        assertEquals("Value not updated", getCurrentTestName(), valuesMap.get("text"));
+    }
+
+    @Test
+    public void testCoVariantGetters() {
+        Map<String,Object>  valuesMap=new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        valuesMap.put("value", getCurrentTestName());
+
+        CoVariantBean   bean=MappedPropertyBeanAccessProxy.createPropertyBeanAccessor(valuesMap, CoVariantBean.class);
+        assertFalse("Unexpected proxy", Proxy.isProxyClass(bean.getClass()));
+        assertEquals("Mismatched co-variant value", getCurrentTestName(), bean.getValue());
+        assertEquals("Mismatched base value", getCurrentTestName(), ((BaseBean) bean).getValue());
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testGeneratedBeanBenchmark() {
+        final int           NUM_CALLS=8 * 1024 * 1024;
+        Map<String,Object>  valuesMap=createPrimitivesValues();
+        PrimitivesBean      generated=MappedPropertyBeanReadProxy.createPropertyBeanProxy(valuesMap, PrimitivesBean.class);
+        PrimitivesBean      proxy=ProxyUtils.newProxyInstance(PrimitivesBean.class, ExtendedClassUtils.getDefaultClassLoader(getClass()),
+                new MappedPropertyBeanReadProxy(KeyedAccessUtils.keyedAccessor(MappedPropertyBeanReadProxy.calculateMethodValuesMap(
+                        MappedPropertyBeanReadProxy.getProxyPropertyReaders(PrimitivesBean.class), valuesMap))),
+                PrimitivesBean.class);
+        System.out.append('\t').append(getCurrentTestName()).append(": calls=").println(NUM_CALLS);
+        for (int round=0; round < 3; round++) {
+            long    start=System.nanoTime(), proxySum=0L;
+            for (int index=0; index < NUM_CALLS; index++) {
+                proxySum += proxy.getCount() + proxy.getSize();
+            }
+            long    proxyTime=System.nanoTime() - start, generatedSum=0L;
+
+            start = System.nanoTime();
+            for (int index=0; index < NUM_CALLS; index++) {
+                generatedSum += generated.getCount() + generated.getSize();
+            }
+            long    generatedTime=System.nanoTime() - start;
+
+            assertEquals("Mismatched results", proxySum, generatedSum);
+            System.out.printf("\t\tround #%d: proxy=%d, generated=%d msec.%n", round,
+                              TimeUnit.NANOSECONDS.toMillis(proxyTime), TimeUnit.NANOSECONDS.toMillis(generatedTime));
+            encourageGC();
+        }
+    }
+
+    private static void assertPrimitiveValues(Map<String,?> valuesMap, PrimitivesBean bean) {
+        assertEquals("Mismatched count", valuesMap.get("count"), Integer.valueOf(bean.getCount()));
+        assertEquals("Mismatched size", valuesMap.get("size"), Long.valueOf(bean.getSize()));
+        assertEquals("Mismatched ratio", valuesMap.get("ratio"), Double.valueOf(bean.getRatio()));
+        assertEquals("Mismatched enabled", valuesMap.get("enabled"), Boolean.valueOf(bean.isEnabled()));
+        assertEquals("Mismatched letter", valuesMap.get("letter"), Character.valueOf(bean.getLetter()));
+        if (valuesMap.containsKey("array")) {
+            assertSame("Mismatched array", valuesMap.get("array"), bean.getArray());
+        }
+        if (!(valuesMap.get("text") instanceof ObjectUtils.Null)) {
+            assertSame("Mismatched text", valuesMap.get("text"), bean.getText());
+        }
+    }
+
+    private Map<String,Object> createPrimitivesValues() {
+        Map<String,Object>  valuesMap=new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        valuesMap.put("count", Integer.valueOf(RANDOMIZER.nextInt(Short.MAX_VALUE)));
+        valuesMap.put("size", Long.valueOf(System.currentTimeMillis()));
+        valuesMap.put("ratio", Double.valueOf(RANDOMIZER.nextDouble()));
+        valuesMap.put("enabled", Boolean.valueOf(RANDOMIZER.nextBoolean()));
+        valuesMap.put("letter", Character.valueOf((char) ('a' + RANDOMIZER.nextInt(26))));
+        valuesMap.put("array", new byte[] { Byte.MIN_VALUE, 0, Byte.MAX_VALUE });
+        valuesMap.put("text", getClass().getName());
+        return valuesMap;
+    }
+
+    public static interface PrimitivesBean {
+        int getCount();
+        void setCount(int count);
+
+        long getSize();
+        void setSize(long size);
+
+        double getRatio();
+        void setRatio(double ratio);
+
+        boolean isEnabled();
+        void setEnabled(boolean enabled);
+
+        char getLetter();
+        void setLetter(char letter);
+
+        byte[] getArray();
+        void setArray(byte[] array);
+
+        String getText();
+        void setText(String text);
+    }
+
+    public static interface BaseBean {
+        Object getValue();
+    }
+
+    public static interface CoVariantBean extends BaseBean {
+        @Override
+        String getValue();
+        void setValue(String value);
+    }
+
+    static interface NonPublicBean {
+        String getName();
+    }
+
+    public static interface NonBeanMethodBean {
+        String getName();
+        void reset();
+    }
+
+    public static interface NonPublicPropertyBean {
+        NonPublicBean getBean();
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.codec.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.test.AbstractTestSupport;
+import org.apache.commons.test.MicroBenchmark;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 8, 2013 1:17:44 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ExtendedBase64Test extends AbstractTestSupport {
+    public ExtendedBase64Test() {
+        super();
+    }
+
+    @Test
+    public void testEncodeDecodeArrays() throws IOException {
+        for (int len=0; len <= Byte.MAX_VALUE; len++) {
+            byte[]  data=new byte[len];
+            RANDOMIZER.nextBytes(data);
+
+            for (boolean urlSafe : new boolean[] { false, true }) {
+                String  expected=urlSafe ? Base64.encodeBase64URLSafeString(data) : Base64.encodeBase64String(data);
+                String  actual=ExtendedBase64.encodeToString(data, urlSafe);
+                if (urlSafe) {  // commons-codec does not pad the URL safe encoding
+                    assertEquals("Mismatched URL safe unpadded encoding for length=" + len, expected, actual.replace("=", ""));
+                } else {
+                    assertEquals("Mismatched encoding for length=" + len, expected, actual);
+                }
+
+                byte[]  encoded=new byte[ExtendedBase64.getEncodedLength(len, false) + 2];
+                int     encLen=ExtendedBase64.encode(data, 0, len, encoded, 1, urlSafe, false);
+                assertEquals("Mismatched unpadded length for length=" + len, ExtendedBase64.getEncodedLength(len, false), encLen);
+                assertEquals("Mismatched unpadded data for length=" + len, actual.replace("=", ""), new String(encoded, 1, encLen, "US-ASCII"));
+
+                assertArrayEquals("Mismatched decoded data for length=" + len, data, ExtendedBase64.decodeToArray(actual));
+
+                byte[]  decoded=new byte[ExtendedBase64.getMaxDecodedLength(encLen)];
+                assertEquals("Mismatched unpadded decoded length for length=" + len, len, ExtendedBase64.decode(encoded, 1, encLen, decoded, 0));
+                assertArrayEquals("Mismatched unpadded decoded data for length=" + len, data, decoded);
+            }
+        }
+    }
+
+    @Test
+    public void testDecodeWithWhitespace() throws IOException {
+        byte[]  data=new byte[Byte.MAX_VALUE];
+        RANDOMIZER.nextBytes(data);
+
+        String  encoded=new String(Base64.encodeBase64Chunked(data), "US-ASCII");   // includes CRLF every 76 characters
+        assertArrayEquals("Mismatched decoded chunked data", data, ExtendedBase64.decodeToArray("  " + encoded + "\t"));
+    }
+
+    @Test
+    public void testDecodeInvalidData() {
+        for (String value : new String[] { "A", "AB=C", "ABC*", "====", "AB==CD", "\u00C1BCD" }) {
+            try {
+                byte[]  data=ExtendedBase64.decodeToArray(value);
+                fail("Unexpected success for " + value + ": " + data.length + " bytes");
+            } catch(StreamCorruptedException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testStreamingEncoderDecoder() throws IOException {
+        byte[]  data=new byte[Short.MAX_VALUE];
+        RANDOMIZER.nextBytes(data);
+
+        byte[]                  expected=Base64.encodeBase64(data);
+        ExtendedBase64.Encoder  encoder=new ExtendedBase64.Encoder();
+        ByteArrayOutputStream   encOut=new ByteArrayOutputStream(expected.length);
+        byte[]                  work=new byte[ExtendedBase64.getEncodedLength(Byte.MAX_VALUE + 2, true)];
+        for (int pos=0; pos < data.length; ) {
+            int chunkLen=Math.min(data.length - pos, 1 + RANDOMIZER.nextInt(Byte.MAX_VALUE));
+            encOut.write(work, 0, encoder.update(data, pos, chunkLen, work, 0));
+            pos += chunkLen;
+        }
+        encOut.write(work, 0, encoder.finish(work, 0));
+        assertArrayEquals("Mismatched chunked encoding", expected, encOut.toByteArray());
+
+        ExtendedBase64.Decoder  decoder=new ExtendedBase64.Decoder();
+        ByteArrayOutputStream   decOut=new ByteArrayOutputStream(data.length);
+        for (int pos=0; pos < expected.length; ) {
+            int chunkLen=Math.min(expected.length - pos, 1 + RANDOMIZER.nextInt(Byte.MAX_VALUE));
+            decOut.write(work, 0, decoder.update(expected, pos, chunkLen, work, 0));
+            pos += chunkLen;
+        }
+        decOut.write(work, 0, decoder.finish(work, 0));
+        assertArrayEquals("Mismatched chunked decoding", data, decOut.toByteArray());
+    }
+
+    @Test
+    public void testByteBufferEncoding() throws IOException {
+        byte[]  data=new byte[Short.MAX_VALUE];
+        RANDOMIZER.nextBytes(data);
+
+        byte[]  expected=Base64.encodeBase64(data);
+        for (boolean direct : new boolean[] { false, true }) {
+            ByteBuffer  src=ByteBuffer.wrap(data);
+            ByteBuffer  dst=direct ? ByteBuffer.allocateDirect(expected.length) : ByteBuffer.allocate(expected.length);
+            ExtendedBase64.Encoder  encoder=new ExtendedBase64.Encoder();
+            // use a small target window to force partial consumption
+            while (src.hasRemaining()) {
+                ByteBuffer  window=dst.duplicate();
+                window.limit(Math.min(dst.capacity(), window.position() + Byte.MAX_VALUE));
+                encoder.update(src, window);
+                dst.position(window.position());
+            }
+
+            byte[]  tail=new byte[4];
+            dst.put(tail, 0, encoder.finish(tail, 0));
+            dst.flip();
+
+            byte[]  actual=new byte[dst.remaining()];
+            dst.get(actual);
+            assertArrayEquals("Mismatched encoding for direct=" + direct, expected, actual);
+        }
+    }
+
+    @Test
+    public void testStreamCopy() throws IOException {
+        byte[]  data=new byte[ExtendedBase64.DEFAULT_COPY_SIZE * 3 + Byte.MAX_VALUE];
+        RANDOMIZER.nextBytes(data);
+
+        ByteArrayOutputStream   encOut=new ByteArrayOutputStream();
+        long                    encLen=ExtendedBase64.encode(new ByteArrayInputStream(data), encOut, true);
+        byte[]                  encoded=encOut.toByteArray();
+        assertEquals("Mismatched encoded length", encoded.length, encLen);
+        assertEquals("Mismatched encoded data", Base64.encodeBase64URLSafeString(data), new String(encoded, "US-ASCII").replace("=", ""));
+
+        ByteArrayOutputStream   decOut=new ByteArrayOutputStream();
+        assertEquals("Mismatched decoded length", data.length, ExtendedBase64.decode(new ByteArrayInputStream(encoded), decOut));
+        assertArrayEquals("Mismatched decoded data", data, decOut.toByteArray());
+    }
+
+    @Test
+    public void testStreamWrappers() throws IOException {
+        byte[]  data=new byte[ExtendedBase64.DEFAULT_COPY_SIZE * 2 + Byte.MAX_VALUE];
+        RANDOMIZER.nextBytes(data);
+
+        ByteArrayOutputStream   encOut=new ByteArrayOutputStream();
+        OutputStream            output=new ExtendedBase64.EncodingOutputStream(encOut);
+        try {
+            for (int pos=0; pos < data.length; ) {
+                int chunkLen=Math.min(data.length - pos, RANDOMIZER.nextInt(ExtendedBase64.DEFAULT_COPY_SIZE + Byte.MAX_VALUE));
+                if (chunkLen == 1) {
+                    output.write(data[pos]);
+                } else {
+                    output.write(data, pos, chunkLen);
+                }
+                pos += chunkLen;
+            }
+        } finally {
+            output.close();
+        }
+
+        byte[]  encoded=encOut.toByteArray();
+        assertArrayEquals("Mismatched encoded data", Base64.encodeBase64(data), encoded);
+
+        // decode the chunked encoding in small odd-sized reads
+        InputStream input=new ExtendedBase64.DecodingInputStream(new ByteArrayInputStream(Base64.encodeBase64Chunked(data)) {
+                @Override
+                public synchronized int read(byte[] b, int off, int len) {
+                    return super.read(b, off, Math.min(len, Byte.MAX_VALUE));
+                }
+            });
+        try {
+            byte[]  decoded=new byte[data.length];
+            for (int pos=0; pos < decoded.length; ) {
+                int readLen=(pos % 3 == 0) ? input.read(decoded, pos, Math.min(decoded.length - pos, 1 + RANDOMIZER.nextInt(Short.MAX_VALUE))) : input.read();
+                assertTrue("Premature EOF at position=" + pos, readLen >= 0);
+                if ((pos % 3) == 0) {
+                    pos += readLen;
+                } else {
+                    decoded[pos++] = (byte) readLen;
+                }
+            }
+            assertEquals("Data beyond EOF", (-1), input.read());
+            assertArrayEquals("Mismatched decoded data", data, decoded);
+        } finally {
+            input.close();
+        }
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testEncodeDecodePerformance() throws IOException {
+        final int   NUM_ROUNDS=5, NUM_ITERATIONS=Short.MAX_VALUE;
+        for (int dataSize : new int[] { 16, 256, 4096 }) {
+            byte[]  data=new byte[dataSize];
+            RANDOMIZER.nextBytes(data);
+
+            byte[]  encoded=new byte[ExtendedBase64.getEncodedLength(dataSize, true)], decoded=new byte[dataSize];
+            String  encStr=Base64.encodeBase64String(data);
+            System.out.printf("%-20s %8s %12s %12s\n", "Codec", "Size", "Encode(ms)", "Decode(ms)");
+            for (int round=0; round < NUM_ROUNDS; round++) {
+                encourageGC();
+                long    start=System.nanoTime();
+                for (int index=0; index < NUM_ITERATIONS; index++) {
+                    Base64.encodeBase64(data);
+                }
+                long    encEnd=System.nanoTime();
+                for (int index=0; index < NUM_ITERATIONS; index++) {
+                    Base64.decodeBase64(encStr);
+                }
+                long    decEnd=System.nanoTime();
+                System.out.printf("%-20s %8d %12d %12d\n", "commons-codec", dataSize, (encEnd - start) / 1000000L, (decEnd - encEnd) / 1000000L);
+
+                start = System.nanoTime();
+                for (int index=0; index < NUM_ITERATIONS; index++) {
+                    ExtendedBase64.encode(data, 0, dataSize, encoded, 0, false, true);
+                }
+                encEnd = System.nanoTime();
+                for (int index=0; index < NUM_ITERATIONS; index++) {
+                    ExtendedBase64.decode(encStr, 0, encStr.length(), decoded, 0);
+                }
+                decEnd = System.nanoTime();
+                System.out.printf("%-20s %8d %12d %12d\n", "ExtendedBase64", dataSize, (encEnd - start) / 1000000L, (decEnd - encEnd) / 1000000L);
+            }
+        }
+    }
+}
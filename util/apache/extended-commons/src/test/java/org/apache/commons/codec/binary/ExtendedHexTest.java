@@ -0,0 +1,203 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.codec.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.test.AbstractTestSupport;
+import org.apache.commons.test.MicroBenchmark;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 8, 2013 1:56:02 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ExtendedHexTest extends AbstractTestSupport {
+    public ExtendedHexTest() {
+        super();
+    }
+
+    @Test
+    public void testEncodeDecodeArrays() throws IOException {
+        for (int len=0; len <= Byte.MAX_VALUE; len++) {
+            byte[]  data=new byte[len];
+            RANDOMIZER.nextBytes(data);
+
+            for (boolean toLowerCase : new boolean[] { true, false }) {
+                String  expected=new String(Hex.encodeHex(data, toLowerCase));
+                char[]  chars=new char[2 * len];
+                assertEquals("Mismatched chars count", chars.length, ExtendedHex.encodeHex(data, 0, len, chars, 0, toLowerCase));
+                assertEquals("Mismatched chars encoding", expected, new String(chars));
+
+                byte[]  ascii=new byte[2 * len];
+                assertEquals("Mismatched bytes count", ascii.length, ExtendedHex.encodeHex(data, 0, len, ascii, 0, toLowerCase));
+                assertEquals("Mismatched bytes encoding", expected, new String(ascii, "US-ASCII"));
+                assertEquals("Mismatched appended encoding", expected, ExtendedHex.appendHexData(new StringBuilder(), toLowerCase, data).toString());
+
+                byte[]  decoded=new byte[len];
+                assertEquals("Mismatched decoded chars length", len, ExtendedHex.decodeHex(expected, 0, expected.length(), decoded, 0));
+                assertArrayEquals("Mismatched decoded chars", data, decoded);
+                assertEquals("Mismatched decoded bytes length", len, ExtendedHex.decodeHex(ascii, 0, ascii.length, decoded, 0));
+                assertArrayEquals("Mismatched decoded bytes", data, decoded);
+            }
+        }
+    }
+
+    @Test
+    public void testAppendWithSeparator() throws IOException {
+        byte[]  data={ 0x01, (byte) 0xAB, 0x7F };
+        assertEquals("Mismatched lowercase result", "01:ab:7f", ExtendedHex.encodeHexString(true, ":", data));
+        assertEquals("Mismatched uppercase result", "01-AB-7F", ExtendedHex.encodeHexString(false, "-", data));
+    }
+
+    @Test
+    public void testDecodeInvalidData() {
+        for (String value : new String[] { "0", "0g", "+1", "123", "\u00E1\u00E1" }) {
+            try {
+                byte[]  data=new byte[value.length()];
+                int     len=ExtendedHex.decodeHex(value, 0, value.length(), data, 0);
+                fail("Unexpected success for " + value + ": " + len + " bytes");
+            } catch(StreamCorruptedException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testStreamCopy() throws IOException {
+        byte[]  data=new byte[ExtendedHex.DEFAULT_COPY_SIZE * 3 + Byte.MAX_VALUE];
+        RANDOMIZER.nextBytes(data);
+
+        StringWriter    w=new StringWriter(2 * data.length);
+        assertEquals("Mismatched encoded length", 2L * data.length, ExtendedHex.encodeHex(new ByteArrayInputStream(data), w, true));
+
+        String  encoded=w.toString();
+        assertEquals("Mismatched encoded data", Hex.encodeHexString(data), encoded);
+
+        // use a reader that returns odd-sized chunks
+        ByteArrayOutputStream   out=new ByteArrayOutputStream(data.length);
+        StringReader            rdr=new StringReader(encoded) {
+                @Override
+                public int read(char[] cbuf, int off, int len) throws IOException {
+                    return super.read(cbuf, off, Math.min(len, Byte.MAX_VALUE));
+                }
+            };
+        assertEquals("Mismatched decoded length", data.length, ExtendedHex.decodeHex(rdr, out));
+        assertArrayEquals("Mismatched decoded data", data, out.toByteArray());
+    }
+
+    @Test
+    public void testStreamWrappers() throws IOException {
+        byte[]  data=new byte[ExtendedHex.DEFAULT_COPY_SIZE * 2 + Byte.MAX_VALUE];
+        RANDOMIZER.nextBytes(data);
+
+        ByteArrayOutputStream   encOut=new ByteArrayOutputStream(2 * data.length);
+        OutputStream            output=new ExtendedHex.EncodingOutputStream(encOut, false);
+        try {
+            output.write(data[0]);
+            output.write(data, 1, data.length - 1);
+        } finally {
+            output.close();
+        }
+
+        byte[]  encoded=encOut.toByteArray();
+        assertEquals("Mismatched encoded data", new String(Hex.encodeHex(data, false)), new String(encoded, "US-ASCII"));
+
+        // use a stream that returns odd-sized chunks
+        InputStream input=new ExtendedHex.DecodingInputStream(new ByteArrayInputStream(encoded) {
+                @Override
+                public synchronized int read(byte[] b, int off, int len) {
+                    return super.read(b, off, Math.min(len, Byte.MAX_VALUE));
+                }
+            });
+        try {
+            ByteArrayOutputStream   decOut=new ByteArrayOutputStream(data.length);
+            decOut.write(input.read());
+            IOUtils.copy(input, decOut);
+            assertArrayEquals("Mismatched decoded data", data, decOut.toByteArray());
+        } finally {
+            input.close();
+        }
+
+        input = new ExtendedHex.DecodingInputStream(new ByteArrayInputStream(encoded, 0, encoded.length - 1));
+        try {
+            IOUtils.copy(input, new ByteArrayOutputStream(data.length));
+            fail("Unexpected success to decode odd number of characters");
+        } catch(StreamCorruptedException e) {
+            // expected
+        } finally {
+            input.close();
+        }
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testEncodeDecodePerformance() throws IOException {
+        final int   NUM_ROUNDS=5, NUM_ITERATIONS=Short.MAX_VALUE;
+        for (int dataSize : new int[] { 16, 256, 4096 }) {
+            byte[]  data=new byte[dataSize];
+            RANDOMIZER.nextBytes(data);
+
+            char[]  encoded=new char[2 * dataSize];
+            byte[]  decoded=new byte[dataSize];
+            String  encStr=Hex.encodeHexString(data);
+            char[]  encChars=encStr.toCharArray();
+            System.out.printf("%-20s %8s %12s %12s\n", "Codec", "Size", "Encode(ms)", "Decode(ms)");
+            for (int round=0; round < NUM_ROUNDS; round++) {
+                encourageGC();
+                long    start=System.nanoTime();
+                for (int index=0; index < NUM_ITERATIONS; index++) {
+                    Hex.encodeHex(data);
+                }
+                long    encEnd=System.nanoTime();
+                try {
+                    for (int index=0; index < NUM_ITERATIONS; index++) {
+                        Hex.decodeHex(encChars);
+                    }
+                } catch(DecoderException e) {
+                    throw new StreamCorruptedException(e.getMessage());
+                }
+                long    decEnd=System.nanoTime();
+                System.out.printf("%-20s %8d %12d %12d\n", "commons-codec", dataSize, (encEnd - start) / 1000000L, (decEnd - encEnd) / 1000000L);
+
+                start = System.nanoTime();
+                for (int index=0; index < NUM_ITERATIONS; index++) {
+                    ExtendedHex.encodeHex(data, 0, dataSize, encoded, 0, true);
+                }
+                encEnd = System.nanoTime();
+                for (int index=0; index < NUM_ITERATIONS; index++) {
+                    ExtendedHex.decodeHex(encStr, 0, encStr.length(), decoded, 0);
+                }
+                decEnd = System.nanoTime();
+                System.out.printf("%-20s %8d %12d %12d\n", "ExtendedHex", dataSize, (encEnd - start) / 1000000L, (decEnd - encEnd) / 1000000L);
+            }
+        }
+    }
+}
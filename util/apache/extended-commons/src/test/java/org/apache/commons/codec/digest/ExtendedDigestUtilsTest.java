@@ -18,19 +18,24 @@ package org.apache.commons.codec.digest;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.net.URL;
 import java.nio.CharBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.io.ExtendedFileUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.test.MicroBenchmark;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 import org.junit.runners.MethodSorters;
 
 /**
@@ -144,4 +149,106 @@ public class ExtendedDigestUtilsTest extends AbstractDigestTestSupport {
             assertArrayEquals(algorithm + ": mismatched CharSequence digest value", expected, actual);
         }
     }
+
+    @Test
+    public void testPooledDigest() {
+        for (String algorithm : new String[] { "MD5", "SHA-1", "SHA-256" }) {
+            MessageDigest   digest=ExtendedDigestUtils.getPooledDigest(algorithm);
+            digest.update(TEST_BYTES, 0, TEST_BYTES.length / 2);    // leave some state
+            assertSame(algorithm + ": mismatched pooled instance", digest, ExtendedDigestUtils.getPooledDigest(algorithm));
+            assertArrayEquals(algorithm + ": instance not reset", DigestUtils.getDigest(algorithm).digest(TEST_BYTES), digest.digest(TEST_BYTES));
+        }
+    }
+
+    @Test
+    public void testMultiDigest() throws IOException {
+        String[]        algorithms=ALGORITHMS.toArray(new String[ALGORITHMS.size()]);
+        MessageDigest[] digests=ExtendedDigestUtils.getDigests(algorithms);
+        byte[][]        actual=ExtendedDigestUtils.multiDigest(TEST_FILE, digests);
+        assertEquals("Mismatched number of values", algorithms.length, actual.length);
+
+        for (int index=0; index < algorithms.length; index++) {
+            byte[]  expected=DigestUtils.getDigest(algorithms[index]).digest(TEST_BYTES);
+            assertArrayEquals(algorithms[index] + ": mismatched digest value", expected, actual[index]);
+        }
+    }
+
+    @Test
+    public void testTreeHashStructure() {
+        final int       BLOCK_SIZE=Byte.MAX_VALUE;
+        MessageDigest   digest=DigestUtils.getSha256Digest();
+        byte[]          data=new byte[2 * BLOCK_SIZE + BLOCK_SIZE / 2];
+        RANDOMIZER.nextBytes(data);
+
+        byte[][]    leaves=new byte[3][];
+        for (int index=0; index < leaves.length; index++) {
+            int offset=index * BLOCK_SIZE;
+            digest.update(ExtendedDigestUtils.TREE_HASH_LEAF_PREFIX);
+            digest.update(data, offset, Math.min(BLOCK_SIZE, data.length - offset));
+            leaves[index] = digest.digest();
+        }
+
+        byte[]  expected=ExtendedDigestUtils.treeHashNode(digest, ExtendedDigestUtils.treeHashNode(digest, leaves[0], leaves[1]), leaves[2]);
+        byte[]  actual=ExtendedDigestUtils.treeHash(digest.getAlgorithm(), data, BLOCK_SIZE);
+        assertArrayEquals("Mismatched tree hash", expected, actual);
+    }
+
+    @Test
+    public void testTreeHashFile() throws IOException {
+        final int   BLOCK_SIZE=4 * 1024;
+        File        file=new File(ensureTempFolderExists(), getClass().getSimpleName() + "-" + getCurrentTestName() + ".bin");
+        int[]       sizes={ 0, 1, BLOCK_SIZE, BLOCK_SIZE + 1, 7 * BLOCK_SIZE, 13 * BLOCK_SIZE + BLOCK_SIZE / 3, 64 * BLOCK_SIZE };
+        for (int size : sizes) {
+            byte[]  data=new byte[size];
+            RANDOMIZER.nextBytes(data);
+            FileUtils.writeByteArrayToFile(file, data);
+
+            for (String algorithm : new String[] { "MD5", "SHA-1", "SHA-256" }) {
+                byte[]  expected=ExtendedDigestUtils.treeHash(algorithm, data, BLOCK_SIZE);
+                byte[]  actual=ExtendedDigestUtils.treeHash(algorithm, file, BLOCK_SIZE);
+                assertArrayEquals(algorithm + ": mismatched tree hash for size=" + size, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testMultiDigestPerformance() throws IOException {
+        final int   FILE_SIZE=256 * 1024 * 1024, NUM_ROUNDS=3;
+        File        file=new File(ensureTempFolderExists(), getClass().getSimpleName() + "-" + getCurrentTestName() + ".bin");
+        byte[]      data=new byte[ExtendedDigestUtils.MULTI_DIGEST_BUFFER_SIZE];
+        OutputStream    output=new FileOutputStream(file);
+        try {
+            for (int written=0; written < FILE_SIZE; written += data.length) {
+                RANDOMIZER.nextBytes(data);
+                output.write(data);
+            }
+        } finally {
+            output.close();
+        }
+
+        String[]    algorithms={ "MD5", "SHA-1", "SHA-256" };
+        System.out.printf("%-12s %10s\n", "Mode", "Time(ms)");
+        for (int round=0; round < NUM_ROUNDS; round++) {
+            encourageGC();
+            long    start=System.nanoTime();
+            for (String algorithm : algorithms) {
+                ExtendedDigestUtils.digest(DigestUtils.getDigest(algorithm), file);
+            }
+            long    sequentialEnd=System.nanoTime();
+            ExtendedDigestUtils.multiDigest(file, ExtendedDigestUtils.getDigests(algorithms));
+            long    multiEnd=System.nanoTime();
+            ExtendedDigestUtils.treeHash("SHA-256", file, ExtendedDigestUtils.DEFAULT_TREE_HASH_BLOCK_SIZE, new ForkJoinPool(1));
+            long    treeSerialEnd=System.nanoTime();
+            ExtendedDigestUtils.treeHash("SHA-256", file);
+            long    treeParallelEnd=System.nanoTime();
+
+            System.out.printf("%-12s %10d\n", "sequential", Long.valueOf((sequentialEnd - start) / 1000000L));
+            System.out.printf("%-12s %10d\n", "multi", Long.valueOf((multiEnd - sequentialEnd) / 1000000L));
+            System.out.printf("%-12s %10d\n", "tree(1)", Long.valueOf((treeSerialEnd - multiEnd) / 1000000L));
+            System.out.printf("%-12s %10d\n", "tree(" + Runtime.getRuntime().availableProcessors() + ")", Long.valueOf((treeParallelEnd - treeSerialEnd) / 1000000L));
+        }
+
+        assertTrue("Failed to delete " + file, file.delete());
+    }
 }
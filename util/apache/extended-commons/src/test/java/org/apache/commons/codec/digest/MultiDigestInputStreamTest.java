@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.codec.digest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.ExtendedClassUtils;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 7, 2013 12:32:08 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class MultiDigestInputStreamTest extends AbstractDigestTestSupport {
+    private static final byte[]    TEST_DATA;
+
+    // avoid repeated calls to constructor
+    static {
+        URL  url=ExtendedClassUtils.getClassBytesURL(MultiDigestInputStreamTest.class);
+        assertNotNull("Missing class bytes URL", url);
+        try {
+            TEST_DATA = IOUtils.toByteArray(url);
+        } catch(IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public MultiDigestInputStreamTest()  {
+        super();
+    }
+
+    @Test
+    public void testDigestCorrectness() throws Exception {
+        String[]    algorithms=ALGORITHMS.toArray(new String[ALGORITHMS.size()]);
+        InputStream bais=new ByteArrayInputStream(TEST_DATA);
+        try {
+            MultiDigestInputStream  input=new MultiDigestInputStream(bais, algorithms);
+            try {
+                byte[]  readData=IOUtils.toByteArray(input);
+                // make sure read data has not been modified
+                assertArrayEquals("Mismatched read data", TEST_DATA, readData);
+                assertNull("Unexpected digests before close", input.getDigestValues());
+            } finally {
+                input.close();
+            }
+
+            byte[][]    actual=input.getDigestValues();
+            assertEquals("Mismatched number of values", algorithms.length, actual.length);
+            for (int index=0; index < algorithms.length; index++) {
+                byte[]  expected=MessageDigest.getInstance(algorithms[index]).digest(TEST_DATA);
+                assertArrayEquals("Mismatched digest for " + algorithms[index], expected, actual[index]);
+            }
+
+            input.close();
+            assertSame("Values re-calculated on repeated close", actual, input.getDigestValues());
+        } finally {
+            bais.close();
+        }
+    }
+
+    @Test
+    public void testDigestResetOnStreamReset() throws Exception {
+        String[]    algorithms={ "MD5", "SHA-1", "SHA-256" };
+        InputStream bais=new ByteArrayInputStream(TEST_DATA);
+        try {
+            MultiDigestInputStream  input=new MultiDigestInputStream(bais, algorithms);
+            try {
+                for (int index=0; index < Byte.SIZE; index++) {
+                    input.reset();
+
+                    int cpyLen=IOUtils.copy(input, NullOutputStream.NULL_OUTPUT_STREAM);
+                    assertEquals("Mismatched copy length at index=" + index, TEST_DATA.length, cpyLen);
+                }
+            } finally {
+                input.close();
+            }
+
+            byte[][]    actual=input.getDigestValues();
+            for (int index=0; index < algorithms.length; index++) {
+                byte[]  expected=MessageDigest.getInstance(algorithms[index]).digest(TEST_DATA);
+                assertArrayEquals("Mismatched digest for " + algorithms[index], expected, actual[index]);
+            }
+        } finally {
+            bais.close();
+        }
+    }
+}
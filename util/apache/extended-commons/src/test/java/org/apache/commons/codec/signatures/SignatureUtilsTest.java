@@ -22,6 +22,10 @@ import java.net.URL;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.ExtendedFileUtils;
@@ -29,10 +33,13 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.ExtendedClassUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.tuple.Triplet;
 import org.apache.commons.net.ssh.keys.dss.DSSKeyDecoder;
 import org.apache.commons.net.ssh.keys.rsa.RSAKeyDecoder;
+import org.apache.commons.test.MicroBenchmark;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 import org.junit.runners.MethodSorters;
 
 /**
@@ -84,4 +91,82 @@ public class SignatureUtilsTest extends AbstractSignatureTestSupport {
         byte[]      actual=SignatureUtils.signData(prvKey, chars);
         assertArrayEquals("Mismatched signature contents", expected, actual); 
     }
+
+    @Test
+    public void testPooledInstance() throws Exception {
+        final KeyPair   kp=generateKeyPair(RSAKeyDecoder.RSA_ALGORITHM, 1024);
+        Signature       expected=SignatureUtils.getPooledInstance(kp.getPublic());
+        assertSame("Mismatched pooled instance", expected, SignatureUtils.getPooledInstance(kp.getPrivate()));
+        assertEquals("Mismatched algorithm", SignatureUtils.getInstance(kp.getPublic()).getAlgorithm(), expected.getAlgorithm());
+
+        final Signature[]   other=new Signature[1];
+        Thread  t=new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        other[0] = SignatureUtils.getPooledInstance(kp.getPublic());
+                    } catch(Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        t.start();
+        t.join();
+        assertNotNull("No instance for other thread", other[0]);
+        assertNotSame("Same instance shared between threads", expected, other[0]);
+    }
+
+    @Test
+    public void testVerifySignaturesBatch() throws Exception {
+        KeyPair[]   pairs={
+                generateKeyPair(RSAKeyDecoder.RSA_ALGORITHM, 1024),
+                generateKeyPair(DSSKeyDecoder.DSS_ALGORITHM, 1024)
+            };
+        List<Triplet<PublicKey,byte[],byte[]>>  tuples=new ArrayList<Triplet<PublicKey,byte[],byte[]>>();
+        List<Boolean>                           expected=new ArrayList<Boolean>();
+        for (int index=0; index < Byte.MAX_VALUE; index++) {
+            KeyPair kp=pairs[index % pairs.length];
+            byte[]  data=(getCurrentTestName() + index).getBytes("UTF-8");
+            byte[]  signature=SignatureUtils.signData(kp.getPrivate(), data);
+            boolean valid=RANDOMIZER.nextBoolean();
+            if (!valid) {
+                data[RANDOMIZER.nextInt(data.length)]++;
+            }
+
+            tuples.add(new Triplet<PublicKey,byte[],byte[]>(kp.getPublic(), data, signature));
+            expected.add(Boolean.valueOf(valid));
+        }
+
+        // a bad signature should not fail the whole batch
+        tuples.add(new Triplet<PublicKey,byte[],byte[]>(pairs[1].getPublic(), ArrayUtils.EMPTY_BYTE_ARRAY, ArrayUtils.EMPTY_BYTE_ARRAY));
+        expected.add(Boolean.FALSE);
+
+        boolean[]   actual=SignatureUtils.verifySignatures(tuples);
+        assertEquals("Mismatched results count", expected.size(), actual.length);
+        for (int index=0; index < actual.length; index++) {
+            assertEquals("Mismatched result at index=" + index, expected.get(index).booleanValue(), actual[index]);
+        }
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testPooledInstancePerformance() throws Exception {
+        final int   NUM_CALLS=1000000, NUM_ROUNDS=5;
+        KeyPair     kp=generateKeyPair(RSAKeyDecoder.RSA_ALGORITHM, 1024);
+        PublicKey   key=kp.getPublic();
+        System.out.printf("%-10s %10s %10s\n", "Round", "new(ms)", "pooled(ms)");
+        for (int round=0; round < NUM_ROUNDS; round++) {
+            long    start=System.nanoTime();
+            for (int index=0; index < NUM_CALLS; index++) {
+                SignatureUtils.getInstance(key);
+            }
+            long    newEnd=System.nanoTime();
+            for (int index=0; index < NUM_CALLS; index++) {
+                SignatureUtils.getPooledInstance(key);
+            }
+            long    pooledEnd=System.nanoTime();
+            System.out.printf("%-10d %10d %10d\n", Integer.valueOf(round),
+                              Long.valueOf((newEnd - start) / 1000000L), Long.valueOf((pooledEnd - newEnd) / 1000000L));
+        }
+    }
 }
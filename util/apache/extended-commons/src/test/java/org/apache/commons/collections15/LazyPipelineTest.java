@@ -0,0 +1,308 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.test.AbstractTestSupport;
+import org.apache.commons.test.MicroBenchmark;
+import org.junit.AfterClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 10:38:21 AM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LazyPipelineTest extends AbstractTestSupport {
+    private static final ForkJoinPool   POOL=new ForkJoinPool(4);
+    private static final Transformer<Integer,Integer>   SQUARE=new Transformer<Integer,Integer>() {
+            @Override
+            public Integer transform(Integer value) {
+                return Integer.valueOf(value.intValue() * value.intValue());
+            }
+        };
+    private static final Predicate<Integer> EVEN=new Predicate<Integer>() {
+            @Override
+            public boolean evaluate(Integer value) {
+                return (value.intValue() & 0x01) == 0;
+            }
+        };
+
+    public LazyPipelineTest() {
+        super();
+    }
+
+    @AfterClass
+    public static void shutdownPool() {
+        POOL.shutdown();
+    }
+
+    @Test
+    public void testFusedSinglePass() {
+        List<Integer>   values=createValues(Byte.MAX_VALUE);
+        CountingTransformer<Integer,Integer>    xformer=new CountingTransformer<Integer,Integer>(SQUARE);
+        LazyPipeline<String>    pipeline=ExtendedCollectionUtils.pipeline(values)
+                                            .filter(EVEN)
+                                            .transform(xformer)
+                                            .transform(TransformerUtils.<Integer>stringValueTransformer());
+        assertEquals("Pipeline evaluated before terminal operation", 0, xformer.getInvocations());
+
+        List<String>    expected=ExtendedCollectionUtils.collectToList(
+                ExtendedCollectionUtils.collectToList(
+                        ExtendedCollectionUtils.selectToList(values, EVEN), SQUARE),
+                TransformerUtils.<Integer>stringValueTransformer());
+        assertEquals("Mismatched results", expected, pipeline.toList());
+        assertEquals("Mismatched transformer invocations", expected.size(), xformer.getInvocations());
+
+        // re-using the same pipeline yields the same results
+        assertEquals("Mismatched re-used results", expected, pipeline.toList());
+        assertEquals("Mismatched count", expected.size(), pipeline.count());
+    }
+
+    @Test
+    public void testShortCircuitTerminals() {
+        List<Integer>   values=createValues(Short.MAX_VALUE);
+        CountingTransformer<Integer,Integer>    xformer=new CountingTransformer<Integer,Integer>(SQUARE);
+        LazyPipeline<Integer>   pipeline=LazyPipeline.of(values).transform(xformer);
+
+        assertEquals("Mismatched first element", Integer.valueOf(0), pipeline.findFirst());
+        assertEquals("Mismatched first element invocations", 1, xformer.getInvocations());
+
+        xformer.reset();
+        final Integer   TARGET=Integer.valueOf(Byte.MAX_VALUE * Byte.MAX_VALUE);
+        assertTrue("Target not matched", pipeline.anyMatch(PredicateUtils.equalPredicate(TARGET)));
+        assertEquals("Mismatched anyMatch invocations", Byte.MAX_VALUE + 1, xformer.getInvocations());
+
+        xformer.reset();
+        assertFalse("Unexpected all even", pipeline.allMatch(EVEN));
+        assertEquals("Mismatched allMatch invocations", 2, xformer.getInvocations());
+        assertTrue("Unexpected negative match", pipeline.noneMatch(PredicateUtils.equalPredicate(Integer.valueOf(-1))));
+        assertNull("Unexpected first element of empty pipeline", LazyPipeline.<Integer>of().findFirst());
+
+        xformer.reset();
+        List<Integer>   limited=pipeline.limit(Byte.SIZE).toList();
+        assertEquals("Mismatched limited size", Byte.SIZE, limited.size());
+        assertEquals("Mismatched limit invocations", Byte.SIZE, xformer.getInvocations());
+    }
+
+    @Test
+    public void testLimitAndSkip() {
+        List<Integer>   values=createValues(Byte.MAX_VALUE);
+        assertEquals("Mismatched skip+limit", values.subList(Byte.SIZE, 2 * Byte.SIZE),
+                     LazyPipeline.of(values).skip(Byte.SIZE).limit(Byte.SIZE).toList());
+        assertEquals("Mismatched limit+skip", values.subList(Byte.SIZE, 2 * Byte.SIZE),
+                     LazyPipeline.of(values).limit(2 * Byte.SIZE).skip(Byte.SIZE).toList());
+        assertEquals("Mismatched over-skip", Collections.emptyList(), LazyPipeline.of(values).skip(Short.MAX_VALUE).toList());
+        assertEquals("Mismatched zero limit count", 0L, LazyPipeline.of(values).limit(0L).count());
+        assertEquals("Mismatched over-limit", values, LazyPipeline.of(values).limit(Short.MAX_VALUE).toList());
+    }
+
+    @Test
+    public void testLazyIterator() {
+        List<Integer>   values=createValues(Byte.MAX_VALUE);
+        CountingTransformer<Integer,Integer>    xformer=new CountingTransformer<Integer,Integer>(SQUARE);
+        Iterator<Integer>   iter=LazyPipeline.of(values).filter(EVEN).transform(xformer).limit(3L).iterator();
+        assertEquals("Iterator evaluated eagerly", 0, xformer.getInvocations());
+
+        for (int index=0; index < 3; index++) {
+            assertTrue("Premature end at index=" + index, iter.hasNext());
+            int value=2 * index;
+            assertEquals("Mismatched value at index=" + index, Integer.valueOf(value * value), iter.next());
+            assertEquals("Mismatched invocations at index=" + index, index + 1, xformer.getInvocations());
+        }
+
+        assertFalse("Unexpected extra elements", iter.hasNext());
+        try {
+            Integer value=iter.next();
+            fail("Unexpected extra value: " + value);
+        } catch(NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParallelPreservesOrder() {
+        List<Integer>   values=createValues(Short.MAX_VALUE);
+        LazyPipeline<String>    sequential=LazyPipeline.of(values)
+                                                .filter(EVEN)
+                                                .transform(SQUARE)
+                                                .transform(TransformerUtils.<Integer>stringValueTransformer());
+        LazyPipeline<String>    parallel=sequential.parallel(POOL, Byte.MAX_VALUE);
+        assertTrue("Not parallel", parallel.isParallel());
+        assertFalse("Not sequential", parallel.sequential().isParallel());
+
+        List<String>    expected=sequential.toList();
+        assertEquals("Mismatched results", expected, parallel.toList());
+        assertEquals("Mismatched count", expected.size(), parallel.count());
+        assertEquals("Mismatched first element", expected.get(0), parallel.findFirst());
+        assertEquals("Mismatched stateful stages results", expected.subList(Byte.SIZE, Byte.MAX_VALUE),
+                     parallel.skip(Byte.SIZE).limit(Byte.MAX_VALUE - Byte.SIZE).toList());
+
+        // non random-access source
+        assertEquals("Mismatched linked source results", expected,
+                     LazyPipeline.of(new LinkedList<Integer>(values))
+                                .parallel(POOL, Byte.MAX_VALUE)
+                                .filter(EVEN)
+                                .transform(SQUARE)
+                                .transform(TransformerUtils.<Integer>stringValueTransformer())
+                                .toList());
+
+        final AtomicInteger counter=new AtomicInteger(0);
+        parallel.forEach(new Closure<String>() {
+                @Override
+                public void execute(String input) {
+                    counter.incrementAndGet();
+                }
+            });
+        assertEquals("Mismatched forEach invocations", expected.size(), counter.get());
+    }
+
+    @Test
+    public void testParallelFindsLeftmostMatch() {
+        List<Integer>   values=createValues(Short.MAX_VALUE);
+        LazyPipeline<Integer>   pipeline=LazyPipeline.of(values).parallel(POOL, Byte.MAX_VALUE);
+        for (int index=0; index < Byte.SIZE; index++) {
+            final int   threshold=RANDOMIZER.nextInt(values.size());
+            Integer     expected=Integer.valueOf(threshold);
+            Integer     actual=pipeline.filter(new Predicate<Integer>() {
+                    @Override
+                    public boolean evaluate(Integer value) {
+                        return value.intValue() >= threshold;
+                    }
+                }).findFirst();
+            assertEquals("Mismatched first match", expected, actual);
+            assertTrue("Threshold not matched: " + threshold, pipeline.anyMatch(PredicateUtils.equalPredicate(expected)));
+        }
+
+        assertFalse("Unexpected negative match", pipeline.anyMatch(PredicateUtils.equalPredicate(Integer.valueOf(-1))));
+        assertTrue("Not all values non-negative", pipeline.allMatch(new Predicate<Integer>() {
+                @Override
+                public boolean evaluate(Integer value) {
+                    return value.intValue() >= 0;
+                }
+            }));
+    }
+
+    @Test
+    public void testParallelSinglePassSource() {
+        List<Integer>   expected=LazyPipeline.of(createValues(Byte.SIZE)).transform(SQUARE).toList();
+        assertEquals("Mismatched small source results", expected,
+                     LazyPipeline.of(new SinglePassIterable<Integer>(createValues(Byte.SIZE))).parallel().transform(SQUARE).toList());
+
+        List<Integer>   values=createValues(Short.MAX_VALUE);
+        assertEquals("Mismatched first element", SQUARE.transform(values.get(0)),
+                     LazyPipeline.of(new SinglePassIterable<Integer>(values)).parallel(POOL, Byte.MAX_VALUE).limit(3L).transform(SQUARE).findFirst());
+        assertEquals("Mismatched count", LazyPipeline.of(values).filter(EVEN).count(),
+                     LazyPipeline.of(new SinglePassIterable<Integer>(values)).parallel(POOL, Byte.MAX_VALUE).filter(EVEN).count());
+        assertEquals("Mismatched large source results", LazyPipeline.of(values).filter(EVEN).toList(),
+                     LazyPipeline.of(new SinglePassIterable<Integer>(values)).parallel(POOL, Byte.MAX_VALUE).filter(EVEN).toList());
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testPipelineBenchmark() {
+        final int   NUM_VALUES=1024 * 1024;
+        List<Integer>   values=createValues(NUM_VALUES);
+        Transformer<Integer,String> toString=TransformerUtils.<Integer>stringValueTransformer();
+        System.out.append('\t').append(getCurrentTestName()).append(": values=").println(NUM_VALUES);
+        for (int round=0; round < 5; round++) {
+            encourageGC();
+            long        start=System.nanoTime();
+            List<String>    chained=ExtendedCollectionUtils.collectToList(
+                    ExtendedCollectionUtils.collectToList(
+                            ExtendedCollectionUtils.selectToList(values, EVEN), SQUARE), toString);
+            long        chainedTime=System.nanoTime() - start;
+
+            encourageGC();  // don't let the chained garbage collection affect the fused run
+            start = System.nanoTime();
+            List<String>    fused=LazyPipeline.of(values).filter(EVEN).transform(SQUARE).transform(toString).toList();
+            long        fusedTime=System.nanoTime() - start;
+
+            encourageGC();
+            start = System.nanoTime();
+            List<String>    parallel=LazyPipeline.of(values).parallel(POOL, Byte.MAX_VALUE).filter(EVEN).transform(SQUARE).transform(toString).toList();
+            long        parallelTime=System.nanoTime() - start;
+
+            assertEquals("Mismatched fused results", chained, fused);
+            assertEquals("Mismatched parallel results", chained, parallel);
+            System.out.printf("\t\tround #%d: chained=%d, fused=%d, parallel=%d msec.%n", round,
+                              TimeUnit.NANOSECONDS.toMillis(chainedTime), TimeUnit.NANOSECONDS.toMillis(fusedTime),
+                              TimeUnit.NANOSECONDS.toMillis(parallelTime));
+        }
+    }
+
+    private static List<Integer> createValues(int numValues) {
+        List<Integer>   values=new ArrayList<Integer>(numValues);
+        for (int index=0; index < numValues; index++) {
+            values.add(Integer.valueOf(index));
+        }
+        return values;
+    }
+
+    // simulates a source that can be iterated only once - e.g., a directory stream
+    private static class SinglePassIterable<E> implements Iterable<E> {
+        private final Iterable<E>   delegate;
+        private final AtomicInteger iterations=new AtomicInteger(0);
+
+        SinglePassIterable(Iterable<E> values) {
+            delegate = values;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            if (iterations.incrementAndGet() > 1) {
+                throw new IllegalStateException("Source already iterated");
+            }
+            return delegate.iterator();
+        }
+    }
+
+    private static class CountingTransformer<I,O> implements Transformer<I,O> {
+        private final Transformer<I,O>  delegate;
+        private final AtomicInteger invocations=new AtomicInteger(0);
+
+        CountingTransformer(Transformer<I,O> xformer) {
+            delegate = xformer;
+        }
+
+        int getInvocations() {
+            return invocations.get();
+        }
+
+        void reset() {
+            invocations.set(0);
+        }
+
+        @Override
+        public O transform(I input) {
+            invocations.incrementAndGet();
+            return delegate.transform(input);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.test.AbstractTestSupport;
+import org.apache.commons.test.MicroBenchmark;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 5:03:44 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ThreadLocalRecyclerTest extends AbstractTestSupport {
+    public ThreadLocalRecyclerTest() {
+        super();
+    }
+
+    @Test
+    public void testSameThreadRecycling() {
+        final AtomicInteger             resets=new AtomicInteger(0);
+        ThreadLocalRecycler<List<String>>   recycler=new ThreadLocalRecycler<List<String>>(
+                ExtendedCollectionUtils.<String>arrayListFactory(),
+                new Closure<List<String>>() {
+                    @Override
+                    public void execute(List<String> input) {
+                        input.clear();
+                        resets.incrementAndGet();
+                    }
+                });
+
+        List<String>    list=recycler.acquire();
+        list.add(getCurrentTestName());
+        assertTrue("Instance not recycled", recycler.release(list));
+        assertEquals("Reset hook not invoked", 1, resets.get());
+
+        List<String>    reused=recycler.acquire();
+        assertSame("Recycled instance not re-used", list, reused);
+        assertTrue("Recycled instance not reset: " + reused, reused.isEmpty());
+        assertFalse("Null instance recycled", recycler.release(null));
+
+        ThreadLocalRecycler.Statistics  stats=recycler.getStatistics();
+        assertEquals("Mismatched created count: " + stats, 1L, stats.getCreatedCount());
+        assertEquals("Mismatched reused count: " + stats, 1L, stats.getReusedCount());
+        assertEquals("Mismatched released count: " + stats, 1L, stats.getReleasedCount());
+        assertEquals("Mismatched threads count: " + stats, 1, stats.getThreadsCount());
+        assertEquals("Mismatched reuse ratio: " + stats, 0.5d, stats.getReuseRatio(), 0.0001d);
+    }
+
+    @Test
+    public void testSharedOverflowPool() throws InterruptedException {
+        final int                           MAX_LOCAL=2, MAX_SHARED=3;
+        final ThreadLocalRecycler<byte[]>   recycler=new ThreadLocalRecycler<byte[]>(new Factory<byte[]>() {
+                @Override
+                public byte[] create() {
+                    return new byte[Byte.SIZE];
+                }
+            }, null, MAX_LOCAL, MAX_SHARED, false);
+
+        List<byte[]>    acquired=new ArrayList<byte[]>();
+        for (int index=0; index < MAX_LOCAL + MAX_SHARED + 1; index++) {
+            acquired.add(recycler.acquire());
+        }
+
+        int numRecycled=0;
+        for (byte[] buf : acquired) {
+            if (recycler.release(buf)) {
+                numRecycled++;
+            }
+        }
+        assertEquals("Mismatched recycled count", MAX_LOCAL + MAX_SHARED, numRecycled);
+
+        ThreadLocalRecycler.Statistics  stats=recycler.getStatistics();
+        assertEquals("Mismatched discarded count: " + stats, 1L, stats.getDiscardedCount());
+        assertEquals("Mismatched shared pool size: " + stats, MAX_SHARED, stats.getSharedPooledCount());
+
+        // another thread can only use the shared instances
+        final AtomicReference<Throwable>    error=new AtomicReference<Throwable>(null);
+        Thread  t=new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int index=0; index < MAX_SHARED + 1; index++) {
+                            recycler.acquire();
+                        }
+                    } catch(Throwable e) {
+                        error.set(e);
+                    }
+                }
+            }, getCurrentTestName());
+        t.start();
+        t.join(TimeUnit.SECONDS.toMillis(5L));
+        assertFalse("Thread still alive", t.isAlive());
+        assertNull("Unexpected error", error.get());
+
+        stats = recycler.getStatistics();
+        assertEquals("Mismatched shared reuse count: " + stats, MAX_SHARED, stats.getSharedReusedCount());
+        assertEquals("Mismatched created count: " + stats, MAX_LOCAL + MAX_SHARED + 2, stats.getCreatedCount());
+        assertEquals("Mismatched shared pool size: " + stats, 0, stats.getSharedPooledCount());
+        assertEquals("Dead thread still counted: " + stats, 1, stats.getThreadsCount());
+    }
+
+    @Test
+    public void testLeakDetection() {
+        ThreadLocalRecycler<StringBuilder>  recycler=new ThreadLocalRecycler<StringBuilder>(new Factory<StringBuilder>() {
+                @Override
+                public StringBuilder create() {
+                    return new StringBuilder();
+                }
+            }, null, ThreadLocalRecycler.DEFAULT_MAX_PER_THREAD, ThreadLocalRecycler.DEFAULT_MAX_SHARED, true);
+        assertTrue("Leak detection not enabled", recycler.isLeakDetectionEnabled());
+
+        StringBuilder   sb1=recycler.acquire(), sb2=recycler.acquire();
+        assertEquals("Mismatched outstanding count", 2, recycler.getOutstandingCount());
+        recycler.release(sb1);
+
+        List<Throwable> allocations=recycler.getOutstandingAllocations();
+        assertEquals("Mismatched outstanding allocations: " + allocations, 1, allocations.size());
+
+        StackTraceElement[] trace=allocations.get(0).getStackTrace();
+        assertTrue("No allocation trace", trace.length > 1);
+        assertEquals("Mismatched allocation site", getCurrentTestName(), trace[1].getMethodName());
+
+        try {
+            recycler.release(sb1);
+            fail("Unexpected double release success");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+
+        recycler.release(sb2);
+        assertEquals("Unexpected outstanding instances", 0, recycler.getOutstandingCount());
+    }
+
+    @Test
+    public void testStringBuildersRecycler() {
+        final int   INITIAL_CAPACITY=Byte.SIZE, MAX_CAPACITY=Byte.MAX_VALUE;
+        ThreadLocalRecycler<StringBuilder>  recycler=ThreadLocalRecycler.stringBuilders(INITIAL_CAPACITY, MAX_CAPACITY);
+        StringBuilder   sb=recycler.acquire();
+        assertEquals("Mismatched initial capacity", INITIAL_CAPACITY, sb.capacity());
+
+        sb.append(getCurrentTestName());
+        recycler.release(sb);
+        assertEquals("Length not reset", 0, sb.length());
+        assertTrue("Small capacity trimmed: " + sb.capacity(), sb.capacity() > INITIAL_CAPACITY);
+
+        assertSame("Builder not re-used", sb, recycler.acquire());
+        for (int index=0; index <= MAX_CAPACITY; index++) {
+            sb.append((char) ('a' + (index % 26)));
+        }
+        recycler.release(sb);
+        assertEquals("Large builder not trimmed", INITIAL_CAPACITY, sb.capacity());
+        assertEquals("Large builder length not reset", 0, sb.length());
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testRecyclingBenchmark() {
+        final int   NUM_OPS=4 * 1024 * 1024, BUF_SIZE=4 * 1024;
+        ThreadLocalRecycler<byte[]> recycler=ThreadLocalRecycler.byteArrays(BUF_SIZE);
+        System.out.append('\t').append(getCurrentTestName()).append(": ops=").println(NUM_OPS);
+        for (int round=0; round < 3; round++) {
+            long    start=System.nanoTime(), sum=0L;
+            for (int index=0; index < NUM_OPS; index++) {
+                byte[]  buf=new byte[BUF_SIZE];
+                buf[index % BUF_SIZE] = (byte) index;
+                sum += buf[BUF_SIZE - 1];
+            }
+            long    allocTime=System.nanoTime() - start;
+
+            encourageGC();
+            start = System.nanoTime();
+            for (int index=0; index < NUM_OPS; index++) {
+                byte[]  buf=recycler.acquire();
+                buf[index % BUF_SIZE] = (byte) index;
+                sum += buf[BUF_SIZE - 1];
+                recycler.release(buf);
+            }
+            long    recycleTime=System.nanoTime() - start;
+
+            System.out.printf("\t\tround #%d: allocate=%d, recycle=%d msec. (%d)%n", round,
+                              TimeUnit.NANOSECONDS.toMillis(allocTime), TimeUnit.NANOSECONDS.toMillis(recycleTime), sum);
+            encourageGC();
+        }
+        System.out.append("\t\t").println(recycler);
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.test.AbstractTestSupport;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 8, 2013 5:02:39 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConcurrentTinyLFUCacheTest extends AbstractTestSupport {
+    public ConcurrentTinyLFUCacheTest() {
+        super();
+    }
+
+    @Test
+    public void testBasicOperations() {
+        ConcurrentTinyLFUCache<String,Integer>  cache=new ConcurrentTinyLFUCache<String,Integer>(Byte.MAX_VALUE);
+        String                                  name=getCurrentTestName();
+        for (int index=0; index < Byte.SIZE; index++) {
+            String  key=name + "-" + index;
+            assertNull("Unexpected value for " + key, cache.get(key));
+            assertNull("Unexpected previous value for " + key, cache.put(key, Integer.valueOf(index)));
+            assertEquals("Mismatched value for " + key, Integer.valueOf(index), cache.get(key));
+            assertTrue("Key not contained: " + key, cache.containsKey(key));
+        }
+
+        assertEquals("Mismatched size", Byte.SIZE, cache.size());
+        assertEquals("Mismatched hits", Byte.SIZE, cache.getHits());
+        assertEquals("Mismatched misses", Byte.SIZE, cache.getMisses());
+        assertEquals("Mismatched hit rate", 0.5d, cache.getHitRate(), 0.0001d);
+
+        String  key=name + "-0";
+        assertEquals("Mismatched replaced value", Integer.valueOf(0), cache.put(key, Integer.valueOf(Byte.MAX_VALUE)));
+        assertEquals("Mismatched existing value", Integer.valueOf(Byte.MAX_VALUE), cache.putIfAbsent(key, Integer.valueOf(0)));
+        assertEquals("Mismatched removed value", Integer.valueOf(Byte.MAX_VALUE), cache.remove(key));
+        assertNull("Unexpected value after removal", cache.get(key));
+        assertNull("Unexpected re-removed value", cache.remove(key));
+
+        cache.cleanUp();
+        assertEquals("Mismatched weighted size", cache.size(), cache.getWeightedSize());
+        assertEquals("Unexpected evictions", 0L, cache.getEvictions());
+
+        cache.clear();
+        assertTrue("Cache not cleared: " + cache, cache.isEmpty());
+        assertEquals("Weighted size not cleared", 0L, cache.getWeightedSize());
+
+        cache.resetStatistics();
+        assertEquals("Hits not reset", 0L, cache.getHits());
+        assertEquals("Misses not reset", 0L, cache.getMisses());
+    }
+
+    @Test
+    public void testScanResistance() {
+        final int                               MAX_SIZE=Byte.MAX_VALUE, HOT_KEYS=MAX_SIZE / 2;
+        ConcurrentTinyLFUCache<Integer,Integer> cache=new ConcurrentTinyLFUCache<Integer,Integer>(MAX_SIZE);
+        for (int index=0; index < HOT_KEYS; index++) {
+            Integer key=Integer.valueOf(index);
+            cache.put(key, key);
+            for (int access=0; access < Byte.SIZE; access++) {
+                assertEquals("Mismatched hot value", key, cache.get(key));
+            }
+        }
+        cache.cleanUp();
+
+        /*
+         * A scan of many keys mixed with occasional hot keys accesses - an LRU
+         * cache would evict the hot keys since each one is accessed only once
+         * every (HOT_KEYS * Byte.SIZE) scanned keys - i.e., more than the
+         * maximum size
+         */
+        for (int index=0; index < Short.MAX_VALUE; index++) {
+            Integer key=Integer.valueOf(HOT_KEYS + index);
+            cache.put(key, key);
+
+            if ((index % Byte.SIZE) == 0) {
+                Integer hotKey=Integer.valueOf((index / Byte.SIZE) % HOT_KEYS);
+                cache.get(hotKey);
+            }
+        }
+        cache.cleanUp();
+
+        assertTrue("Maximum size exceeded: " + cache, cache.size() <= MAX_SIZE);
+        assertEquals("Mismatched weighted size", cache.size(), cache.getWeightedSize());
+
+        int survivors=0;
+        for (int index=0; index < HOT_KEYS; index++) {
+            if (cache.containsKey(Integer.valueOf(index))) {
+                survivors++;
+            }
+        }
+
+        // allow for some frequency estimation errors
+        assertTrue("Too few hot keys survived: " + survivors + " out of " + HOT_KEYS, survivors >= (HOT_KEYS * 9 / 10));
+    }
+
+    @Test
+    public void testWeigher() {
+        final int   MAX_WEIGHT=Byte.MAX_VALUE;
+        ConcurrentTinyLFUCache<Integer,String>  cache=new ConcurrentTinyLFUCache<Integer,String>(MAX_WEIGHT, new Weigher<Integer,String>() {
+                @Override
+                public int weigh(Integer key, String value) {
+                    return value.length();
+                }
+            });
+
+        String  name=getCurrentTestName();
+        for (int index=0; index < Byte.SIZE; index++) {
+            cache.put(Integer.valueOf(index), name);
+            cache.cleanUp();
+            assertTrue("Maximum weight exceeded at index=" + index + ": " + cache, cache.getWeightedSize() <= MAX_WEIGHT);
+        }
+
+        assertEquals("Mismatched weighted size", cache.size() * name.length(), cache.getWeightedSize());
+        assertEquals("Mismatched evictions count", Byte.SIZE - cache.size(), cache.getEvictions());
+        assertEquals("Mismatched evictions weight", cache.getEvictions() * name.length(), cache.getEvictionsWeight());
+
+        // re-weighing an existing entry
+        Integer key=cache.keySet().iterator().next();
+        cache.put(key, "");
+        cache.cleanUp();
+        assertEquals("Mismatched re-weighed size", (cache.size() - 1) * name.length(), cache.getWeightedSize());
+    }
+
+    @Test
+    public void testLargeWeightBudget() {
+        final long  MAX_WEIGHT=Long.MAX_VALUE / 2L; // would require a huge sketch if sized by weight
+        ConcurrentTinyLFUCache<Integer,String>  cache=new ConcurrentTinyLFUCache<Integer,String>(MAX_WEIGHT, new Weigher<Integer,String>() {
+                @Override
+                public int weigh(Integer key, String value) {
+                    return value.length();
+                }
+            });
+        int initialCapacity=cache.getFrequencySketchCapacity();
+        assertTrue("Initial sketch too large: " + initialCapacity, initialCapacity <= Short.MAX_VALUE);
+
+        final int   NUM_ENTRIES=4 * initialCapacity;
+        String      name=getCurrentTestName();
+        for (int index=0; index < NUM_ENTRIES; index++) {
+            cache.put(Integer.valueOf(index), name);
+        }
+        cache.cleanUp();
+
+        assertEquals("Mismatched size", NUM_ENTRIES, cache.size());
+        assertEquals("Unexpected evictions", 0L, cache.getEvictions());
+
+        int capacity=cache.getFrequencySketchCapacity();
+        assertTrue("Sketch not grown: " + capacity, capacity >= NUM_ENTRIES);
+        assertTrue("Sketch grown too much: " + capacity, capacity <= (2 * NUM_ENTRIES));
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        final long  TTL=50L;
+        ConcurrentTinyLFUCache<String,String>   cache=
+                new ConcurrentTinyLFUCache<String,String>(Byte.MAX_VALUE, ConcurrentTinyLFUCache.SINGLETON_WEIGHER, TTL, TimeUnit.MILLISECONDS);
+        String  name=getCurrentTestName(), eternal=name + "-eternal";
+        cache.put(name, name);
+        cache.put(eternal, eternal, 0L, TimeUnit.MILLISECONDS);
+        cache.put(name + "-cleanup", name);
+        assertEquals("Mismatched value before expiry", name, cache.get(name));
+
+        Thread.sleep(2L * TTL);
+        assertFalse("Expired entry still contained", cache.containsKey(name));
+        assertNull("Expired entry still returned", cache.get(name));
+        assertEquals("Mismatched non-expiring value", eternal, cache.get(eternal));
+        assertEquals("Mismatched evictions count after access", 1L, cache.getEvictions());
+
+        cache.cleanUp();
+        assertEquals("Mismatched size after clean-up", 1, cache.size());
+        assertEquals("Mismatched weighted size after clean-up", 1L, cache.getWeightedSize());
+        assertEquals("Mismatched evictions count after clean-up", 2L, cache.getEvictions());
+
+        assertNull("Unexpected previous value of expired entry", cache.put(name, eternal));
+        assertEquals("Mismatched re-added value", eternal, cache.get(name));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final int                                       MAX_SIZE=Byte.MAX_VALUE, NUM_KEYS=8 * MAX_SIZE, NUM_OPS=Short.MAX_VALUE;
+        final ConcurrentTinyLFUCache<Integer,Integer>   cache=new ConcurrentTinyLFUCache<Integer,Integer>(MAX_SIZE);
+        final Collection<Throwable>                     errors=new ArrayList<Throwable>();
+        List<Thread>                                    threads=new ArrayList<Thread>();
+        for (int index=0; index < Byte.SIZE; index++) {
+            final long  seed=RANDOMIZER.nextLong();
+            Thread      t=new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Random  rnd=new Random(seed);
+                        try {
+                            for (int op=0; op < NUM_OPS; op++) {
+                                // skewed keys distribution so that some keys are "hot"
+                                Integer key=Integer.valueOf(rnd.nextInt(1 + rnd.nextInt(NUM_KEYS)));
+                                int     action=rnd.nextInt(Byte.SIZE);
+                                if (action == 0) {
+                                    cache.remove(key);
+                                } else if (action < 3) {
+                                    cache.put(key, key);
+                                } else {
+                                    Integer value=cache.get(key);
+                                    if ((value != null) && (!key.equals(value))) {
+                                        throw new IllegalStateException("Mismatched value for key=" + key + ": " + value);
+                                    }
+                                }
+                            }
+                        } catch(Throwable e) {
+                            synchronized(errors) {
+                                errors.add(e);
+                            }
+                        }
+                    }
+                }, getCurrentTestName() + "-" + index);
+            threads.add(t);
+            t.start();
+        }
+
+        for (Thread t : threads) {
+            t.join(TimeUnit.MINUTES.toMillis(1L));
+            assertFalse("Thread still running: " + t.getName(), t.isAlive());
+        }
+
+        assertTrue("Errors encountered: " + errors, errors.isEmpty());
+
+        cache.cleanUp();
+        assertTrue("Maximum size exceeded: " + cache, cache.size() <= MAX_SIZE);
+        assertEquals("Mismatched weighted size: " + cache, cache.size(), cache.getWeightedSize());
+        assertTrue("No hits recorded: " + cache, cache.getHits() > 0L);
+        System.out.append('\t').append(getCurrentTestName()).append(": ").println(cache);
+    }
+}
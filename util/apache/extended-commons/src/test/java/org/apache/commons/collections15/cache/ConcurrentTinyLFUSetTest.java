@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.cache;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.commons.test.AbstractTestSupport;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 8, 2013 5:31:06 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConcurrentTinyLFUSetTest extends AbstractTestSupport {
+    public ConcurrentTinyLFUSetTest() {
+        super();
+    }
+
+    @Test
+    public void testSetOperations() {
+        String                          name=getCurrentTestName();
+        ConcurrentTinyLFUSet<String>    set=new ConcurrentTinyLFUSet<String>(Byte.MAX_VALUE, Arrays.asList(name, name + "-1"));
+        assertEquals("Mismatched initial size", 2, set.size());
+        assertTrue("Initial value not contained", set.contains(name));
+        assertFalse("Duplicate value added", set.add(name));
+        assertFalse("Null value contained", set.contains(null));
+        assertFalse("Foreign type contained", set.contains(Integer.valueOf(1)));
+
+        assertTrue("Value not removed", set.remove(name));
+        assertFalse("Removed value contained", set.contains(name));
+        assertFalse("Value re-removed", set.remove(name));
+
+        for (Iterator<String> iter=set.iterator(); iter.hasNext(); ) {
+            assertEquals("Mismatched iterated value", name + "-1", iter.next());
+            iter.remove();
+        }
+        assertTrue("Set not empty after iterator removal: " + set, set.isEmpty());
+    }
+
+    @Test
+    public void testBoundedSize() {
+        final int                       MAX_SIZE=Byte.SIZE;
+        ConcurrentTinyLFUSet<Integer>   set=new ConcurrentTinyLFUSet<Integer>(MAX_SIZE);
+        for (int index=0; index < Byte.MAX_VALUE; index++) {
+            assertTrue("Value not added: " + index, set.add(Integer.valueOf(index)));
+            set.getCache().cleanUp();
+            assertTrue("Maximum size exceeded at index=" + index + ": " + set.size(), set.size() <= MAX_SIZE);
+        }
+
+        assertEquals("Mismatched evictions", Byte.MAX_VALUE - set.size(), set.getCache().getEvictions());
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.test.AbstractTestSupport;
+import org.apache.commons.test.MicroBenchmark;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 2:46:52 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class AsciiCaseInsensitiveMapTest extends AbstractTestSupport {
+    private static final List<String>   HEADERS=Collections.unmodifiableList(Arrays.asList(
+            "Accept", "Accept-Encoding", "Authorization", "Cache-Control", "Connection",
+            "Content-Length", "Content-Type", "Host", "Pragma", "Transfer-Encoding",
+            "User-Agent", "Server", "Date", "WWW-Authenticate", "Git-Protocol"));
+
+    public AsciiCaseInsensitiveMapTest() {
+        super();
+    }
+
+    @Test
+    public void testCaseInsensitiveAccess() {
+        Map<String,String>  expected=new TreeMap<String,String>(String.CASE_INSENSITIVE_ORDER);
+        AsciiCaseInsensitiveMap<String> actual=new AsciiCaseInsensitiveMap<String>(2);  // force some re-hashing
+        for (String name : HEADERS) {
+            String  value=name + "-value";
+            assertNull("Unexpected previous value for " + name, actual.put(name.toLowerCase(), value));
+            expected.put(name.toLowerCase(), value);
+        }
+        assertEquals("Mismatched size", expected.size(), actual.size());
+        assertEquals("Mismatched contents", expected, new TreeMap<String,String>(actual));
+
+        for (String name : HEADERS) {
+            String  value=expected.get(name);
+            assertEquals("Mismatched value for " + name, value, actual.get(name));
+            assertEquals("Mismatched upper case value for " + name, value, actual.get(name.toUpperCase()));
+            assertTrue("Key not contained: " + name, actual.containsKey(name));
+            assertEquals("Mismatched original key for " + name, name.toLowerCase(), actual.getKey(name));
+        }
+
+        assertNull("Unexpected value for unknown key", actual.get(getCurrentTestName()));
+        assertNull("Unexpected value for non-string key", actual.get(Integer.valueOf(7365)));
+        assertFalse("Unexpected null key containment", actual.containsKey(null));
+    }
+
+    @Test
+    public void testNonAsciiCharactersComparedAsIs() {
+        AsciiCaseInsensitiveMap<String> map=new AsciiCaseInsensitiveMap<String>();
+        String  key="été";
+        map.put(key, key);
+        assertEquals("Mismatched ASCII folded value", key, map.get("éTé"));
+        assertNull("Unexpected non-ASCII folded value", map.get("ÉtÉ"));
+        assertEquals("Mismatched hash", AsciiCaseInsensitiveMap.hashIgnoreAsciiCase("Content-Type"),
+                     AsciiCaseInsensitiveMap.hashIgnoreAsciiCase("CONTENT-type"));
+    }
+
+    @Test
+    public void testMultiValuedEntries() {
+        AsciiCaseInsensitiveMap<String> map=new AsciiCaseInsensitiveMap<String>();
+        String  name="Set-Cookie";
+        assertEquals("Mismatched empty values", Collections.emptyList(), map.getAll(name));
+
+        List<String>    expected=new ArrayList<String>();
+        for (int index=0; index < Byte.SIZE; index++) {
+            String  value=getCurrentTestName() + "-" + index;
+            expected.add(value);
+            assertEquals("Mismatched values count", expected.size(), map.add((index & 0x01) == 0 ? name : name.toLowerCase(), value));
+        }
+
+        assertEquals("Mismatched size", 1, map.size());
+        assertEquals("Mismatched values", expected, map.getAll(name.toUpperCase()));
+        assertEquals("Mismatched first value", expected.get(0), map.get(name));
+        assertEquals("Mismatched entry value", expected.get(0), map.entrySet().iterator().next().getValue());
+
+        assertEquals("Mismatched replaced value", expected.get(0), map.put(name, name));
+        assertEquals("Values not replaced", Collections.singletonList(name), map.getAll(name));
+        assertEquals("Mismatched removed value", name, map.remove(name.toLowerCase()));
+        assertTrue("Map not empty: " + map, map.isEmpty());
+    }
+
+    @Test
+    public void testRemoval() {
+        AsciiCaseInsensitiveMap<Integer>    map=new AsciiCaseInsensitiveMap<Integer>();
+        final int   NUM_KEYS=Byte.MAX_VALUE;
+        for (int index=0; index < NUM_KEYS; index++) {
+            map.put("key-" + index, Integer.valueOf(index));
+        }
+
+        // remove every other key - exercises the back-shifting of colliding keys
+        for (int index=0; index < NUM_KEYS; index += 2) {
+            assertEquals("Mismatched removed value", Integer.valueOf(index), map.remove("KEY-" + index));
+        }
+
+        assertEquals("Mismatched size", NUM_KEYS / 2, map.size());
+        for (int index=0; index < NUM_KEYS; index++) {
+            Integer value=map.get("Key-" + index);
+            if ((index & 0x01) == 0) {
+                assertNull("Removed key still mapped: " + index, value);
+            } else {
+                assertEquals("Mismatched remaining value", Integer.valueOf(index), value);
+            }
+        }
+
+        Iterator<Map.Entry<String,Integer>> iter=map.entrySet().iterator();
+        Map.Entry<String,Integer>           entry=iter.next();
+        entry.setValue(Integer.valueOf(-1));
+        assertEquals("Entry value not updated", Integer.valueOf(-1), map.get(entry.getKey()));
+
+        map.remove(entry.getKey());
+        try {
+            iter.next();
+            fail("Unexpected success to iterate a modified map");
+        } catch(ConcurrentModificationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testViewsRemoval() {
+        AsciiCaseInsensitiveMap<String> map=new AsciiCaseInsensitiveMap<String>();
+        for (String name : HEADERS) {
+            map.put(name, name);
+        }
+
+        assertTrue("Key not removed", map.keySet().remove("Host"));
+        assertFalse("Removed key still mapped", map.containsKey("host"));
+        assertTrue("Value not removed", map.values().remove("Server"));
+        assertFalse("Removed value still mapped", map.containsKey("server"));
+
+        List<String>    retained=new ArrayList<String>(HEADERS.subList(0, HEADERS.size() / 2));
+        retained.removeAll(Arrays.asList("Host", "Server"));
+
+        Map<String,String>  expected=new TreeMap<String,String>();
+        for (String name : retained) {
+            expected.put(name, name);
+        }
+
+        assertTrue("Entries not retained", map.entrySet().retainAll(expected.entrySet()));
+        assertEquals("Mismatched retained entries", expected, new TreeMap<String,String>(map));
+    }
+
+    @Test
+    public void testIteratorRemoval() {
+        for (int round=0; round < Byte.MAX_VALUE; round++) {
+            // high load factor to cause long (and wrapped around) collision chains
+            AsciiCaseInsensitiveMap<Integer>    map=new AsciiCaseInsensitiveMap<Integer>(Byte.SIZE, 0.9f);
+            Map<String,Integer>                 expected=new TreeMap<String,Integer>(String.CASE_INSENSITIVE_ORDER);
+            for (int index=0, numKeys=1 + RANDOMIZER.nextInt(Byte.MAX_VALUE); index < numKeys; index++) {
+                String  key="key-" + RANDOMIZER.nextInt(Short.MAX_VALUE);
+                map.put(key, Integer.valueOf(index));
+                expected.put(key, Integer.valueOf(index));
+            }
+
+            int             numEntries=map.size();
+            List<String>    visited=new ArrayList<String>(numEntries);
+            for (Iterator<Map.Entry<String,Integer>> iter=map.entrySet().iterator(); iter.hasNext(); ) {
+                Map.Entry<String,Integer>   entry=iter.next();
+                String                      key=entry.getKey();
+                assertFalse("Round " + round + ": re-visited " + key, visited.contains(key));
+                visited.add(key);
+                assertEquals("Round " + round + ": mismatched value of " + key, expected.get(key), entry.getValue());
+
+                if (RANDOMIZER.nextBoolean()) {
+                    iter.remove();
+                    expected.remove(key);
+
+                    try {
+                        iter.remove();
+                        fail("Round " + round + ": unexpected double removal success for " + key);
+                    } catch(IllegalStateException e) {
+                        // expected
+                    }
+                }
+            }
+
+            assertEquals("Round " + round + ": mismatched visited entries count", numEntries, visited.size());
+            assertEquals("Round " + round + ": mismatched remaining entries", expected, new TreeMap<String,Integer>(map));
+            for (String key : expected.keySet()) {
+                assertEquals("Round " + round + ": mismatched value of " + key, expected.get(key), map.get(key.toUpperCase()));
+            }
+        }
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testHeadersMapBenchmark() {
+        final int       NUM_REQUESTS=256 * 1024;
+        List<String>    names=new ArrayList<String>(HEADERS.size());
+        for (String name : HEADERS) {
+            names.add(name.toLowerCase());  // e.g., HTTP/2 style
+        }
+
+        System.out.append('\t').append(getCurrentTestName()).append(": requests=").println(NUM_REQUESTS);
+        for (int round=0; round < 3; round++) {
+            long    start=System.nanoTime(), treeHits=0L;
+            for (int index=0; index < NUM_REQUESTS; index++) {
+                Map<String,String>  map=new TreeMap<String,String>(String.CASE_INSENSITIVE_ORDER);
+                for (String name : names) {
+                    map.put(name, name);
+                }
+                for (String name : HEADERS) {
+                    if (map.containsKey(name)) {
+                        treeHits++;
+                    }
+                }
+            }
+            long    treeTime=System.nanoTime() - start, asciiHits=0L;
+
+            start = System.nanoTime();
+            for (int index=0; index < NUM_REQUESTS; index++) {
+                Map<String,String>  map=new AsciiCaseInsensitiveMap<String>(names.size());
+                for (String name : names) {
+                    map.put(name, name);
+                }
+                for (String name : HEADERS) {
+                    if (map.containsKey(name)) {
+                        asciiHits++;
+                    }
+                }
+            }
+            long    asciiTime=System.nanoTime() - start;
+
+            assertEquals("Mismatched hits count", treeHits, asciiHits);
+            System.out.printf("\t\tround #%d: %-24s %6d msec.%n", round, TreeMap.class.getSimpleName(), TimeUnit.NANOSECONDS.toMillis(treeTime));
+            System.out.printf("\t\tround #%d: %-24s %6d msec.%n", round, AsciiCaseInsensitiveMap.class.getSimpleName(), TimeUnit.NANOSECONDS.toMillis(asciiTime));
+            encourageGC();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.numbers.ints;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.test.AbstractTestSupport;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 9, 2013 12:05:43 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class IntObjectMapTest extends AbstractTestSupport {
+    public IntObjectMapTest() {
+        super();
+    }
+
+    @Test
+    public void testRandomOperations() {
+        IntObjectMap<String>    map=new IntObjectMap<String>(Byte.SIZE);
+        Map<Integer,String>    expected=new HashMap<Integer,String>();
+        for (int index=0; index < Short.MAX_VALUE; index++) {
+            // small keys range so that there are many replacements and removals
+            int    key=RANDOMIZER.nextInt(Byte.MAX_VALUE) - Byte.SIZE;
+            Integer    boxed=Integer.valueOf(key);
+            if (RANDOMIZER.nextInt(3) == 0) {
+                assertEquals("Mismatched removed value for key=" + key, expected.remove(boxed), map.remove(key));
+            } else {
+                String  value=String.valueOf(index);
+                assertEquals("Mismatched previous value for key=" + key, expected.put(boxed, value), map.put(key, value));
+            }
+            assertEquals("Mismatched size at index=" + index, expected.size(), map.size());
+        }
+
+        for (int key=(-Byte.SIZE); key < Byte.MAX_VALUE; key++) {
+            Integer    boxed=Integer.valueOf(key);
+            assertEquals("Mismatched value for key=" + key, expected.get(boxed), map.get(key));
+            assertEquals("Mismatched containment for key=" + key, expected.containsKey(boxed), map.containsKey(key));
+        }
+
+        Map<Integer,String>    actual=new HashMap<Integer,String>(map.size());
+        for (IntObjectMap<String>.EntryCursor c=map.cursor(); c.moveNext(); ) {
+            assertNull("Duplicate cursor key: " + c.key(), actual.put(Integer.valueOf(c.key()), c.value()));
+        }
+        assertEquals("Mismatched cursor entries", expected, actual);
+
+        int[]  keys=map.keys();
+        assertEquals("Mismatched keys count", expected.size(), keys.length);
+        for (int key : keys) {
+            assertTrue("Unexpected key: " + key, expected.containsKey(Integer.valueOf(key)));
+        }
+
+        map.clear();
+        assertTrue("Map not cleared: " + map, map.isEmpty());
+        assertNull("Unexpected value after clear", map.get(keys[0]));
+    }
+
+    @Test
+    public void testCollidingKeysRemoval() {
+        IntObjectMap<String>    map=new IntObjectMap<String>(Byte.SIZE);
+        // multiples of a large power of 2 tend to probe the same slots
+        int    step=1 << 20;
+        for (int index=0; index < Byte.MAX_VALUE; index++) {
+            map.put(index * step, String.valueOf(index));
+        }
+
+        for (int index=0; index < Byte.MAX_VALUE; index += 2) {
+            assertEquals("Mismatched removed value at index=" + index, String.valueOf(index), map.remove(index * step));
+        }
+
+        for (int index=0; index < Byte.MAX_VALUE; index++) {
+            String  expected=((index & 0x01) == 0) ? null : String.valueOf(index);
+            assertEquals("Mismatched value at index=" + index, expected, map.get(index * step));
+        }
+    }
+
+    @Test
+    public void testCursorUpdate() {
+        IntObjectMap<String>    map=new IntObjectMap<String>();
+        String  name=getCurrentTestName();
+        for (int key=0; key < Byte.SIZE; key++) {
+            map.put(key, name);
+        }
+
+        IntObjectMap<String>.EntryCursor   c=map.cursor();
+        try {
+            c.key();
+            fail("Unexpected success to access unpositioned cursor");
+        } catch(NoSuchElementException e) {
+            // expected
+        }
+
+        while (c.moveNext()) {
+            assertSame("Mismatched replaced value", name, c.setValue(name + "-" + c.key()));
+        }
+        assertFalse("Unexpected cursor re-start", c.moveNext());
+
+        for (int key=0; key < Byte.SIZE; key++) {
+            assertEquals("Mismatched updated value for key=" + key, name + "-" + key, map.get(key));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.numbers.longs;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.test.AbstractTestSupport;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 9, 2013 12:31:07 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LongLongMapTest extends AbstractTestSupport {
+    public LongLongMapTest() {
+        super();
+    }
+
+    @Test
+    public void testRandomOperations() {
+        final long  MISSING=(-1);
+        LongLongMap  map=new LongLongMap(Byte.SIZE, LongLongMap.DEFAULT_LOAD_FACTOR, MISSING);
+        Map<Long,Long>  expected=new HashMap<Long,Long>();
+        for (int index=0; index < Short.MAX_VALUE; index++) {
+            // small keys range (including zero) so that there are many replacements and removals
+            long    key=RANDOMIZER.nextInt(Byte.MAX_VALUE) - Byte.SIZE;
+            Long    boxed=Long.valueOf(key);
+            switch(RANDOMIZER.nextInt(3)) {
+                case 0  :
+                    assertEquals("Mismatched removed value for key=" + key, valueOf(expected.remove(boxed), MISSING), map.remove(key));
+                    break;
+
+                case 1  :
+                    assertEquals("Mismatched previous value for key=" + key, valueOf(expected.put(boxed, Long.valueOf(index)), MISSING), map.put(key, index));
+                    break;
+
+                default :
+                    long    newValue=valueOf(expected.get(boxed), 0) + index;
+                    expected.put(boxed, Long.valueOf(newValue));
+                    assertEquals("Mismatched added value for key=" + key, newValue, map.addTo(key, index));
+            }
+            assertEquals("Mismatched size at index=" + index, expected.size(), map.size());
+        }
+
+        for (long key=(-Byte.SIZE); key < Byte.MAX_VALUE; key++) {
+            Long    boxed=Long.valueOf(key);
+            assertEquals("Mismatched value for key=" + key, valueOf(expected.get(boxed), MISSING), map.get(key));
+            assertEquals("Mismatched containment for key=" + key, expected.containsKey(boxed), map.containsKey(key));
+        }
+
+        Map<Long,Long>  actual=new HashMap<Long,Long>(map.size());
+        for (LongLongMap.EntryCursor c=map.cursor(); c.moveNext(); ) {
+            assertNull("Duplicate cursor key: " + c.key(), actual.put(Long.valueOf(c.key()), Long.valueOf(c.value())));
+        }
+        assertEquals("Mismatched cursor entries", expected, actual);
+        assertEquals("Mismatched keys count", expected.size(), map.keys().length);
+
+        map.clear();
+        assertTrue("Map not cleared: " + map, map.isEmpty());
+        assertFalse("Zero key still mapped", map.containsKey(0));
+        assertEquals("Unexpected value after clear", MISSING, map.get(1));
+    }
+
+    @Test
+    public void testCounters() {
+        LongLongMap  map=new LongLongMap();
+        for (int index=0; index < Byte.MAX_VALUE; index++) {
+            map.increment(index % Byte.SIZE);
+        }
+
+        assertEquals("Mismatched counters count", Byte.SIZE, map.size());
+        long    total=0L;
+        for (LongLongMap.EntryCursor c=map.cursor(); c.moveNext(); ) {
+            long    key=c.key(), expected=(Byte.MAX_VALUE / Byte.SIZE) + ((key < (Byte.MAX_VALUE % Byte.SIZE)) ? 1 : 0);
+            assertEquals("Mismatched count for key=" + key, expected, c.value());
+            total += c.setValue(0);
+        }
+
+        assertEquals("Mismatched total count", Byte.MAX_VALUE, total);
+        assertEquals("Cursor update not applied", 0, map.get(0));
+    }
+
+    @Test
+    public void testCollidingKeysRemoval() {
+        LongLongMap  map=new LongLongMap(Byte.SIZE);
+        // multiples of a large power of 2 tend to probe the same slots
+        long    step=1 << 20;
+        for (int index=0; index < Byte.MAX_VALUE; index++) {
+            map.put(index * step, index);
+        }
+
+        for (int index=0; index < Byte.MAX_VALUE; index += 2) {
+            assertEquals("Mismatched removed value at index=" + index, index, map.remove(index * step));
+        }
+
+        for (int index=0; index < Byte.MAX_VALUE; index++) {
+            assertEquals("Mismatched containment at index=" + index, (index & 0x01) != 0, map.containsKey(index * step));
+        }
+    }
+
+    private static long valueOf(Long value, long defaultValue) {
+        return (value == null) ? defaultValue : value.longValue();
+    }
+}
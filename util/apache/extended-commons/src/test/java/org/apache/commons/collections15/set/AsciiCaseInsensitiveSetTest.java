@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.collections15.set;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.test.AbstractTestSupport;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 10, 2013 3:04:26 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class AsciiCaseInsensitiveSetTest extends AbstractTestSupport {
+    public AsciiCaseInsensitiveSetTest() {
+        super();
+    }
+
+    @Test
+    public void testCaseInsensitiveSet() {
+        String[]                values={ "Transfer-Encoding", "Content-Length", "Connection", "Host" };
+        AsciiCaseInsensitiveSet set=new AsciiCaseInsensitiveSet(values);
+        Set<String>             expected=new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        for (String v : values) {
+            expected.add(v);
+            assertTrue("Upper case not contained: " + v, set.contains(v.toUpperCase()));
+            assertTrue("Lower case not contained: " + v, set.contains(v.toLowerCase()));
+            assertFalse("Re-added: " + v, set.add(v.toLowerCase()));
+        }
+
+        assertEquals("Mismatched size", values.length, set.size());
+        assertEquals("Mismatched contents", expected, new TreeSet<String>(set));
+        assertFalse("Unexpected null containment", set.contains(null));
+
+        assertTrue("Not removed", set.remove("HOST"));
+        assertFalse("Still contained after removal", set.contains("Host"));
+        assertFalse("Re-removed", set.remove("host"));
+    }
+}
@@ -0,0 +1,153 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.DirectoryTreeCopier.LinkMode;
+import org.apache.commons.test.AbstractTestSupport;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 5, 2013 2:47:33 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class DirectoryTreeCopierTest extends AbstractTestSupport {
+    public DirectoryTreeCopierTest() {
+        super();
+    }
+
+    @Test
+    public void testGitImmutableFilesPredicate() {
+        File    objects=new File(new File("repo.git"), DirectoryTreeCopier.GIT_OBJECTS_FOLDER);
+        assertTrue("Loose object not accepted", DirectoryTreeCopier.GIT_IMMUTABLE_FILES.evaluate(new File(new File(objects, "3f"), "0123456789")));
+        assertTrue("Pack not accepted", DirectoryTreeCopier.GIT_IMMUTABLE_FILES.evaluate(new File(new File(objects, DirectoryTreeCopier.GIT_PACK_FOLDER), "pack-1234.pack")));
+        assertFalse("Info file accepted", DirectoryTreeCopier.GIT_IMMUTABLE_FILES.evaluate(new File(new File(objects, "info"), "packs")));
+        assertFalse("Keep file accepted", DirectoryTreeCopier.GIT_IMMUTABLE_FILES.evaluate(new File(new File(objects, DirectoryTreeCopier.GIT_PACK_FOLDER), "pack-1234.keep")));
+        assertFalse("Config file accepted", DirectoryTreeCopier.GIT_IMMUTABLE_FILES.evaluate(new File(objects.getParentFile(), "config")));
+    }
+
+    @Test
+    public void testFullCopy() throws IOException {
+        File    srcDir=createRepositoryTree(), dstDir=prepareTargetFolder();
+        final ConcurrentMap<File,LinkMode>  reported=new ConcurrentHashMap<File,LinkMode>();
+        DirectoryTreeCopier copier=new DirectoryTreeCopier(LinkMode.COPY);
+        copier.setProgressListener(new DirectoryTreeCopier.ProgressListener() {
+                @Override
+                public void fileCopied(File srcFile, File dstFile, LinkMode mode, long size) {
+                    assertNull("Multiple reports for " + srcFile, reported.put(srcFile, mode));
+                }
+            });
+        copier.copy(srcDir, dstDir);
+
+        Collection<File>    srcFiles=FileUtils.listFiles(srcDir, null, true);
+        assertEquals("Mismatched reported files", srcFiles.size(), reported.size());
+        assertEquals("Mismatched copied files", srcFiles.size(), copier.getCopiedFiles());
+        assertEquals("Unexpected linked files", 0L, copier.getLinkedFiles());
+        assertFalse("Unexpected link mode reported", reported.containsValue(LinkMode.HARDLINK));
+        assertTreeContents(srcDir, dstDir, srcFiles, false);
+    }
+
+    @Test
+    public void testHardlinkCopy() throws IOException {
+        File    srcDir=createRepositoryTree(), dstDir=prepareTargetFolder();
+        DirectoryTreeCopier copier=ExtendedFileUtils.copyDirectoryParallel(srcDir, dstDir, LinkMode.HARDLINK, null);
+
+        Collection<File>    srcFiles=FileUtils.listFiles(srcDir, null, true);
+        if (copier.getLinkedFiles() <= 0L) {
+            logger.info(getCurrentTestName() + ": skip - hard links not supported");
+            assertEquals("Not all files copied", srcFiles.size(), copier.getCopiedFiles());
+        } else {
+            assertEquals("Mismatched processed files", srcFiles.size(), copier.getCopiedFiles() + copier.getLinkedFiles());
+            assertTreeContents(srcDir, dstDir, srcFiles, true);
+        }
+    }
+
+    @Test
+    public void testCancellation() throws IOException {
+        File    srcDir=createRepositoryTree(), dstDir=prepareTargetFolder();
+        final DirectoryTreeCopier   copier=new DirectoryTreeCopier(LinkMode.COPY);
+        copier.setProgressListener(new DirectoryTreeCopier.ProgressListener() {
+                @Override
+                public void fileCopied(File srcFile, File dstFile, LinkMode mode, long size) {
+                    copier.cancel();
+                }
+            });
+
+        try {
+            copier.copy(srcDir, dstDir);
+            fail("Unexpected copy completion");
+        } catch(InterruptedIOException e) {
+            assertTrue("Not marked as cancelled", copier.isCancelled());
+        }
+
+        assertTrue("Too many files copied: " + copier.getCopiedFiles(),
+                   copier.getCopiedFiles() < FileUtils.listFiles(srcDir, null, true).size());
+    }
+
+    private void assertTreeContents(File srcDir, File dstDir, Collection<File> srcFiles, boolean linkImmutable) throws IOException {
+        String  srcPath=srcDir.getAbsolutePath();
+        for (File srcFile : srcFiles) {
+            File    dstFile=new File(dstDir, srcFile.getAbsolutePath().substring(srcPath.length() + 1));
+            assertTrue("Missing " + dstFile, dstFile.isFile());
+            assertNull("Mismatched contents of " + dstFile, ExtendedFileUtils.findDifference(srcFile, dstFile));
+            assertEquals("Mismatched last-modified of " + dstFile, srcFile.lastModified(), dstFile.lastModified());
+
+            boolean sameFile=Files.isSameFile(srcFile.toPath(), dstFile.toPath());
+            assertEquals("Mismatched link state of " + dstFile, linkImmutable && DirectoryTreeCopier.GIT_IMMUTABLE_FILES.evaluate(srcFile), sameFile);
+        }
+    }
+
+    private File prepareTargetFolder() throws IOException {
+        File    dstDir=new File(ensureTempFolderExists(), getCurrentTestName() + "-copy");
+        FileUtils.deleteDirectory(dstDir);
+        return dstDir;
+    }
+
+    private File createRepositoryTree() throws IOException {
+        File    repoDir=new File(ensureTempFolderExists(), getCurrentTestName() + ".git");
+        FileUtils.deleteDirectory(repoDir);
+
+        File    objectsDir=new File(repoDir, DirectoryTreeCopier.GIT_OBJECTS_FOLDER);
+        writeRandomFile(new File(repoDir, "config"), Byte.MAX_VALUE);
+        writeRandomFile(new File(new File(repoDir, "refs"), "HEAD"), Byte.SIZE);
+        writeRandomFile(new File(new File(objectsDir, "info"), "packs"), Byte.SIZE);
+        writeRandomFile(new File(new File(objectsDir, DirectoryTreeCopier.GIT_PACK_FOLDER), "pack-1234.pack"), Short.MAX_VALUE);
+        writeRandomFile(new File(new File(objectsDir, DirectoryTreeCopier.GIT_PACK_FOLDER), "pack-1234.idx"), Byte.MAX_VALUE);
+        for (int index=0; index < Byte.SIZE; index++) {
+            File    dir=new File(objectsDir, String.format("%02x", Integer.valueOf(RANDOMIZER.nextInt(0xFF))));
+            writeRandomFile(new File(dir, getCurrentTestName() + index), Byte.MAX_VALUE + RANDOMIZER.nextInt(Short.MAX_VALUE));
+        }
+
+        return repoDir;
+    }
+
+    private static void writeRandomFile(File file, int size) throws IOException {
+        byte[]  data=new byte[size];
+        RANDOMIZER.nextBytes(data);
+        FileUtils.writeByteArrayToFile(file, data);
+        // make sure the timestamp is different than the copy time
+        file.setLastModified(System.currentTimeMillis() - 3600000L);
+    }
+}
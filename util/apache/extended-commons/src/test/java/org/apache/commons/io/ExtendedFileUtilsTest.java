@@ -17,8 +17,10 @@
 package org.apache.commons.io;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -255,6 +257,95 @@ public class ExtendedFileUtilsTest extends AbstractTestSupport {
         }
     }
 
+    @Test
+    public void testFindMappedDifference() throws IOException {
+        final int       CHUNK_SIZE=Byte.MAX_VALUE + 1;
+        final File      targetFolder=ensureFolderExists(new File(ensureFolderExists(detectTargetFolder()), getClass().getSimpleName()));
+        final File      file1=new File(targetFolder, "testFindMappedDifference1"), file2=new File(targetFolder, "testFindMappedDifference2");
+        final byte[]    bytes=new byte[Byte.SIZE * CHUNK_SIZE + Byte.SIZE - 1];   // make sure last chunk is not a whole multiple of a long
+        RANDOMIZER.nextBytes(bytes);
+        FileUtils.writeByteArrayToFile(file1, bytes);
+        FileUtils.writeByteArrayToFile(file2, bytes);
+        assertNull("Unexpected difference on same data", ExtendedFileUtils.findMappedDifference(file1, file2, (-1L), CHUNK_SIZE));
+
+        int[]   offsets={ 0, Byte.SIZE - 1, CHUNK_SIZE - 1, CHUNK_SIZE, 3 * CHUNK_SIZE + Byte.SIZE / 2, bytes.length - 1 };
+        for (int offset : offsets) {
+            byte[]  modified=bytes.clone();
+            modified[offset]++;
+            // add another difference beyond the 1st one in a later chunk to make sure the 1st one is reported
+            int     laterOffset=Math.min(bytes.length - 1, offset + 2 * CHUNK_SIZE);
+            if (laterOffset > offset) {
+                modified[laterOffset]++;
+            }
+            FileUtils.writeByteArrayToFile(file2, modified);
+
+            Triplet<Long,Byte,Byte> cmpRes=ExtendedFileUtils.findMappedDifference(file1, file2, (-1L), CHUNK_SIZE);
+            assertNotNull("No difference found at offset=" + offset, cmpRes);
+            assertEquals("Mismatched offset", offset, cmpRes.getV1().longValue());
+            assertEquals("Mismatched 1st value at offset=" + offset, bytes[offset], cmpRes.getV2().byteValue());
+            assertEquals("Mismatched 2nd value at offset=" + offset, modified[offset], cmpRes.getV3().byteValue());
+
+            assertNull("Unexpected difference before offset=" + offset, ExtendedFileUtils.findMappedDifference(file1, file2, offset, CHUNK_SIZE));
+        }
+
+        // shorter 2nd file with identical prefix
+        FileUtils.writeByteArrayToFile(file2, ArrayUtils.subarray(bytes, 0, bytes.length - CHUNK_SIZE));
+        Triplet<Long,Byte,Byte> cmpRes=ExtendedFileUtils.findMappedDifference(file1, file2, (-1L), CHUNK_SIZE);
+        assertNotNull("No difference found for shorter file", cmpRes);
+        assertEquals("Mismatched shorter file offset", bytes.length - CHUNK_SIZE, cmpRes.getV1().longValue());
+        assertEquals("Mismatched longer file value", bytes[bytes.length - CHUNK_SIZE], cmpRes.getV2().byteValue());
+        assertNull("Unexpected shorter file value", cmpRes.getV3());
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testFindDifferencePerformance() throws IOException {
+        File    targetFolder=ensureFolderExists(new File(ensureFolderExists(detectTargetFolder()), getClass().getSimpleName()));
+        File    file1=new File(targetFolder, "testFindDifferencePerformance1"), file2=new File(targetFolder, "testFindDifferencePerformance2");
+        byte[]  block=new byte[ExtendedIOUtils.DEFAULT_BUFFER_SIZE_VALUE * Byte.SIZE];
+        RANDOMIZER.nextBytes(block);
+
+        System.out.printf("%10s %20s %20s%n", "Size (MB)", "Streams (nano)", "Mapped (nano)");
+        for (int sizeMB : new int[] { 1, 16, 128 }) {
+            long    size=sizeMB * 1024L * 1024L;
+            for (File file : new File[] { file1, file2 }) {
+                OutputStream    out=new FileOutputStream(file);
+                try {
+                    for (long written=0L; written < size; written += block.length) {
+                        out.write(block);
+                    }
+                } finally {
+                    out.close();
+                }
+            }
+
+            long    streamsTime=0L, mappedTime=0L;
+            for (int index=0; index < Byte.SIZE; index++) {
+                encourageGC();
+
+                InputStream s1=new FileInputStream(file1), s2=new FileInputStream(file2);
+                long    startTime=System.nanoTime(), midTime;
+                Triplet<Long,Byte,Byte> streamsResult;
+                try {
+                    streamsResult = ExtendedIOUtils.findDifference(s1, s2);
+                    midTime = System.nanoTime();
+                } finally {
+                    ExtendedIOUtils.closeAll(s1, s2);
+                }
+
+                Triplet<Long,Byte,Byte> mappedResult=ExtendedFileUtils.findMappedDifference(file1, file2, (-1L));
+                long    endTime=System.nanoTime();
+                assertNull("Unexpected streams difference", streamsResult);
+                assertNull("Unexpected mapped difference", mappedResult);
+
+                streamsTime += midTime - startTime;
+                mappedTime += endTime - midTime;
+            }
+
+            System.out.printf("%10d %20d %20d%n", Integer.valueOf(sizeMB), Long.valueOf(streamsTime), Long.valueOf(mappedTime));
+        }
+    }
+
     @Test
     public void testQuickCopyFile() throws IOException {
         URL     url=Validate.notNull(ExtendedClassUtils.getClassBytesURL(getClass()), "No class bytes", ArrayUtils.EMPTY_OBJECT_ARRAY);
@@ -18,14 +18,27 @@ package org.apache.commons.io;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.io.nio.DirectBufferPool;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.tuple.Triplet;
 import org.apache.commons.test.AbstractTestSupport;
@@ -167,6 +180,292 @@ public class ExtendedIOUtilsTest extends AbstractTestSupport {
 	    }
 	}
 
+    @Test
+    public void testCopyChannelsPartialWrites() throws IOException {
+        File    srcFile=createDataFile(getCurrentTestName(), 3 * DirectBufferPool.DEFAULT_BUFFER_SIZE + Byte.MAX_VALUE);
+        byte[]  expected=FileUtils.readFileToByteArray(srcFile);
+        FileInputStream in=new FileInputStream(srcFile);
+        try {
+            // skip some data to make sure the current position is honored
+            assertEquals("Mismatched skip size", Long.SIZE, in.skip(Long.SIZE));
+
+            PartialGatheringChannel dst=new PartialGatheringChannel(Byte.MAX_VALUE);
+            long    count=ExtendedIOUtils.copyChannels(in.getChannel(), dst, (-1L));
+            assertEquals("Mismatched copy size", expected.length - Long.SIZE, count);
+            assertArrayEquals("Mismatched copied data", ArrayUtils.subarray(expected, Long.SIZE, expected.length), dst.toByteArray());
+            assertEquals("Source position not updated", expected.length, in.getChannel().position());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testCopyChannelsScatterGather() throws Exception {
+        final Pipe      pipe=Pipe.open();
+        final byte[]    data=new byte[2 * DirectBufferPool.DEFAULT_BUFFER_SIZE * ExtendedIOUtils.SCATTER_GATHER_BUFFERS_COUNT + Long.SIZE];
+        RANDOMIZER.nextBytes(data);
+
+        Thread  writer=new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        try {
+                            ExtendedIOUtils.writeFully(pipe.sink(), ByteBuffer.wrap(data));
+                        } finally {
+                            pipe.sink().close();
+                        }
+                    } catch(IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }, getCurrentTestName());
+        writer.start();
+
+        PartialGatheringChannel dst=new PartialGatheringChannel(Short.MAX_VALUE);
+        try {
+            long    count=ExtendedIOUtils.copyChannels(pipe.source(), dst, data.length - Long.SIZE);
+            assertEquals("Mismatched copy size", data.length - Long.SIZE, count);
+            assertEquals("Mismatched copied size", count, dst.size());
+            assertArrayEquals("Mismatched copied data", ArrayUtils.subarray(data, 0, (int) count), dst.toByteArray());
+            assertTrue("Gathering writes not used", dst.getGatheringWrites() > 0L);
+
+            // read the remainder so the writer can complete
+            assertEquals("Mismatched remainder size", Long.SIZE, ExtendedIOUtils.copyChannels(pipe.source(), dst, (-1L)));
+        } finally {
+            pipe.source().close();
+            writer.join();
+        }
+    }
+
+    @Test
+    public void testCopyLargeFileStreams() throws IOException {
+        File    srcFile=createDataFile(getCurrentTestName(), Short.MAX_VALUE), dstFile=new File(srcFile.getParentFile(), srcFile.getName() + ".copy");
+        byte[]  expected=FileUtils.readFileToByteArray(srcFile);
+        int     cpySize=expected.length / 2;
+        InputStream in=new FileInputStream(srcFile);
+        try {
+            OutputStream    out=new FileOutputStream(dstFile);
+            try {
+                out.write(expected, 0, Byte.SIZE); // make sure the current output position is honored
+                assertEquals("Mismatched copy size", cpySize, ExtendedIOUtils.copyLarge(in, out, cpySize));
+            } finally {
+                out.close();
+            }
+
+            // make sure the input stream position has been updated
+            assertEquals("Mismatched next value", expected[cpySize] & 0xFF, in.read());
+        } finally {
+            in.close();
+        }
+
+        byte[]  actual=FileUtils.readFileToByteArray(dstFile);
+        assertArrayEquals("Mismatched prefix", ArrayUtils.subarray(expected, 0, Byte.SIZE), ArrayUtils.subarray(actual, 0, Byte.SIZE));
+        assertArrayEquals("Mismatched copied data", ArrayUtils.subarray(expected, 0, cpySize), ArrayUtils.subarray(actual, Byte.SIZE, actual.length));
+    }
+
+    @Test
+    public void testCopyLargeFileToStream() throws IOException {
+        File    srcFile=createDataFile(getCurrentTestName(), DirectBufferPool.DEFAULT_BUFFER_SIZE + Short.MAX_VALUE);
+        InputStream in=new FileInputStream(srcFile);
+        try {
+            ByteArrayOutputStream   out=new ByteArrayOutputStream((int) srcFile.length());
+            assertEquals("Mismatched copy size", srcFile.length(), ExtendedIOUtils.copyLarge(in, out, (-1L)));
+            assertArrayEquals("Mismatched copied data", FileUtils.readFileToByteArray(srcFile), out.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testDirectBufferPoolReuse() {
+        DirectBufferPool    pool=new DirectBufferPool(Byte.MAX_VALUE, 1);
+        ByteBuffer          b1=pool.acquire(), b2=pool.acquire();
+        assertTrue("Not a direct buffer", b1.isDirect());
+        assertEquals("Mismatched allocations", 2L, pool.getAllocatedCount());
+        assertTrue("1st buffer not pooled", pool.release(b1));
+        assertFalse("2nd buffer pooled beyond max.", pool.release(b2));
+        assertFalse("Foreign buffer pooled", pool.release(ByteBuffer.allocate(Byte.MAX_VALUE)));
+
+        b1.position(Byte.SIZE);
+        ByteBuffer  b3=pool.acquire();
+        assertSame("Pooled buffer not re-used", b1, b3);
+        assertEquals("Re-used buffer not cleared", 0, b3.position());
+        assertEquals("Mismatched re-use count", 1L, pool.getReusedCount());
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testCopyPerformance() throws Exception {
+        ServerSocketChannel server=ServerSocketChannel.open();
+        try {
+            server.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+            final SocketChannel sink=SocketChannel.open(server.socket().getLocalSocketAddress());
+            final AtomicLong    drained=new AtomicLong(0L);
+            Thread              drainer=new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (ByteBuffer buf=ByteBuffer.allocateDirect(DirectBufferPool.DEFAULT_BUFFER_SIZE); sink.read(buf) >= 0; buf.clear()) {
+                                drained.addAndGet(buf.position());
+                            }
+                        } catch(IOException e) {
+                            // ignored - socket closed
+                        }
+                    }
+                }, getCurrentTestName());
+            drainer.setDaemon(true);
+            drainer.start();
+
+            SocketChannel   socket=server.accept();
+            try {
+                System.out.printf("%10s %-16s %20s %20s%n", "Size (KB)", "Mode", "Legacy (nano)", "Engine (nano)");
+                for (int sizeKB : new int[] { 64, 1024, 16 * 1024 }) {
+                    File    srcFile=createDataFile(getCurrentTestName() + "-" + sizeKB, sizeKB * 1024L);
+                    File    dstFile=new File(srcFile.getParentFile(), srcFile.getName() + ".copy");
+                    for (CopyMode mode : CopyMode.values()) {
+                        long    legacyTime=0L, engineTime=0L;
+                        for (int index=0; index < Byte.SIZE; index++) {
+                            encourageGC();
+                            legacyTime += mode.copy(srcFile, dstFile, socket, false);
+                            engineTime += mode.copy(srcFile, dstFile, socket, true);
+                        }
+
+                        System.out.printf("%10d %-16s %20d %20d%n", Integer.valueOf(sizeKB), mode, Long.valueOf(legacyTime), Long.valueOf(engineTime));
+                    }
+                }
+            } finally {
+                socket.close();
+                sink.close();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    private static enum CopyMode {
+        FILE_TO_FILE {
+            @Override
+            long copy(File srcFile, File dstFile, SocketChannel socket, boolean useEngine) throws IOException {
+                long    startTime=System.nanoTime();
+                if (useEngine) {
+                    ExtendedFileUtils.quickCopyFile(srcFile, dstFile);
+                } else {
+                    FileUtils.copyFile(srcFile, dstFile);
+                }
+                return System.nanoTime() - startTime;
+            }
+        },
+        FILE_TO_SOCKET {
+            @Override
+            long copy(File srcFile, File dstFile, SocketChannel socket, boolean useEngine) throws IOException {
+                FileInputStream in=new FileInputStream(srcFile);
+                try {
+                    long    startTime=System.nanoTime();
+                    if (useEngine) {
+                        ExtendedIOUtils.copyChannels(in.getChannel(), socket, (-1L));
+                    } else {
+                        IOUtils.copyLarge(in, socket.socket().getOutputStream());
+                    }
+                    return System.nanoTime() - startTime;
+                } finally {
+                    in.close();
+                }
+            }
+        },
+        STREAM_TO_STREAM {
+            @Override
+            long copy(File srcFile, File dstFile, SocketChannel socket, boolean useEngine) throws IOException {
+                InputStream in=new FileInputStream(srcFile);
+                try {
+                    OutputStream    out=new FileOutputStream(dstFile);
+                    try {
+                        long    startTime=System.nanoTime();
+                        if (useEngine) {
+                            ExtendedIOUtils.copyLarge(in, out, (-1L));
+                        } else {
+                            IOUtils.copyLarge(in, out);
+                        }
+                        return System.nanoTime() - startTime;
+                    } finally {
+                        out.close();
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        };
+
+        abstract long copy(File srcFile, File dstFile, SocketChannel socket, boolean useEngine) throws IOException;
+    }
+
+    private File createDataFile(String name, long size) throws IOException {
+        File    file=new File(ensureFolderExists(new File(ensureFolderExists(detectTargetFolder()), getClass().getSimpleName())), name + ".bin");
+        OutputStream    out=new FileOutputStream(file);
+        try {
+            for (long written=0L; written < size; ) {
+                int len=(int) Math.min(TEST_DATA.length, size - written);
+                out.write(TEST_DATA, 0, len);
+                written += len;
+            }
+        } finally {
+            out.close();
+        }
+
+        return file;
+    }
+
+    /**
+     * Accepts at most a limited amount of data per write call
+     */
+    private static final class PartialGatheringChannel extends ByteArrayOutputStream implements GatheringByteChannel {
+        private final int   maxWrite;
+        private long    gatheringWrites;
+
+        PartialGatheringChannel(int maxSize) {
+            maxWrite = maxSize;
+        }
+
+        long getGatheringWrites() {
+            return gatheringWrites;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int len=Math.min(src.remaining(), maxWrite);
+            for (int index=0; index < len; index++) {
+                write(src.get());
+            }
+            return len;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            gatheringWrites++;
+
+            long    count=0L;
+            for (int index=0; (index < length) && (count < maxWrite); index++) {
+                ByteBuffer  buf=srcs[offset + index];
+                int         len=Math.min(buf.remaining(), (int) (maxWrite - count));
+                for (int bIndex=0; bIndex < len; bIndex++) {
+                    write(buf.get());
+                }
+                count += len;
+            }
+            return count;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+    }
+
     private void testCopyCharsPerformance (boolean useWriter, String data) throws IOException {
         Reader          rdr=new StringReader(data);
         StringWriter    wrt=new StringWriter(data.length());
@@ -24,14 +24,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.commons.codec.binary.ExtendedHex;
 import org.apache.commons.io.output.LineLevelAppender;
 import org.apache.commons.io.output.StringBuilderWriter;
 import org.apache.commons.io.output.WriterOutputStream;
 import org.apache.commons.lang3.ExtendedClassUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.test.AbstractTestSupport;
+import org.apache.commons.test.MicroBenchmark;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 import org.junit.runners.MethodSorters;
 
 /**
@@ -95,4 +98,141 @@ public class HexDumpOutputStreamTest extends AbstractTestSupport {
             assertEquals("Mismatched line data #" + (index + 1), expLine, actLine);
         }
     }
+
+    @Test
+    public void testRenderingOptionsCompatibility() throws IOException {
+        byte[]  data=new byte[Byte.MAX_VALUE];
+        RANDOMIZER.nextBytes(data);
+
+        for (boolean useLowercase : new boolean[] { true, false }) {
+            for (boolean longOffset : new boolean[] { true, false }) {
+                for (int bytesPerLine : new int[] { 1, 7, HexDumpOutputStream.DEFAULT_BYTES_PER_LINE, Long.SIZE }) {
+                    String          options="lowercase=" + useLowercase + ", longOffset=" + longOffset + ", bytesPerLine=" + bytesPerLine;
+                    List<String>    expected=new ArrayList<String>(), actual=new ArrayList<String>();
+                    dumpData(new LegacyHexDumpOutputStream(new LinesCollector(expected), bytesPerLine, useLowercase, longOffset), data);
+                    dumpData(new HexDumpOutputStream(new LinesCollector(actual), bytesPerLine, useLowercase, longOffset), data);
+                    assertEquals("Mismatched lines for " + options, expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testRenderingPerformance() throws IOException {
+        byte[]              data=new byte[Short.MAX_VALUE];
+        RANDOMIZER.nextBytes(data);
+
+        final Runtime       RUNTIME=Runtime.getRuntime();
+        LineLevelAppender   appender=new LineLevelAppender() {
+                @Override
+                public void writeLineData(CharSequence lineData) throws IOException {
+                    // ignored
+                }
+
+                @Override
+                public boolean isWriteEnabled() {
+                    return true;
+                }
+            };
+        System.out.printf("%10s %10s %20s %20s %20s %20s", "Bytes/line", "Num. calls", "Legacy (nano)", "Legacy mem. (B)", "Table (nano)", "Table mem. (B)");
+        System.out.println();
+
+        for (int bytesPerLine : new int[] { 8, 16, 32, 64 }) {
+            for (final int  NUM_CALLS : new int[] { 1, 10, 100 }) {
+                long[]  legacyStats=new long[2], tableStats=new long[2];
+                for (int    cIndex=0; cIndex < NUM_CALLS; cIndex++) {
+                    for (boolean useLegacy : new boolean[] { true, false }) {
+                        OutputStream    output=useLegacy
+                                    ? new LegacyHexDumpOutputStream(appender, bytesPerLine, HexDumpOutputStream.DEFAULT_HEX_CASE, HexDumpOutputStream.DEFAULT_LONG_OFFSET)
+                                    : new HexDumpOutputStream(appender, bytesPerLine)
+                                    ;
+                        long[]  stats=useLegacy ? legacyStats : tableStats;
+                        encourageGC();
+
+                        long    startFree=RUNTIME.freeMemory(), startTime=System.nanoTime();
+                        dumpData(output, data);
+                        long    endFree=RUNTIME.freeMemory(), endTime=System.nanoTime();
+                        stats[0] += (endTime - startTime);
+                        stats[1] += (startFree - endFree);
+                    }
+                }
+
+                System.out.printf("%10d %10d %20d %20d %20d %20d",
+                                  Integer.valueOf(bytesPerLine), Integer.valueOf(NUM_CALLS),
+                                  Long.valueOf(legacyStats[0]), Long.valueOf(legacyStats[1]),
+                                  Long.valueOf(tableStats[0]), Long.valueOf(tableStats[1]));
+                System.out.println();
+            }
+        }
+    }
+
+    private static void dumpData(OutputStream output, byte[] data) throws IOException {
+        try {
+            output.write(data);
+        } finally {
+            output.close();
+        }
+    }
+
+    static class LinesCollector implements LineLevelAppender {
+        private final List<String>  lines;
+
+        LinesCollector(List<String> linesList) {
+            lines = linesList;
+        }
+
+        @Override
+        public void writeLineData(CharSequence lineData) throws IOException {
+            lines.add(lineData.toString());
+        }
+
+        @Override
+        public boolean isWriteEnabled() {
+            return true;
+        }
+    }
+
+    /**
+     * The original {@link StringBuilder} based rendering - used as reference
+     */
+    static class LegacyHexDumpOutputStream extends HexDumpOutputStream {
+        private final StringBuilder _lineData;
+
+        LegacyHexDumpOutputStream(LineLevelAppender appender, int bytesPerLine, boolean useLowercase, boolean longOffset) {
+            super(appender, bytesPerLine, useLowercase, longOffset);
+            _lineData = new StringBuilder((2 /* HEX */ + 1 /* space */ + 1 /* character */) * bytesPerLine + Long.SIZE /* some extra for the offset */);
+        }
+
+        @Override
+        protected void writeAccumulatedData(LineLevelAppender appender, long offset, byte[] data, int off, int len, int bytesPerLine) throws IOException {
+            _lineData.setLength(0);
+
+            if (isLongOffset()) {
+                ExtendedHex.appendHex(_lineData, isLowercase(), offset);
+            } else {
+                ExtendedHex.appendHex(_lineData, isLowercase(), (int) offset);
+            }
+            _lineData.append(' ');
+
+            for (int    index=0, pos=off; index < len; index++, pos++) {
+                ExtendedHex.appendHex(_lineData, isLowercase(), data[pos]).append(' ');
+            }
+
+            for (int    index=len; index < bytesPerLine; index++) {
+                _lineData.append("   ");
+            }
+
+            for (int    index=0, pos=off; index < len; index++, pos++) {
+                char    ch=(char) (data[pos] & 0xFF);
+                if ((ch < ' ') || (ch > 0x7E)) {
+                    _lineData.append('.');
+                } else {
+                    _lineData.append(ch);
+                }
+            }
+
+            appender.writeLineData(_lineData);
+        }
+    }
 }
@@ -0,0 +1,250 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.capture;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.test.AbstractTestSupport;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 3, 2013 12:31:47 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class WireCaptureTest extends AbstractTestSupport {
+    public WireCaptureTest() {
+        super();
+    }
+
+    @Test
+    public void testBufferChunkingAndDrops() throws IOException {
+        WireCaptureBuffer   buffer=new WireCaptureBuffer(4, Byte.SIZE);
+        byte[]              data=new byte[3 * Byte.SIZE + 3];
+        RANDOMIZER.nextBytes(data);
+
+        assertTrue("Data not published", buffer.publish(WireCaptureRecordType.CLIENT, 1L, 0L, data, 0, data.length));
+        assertEquals("Mismatched chunks count", 4, buffer.size());
+        assertFalse("Unexpected publish success", buffer.publish(WireCaptureRecordType.SERVER, 1L, 0L, data, 0, data.length));
+        assertEquals("Mismatched dropped records", 1L, buffer.getDroppedRecords());
+        assertEquals("Mismatched dropped bytes", data.length, buffer.getDroppedBytes());
+
+        final ByteArrayOutputStream   out=new ByteArrayOutputStream(data.length);
+        int count=buffer.drain(new WireCaptureBuffer.RecordHandler() {
+                @Override
+                public void handleRecord(WireCaptureRecordType type, long sessionId, long timestamp, byte[] b, int off, int len)
+                        throws IOException {
+                    assertEquals("Mismatched record type", WireCaptureRecordType.CLIENT, type);
+                    out.write(b, off, len);
+                }
+            }, Integer.MAX_VALUE);
+        assertEquals("Mismatched drained records", 4, count);
+        assertEquals("Buffer not empty", 0, buffer.size());
+        assertArrayEquals("Mismatched drained data", data, out.toByteArray());
+    }
+
+    @Test
+    public void testSamplingFilters() throws IOException {
+        WireCapture capture=new WireCapture(new WireCaptureBuffer(), new WireCaptureBuffer.RecordHandler() {
+                @Override
+                public void handleRecord(WireCaptureRecordType type, long sessionId, long timestamp, byte[] data, int off, int len)
+                        throws IOException {
+                    // ignored
+                }
+            }, 0.0d, Arrays.asList("repo.git"), Arrays.asList("user"));
+        try {
+            assertTrue("Repository filter not applied", capture.isSampled("repo.git", null));
+            assertTrue("User filter not applied", capture.isSampled(null, "user"));
+            assertNull("Unexpected session", capture.openSession(getCurrentTestName(), getCurrentTestName(), null));
+            assertEquals("Mismatched skipped sessions", 1L, capture.getSkippedSessions());
+        } finally {
+            capture.close();
+        }
+    }
+
+    @Test
+    public void testBlockedHandlerCloseDoesNotDrain() throws Exception {
+        final CountDownLatch    entered=new CountDownLatch(1), release=new CountDownLatch(1), handlerClosed=new CountDownLatch(1);
+        final List<String>      handlingThreads=Collections.synchronizedList(new ArrayList<String>());
+        final List<String>      closingThreads=Collections.synchronizedList(new ArrayList<String>());
+        WireCaptureBuffer       buffer=new WireCaptureBuffer();
+        class BlockingHandler implements WireCaptureBuffer.RecordHandler, Closeable {
+            @Override
+            public void handleRecord(WireCaptureRecordType type, long sessionId, long timestamp, byte[] data, int off, int len)
+                    throws IOException {
+                handlingThreads.add(Thread.currentThread().getName());
+                entered.countDown();
+                try {
+                    assertTrue("Handler not released in time", release.await(30L, TimeUnit.SECONDS));
+                } catch(InterruptedException e) {
+                    throw new IOException("Interrupted while blocked");
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                closingThreads.add(Thread.currentThread().getName());
+                handlerClosed.countDown();
+            }
+        }
+
+        final WireCapture   capture=new WireCapture(buffer, new BlockingHandler(), 1.0d);
+        byte[]              data=new byte[Byte.SIZE];
+        RANDOMIZER.nextBytes(data);
+        capture.start();
+        assertTrue("First record not published", buffer.publish(WireCaptureRecordType.CLIENT, 1L, 0L, data, 0, data.length));
+        assertTrue("Writer did not start handling", entered.await(5L, TimeUnit.SECONDS));
+        assertTrue("Second record not published", buffer.publish(WireCaptureRecordType.SERVER, 1L, 0L, data, 0, data.length));
+
+        Thread  closer=new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        capture.close();
+                    } catch(IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }, getCurrentTestName());
+        closer.start();
+        try {
+            Thread.sleep(250L);    // let the closer wait on the writer
+            closer.interrupt();
+            closer.join(TimeUnit.SECONDS.toMillis(5L));
+            assertFalse("Closer still blocked", closer.isAlive());
+            assertEquals("Closer drained or closed the handler: " + handlingThreads, 1, handlingThreads.size());
+            assertTrue("Handler closed while writer blocked: " + closingThreads, closingThreads.isEmpty());
+        } finally {
+            release.countDown();
+        }
+
+        assertTrue("Handler not closed by writer", handlerClosed.await(5L, TimeUnit.SECONDS));
+        assertEquals("Mismatched handled records: " + handlingThreads, 2, handlingThreads.size());
+
+        String  writerName=handlingThreads.get(0);
+        assertFalse("Record handled by closer", getCurrentTestName().equals(writerName));
+        assertEquals("Records handled by several threads: " + handlingThreads, Collections.nCopies(2, writerName), handlingThreads);
+        assertEquals("Handler not closed by writer: " + closingThreads, Collections.singletonList(writerName), closingThreads);
+        assertEquals("Unexpected write errors", 0L, capture.getWriteErrors());
+    }
+
+    @Test
+    public void testCaptureRoundTrip() throws IOException {
+        File    dir=new File(ensureTempFolderExists(), getClass().getSimpleName());
+        FileUtils.deleteQuietly(dir);
+
+        WireCapture capture=new WireCapture(new WireCaptureBuffer(), new WireCaptureFileWriter(dir, getCurrentTestName()), 1.0d);
+        byte[]      clientData=new byte[Short.MAX_VALUE], serverData=new byte[Byte.MAX_VALUE];
+        RANDOMIZER.nextBytes(clientData);
+        RANDOMIZER.nextBytes(serverData);
+
+        long    sessionId;
+        try {
+            capture.start();
+
+            WireCaptureSession  session=capture.openSession("repo.git", "user", getCurrentTestName());
+            assertNotNull("No session", session);
+            sessionId = session.getId();
+            try {
+                InputStream in=session.wrapInput(new ByteArrayInputStream(clientData), WireCaptureRecordType.CLIENT);
+                try {
+                    OutputStream    out=session.wrapOutput(new ByteArrayOutputStream(serverData.length), WireCaptureRecordType.SERVER);
+                    try {
+                        assertArrayEquals("Mismatched read data", clientData, IOUtils.toByteArray(in));
+                        out.write(serverData);
+                    } finally {
+                        out.close();
+                    }
+                } finally {
+                    in.close();
+                }
+            } finally {
+                session.close();
+            }
+        } finally {
+            capture.close();
+        }
+
+        assertEquals("Unexpected dropped records", 0L, capture.getDroppedRecords());
+
+        File[]  files=dir.listFiles();
+        assertNotNull("No capture files", files);
+        assertEquals("Mismatched capture files count: " + Arrays.toString(files), 1, files.length);
+
+        ByteArrayOutputStream           clientOut=new ByteArrayOutputStream(clientData.length);
+        ByteArrayOutputStream           serverOut=new ByteArrayOutputStream(serverData.length);
+        List<WireCaptureRecordType>     types=new ArrayList<WireCaptureRecordType>();
+        WireCaptureFileReader           reader=new WireCaptureFileReader(files[0]);
+        try {
+            for (WireCaptureFileReader.Record rec=reader.readRecord(); rec != null; rec = reader.readRecord()) {
+                assertEquals("Mismatched session ID in " + rec, sessionId, rec.getSessionId());
+
+                WireCaptureRecordType   type=rec.getType();
+                if (!types.contains(type)) {
+                    types.add(type);
+                }
+
+                switch(type) {
+                    case SESSION_START  :
+                        String  attrs=new String(rec.getData(), Charsets.UTF_8);
+                        assertTrue("Missing description: " + attrs, attrs.contains(WireCapture.DESCRIPTION_ATTR + "=" + getCurrentTestName()));
+                        break;
+                    case CLIENT         :
+                        clientOut.write(rec.getData());
+                        break;
+                    case SERVER         :
+                        serverOut.write(rec.getData());
+                        break;
+                    default             :
+                        assertEquals("Unexpected data in " + rec, 0, rec.getData().length);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        assertEquals("Mismatched records types",
+                Arrays.asList(WireCaptureRecordType.SESSION_START, WireCaptureRecordType.CLIENT, WireCaptureRecordType.SERVER, WireCaptureRecordType.SESSION_END),
+                types);
+        assertArrayEquals("Mismatched client data", clientData, clientOut.toByteArray());
+        assertArrayEquals("Mismatched server data", serverData, serverOut.toByteArray());
+
+        // make sure the dump tool can read the files
+        ByteArrayOutputStream   dumpOut=new ByteArrayOutputStream();
+        WireCaptureDump         dumper=new WireCaptureDump(new PrintStream(dumpOut, true, Charsets.UTF_8.name()));
+        dumper.dump(files[0]);
+        String  text=new String(dumpOut.toByteArray(), Charsets.UTF_8);
+        assertTrue("Missing session end in dump", text.contains(WireCaptureRecordType.SESSION_END.name()));
+        assertTrue("Missing server direction in dump", text.contains("] " + WireCaptureRecordType.SERVER.getCode() + ": "));
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.io.nio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.apache.commons.test.AbstractTestSupport;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 6, 2013 3:17:45 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ByteBufferDataInputOutputTest extends AbstractTestSupport {
+    private static final ByteOrder[]    ORDERS={ ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN };
+
+    public ByteBufferDataInputOutputTest() {
+        super();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (ByteOrder order : ORDERS) {
+            ByteBufferDataOutput    output=new ByteBufferDataOutput(Byte.SIZE, order);
+            writeValues(output);
+            assertTrue("Buffer did not grow", output.getBuffer().capacity() > Byte.SIZE);
+            readValues(order.toString(), new ByteBufferDataInput(output.toByteArray(), order));
+        }
+    }
+
+    @Test
+    public void testBigEndianStreamsCompatibility() throws IOException {
+        ByteArrayOutputStream   baos=new ByteArrayOutputStream();
+        DataOutputStream        dos=new DataOutputStream(baos);
+        try {
+            writeValues(dos);
+        } finally {
+            dos.close();
+        }
+
+        ByteBufferDataOutput    output=new ByteBufferDataOutput(Byte.MAX_VALUE, ByteOrder.BIG_ENDIAN);
+        writeValues(output);
+        assertArrayEquals("Mismatched encoded data", baos.toByteArray(), output.toByteArray());
+
+        readValues("DataInputStream", new DataInputStream(new ByteArrayInputStream(output.toByteArray())));
+    }
+
+    @Test
+    public void testLittleEndianStreamCompatibility() throws IOException {
+        ByteBufferDataOutput    output=new ByteBufferDataOutput(Byte.MAX_VALUE, ByteOrder.LITTLE_ENDIAN);
+        output.writeShort(Short.MIN_VALUE);
+        output.writeInt(0x12345678);
+        output.writeUnsignedInt(0xFEDCBA98L);
+        output.writeLong(Long.MIN_VALUE + 7365L);
+        output.writeDouble(Math.PI);
+
+        ByteOrderInputStream    input=new ByteOrderInputStream(new ByteArrayInputStream(output.toByteArray()), ByteOrder.LITTLE_ENDIAN);
+        try {
+            assertEquals("Mismatched short", Short.MIN_VALUE, input.readShort());
+            assertEquals("Mismatched int", 0x12345678, input.readInt());
+            assertEquals("Mismatched unsigned int", 0xFEDCBA98L, input.readUnsignedInt());
+            assertEquals("Mismatched long", Long.MIN_VALUE + 7365L, input.readLong());
+            assertEquals("Mismatched double", Math.PI, input.readDouble(), 0.0d);
+        } finally {
+            input.close();
+        }
+    }
+
+    @Test
+    public void testBulkArrays() throws IOException {
+        int[]       ints=new int[Byte.MAX_VALUE];
+        long[]      longs=new long[Byte.MAX_VALUE];
+        double[]    doubles=new double[Byte.MAX_VALUE];
+        for (int index=0; index < ints.length; index++) {
+            ints[index] = RANDOMIZER.nextInt();
+            longs[index] = RANDOMIZER.nextLong();
+            doubles[index] = RANDOMIZER.nextDouble();
+        }
+
+        for (ByteOrder order : ORDERS) {
+            ByteBufferDataOutput    output=new ByteBufferDataOutput(Byte.SIZE, order);
+            output.writeByte(1);    // make sure unaligned positions are handled
+            output.write(ints, 0, ints.length);
+            output.write(longs, 0, longs.length);
+            output.write(doubles, 0, doubles.length);
+
+            ByteBufferDataInput input=new ByteBufferDataInput(output.toByteBuffer(), order);
+            assertEquals(order + ": mismatched prefix", 1, input.readByte());
+
+            int[]   actualInts=new int[ints.length];
+            input.readFully(actualInts, 0, actualInts.length);
+            assertArrayEquals(order + ": mismatched ints", ints, actualInts);
+
+            long[]  actualLongs=new long[longs.length];
+            input.readFully(actualLongs, 0, actualLongs.length);
+            assertArrayEquals(order + ": mismatched longs", longs, actualLongs);
+
+            double[]    actualDoubles=new double[doubles.length];
+            input.readFully(actualDoubles, 0, actualDoubles.length);
+            assertTrue(order + ": mismatched doubles", Arrays.equals(doubles, actualDoubles));
+            assertEquals(order + ": unexpected remaining data", 0, input.remaining());
+
+            // absolute access
+            assertEquals(order + ": mismatched absolute int", ints[1], input.getInt(1 + Integer.SIZE / Byte.SIZE));
+            assertEquals(order + ": position changed by absolute read", output.position(), input.position());
+        }
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        File    file=new File(ensureTempFolderExists(), getClass().getSimpleName() + "-" + getCurrentTestName() + ".bin");
+        if (file.exists()) {
+            assertTrue("Failed to delete " + file, file.delete());
+        }
+
+        final int   NUM_VALUES=Short.MAX_VALUE;
+        for (ByteOrder order : ORDERS) {
+            ByteBufferDataOutput    output=ByteBufferDataOutput.map(file, NUM_VALUES * Long.SIZE / Byte.SIZE, order);
+            for (long index=0L; index < NUM_VALUES; index++) {
+                output.writeLong(index);
+            }
+
+            try {
+                output.writeByte(0);
+                fail(order + ": unexpected write beyond mapped size");
+            } catch(BufferOverflowException e) {
+                // expected
+            }
+
+            ByteBufferDataInput input=ByteBufferDataInput.map(file, order);
+            assertEquals(order + ": mismatched mapped size", output.position(), input.remaining());
+            for (long index=0L; index < NUM_VALUES; index++) {
+                assertEquals(order + ": mismatched value", index, input.readLong());
+            }
+        }
+    }
+
+    @Test
+    public void testEOF() throws IOException {
+        ByteBufferDataInput input=new ByteBufferDataInput(new byte[Integer.SIZE / Byte.SIZE + 1], ByteOrder.LITTLE_ENDIAN);
+        assertEquals("Mismatched int", 0, input.readInt());
+        try {
+            input.readInt();
+            fail("Unexpected read beyond end of data");
+        } catch(EOFException e) {
+            assertEquals("Position changed on failure", Integer.SIZE / Byte.SIZE, input.position());
+        }
+
+        assertEquals("Mismatched skip", 1, input.skipBytes(Byte.SIZE));
+        assertNull("Unexpected line", input.readLine());
+    }
+
+    @Test
+    public void testDoesNotAffectOriginalBuffer() throws IOException {
+        ByteBuffer  buf=ByteBuffer.allocateDirect(Long.SIZE);
+        ByteBufferDataOutput    output=new ByteBufferDataOutput(buf, ByteOrder.LITTLE_ENDIAN);
+        output.writeLong(0x0102030405060708L);
+        assertEquals("Original position changed", 0, buf.position());
+        assertSame("Original order changed", ByteOrder.BIG_ENDIAN, buf.order());
+        assertEquals("Mismatched big-endian read", 0x0807060504030201L, new ByteBufferDataInput(buf, ByteOrder.BIG_ENDIAN).readLong());
+    }
+
+    private static void writeValues(DataOutput output) throws IOException {
+        output.writeBoolean(true);
+        output.writeByte(Byte.MIN_VALUE);
+        output.writeShort(Short.MIN_VALUE);
+        output.writeChar('\u20AC');
+        output.writeInt(Integer.MIN_VALUE + 3777347);
+        output.writeLong(Long.MAX_VALUE - 7365L);
+        output.writeFloat((float) Math.E);
+        output.writeDouble(Math.PI);
+        output.writeUTF("ascii-\u00E9\u20AC\u0000-end");
+        output.writeBytes("line1\r\n");
+    }
+
+    private static void readValues(String location, DataInput input) throws IOException {
+        assertTrue(location + ": mismatched boolean", input.readBoolean());
+        assertEquals(location + ": mismatched byte", Byte.MIN_VALUE, input.readByte());
+        assertEquals(location + ": mismatched short", Short.MIN_VALUE, input.readShort());
+        assertEquals(location + ": mismatched char", '\u20AC', input.readChar());
+        assertEquals(location + ": mismatched int", Integer.MIN_VALUE + 3777347, input.readInt());
+        assertEquals(location + ": mismatched long", Long.MAX_VALUE - 7365L, input.readLong());
+        assertEquals(location + ": mismatched float", (float) Math.E, input.readFloat(), 0.0f);
+        assertEquals(location + ": mismatched double", Math.PI, input.readDouble(), 0.0d);
+        assertEquals(location + ": mismatched UTF", "ascii-\u00E9\u20AC\u0000-end", input.readUTF());
+        assertEquals(location + ": mismatched line", "line1", input.readLine());
+    }
+}
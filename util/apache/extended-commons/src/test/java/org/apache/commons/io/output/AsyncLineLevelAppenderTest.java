@@ -0,0 +1,258 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.output;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+
+import org.apache.commons.io.output.AsyncLineLevelAppender.OverflowPolicy;
+import org.apache.commons.logging.impl.SimpleLog;
+import org.apache.commons.test.AbstractTestSupport;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 4, 2013 10:12:31 AM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class AsyncLineLevelAppenderTest extends AbstractTestSupport {
+    public AsyncLineLevelAppenderTest() {
+        super();
+    }
+
+    @Test
+    public void testLinesWrittenInOrder() throws Exception {
+        CollectingLog           log=new CollectingLog(getCurrentTestName());
+        AsyncLineLevelAppender  appender=new AsyncLineLevelAppender(log, Level.FINEST, "P: ");
+        LineLevelAppender       other=appender.createAppender("O: ");
+        try {
+            assertTrue("Write not enabled", appender.isWriteEnabled());
+            appender.writeLineData("1");
+            other.writeLineData(new StringBuilder("2"));
+            appender.writeLineData(CharBuffer.wrap("x3y".toCharArray(), 1, 1));
+        } finally {
+            appender.close();
+        }
+
+        assertFalse("Write still enabled", appender.isWriteEnabled());
+        assertEquals("Mismatched lines", Arrays.asList("P: 1", "O: 2", "P: 3"), log.getMessages());
+        assertEquals("Mismatched written count", 3L, appender.getWrittenLines());
+        assertEquals("Unexpected drops", 0L, appender.getDroppedLines());
+    }
+
+    @Test
+    public void testSlotsAllocatedOnDemand() {
+        CollectingLog           log=new CollectingLog(getCurrentTestName());
+        AsyncLineLevelAppender  appender=new AsyncLineLevelAppender(log, Level.FINEST);
+        try {
+            assertEquals("Unexpected pre-allocated slots", 0, appender.getAllocatedSlotsCount());
+            for (int index=0; index < Byte.SIZE; index++) {
+                appender.writeLineData(String.valueOf(index));
+            }
+        } finally {
+            appender.close();
+        }
+
+        assertEquals("Mismatched written lines", Byte.SIZE, log.getMessages().size());
+        assertEquals("Mismatched allocated slots", Byte.SIZE, appender.getAllocatedSlotsCount());
+    }
+
+    @Test
+    public void testTruncation() {
+        CollectingLog           log=new CollectingLog(getCurrentTestName());
+        AsyncLineLevelAppender  appender=
+                new AsyncLineLevelAppender(log, Level.FINEST, null, 2, Byte.SIZE, OverflowPolicy.DROP, 1);
+        try {
+            appender.writeLineData(getCurrentTestName());
+        } finally {
+            appender.close();
+        }
+
+        assertEquals("Mismatched truncated count", 1L, appender.getTruncatedLines());
+        assertEquals("Mismatched lines",
+                Collections.singletonList(getCurrentTestName().substring(0, Byte.SIZE) + AsyncLineLevelAppender.TRUNCATION_INDICATOR),
+                log.getMessages());
+    }
+
+    @Test
+    public void testDropPolicy() throws Exception {
+        CountDownLatch          blocker=new CountDownLatch(1);
+        CollectingLog           log=new CollectingLog(getCurrentTestName(), blocker);
+        AsyncLineLevelAppender  appender=
+                new AsyncLineLevelAppender(log, Level.FINEST, null, 4, Byte.SIZE, OverflowPolicy.DROP, 1);
+        final int               NUM_LINES=Byte.SIZE;
+        try {
+            appender.writeLineData("0");
+            log.awaitFirstMessage();    // consumer is now blocked on the 1st line
+
+            for (int index=1; index <= NUM_LINES; index++) {
+                appender.writeLineData(String.valueOf(index));
+            }
+        } finally {
+            blocker.countDown();
+            appender.close();
+        }
+
+        long    dropped=appender.getDroppedLines();
+        assertEquals("Mismatched dropped lines", NUM_LINES - appender.getSlotsCount(), dropped);
+        assertEquals("Mismatched written lines", NUM_LINES + 1 - dropped, log.getMessages().size());
+    }
+
+    @Test
+    public void testSamplePolicy() throws Exception {
+        CountDownLatch          blocker=new CountDownLatch(1);
+        CollectingLog           log=new CollectingLog(getCurrentTestName(), blocker);
+        AsyncLineLevelAppender  appender=
+                new AsyncLineLevelAppender(log, Level.FINEST, null, 16, Byte.SIZE, OverflowPolicy.SAMPLE, 2);
+        try {
+            appender.writeLineData("0");
+            log.awaitFirstMessage();
+
+            for (int index=1; index <= Long.SIZE; index++) {
+                appender.writeLineData(String.valueOf(index));
+            }
+        } finally {
+            blocker.countDown();
+            appender.close();
+        }
+
+        // 12 lines until the high watermark, then 1 out of 2 until full
+        assertEquals("Mismatched written lines", 1 + appender.getSlotsCount(), log.getMessages().size());
+        assertEquals("Mismatched dropped lines", Long.SIZE - appender.getSlotsCount(), appender.getDroppedLines());
+    }
+
+    @Test
+    public void testBlockPolicy() throws Exception {
+        CollectingLog                   log=new CollectingLog(getCurrentTestName());
+        final AsyncLineLevelAppender    appender=
+                new AsyncLineLevelAppender(log, Level.FINEST, null, Short.SIZE, Byte.SIZE, OverflowPolicy.BLOCK, 1);
+        final int                       NUM_LINES=Short.SIZE * Byte.MAX_VALUE, NUM_THREADS=4;
+        Thread[]                        threads=new Thread[NUM_THREADS];
+        try {
+            for (int index=0; index < threads.length; index++) {
+                threads[index] = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (int lIndex=0; lIndex < NUM_LINES; lIndex++) {
+                                appender.writeLineData("L");
+                            }
+                        }
+                    });
+                threads[index].start();
+            }
+
+            for (Thread t : threads) {
+                t.join();
+            }
+        } finally {
+            appender.close();
+        }
+
+        assertEquals("Unexpected drops", 0L, appender.getDroppedLines());
+        assertEquals("Mismatched written lines", NUM_LINES * NUM_THREADS, log.getMessages().size());
+    }
+
+    @Test
+    public void testInterruptedCloseDoesNotDrain() throws Exception {
+        CountDownLatch                  blocker=new CountDownLatch(1);
+        CollectingLog                   log=new CollectingLog(getCurrentTestName(), blocker);
+        final AsyncLineLevelAppender    appender=
+                new AsyncLineLevelAppender(log, Level.FINEST, null, 4, Byte.SIZE, OverflowPolicy.DROP, 1);
+        final int                       NUM_LINES=appender.getSlotsCount();
+        try {
+            appender.writeLineData("0");
+            log.awaitFirstMessage();    // consumer is now blocked on the 1st line
+
+            for (int index=1; index <= NUM_LINES; index++) {
+                appender.writeLineData(String.valueOf(index));
+            }
+
+            Thread  closer=new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        appender.close();
+                    }
+                });
+            closer.start();
+            closer.interrupt(); // abort the wait for the consumer
+            closer.join(AsyncLineLevelAppender.DEFAULT_CLOSE_TIMEOUT);
+            assertFalse("Interrupted close still writing lines", closer.isAlive());
+        } finally {
+            blocker.countDown();
+        }
+
+        for (long timeout=System.currentTimeMillis() + AsyncLineLevelAppender.DEFAULT_CLOSE_TIMEOUT;
+             (appender.getWrittenLines() <= NUM_LINES) && (System.currentTimeMillis() < timeout); ) {
+            Thread.sleep(Byte.SIZE);
+        }
+
+        List<String>    expected=new ArrayList<String>(NUM_LINES + 1);
+        for (int index=0; index <= NUM_LINES; index++) {
+            expected.add(String.valueOf(index));
+        }
+        assertEquals("Mismatched lines", expected, log.getMessages());
+        assertEquals("Lines written outside the consumer", Collections.singleton(AsyncLineLevelAppender.class.getSimpleName()), log.getThreadNames());
+    }
+
+    static class CollectingLog extends SimpleLog {
+        private static final long serialVersionUID = 1L;
+        private final List<String>  messages=Collections.synchronizedList(new ArrayList<String>());
+        private final Set<String>   threadNames=Collections.synchronizedSet(new TreeSet<String>());
+        private final CountDownLatch    blocker, firstMessage=new CountDownLatch(1);
+
+        CollectingLog(String name) {
+            this(name, new CountDownLatch(0));
+        }
+
+        CollectingLog(String name, CountDownLatch latch) {
+            super(name);
+            setLevel(LOG_LEVEL_ALL);
+            blocker = latch;
+        }
+
+        List<String> getMessages() {
+            return messages;
+        }
+
+        Set<String> getThreadNames() {
+            return threadNames;
+        }
+
+        void awaitFirstMessage() throws InterruptedException {
+            firstMessage.await();
+        }
+
+        @Override
+        protected void log(int type, Object message, Throwable t) {
+            threadNames.add(Thread.currentThread().getName());
+            messages.add(String.valueOf(message));
+            firstMessage.countDown();
+            try {
+                blocker.await();
+            } catch(InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/* Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.io.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.test.AbstractTestSupport;
+import org.apache.commons.test.MicroBenchmark;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 7, 2013 10:31:05 AM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ChunkedCharArrayWriterTest extends AbstractTestSupport {
+    public ChunkedCharArrayWriterTest() {
+        super();
+    }
+
+    @Test
+    public void testWriterCorrectness() throws IOException {
+        String                  expected=readTestSource();
+        ChunkedCharArrayWriter  writer=writeChunks(expected, expected.length() / 8 /* just so we use a few segments */);
+        assertEquals("Mismatched size", expected.length(), writer.size());
+        assertTrue("Not enough segments: " + writer.getSegmentsCount(), writer.getSegmentsCount() >= 8);
+        assertEquals("Mismatched string", expected, writer.toString());
+        assertArrayEquals("Mismatched chars", expected.toCharArray(), writer.toCharArray());
+
+        StringWriter    out=new StringWriter(expected.length());
+        writer.writeTo(out);
+        assertEquals("Mismatched written data", expected, out.toString());
+    }
+
+    @Test
+    public void testCharSequenceView() throws IOException {
+        String                  expected=readTestSource();
+        ChunkedCharArrayWriter  writer=writeChunks(expected, Byte.MAX_VALUE);
+        CharSequence            cs=writer.asCharSequence();
+        assertEquals("Mismatched length", expected.length(), cs.length());
+        for (int index=0; index < expected.length(); index++) {
+            assertEquals("Mismatched char at index=" + index, expected.charAt(index), cs.charAt(index));
+        }
+
+        for (int index=0; index < Byte.SIZE; index++) {
+            int start=RANDOMIZER.nextInt(expected.length()), end=start + RANDOMIZER.nextInt(expected.length() - start);
+            assertEquals("Mismatched sub-sequence [" + start + "-" + end + "]", expected.substring(start, end), cs.subSequence(start, end).toString());
+        }
+
+        writer.write(getCurrentTestName());
+        assertEquals("View length changed after write", expected.length(), cs.length());
+        assertEquals("View contents changed after write", expected, cs.toString());
+    }
+
+    @Test
+    public void testToReader() throws IOException {
+        String                  expected=readTestSource();
+        ChunkedCharArrayWriter  writer=writeChunks(expected, Byte.MAX_VALUE);
+        Reader                  rdr=writer.toReader();
+        try {
+            assertEquals("Mismatched recovered data", expected, IOUtils.toString(rdr));
+            assertEquals("Unexpected data beyond end", (-1), rdr.read());
+        } finally {
+            rdr.close();
+        }
+    }
+
+    @Test
+    public void testAppendCharSequence() throws IOException {
+        String                  expected=readTestSource();
+        ChunkedCharArrayWriter  writer=new ChunkedCharArrayWriter(Byte.MAX_VALUE);
+        try {
+            writer.append(new StringBuilder(expected), 0, expected.length() / 2)
+                  .append(expected.substring(expected.length() / 2))
+                  ;
+        } finally {
+            writer.close();
+        }
+
+        assertEquals("Mismatched appended data", expected, writer.toString());
+    }
+
+    @Test
+    public void testWriterReset() throws IOException {
+        String                  expected=readTestSource();
+        ChunkedCharArrayWriter  writer=writeChunks(expected, Byte.MAX_VALUE);
+        int                     numSegments=writer.getSegmentsCount();
+        for (int index=0; index < Byte.SIZE; index++) {
+            writer.reset();
+            assertEquals("Size not reset", 0, writer.size());
+            writer.write(expected);
+        }
+
+        assertEquals("Segments not re-used", numSegments, writer.getSegmentsCount());
+        assertEquals("Mismatched recovered data", expected, writer.toString());
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testWriterPerformance() throws IOException {
+        final int   NUM_CHARS=64 * 1024 * 1024, NUM_ROUNDS=5;
+        char[]      chunk=new char[Byte.MAX_VALUE];
+        for (int index=0; index < chunk.length; index++) {
+            chunk[index] = (char) ('A' + RANDOMIZER.nextInt(26));
+        }
+
+        System.out.printf("%-40s %10s %10s\n", "Writer", "write(ms)", "dump(ms)");
+        for (int round=0; round < NUM_ROUNDS; round++) {
+            for (int type=0; type < 3; type++) {
+                Writer  writer;
+                switch(type) {
+                    case 0  : writer = new java.io.CharArrayWriter(); break;
+                    case 1  : writer = new CharArrayWriter(); break;
+                    default : writer = new ChunkedCharArrayWriter();
+                }
+
+                encourageGC();
+
+                long    writeStart=System.nanoTime();
+                for (int written=0; written < NUM_CHARS; written += chunk.length) {
+                    writer.write(chunk);
+                }
+                long    writeEnd=System.nanoTime();
+
+                Writer  out=new NullWriter();
+                if (writer instanceof java.io.CharArrayWriter) {
+                    ((java.io.CharArrayWriter) writer).writeTo(out);
+                } else if (writer instanceof CharArrayWriter) {
+                    ((CharArrayWriter) writer).writeTo(out);
+                } else {
+                    ((ChunkedCharArrayWriter) writer).writeTo(out);
+                }
+                long    dumpEnd=System.nanoTime();
+
+                System.out.printf("%-40s %10d %10d\n", writer.getClass().getName().replace("org.apache.commons.", "o.a.c."),
+                                  Long.valueOf((writeEnd - writeStart) / 1000000L), Long.valueOf((dumpEnd - writeEnd) / 1000000L));
+            }
+        }
+    }
+
+    private String readTestSource() throws IOException {
+        File    file=getTestJavaSourceFile();
+        assertNotNull("Cannot locate test file", file);
+        return FileUtils.readFileToString(file);
+    }
+
+    private static ChunkedCharArrayWriter writeChunks(String data, int segmentSize) throws IOException {
+        ChunkedCharArrayWriter  writer=new ChunkedCharArrayWriter(segmentSize);
+        try {
+            for (int    pos=0; pos < data.length(); pos += Byte.MAX_VALUE) {
+                int writeLen=Math.min(Byte.MAX_VALUE, data.length() - pos);
+                writer.write(data, pos, writeLen);
+            }
+        } finally {
+            writer.close();
+        }
+
+        return writer;
+    }
+}
@@ -17,13 +17,19 @@ package org.apache.commons.io.output;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.ExtendedArrayUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.test.AbstractTestSupport;
+import org.apache.commons.test.MicroBenchmark;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 import org.junit.runners.MethodSorters;
 
 /**
@@ -46,6 +52,189 @@ public class LineOutputStreamTest extends AbstractTestSupport {
         testStreamCorrectness(true);
     }
     
+    @Test
+    public void testIndexOfLineFeed() {
+        byte[]      data=new byte[Byte.SIZE * 3 + 5];
+        ByteBuffer  view=ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        for (int lfPos=(-1); lfPos < data.length; lfPos++) {
+            RANDOMIZER.nextBytes(data);
+            for (int index=0; index < data.length; index++) {
+                if (index == lfPos) {
+                    data[index] = '\n';
+                } else if (data[index] == '\n') {
+                    // use values that may cause false positives
+                    data[index] = (byte) (((index & 0x01) == 0) ? 0x0B : 0x8A);
+                }
+            }
+
+            for (int off=0; off < data.length; off++) {
+                for (int len=0; (off + len) <= data.length; len++) {
+                    int expected=ExtendedArrayUtils.indexOf(data, (byte) '\n', off, len);
+                    for (boolean useWords : new boolean[] { true, false }) {
+                        int actual=LineOutputStream.indexOfLineFeed(view, off, len, useWords);
+                        if (expected < 0) {
+                            assertTrue("Unexpected match for lf=" + lfPos + ", off=" + off + ", len=" + len + ", words=" + useWords + ": " + actual, actual < 0);
+                        } else {
+                            assertEquals("Mismatched index for lf=" + lfPos + ", off=" + off + ", len=" + len + ", words=" + useWords, expected, actual);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testByteViewsCached() throws IOException {
+        LineOutputStream    output=new LineOutputStream(new LineLevelAppender() {
+                @Override
+                public void writeLineData(CharSequence lineData) throws IOException {
+                    // ignored
+                }
+
+                @Override
+                public boolean isWriteEnabled() {
+                    return true;
+                }
+            });
+        try {
+            byte[]  data=(getCurrentTestName() + "\n").getBytes("US-ASCII");
+            output.write(data, 0, data.length - 1); // partial line so the work buffer is used
+            assertNotNull("No work buffer allocated", output._workBuf);
+
+            ByteBuffer  workView=output.byteView(output._workBuf), dataView=output.byteView(data);
+            assertNotSame("Work buffer and data share a view", workView, dataView);
+            for (int index=0; index < Byte.SIZE; index++) {
+                assertSame("Work buffer view re-wrapped at iteration #" + index, workView, output.byteView(output._workBuf));
+                assertSame("Data view re-wrapped at iteration #" + index, dataView, output.byteView(data));
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    @Test
+    public void testMultipleLinesPerWrite() throws IOException {
+        final List<String>  actual=new ArrayList<String>();
+        LineLevelAppender   appender=new LineLevelAppender() {
+                @Override
+                public void writeLineData(CharSequence lineData) throws IOException {
+                    actual.add(lineData.toString());
+                }
+
+                @Override
+                public boolean isWriteEnabled() {
+                    return true;
+                }
+            };
+
+        String[]    expected={ "", "a", "", "0032want 0123456789abcdef0123456789abcdef01234567", "\u05D0\u05D1", "last" };
+        for (boolean useAsciiStream : new boolean[] { true, false }) {
+            StringBuilder   sb=new StringBuilder();
+            for (int index=0; index < expected.length; index++) {
+                sb.append(expected[index]);
+                if (index < (expected.length - 1)) {
+                    sb.append(((index & 0x01) == 0) ? "\n" : "\r\n");
+                }
+            }
+
+            OutputStream    output=useAsciiStream ? new AsciiLineOutputStream(appender) : new LineOutputStream("UTF-8", appender);
+            byte[]          data=sb.toString().getBytes(useAsciiStream ? "US-ASCII" : "UTF-8");
+            try {
+                // write in uneven chunks so some lines span several writes
+                for (int offset=0, chunkSize=1; offset < data.length; offset += chunkSize, chunkSize = (chunkSize * 3) % 17 + 1) {
+                    output.write(data, offset, Math.min(chunkSize, data.length - offset));
+                }
+            } finally {
+                output.close();
+            }
+
+            assertEquals("Mismatched lines count (ascii=" + useAsciiStream + ")", expected.length, actual.size());
+            for (int index=0; index < expected.length; index++) {
+                if (useAsciiStream && (!StringUtils.isAsciiPrintable(expected[index]))) {
+                    continue;   // non-ASCII characters are replaced
+                }
+                assertEquals("Mismatched line #" + index + " (ascii=" + useAsciiStream + ")", expected[index], actual.get(index));
+            }
+            actual.clear();
+        }
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testLineSplittingPerformance() throws IOException {
+        StringBuilder   pktLines=new StringBuilder(), logLines=new StringBuilder();
+        for (int index=0; pktLines.length() < Short.MAX_VALUE; index++) {
+            String  sha=Long.toHexString(RANDOMIZER.nextLong()) + Long.toHexString(RANDOMIZER.nextLong()) + Integer.toHexString(index);
+            String  line=sha + " refs/heads/branch-" + index + "\n";
+            pktLines.append(String.format("%04x", Integer.valueOf(line.length() + 4))).append(line);
+            logLines.append("2013-12-04 10:").append(index % 60).append(':').append(index % 60)
+                    .append(" INFO [http-bio-8080-exec-").append(index % 16).append("] GitController - serveRequest(GET)")
+                    .append("[/git/repo-").append(index).append(".git/info/refs][service=git-upload-pack] user=user").append(index)
+                    .append("\r\n");
+        }
+
+        final Runtime       RUNTIME=Runtime.getRuntime();
+        LineLevelAppender   appender=new LineLevelAppender() {
+                @Override
+                public void writeLineData(CharSequence lineData) throws IOException {
+                    // ignored
+                }
+
+                @Override
+                public boolean isWriteEnabled() {
+                    return true;
+                }
+            };
+        System.out.printf("%10s %10s %10s %20s %20s %20s", "Traffic", "Stream", "Num. calls", "Byte scan (nano)", "Word scan (nano)", "Stream (nano)");
+        System.out.println();
+
+        for (String type : new String[] { "pkt-line", "log" }) {
+            byte[]      data=(("pkt-line".equals(type)) ? pktLines : logLines).toString().getBytes("US-ASCII");
+            ByteBuffer  view=ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            for (boolean useAsciiStream : new boolean[] { true, false }) {
+                for (final int  NUM_CALLS : new int[] { 10, 100, 1000 }) {
+                    long    byteScan=0L, wordScan=0L, streamTime=0L;
+                    for (int    cIndex=0; cIndex < NUM_CALLS; cIndex++) {
+                        long    startTime=System.nanoTime();
+                        for (int pos=0, lfIndex; pos < data.length; pos = lfIndex + 1) {
+                            if ((lfIndex=ExtendedArrayUtils.indexOf(data, (byte) '\n', pos, data.length - pos)) < 0) {
+                                break;
+                            }
+                        }
+                        long    endTime=System.nanoTime();
+                        byteScan += endTime - startTime;
+
+                        startTime = System.nanoTime();
+                        for (int pos=0, lfIndex; pos < data.length; pos = lfIndex + 1) {
+                            if ((lfIndex=LineOutputStream.indexOfLineFeed(view, pos, data.length - pos, true)) < 0) {
+                                break;
+                            }
+                        }
+                        endTime = System.nanoTime();
+                        wordScan += endTime - startTime;
+
+                        OutputStream    output=useAsciiStream ? new AsciiLineOutputStream(appender) : new LineOutputStream("US-ASCII", appender);
+                        startTime = System.nanoTime();
+                        try {
+                            output.write(data);
+                        } finally {
+                            output.close();
+                        }
+                        endTime = System.nanoTime();
+                        streamTime += endTime - startTime;
+                    }
+
+                    System.out.printf("%10s %10s %10d %20d %20d %20d",
+                                      type, useAsciiStream ? "ascii" : "decoder", Integer.valueOf(NUM_CALLS),
+                                      Long.valueOf(byteScan), Long.valueOf(wordScan), Long.valueOf(streamTime));
+                    System.out.println();
+                }
+            }
+        }
+        encourageGC();
+        System.out.println("Used memory: " + (RUNTIME.totalMemory() - RUNTIME.freeMemory()));
+    }
+
     private void testStreamCorrectness(boolean useAsciiStream) throws IOException {
         File    file=getTestJavaSourceFile();
         assertNotNull("Cannot locate test file", file);
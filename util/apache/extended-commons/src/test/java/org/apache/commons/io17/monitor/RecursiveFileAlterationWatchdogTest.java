@@ -0,0 +1,212 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.io17.monitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOCase;
+import org.apache.commons.io.monitor.FileAlterationListenerAdaptor;
+import org.apache.commons.test.AbstractTestSupport;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 6, 2013 11:03:27 AM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RecursiveFileAlterationWatchdogTest extends AbstractTestSupport {
+    private static final long   DEBOUNCE_MILLIS=100L;
+
+    public RecursiveFileAlterationWatchdogTest() {
+        super();
+    }
+
+    @Test
+    public void testCoalesce() {
+        assertSame("CREATE+MODIFY", StandardWatchEventKinds.ENTRY_CREATE,
+                   RecursiveFileAlterationWatchdog.coalesce(StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+        assertNull("CREATE+DELETE",
+                   RecursiveFileAlterationWatchdog.coalesce(StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE));
+        assertSame("MODIFY+DELETE", StandardWatchEventKinds.ENTRY_DELETE,
+                   RecursiveFileAlterationWatchdog.coalesce(StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+        assertSame("DELETE+CREATE", StandardWatchEventKinds.ENTRY_MODIFY,
+                   RecursiveFileAlterationWatchdog.coalesce(StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_CREATE));
+        assertSame("MODIFY+MODIFY", StandardWatchEventKinds.ENTRY_MODIFY,
+                   RecursiveFileAlterationWatchdog.coalesce(StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_MODIFY));
+    }
+
+    @Test
+    public void testRecursiveCoalescedEvents() throws Exception {
+        File    rootDir=createRootFolder();
+        RecursiveFileAlterationWatchdog watchdog=
+                new RecursiveFileAlterationWatchdog(rootDir, null, IOCase.SYSTEM, DEBOUNCE_MILLIS, RecursiveFileAlterationWatchdog.DEFAULT_MAX_PENDING_EVENTS);
+        EventsCollector collector=new EventsCollector(rootDir);
+        watchdog.addListener(collector);
+        watchdog.initialize();
+        try {
+            File    deepDir=new File(new File(rootDir, "sub"), "deep"), deepFile=new File(deepDir, "file.txt");
+            assertTrue("Failed to create " + deepDir, deepDir.mkdirs());
+            for (int index=0; index < Byte.SIZE; index++) {
+                FileUtils.writeStringToFile(deepFile, getCurrentTestName() + index);
+                watchdog.checkAndNotify();
+            }
+
+            File    tempFile=new File(rootDir, "temp.txt");
+            FileUtils.writeStringToFile(tempFile, getCurrentTestName());
+            assertTrue("Failed to delete " + tempFile, tempFile.delete());
+
+            waitForQuiet(watchdog);
+            assertTrue("No raw events", watchdog.getRawEvents() > 0L);
+            assertEquals("Mismatched watched folders", 3, watchdog.getWatchedFolders());
+
+            List<String>    events=collector.getEvents();
+            assertEquals("Mismatched deep file events: " + events, 1, Collections.frequency(events, "fileCreate:sub/deep/file.txt"));
+            assertFalse("Unexpected deep file change: " + events, events.contains("fileChange:sub/deep/file.txt"));
+            assertTrue("Missing sub-folder creation: " + events, events.contains("directoryCreate:sub"));
+            assertFalse("Unexpected created+deleted file event: " + events, collector.containsPath("temp.txt"));
+
+            // a change in the new deep folder must be reported as well since it is now watched
+            collector.clear();
+            FileUtils.writeStringToFile(deepFile, getCurrentTestName());
+            waitForQuiet(watchdog);
+            assertEquals("Mismatched change events", Collections.singletonList("fileChange:sub/deep/file.txt"), collector.getEvents());
+        } finally {
+            watchdog.destroy();
+        }
+    }
+
+    @Test
+    public void testBoundedPendingEvents() throws Exception {
+        File    rootDir=createRootFolder();
+        final int                       MAX_PENDING=2, NUM_FILES=Byte.SIZE;
+        RecursiveFileAlterationWatchdog watchdog=new RecursiveFileAlterationWatchdog(rootDir, null, IOCase.SYSTEM, DEBOUNCE_MILLIS, MAX_PENDING);
+        EventsCollector collector=new EventsCollector(rootDir);
+        watchdog.addListener(collector);
+        watchdog.initialize();
+        try {
+            for (int index=0; index < NUM_FILES; index++) {
+                FileUtils.writeStringToFile(new File(rootDir, "file" + index + ".txt"), getCurrentTestName());
+            }
+
+            watchdog.checkAndNotify(TimeUnit.MILLISECONDS, DEBOUNCE_MILLIS / 2L);
+            assertTrue("Too many pending events: " + watchdog.getPendingEvents(), watchdog.getPendingEvents() <= MAX_PENDING);
+
+            waitForQuiet(watchdog);
+            assertTrue("No rescan performed", watchdog.getRescans() > 0L);
+
+            List<String>    events=collector.getEvents();
+            assertTrue("Missing root folder change: " + events, events.contains("directoryChange:"));
+            for (int index=0; index < NUM_FILES; index++) {
+                String  name="file" + index + ".txt";
+                assertTrue("Missing event for " + name + ": " + events, collector.containsPath(name));
+            }
+        } finally {
+            watchdog.destroy();
+        }
+    }
+
+    private File createRootFolder() throws IOException {
+        File    rootDir=new File(ensureTempFolderExists(), getClass().getSimpleName() + "-" + getCurrentTestName());
+        FileUtils.deleteDirectory(rootDir);
+        return ensureFolderExists(rootDir);
+    }
+
+    // keeps checking until no new events are delivered during a whole debounce period
+    private static void waitForQuiet(RecursiveFileAlterationWatchdog watchdog) throws InterruptedException {
+        for (int quietRounds=0; quietRounds < 3; ) {
+            int delivered=watchdog.checkAndNotify(TimeUnit.MILLISECONDS, DEBOUNCE_MILLIS);
+            if ((delivered > 0) || (watchdog.getPendingEvents() > 0)) {
+                quietRounds = 0;
+            } else {
+                quietRounds++;
+            }
+        }
+    }
+
+    private static class EventsCollector extends FileAlterationListenerAdaptor {
+        private final String    rootPath;
+        private final List<String>  events=Collections.synchronizedList(new ArrayList<String>());
+
+        EventsCollector(File rootDir) {
+            rootPath = rootDir.getAbsolutePath();
+        }
+
+        List<String> getEvents() {
+            synchronized(events) {
+                return new ArrayList<String>(events);
+            }
+        }
+
+        void clear() {
+            events.clear();
+        }
+
+        boolean containsPath(String path) {
+            for (String e : getEvents()) {
+                if (e.endsWith(":" + path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void onDirectoryCreate(File directory) {
+            addEvent("directoryCreate", directory);
+        }
+
+        @Override
+        public void onDirectoryChange(File directory) {
+            addEvent("directoryChange", directory);
+        }
+
+        @Override
+        public void onDirectoryDelete(File directory) {
+            addEvent("directoryDelete", directory);
+        }
+
+        @Override
+        public void onFileCreate(File file) {
+            addEvent("fileCreate", file);
+        }
+
+        @Override
+        public void onFileChange(File file) {
+            addEvent("fileChange", file);
+        }
+
+        @Override
+        public void onFileDelete(File file) {
+            addEvent("fileDelete", file);
+        }
+
+        private void addEvent(String kind, File file) {
+            String  path=file.getAbsolutePath();
+            path = (path.length() > rootPath.length()) ? path.substring(rootPath.length() + 1) : "";
+            events.add(kind + ":" + path.replace(File.separatorChar, '/'));
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.lang3.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.test.AbstractTestSupport;
+import org.apache.commons.test.MicroBenchmark;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 9, 2013 10:14:08 AM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConcurrentBlockingSetTest extends AbstractTestSupport {
+    private static final int    BENCHMARK_THREADS=64;
+
+    public ConcurrentBlockingSetTest() {
+        super();
+    }
+
+    @Test
+    public void testSetLikeBehavior() {
+        ConcurrentBlockingSet<Integer>  blkSet=new ConcurrentBlockingSet<Integer>();
+        Set<Integer>                    valSet=new TreeSet<Integer>();
+        for (int index=0; index < Byte.MAX_VALUE; index++) {
+            Integer value=Integer.valueOf(RANDOMIZER.nextInt(Byte.MAX_VALUE));
+            assertEquals("Mismatched insertion result on " + value, valSet.add(value), !blkSet.contains(value));
+            assertTrue("Failed to offer " + value, blkSet.offer(value));
+            assertEquals("Mismatched sizes on insertion of " + value, valSet.size(), blkSet.size());
+        }
+
+        assertTrue("Missing values", blkSet.containsAll(valSet));
+        assertEquals("Mismatched iterated values", valSet, new TreeSet<Integer>(blkSet));
+
+        List<Integer>   drained=new ArrayList<Integer>(valSet.size());
+        assertEquals("Mismatched drained count", valSet.size(), blkSet.drainTo(drained));
+        assertTrue("Set not empty after drain: " + blkSet, blkSet.isEmpty());
+        assertEquals("Mismatched drained values", valSet, new TreeSet<Integer>(drained));
+        assertNull("Unexpected polled value", blkSet.poll());
+    }
+
+    @Test
+    public void testPollingEmptySet() throws InterruptedException {
+        ConcurrentBlockingSet<Integer>  blkSet=new ConcurrentBlockingSet<Integer>();
+        long    waitTime=TimeUnit.MILLISECONDS.toNanos(107L + RANDOMIZER.nextInt(Byte.MAX_VALUE));
+        long    waitStart=System.nanoTime();
+        Object  result=blkSet.poll(waitTime, TimeUnit.NANOSECONDS);
+        long    nanoWait=System.nanoTime() - waitStart;
+
+        assertNull("Unexpected result after " + nanoWait + " nanos: " + result, result);
+        assertTrue("Wait time too small: expected=" + waitTime + "/waited=" + nanoWait, nanoWait >= waitTime);
+        assertTrue("Wait time too big: expected=" + waitTime + "/waited=" + nanoWait,
+                   nanoWait < (waitTime + TimeUnit.MILLISECONDS.toNanos(100L)));
+    }
+
+    @Test
+    public void testMultithreadedTake() throws InterruptedException {
+        final ConcurrentBlockingSet<Integer>    blkSet=new ConcurrentBlockingSet<Integer>();
+        final Set<Integer>                      consumed=Collections.synchronizedSet(new TreeSet<Integer>());
+        final int                               NUM_THREADS=Byte.SIZE, NUM_VALUES=Short.MAX_VALUE;
+        final CountDownLatch                    done=new CountDownLatch(NUM_VALUES);
+        List<Thread>                            threads=new ArrayList<Thread>(NUM_THREADS);
+        for (int index=0; index < NUM_THREADS; index++) {
+            Thread  t=new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for ( ; ; ) {
+                                Integer value=blkSet.take();
+                                assertTrue("Value consumed more than once: " + value, consumed.add(value));
+                                done.countDown();
+                            }
+                        } catch(InterruptedException e) {
+                            // expected - stop consuming
+                        }
+                    }
+                }, getCurrentTestName() + "-" + index);
+            t.start();
+            threads.add(t);
+        }
+
+        for (int index=0; index < NUM_VALUES; index++) {
+            assertTrue("Failed to offer " + index, blkSet.offer(Integer.valueOf(index)));
+        }
+
+        assertTrue("Not all values consumed: " + consumed.size(), done.await(30L, TimeUnit.SECONDS));
+        for (Thread t : threads) {
+            t.interrupt();
+            t.join(TimeUnit.SECONDS.toMillis(5L));
+            assertFalse("Thread still alive: " + t.getName(), t.isAlive());
+        }
+
+        assertEquals("Mismatched consumed values count", NUM_VALUES, consumed.size());
+        assertTrue("Set not empty: " + blkSet, blkSet.isEmpty());
+    }
+
+    @Test
+    public void testWaitForRemoval() throws InterruptedException {
+        final ConcurrentBlockingSet<String> blkSet=new ConcurrentBlockingSet<String>(1); // force all elements into same stripe
+        final String                        inFlight=getCurrentTestName(), other=inFlight + "-other";
+        assertTrue("Absent element not reported as removed", blkSet.waitForRemoval(inFlight, 0L, TimeUnit.MILLISECONDS));
+
+        blkSet.add(inFlight);
+        blkSet.add(other);
+        assertFalse("Present element reported as removed", blkSet.waitForRemoval(inFlight, 0L, TimeUnit.MILLISECONDS));
+        assertFalse("Timed wait reported removal", blkSet.waitForRemoval(inFlight, Byte.SIZE, TimeUnit.MILLISECONDS));
+
+        final long  SLEEP_TIME=Byte.MAX_VALUE;
+        Thread      t=new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(SLEEP_TIME);
+                        blkSet.remove(other);   // same stripe - waiter must not be released
+                        Thread.sleep(SLEEP_TIME);
+                        blkSet.remove(inFlight);
+                    } catch(InterruptedException e) {
+                        // ignored
+                    }
+                }
+            }, getCurrentTestName());
+        long    waitStart=System.currentTimeMillis();
+        t.start();
+
+        assertTrue("Removal not detected", blkSet.waitForRemoval(inFlight, 5L, TimeUnit.SECONDS));
+        long    waitTime=System.currentTimeMillis() - waitStart;
+        assertTrue("Released too soon: " + waitTime, waitTime >= (2L * SLEEP_TIME - Short.SIZE));
+        assertTrue("Set not empty: " + blkSet, blkSet.isEmpty());
+
+        t.join(TimeUnit.SECONDS.toMillis(5L));
+        assertFalse("Remover thread still alive", t.isAlive());
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testConcurrentAccessBenchmark() throws Exception {
+        final int   NUM_OPS=Short.MAX_VALUE, NUM_KEYS=1024;
+        System.out.append('\t').append(getCurrentTestName()).append(": threads=").append(String.valueOf(BENCHMARK_THREADS))
+                  .append(", ops/thread=").println(NUM_OPS);
+        for (int round=0; round < 3; round++) {
+            long    lockedTime=runConcurrentAccess(new BlockingSet<Integer>(), NUM_OPS, NUM_KEYS);
+            long    stripedTime=runConcurrentAccess(new ConcurrentBlockingSet<Integer>(), NUM_OPS, NUM_KEYS);
+            System.out.printf("\t\tround #%d: %-22s %6d msec.%n", round, BlockingSet.class.getSimpleName(), lockedTime);
+            System.out.printf("\t\tround #%d: %-22s %6d msec.%n", round, ConcurrentBlockingSet.class.getSimpleName(), stripedTime);
+            encourageGC();
+        }
+    }
+
+    private long runConcurrentAccess(final BlockingQueue<Integer> blkSet, final int numOps, final int numKeys) throws Exception {
+        final CountDownLatch    start=new CountDownLatch(1);
+        final AtomicBoolean     failed=new AtomicBoolean(false);
+        List<Thread>            threads=new ArrayList<Thread>(BENCHMARK_THREADS);
+        for (int index=0; index < BENCHMARK_THREADS; index++) {
+            final long  seed=RANDOMIZER.nextLong();
+            Thread      t=new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Random  rnd=new Random(seed);
+                        try {
+                            start.await();
+                            for (int op=0; op < numOps; op++) {
+                                Integer key=Integer.valueOf(rnd.nextInt(numKeys));
+                                int     action=rnd.nextInt(Byte.SIZE);
+                                if (action < 2) {
+                                    blkSet.offer(key);
+                                } else if (action < 3) {
+                                    blkSet.remove(key);
+                                } else if (action < 4) {
+                                    blkSet.poll();
+                                } else {
+                                    blkSet.contains(key);
+                                }
+                            }
+                        } catch(Throwable e) {
+                            failed.set(true);
+                        }
+                    }
+                });
+            t.start();
+            threads.add(t);
+        }
+
+        long    startTime=System.nanoTime();
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        long    duration=System.nanoTime() - startTime;
+        assertFalse("Failures encountered for " + blkSet.getClass().getSimpleName(), failed.get());
+        return TimeUnit.NANOSECONDS.toMillis(duration);
+    }
+}
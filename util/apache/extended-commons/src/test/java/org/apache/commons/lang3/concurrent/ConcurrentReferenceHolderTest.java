@@ -0,0 +1,223 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.lang3.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.test.AbstractTestSupport;
+import org.apache.commons.test.MicroBenchmark;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 9, 2013 10:51:33 AM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ConcurrentReferenceHolderTest extends AbstractTestSupport {
+    private static final long   TOLERANCE=Short.SIZE;
+    private static final int    BENCHMARK_THREADS=64;
+
+    public ConcurrentReferenceHolderTest() {
+        super();
+    }
+
+    @Test
+    public void testWaitForValueWhenNoValueProvided() throws InterruptedException {
+        ConcurrentReferenceHolder<String>   holder=new ConcurrentReferenceHolder<String>();
+        long    waitStart=System.currentTimeMillis();
+        String  value=holder.waitForValue(Byte.MAX_VALUE);
+        long    totalWait=System.currentTimeMillis() - waitStart;
+        assertNull("Unexpected value", value);
+        assertTrue("Total wait (" + totalWait + ") below min.", totalWait >= (Byte.MAX_VALUE - TOLERANCE));
+        assertTrue("Total wait (" + totalWait + ") above max.", totalWait <= (Byte.MAX_VALUE + TOLERANCE));
+    }
+
+    @Test
+    public void testSetAndConsumeValue() throws InterruptedException {
+        String                              expected=getCurrentTestName();
+        ConcurrentReferenceHolder<String>   holder=new ConcurrentReferenceHolder<String>(expected);
+        assertSame("Mismatched peeked value", expected, holder.peekValue());
+        try {
+            holder.setValue(expected, false);
+            fail("Unexpected success to override pending value");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+
+        String  override=expected + "-override";
+        assertSame("Mismatched overridden value", expected, holder.setValue(override, true));
+        assertSame("Mismatched consumed value", override, holder.waitForValue(0L));
+        assertNull("Unexpected pending value", holder.peekValue());
+        assertNull("Unexpected consumed value", holder.waitForValue(0L));
+    }
+
+    @Test
+    public void testMultithreadedWaitForValue() throws InterruptedException {
+        final Set<Integer>                          consumed=Collections.synchronizedSet(new TreeSet<Integer>());
+        final ConcurrentReferenceHolder<Integer>    holder=new ConcurrentReferenceHolder<Integer>();
+        final int                                   NUM_THREADS=Byte.SIZE;
+        final long                                  WAIT_TIME=TimeUnit.SECONDS.toMillis(NUM_THREADS) + TOLERANCE;
+        List<Thread>                                threadList=new ArrayList<Thread>(NUM_THREADS);
+        for (int index=1; index <= NUM_THREADS; index++) {
+            Thread  thread=new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        String  name=Thread.currentThread().getName();
+                        try {
+                            Integer value=holder.waitForValue(WAIT_TIME);
+                            assertNotNull(name + ": no value", value);
+                            assertTrue(name + ": non-unique value: " + value, consumed.add(value));
+                        } catch(InterruptedException e) {
+                            logger.warn(name + ": " + e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+                        }
+                    }
+                }, getCurrentTestName() + "-" + index);
+            thread.start();
+            threadList.add(thread);
+        }
+
+        for (int index=0; index < NUM_THREADS; index++) {
+            Integer value=Integer.valueOf(index);
+            // wait for the previous value to be consumed
+            for (long maxWait=System.currentTimeMillis() + WAIT_TIME; holder.peekValue() != null; ) {
+                assertTrue("Previous value not consumed before " + value, System.currentTimeMillis() < maxWait);
+                Thread.sleep(1L);
+            }
+            holder.setValue(value, false);
+        }
+
+        for (Thread thread : threadList) {
+            thread.join(WAIT_TIME);
+            assertFalse(thread.getName() + ": thread still alive", thread.isAlive());
+        }
+
+        assertEquals("Mismatched consumed size: " + consumed, NUM_THREADS, consumed.size());
+    }
+
+    @Test
+    public void testInterruptedWait() throws InterruptedException {
+        final ConcurrentReferenceHolder<String> holder=new ConcurrentReferenceHolder<String>();
+        final AtomicBoolean                     interrupted=new AtomicBoolean(false);
+        Thread  t=new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        holder.waitForValue();
+                    } catch(InterruptedException e) {
+                        interrupted.set(true);
+                    }
+                }
+            }, getCurrentTestName());
+        t.start();
+        Thread.sleep(TOLERANCE);
+        t.interrupt();
+        t.join(TimeUnit.SECONDS.toMillis(5L));
+        assertFalse("Waiter still alive", t.isAlive());
+        assertTrue("Interruption not signalled", interrupted.get());
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testConcurrentAccessBenchmark() throws Exception {
+        final int   NUM_OPS=Short.MAX_VALUE;
+        System.out.append('\t').append(getCurrentTestName()).append(": threads=").append(String.valueOf(BENCHMARK_THREADS))
+                  .append(", ops/thread=").println(NUM_OPS);
+        for (int round=0; round < 3; round++) {
+            final BlockingReferenceHolder<Integer>      locked=new BlockingReferenceHolder<Integer>();
+            final ConcurrentReferenceHolder<Integer>    lockFree=new ConcurrentReferenceHolder<Integer>();
+            long    lockedTime=runConcurrentAccess(NUM_OPS, new HolderAccessor() {
+                    @Override
+                    public void setValue(Integer value) {
+                        locked.setValue(value, true);
+                    }
+
+                    @Override
+                    public Integer pollValue() throws InterruptedException {
+                        return locked.waitForValue(0L);
+                    }
+                });
+            long    lockFreeTime=runConcurrentAccess(NUM_OPS, new HolderAccessor() {
+                    @Override
+                    public void setValue(Integer value) {
+                        lockFree.setValue(value, true);
+                    }
+
+                    @Override
+                    public Integer pollValue() throws InterruptedException {
+                        return lockFree.waitForValue(0L);
+                    }
+                });
+            System.out.printf("\t\tround #%d: %-26s %6d msec.%n", round, BlockingReferenceHolder.class.getSimpleName(), lockedTime);
+            System.out.printf("\t\tround #%d: %-26s %6d msec.%n", round, ConcurrentReferenceHolder.class.getSimpleName(), lockFreeTime);
+            encourageGC();
+        }
+    }
+
+    private static interface HolderAccessor {
+        void setValue(Integer value);
+        Integer pollValue() throws InterruptedException;
+    }
+
+    private static long runConcurrentAccess(final int numOps, final HolderAccessor accessor) throws Exception {
+        final CountDownLatch    start=new CountDownLatch(1);
+        final AtomicBoolean     failed=new AtomicBoolean(false);
+        List<Thread>            threads=new ArrayList<Thread>(BENCHMARK_THREADS);
+        for (int index=0; index < BENCHMARK_THREADS; index++) {
+            final Integer   value=Integer.valueOf(index);
+            Thread          t=new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int op=0; op < numOps; op++) {
+                                // mostly consumers - as is usually the case
+                                if ((op & 0x03) == 0) {
+                                    accessor.setValue(value);
+                                } else {
+                                    accessor.pollValue();
+                                }
+                            }
+                        } catch(Throwable e) {
+                            failed.set(true);
+                        }
+                    }
+                });
+            t.start();
+            threads.add(t);
+        }
+
+        long    startTime=System.nanoTime();
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        long    duration=System.nanoTime() - startTime;
+        assertFalse("Failures encountered", failed.get());
+        return TimeUnit.NANOSECONDS.toMillis(duration);
+    }
+}
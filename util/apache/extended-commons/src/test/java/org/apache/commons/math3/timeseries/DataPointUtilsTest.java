@@ -20,9 +20,13 @@ package org.apache.commons.math3.timeseries;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.collections15.numbers.ints.IntObjectMap;
+import org.apache.commons.collections15.numbers.longs.LongLongMap;
 import org.apache.commons.test.AbstractTestSupport;
 import org.apache.commons.test.MicroBenchmark;
 import org.junit.FixMethodOrder;
@@ -140,6 +144,86 @@ public class DataPointUtilsTest extends AbstractTestSupport {
         }
     }
     
+    @Test
+    public void testAggregateByBuckets() {
+        final long      NOW=System.currentTimeMillis(), INTERVAL=TimeUnit.MINUTES.toMillis(1L);
+        List<DataPoint> points=new ArrayList<DataPoint>();
+        for (int index=0; index < Byte.MAX_VALUE; index++) {
+            points.add(new DataPoint(NOW + index * (INTERVAL / Byte.SIZE), index));
+        }
+
+        IntObjectMap<BucketValue>   bucketsMap=DataPointUtils.aggregateByBuckets(INTERVAL, NOW, points);
+        assertEquals("Mismatched buckets count", 1 + (Byte.MAX_VALUE - 1) / Byte.SIZE, bucketsMap.size());
+        for (IntObjectMap<BucketValue>.EntryCursor c=bucketsMap.cursor(); c.moveNext(); ) {
+            int         bucket=c.key(), first=bucket * Byte.SIZE, last=Math.min(first + Byte.SIZE, Byte.MAX_VALUE) - 1;
+            BucketValue value=c.value();
+            assertEquals("Mismatched values count for bucket #" + bucket, 1 + last - first, value.getNumValues());
+            assertEquals("Mismatched values sum for bucket #" + bucket, (first + last) * (1 + last - first) / 2.0d, value.getSumValue(), 0.0001d);
+        }
+
+        try {
+            IntObjectMap<BucketValue>   result=DataPointUtils.aggregateByBuckets(INTERVAL, NOW + INTERVAL, points);
+            fail("Unexpected success to aggregate points that precede the base: " + result);
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCountByBuckets() {
+        final long  WIDTH=Byte.SIZE;
+        long[]      values=new long[Short.MAX_VALUE];
+        Map<Long,Long>  expected=new HashMap<Long,Long>();
+        for (int index=0; index < values.length; index++) {
+            long    value=RANDOMIZER.nextInt(Short.MAX_VALUE) - Byte.MAX_VALUE;
+            Long    bucket=Long.valueOf((long) Math.floor((double) value / WIDTH));
+            Long    count=expected.get(bucket);
+            expected.put(bucket, Long.valueOf((count == null) ? 1L : count.longValue() + 1L));
+            values[index] = value;
+        }
+
+        LongLongMap histogram=DataPointUtils.countByBuckets(WIDTH, values);
+        assertEquals("Mismatched buckets count", expected.size(), histogram.size());
+        for (Map.Entry<Long,Long> e : expected.entrySet()) {
+            Long    bucket=e.getKey();
+            assertEquals("Mismatched count for bucket=" + bucket, e.getValue().longValue(), histogram.get(bucket.longValue()));
+        }
+    }
+
+    @Test
+    @Category(MicroBenchmark.class)
+    public void testBucketsAggregationBenchmark() {
+        final int   NUM_SAMPLES=4 * 1024 * 1024, NUM_BUCKETS=Short.MAX_VALUE;
+        int[]       indices=new int[NUM_SAMPLES];
+        for (int index=0; index < indices.length; index++) {
+            indices[index] = RANDOMIZER.nextInt(NUM_BUCKETS);
+        }
+
+        for (int round=0; round < 3; round++) {
+            encourageGC();
+            long    boxedStart=System.nanoTime();
+            Map<Integer,BucketValue>    boxedMap=new HashMap<Integer,BucketValue>(NUM_BUCKETS);
+            for (int index=0; index < indices.length; index++) {
+                BucketValue.addToBucket(boxedMap, indices[index], index);
+            }
+            long    boxedEnd=System.nanoTime();
+
+            encourageGC();
+            long    primStart=System.nanoTime();
+            IntObjectMap<BucketValue>   primMap=new IntObjectMap<BucketValue>(NUM_BUCKETS);
+            for (int index=0; index < indices.length; index++) {
+                BucketValue.addToBucket(primMap, indices[index], index);
+            }
+            long    primEnd=System.nanoTime();
+
+            assertEquals("Mismatched buckets count", boxedMap.size(), primMap.size());
+            System.out.printf("\t%s[%d]: samples=%d, buckets=%d, HashMap=%d msec., IntObjectMap=%d msec.%n",
+                              getCurrentTestName(), round, NUM_SAMPLES, primMap.size(),
+                              TimeUnit.NANOSECONDS.toMillis(boxedEnd - boxedStart),
+                              TimeUnit.NANOSECONDS.toMillis(primEnd - primStart));
+        }
+    }
+
     @Test
     @Category(MicroBenchmark.class)
     public void testResampleByBuckets() {
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.net.ssh.der;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.RSAPrivateCrtKeySpec;
+
+import org.apache.commons.net.ssh.keys.rsa.RSAKeyDecoder;
+import org.apache.commons.test.AbstractTestSupport;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * @author Lyor Goldstein
+ * @since Dec 8, 2013 10:02:17 AM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class DERBufferParserTest extends AbstractTestSupport {
+    public DERBufferParserTest() {
+        super();
+    }
+
+    @Test
+    public void testSameObjectsAsDERParser() throws IOException {
+        BigInteger[]    values={
+                BigInteger.ZERO, BigInteger.ONE, BigInteger.valueOf(-1L), BigInteger.valueOf(Long.MAX_VALUE),
+                BigInteger.valueOf(Long.MIN_VALUE), new BigInteger(1024, RANDOMIZER), new BigInteger(1024, RANDOMIZER).negate()
+            };
+        byte[]          encoded=encodeSequence(values);
+
+        ASN1Object      expSeq=new DERParser(encoded).readObject();
+        DERBufferParser parser=new DERBufferParser(encoded);
+        assertTrue("No sequence", parser.next());
+        assertEquals("Mismatched sequence", expSeq, parser.toASN1Object());
+
+        DERParser       expParser=expSeq.createParser();
+        DERBufferParser seqParser=parser.createParser();
+        assertFalse("Unexpected data after sequence", parser.next());
+        for (BigInteger v : values) {
+            ASN1Object  expected=expParser.readObject();
+            assertTrue("No value for " + v, seqParser.next());
+            assertEquals("Mismatched object for " + v, expected, seqParser.toASN1Object());
+            assertEquals("Mismatched integer value", v, seqParser.asInteger());
+
+            if (v.bitLength() < Long.SIZE) {
+                assertEquals("Mismatched long value", v.longValue(), seqParser.asLong());
+            } else {
+                try {
+                    long    l=seqParser.asLong();
+                    fail("Unexpected long decoding success for " + v + ": " + l);
+                } catch(StreamCorruptedException e) {
+                    // expected
+                }
+            }
+        }
+
+        assertNull("Unexpected DERParser extra data", expParser.readObject());
+        assertFalse("Unexpected DERBufferParser extra data", seqParser.next());
+        assertNull("Unexpected type after end", seqParser.getObjType());
+    }
+
+    @Test
+    public void testLongFormLength() throws IOException {
+        byte[]  data=new byte[Short.MAX_VALUE + Byte.MAX_VALUE];
+        RANDOMIZER.nextBytes(data);
+
+        ByteArrayOutputStream   baos=new ByteArrayOutputStream(data.length + Byte.SIZE);
+        DERWriter               w=new DERWriter(baos);
+        try {
+            w.writeObject((byte) ASN1Type.OCTET_STRING.getTypeValue(), data.length, data);
+        } finally {
+            w.close();
+        }
+
+        // embed the encoded data inside a larger buffer to make sure offsets are respected
+        byte[]      encoded=baos.toByteArray(), padded=new byte[encoded.length + 2 * Byte.SIZE];
+        System.arraycopy(encoded, 0, padded, Byte.SIZE, encoded.length);
+
+        ByteBuffer      buf=ByteBuffer.wrap(padded, Byte.SIZE, encoded.length);
+        DERBufferParser parser=new DERBufferParser(buf);
+        parser.next(ASN1Type.OCTET_STRING);
+        assertEquals("Mismatched value length", data.length, parser.getValueLength());
+        assertArrayEquals("Mismatched value", data, parser.getValueBytes());
+        assertEquals("Mismatched value view", ByteBuffer.wrap(data), parser.getValue());
+        assertEquals("Source buffer position modified", Byte.SIZE, buf.position());
+    }
+
+    @Test
+    public void testObjectIdentifier() throws IOException {
+        byte[]          rsaEncryption={ 0x06, 0x09, 0x2A, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xF7, 0x0D, 0x01, 0x01, 0x01 };
+        DERBufferParser parser=new DERBufferParser(rsaEncryption).next(ASN1Type.OBJECT_IDENTIFIER);
+        assertEquals("Mismatched OID", "1.2.840.113549.1.1.1", parser.asObjectIdentifier());
+
+        byte[]          jointIso={ 0x06, 0x03, (byte) 0x88, 0x37, 0x03 };   // 2.999.3
+        assertEquals("Mismatched joint-iso OID", "2.999.3", new DERBufferParser(jointIso).next(ASN1Type.OBJECT_IDENTIFIER).asObjectIdentifier());
+    }
+
+    @Test
+    public void testTruncatedData() throws IOException {
+        byte[]  encoded=encodeSequence(BigInteger.valueOf(Integer.MAX_VALUE), BigInteger.TEN);
+        for (int len=1; len < encoded.length; len++) {
+            try {
+                DERBufferParser parser=new DERBufferParser(encoded, 0, len);
+                parser.next();
+                fail("Unexpected success for length=" + len + ": " + parser);
+            } catch(StreamCorruptedException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testDecodeRSAKeySpec() throws Exception {
+        KeyPairGenerator    gen=KeyPairGenerator.getInstance(RSAKeyDecoder.RSA_ALGORITHM);
+        gen.initialize(1024);
+
+        RSAPrivateCrtKey        key=(RSAPrivateCrtKey) gen.generateKeyPair().getPrivate();
+        ByteArrayOutputStream   baos=new ByteArrayOutputStream();
+        RSAKeyDecoder.encodeRSAKey(key, baos, true);
+
+        byte[]                  encoded=baos.toByteArray();
+        RSAPrivateCrtKeySpec    expected=RSAKeyDecoder.decodeRSAKeySpec(new ByteArrayInputStream(encoded), true);
+        RSAPrivateCrtKeySpec    actual=RSAKeyDecoder.decodeRSAKeySpec(ByteBuffer.wrap(encoded));
+        assertEquals("Mismatched modulus", expected.getModulus(), actual.getModulus());
+        assertEquals("Mismatched public exponent", expected.getPublicExponent(), actual.getPublicExponent());
+        assertEquals("Mismatched private exponent", expected.getPrivateExponent(), actual.getPrivateExponent());
+        assertEquals("Mismatched prime P", expected.getPrimeP(), actual.getPrimeP());
+        assertEquals("Mismatched prime Q", expected.getPrimeQ(), actual.getPrimeQ());
+        assertEquals("Mismatched CRT coefficient", expected.getCrtCoefficient(), actual.getCrtCoefficient());
+        assertEquals("Mismatched key", key, RSAKeyDecoder.DECODER.decodePEMPrivateKey(encoded, null));
+    }
+
+    private static byte[] encodeSequence(BigInteger ... values) throws IOException {
+        ByteArrayOutputStream   baos=new ByteArrayOutputStream();
+        DERWriter               w=new DERWriter(baos);
+        try {
+            DERWriter   seq=w.startSequence();
+            try {
+                for (BigInteger v : values) {
+                    seq.writeBigInteger(v);
+                }
+            } finally {
+                seq.close();
+            }
+        } finally {
+            w.close();
+        }
+
+        return baos.toByteArray();
+    }
+}
@@ -45,6 +45,7 @@ import org.junit.FixMethodOrder;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import org.mockito.Mockito;
 
 /**
  * @author Lyor G.
@@ -100,6 +101,52 @@ public class KeyUtilsTest extends AbstractSSHKeysTestSupport {
         assertEquals("Mismatched key comparator result", 0, KeyUtils.BY_ALGORITHM_ENCODED_FORM_KEY_COMPARATOR.compare(expected, actual));
     }
 
+    @Test
+    public void testDecodedPublicKeysCache() throws Exception {
+        KeyPairGenerator    gen=KeyPairGenerator.getInstance(RSAKeyDecoder.RSA_ALGORITHM);
+        gen.initialize(1024);
+
+        PublicKey                       expected=gen.generateKeyPair().getPublic();
+        String                          keyData=KeyUtils.appendOpenSSHPublicKey(new StringBuilder(), expected, getCurrentTestName()).toString();
+        DecodedKeysCache<PublicKey>     cache=KeyUtils.getPublicKeysCache();
+        long                            hits=cache.getHits(), misses=cache.getMisses();
+        PublicKey                       first=KeyUtils.decodeOpenSSHPublicKey(keyData);
+        assertArrayEquals("Mismatched decoded key data", expected.getEncoded(), first.getEncoded());
+        assertEquals("Mismatched misses count", misses + 1L, cache.getMisses());
+
+        for (int index=1; index <= Byte.SIZE; index++) {
+            PublicKey   actual=KeyUtils.decodeOpenSSHPublicKey(keyData);
+            assertSame("Not cached at iteration #" + index, first, actual);
+            assertEquals("Mismatched hits count at iteration #" + index, hits + index, cache.getHits());
+        }
+        assertTrue("Bad hit rate: " + cache, cache.getHitRate() > 0.0d);
+    }
+
+    @Test
+    public void testDecodedKeysCacheEviction() {
+        DecodedKeysCache<PublicKey> cache=new DecodedKeysCache<PublicKey>(2);
+        PublicKey                   key=Mockito.mock(PublicKey.class);
+        String[]                    cacheKeys=new String[3];
+        for (int index=0; index < cacheKeys.length; index++) {
+            cacheKeys[index] = DecodedKeysCache.getCacheKey(getCurrentTestName(), String.valueOf(index));
+            assertSame("Mismatched cached instance #" + index, key, cache.put(cacheKeys[index], key));
+            if (index == 1) {
+                assertSame("Oldest entry not found", key, cache.get(cacheKeys[0]));   // raises its usage frequency
+            }
+        }
+
+        assertEquals("Mismatched size", 2, cache.size());
+        assertEquals("Mismatched evictions", 1L, cache.getEvictions());
+        assertSame("Frequently used entry evicted", key, cache.get(cacheKeys[0]));
+        assertNull("Rarely used entry not evicted", cache.get(cacheKeys[1]));
+        assertEquals("Mismatched hit rate", 2.0d / 3.0d, cache.getHitRate(), 0.0001d);
+
+        assertFalse("Same key for different parts split",
+                    DecodedKeysCache.getCacheKey("ab", "c").equals(DecodedKeysCache.getCacheKey("a", "bc")));
+        assertFalse("Same key for null and empty part",
+                    DecodedKeysCache.getCacheKey((String) null).equals(DecodedKeysCache.getCacheKey("")));
+    }
+
     private PrivateKey testLoadPEMPrivateKey(String algorithm) throws Exception {
         URL url=getClassResource(getClass().getSimpleName() + "-" + algorithm + KeyUtils.PEM_KEYFILE_EXT);
         assertNotNull("Missing test file", url);
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sshd.server;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.logging.AbstractLoggingBean;
+import org.apache.commons.net.ssh.keys.CryptoKeyEntry;
+import org.apache.commons.net.ssh.keys.KeyUtils;
+import org.apache.sshd.server.session.ServerSession;
+
+/**
+ * <P>A {@link PublickeyAuthenticator} that looks up the offered key in a hash
+ * index keyed by its fingerprint (see {@link KeyUtils#getFingerprint(java.security.Key)}),
+ * so the lookup cost does not depend on the number of authorized keys.</P>
+ *
+ * <P>If created for an <code>authorized_keys</code> file, the file is checked
+ * for modifications (at most once per configured interval) during authentication
+ * and reloaded if changed. The reload is incremental - lines that have not changed
+ * re-use their already decoded entries - and the new index replaces the previous
+ * one atomically, so concurrent authentications are never blocked and always see
+ * a consistent index. Lines that cannot be parsed are logged and ignored.</P>
+ *
+ * <P>The file is loaded synchronously when the authenticator is created, and
+ * authentication attempts wait for the load if it has not succeeded yet. The
+ * modification check relies on the file's last-modified time and size - since
+ * a same-size rewrite within the file system's timestamp granularity (see
+ * {@link #MODIFICATION_TIME_GRANULARITY}) leaves both unchanged, the file is
+ * re-read and its content hash compared as long as its last-modified time is
+ * too close to the time it was last read to be trusted.</P>
+ * <P>Copyright as per GPLv2</P>
+ * @author Lyor Goldstein
+ * @since Dec 7, 2013 2:12:44 PM
+ */
+public class AuthorizedKeysAuthenticator extends AbstractLoggingBean implements PublickeyAuthenticator {
+    /**
+     * Default minimum interval (msec.) between checks of the keys file modification
+     */
+    public static final long    DEFAULT_RELOAD_CHECK_INTERVAL=TimeUnit.SECONDS.toMillis(5L);
+    /**
+     * Coarsest last-modified time resolution (msec.) assumed for the file
+     * system - e.g., FAT uses 2 seconds
+     */
+    public static final long    MODIFICATION_TIME_GRANULARITY=TimeUnit.SECONDS.toMillis(2L);
+    private static final Charset    CONTENT_HASH_CHARSET=Charset.forName("UTF-8");
+
+    private final File  keysFile;
+    private final long  checkInterval;
+    private final AtomicBoolean reloading=new AtomicBoolean(false);
+    private volatile KeysIndex  index;
+    private volatile long   lastCheckTime;
+
+    /**
+     * Creates a static index from the specified entries
+     * @param entries The {@link CryptoKeyEntry}-ies to index
+     */
+    public AuthorizedKeysAuthenticator(Collection<? extends CryptoKeyEntry> entries) {
+        keysFile = null;
+        checkInterval = Long.MAX_VALUE;
+        index = new KeysIndex(0L, 0L);
+        if (entries != null) {
+            for (CryptoKeyEntry entry : entries) {
+                indexEntry(index, null, entry);
+            }
+        }
+        index.markLoaded(ArrayUtils.EMPTY_BYTE_ARRAY, Long.MAX_VALUE);
+    }
+
+    public AuthorizedKeysAuthenticator(File file) {
+        this(file, DEFAULT_RELOAD_CHECK_INTERVAL);
+    }
+
+    /**
+     * @param file The <code>authorized_keys</code> file - <B>Note:</B> it
+     * need not exist (in which case no key is authorized)
+     * @param reloadCheckInterval Minimum interval (msec.) between checks of the
+     * file modification - zero means check on every authentication attempt
+     */
+    public AuthorizedKeysAuthenticator(File file, long reloadCheckInterval) {
+        keysFile = Validate.notNull(file, "No keys file", ArrayUtils.EMPTY_OBJECT_ARRAY);
+        Validate.isTrue(reloadCheckInterval >= 0L, "Bad reload check interval: %d", reloadCheckInterval);
+        checkInterval = reloadCheckInterval;
+        index = new KeysIndex(Long.MIN_VALUE, Long.MIN_VALUE);
+        lastCheckTime = System.currentTimeMillis();
+
+        try {
+            loadIndex();
+        } catch(IOException e) {
+            logger.warn("AuthorizedKeysAuthenticator(" + keysFile + ") failed (" + e.getClass().getSimpleName() + ") to load: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The watched keys {@link File} - {@code null} if static index
+     */
+    public final File getKeysFile() {
+        return keysFile;
+    }
+
+    public final long getReloadCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * @return Number of distinct indexed keys fingerprints
+     */
+    public int getIndexedKeysCount() {
+        return index.byFingerprint.size();
+    }
+
+    @Override
+    public boolean authenticate(String username, PublicKey key, ServerSession session) {
+        if (StringUtils.isEmpty(username) || (key == null)) {
+            return false;
+        }
+
+        String  fingerprint=KeyUtils.getFingerprint(key);
+        if (StringUtils.isEmpty(fingerprint)) {
+            return false;
+        }
+
+        for (CryptoKeyEntry entry : resolveIndex().getEntries(fingerprint)) {
+            if (ObjectUtils.equals(username, entry.getUser())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if the keys file has changed and reloads it if so
+     * @return <code>true</code> if the index was re-built
+     * @throws IOException If failed to read the file
+     */
+    public synchronized boolean reload() throws IOException {
+        if (keysFile == null) {
+            return false;
+        }
+
+        return loadIndex();
+    }
+
+    private boolean loadIndex() throws IOException {
+        KeysIndex   curIndex=index;
+        long        lastModified=keysFile.lastModified(), size=keysFile.length();
+        if (curIndex.isLoaded() && (lastModified == curIndex.lastModified) && (size == curIndex.size)
+         && (!curIndex.isModificationTimeAmbiguous())) {
+            return false;
+        }
+
+        KeysIndex       newIndex=new KeysIndex(lastModified, size);
+        MessageDigest   digest=DigestUtils.getSha1Digest();
+        long            readTime=System.currentTimeMillis();
+        if (keysFile.exists()) {
+            BufferedReader  rdr=new BufferedReader(new FileReader(keysFile));
+            try {
+                for (String line=rdr.readLine(); line != null; line = rdr.readLine()) {
+                    digest.update(line.getBytes(CONTENT_HASH_CHARSET));
+                    digest.update((byte) '\n');
+                    indexLine(curIndex, newIndex, line.trim());
+                }
+            } finally {
+                rdr.close();
+            }
+        }
+
+        newIndex.markLoaded(digest.digest(), readTime);
+        index = newIndex;   // atomic swap - even if same content in order to record the new read time
+        if (curIndex.isLoaded() && Arrays.equals(curIndex.contentHash, newIndex.contentHash)) {
+            return false;
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("reload(" + keysFile + ") indexed " + newIndex.byFingerprint.size() + " keys"
+                       + " (re-used " + newIndex.reusedLines + " lines)");
+        }
+        return true;
+    }
+
+    private KeysIndex resolveIndex() {
+        if (!index.isLoaded()) {
+            return awaitIndex();
+        }
+
+        long    now=System.currentTimeMillis();
+        if ((keysFile == null) || ((now - lastCheckTime) < checkInterval)) {
+            return index;
+        }
+
+        // only one thread reloads - the others keep using the current index
+        if (reloading.compareAndSet(false, true)) {
+            try {
+                lastCheckTime = now;
+                reload();
+            } catch(IOException e) {
+                logger.warn("resolveIndex(" + keysFile + ") failed (" + e.getClass().getSimpleName() + ") to reload: " + e.getMessage());
+            } finally {
+                reloading.set(false);
+            }
+        }
+
+        return index;
+    }
+
+    // callers wait for the first successful load instead of using an empty index
+    private synchronized KeysIndex awaitIndex() {
+        if (!index.isLoaded()) {
+            try {
+                lastCheckTime = System.currentTimeMillis();
+                loadIndex();
+            } catch(IOException e) {
+                logger.warn("awaitIndex(" + keysFile + ") failed (" + e.getClass().getSimpleName() + ") to load: " + e.getMessage());
+            }
+        }
+
+        return index;
+    }
+
+    private void indexLine(KeysIndex prevIndex, KeysIndex newIndex, String line) {
+        if (StringUtils.isEmpty(line) || (line.charAt(0) == CryptoKeyEntry.COMMENT_CHAR)) {
+            return;
+        }
+
+        IndexedLine prev=prevIndex.lines.get(line);
+        if (prev != null) {
+            newIndex.addLine(line, prev);
+            newIndex.reusedLines++;
+            return;
+        }
+
+        try {
+            indexEntry(newIndex, line, CryptoKeyEntry.parseCryptoKeyEntry(line));
+        } catch(IOException | RuntimeException e) {
+            logger.warn("indexLine(" + line + ") failed (" + e.getClass().getSimpleName() + ") to parse: " + e.getMessage());
+        }
+    }
+
+    private void indexEntry(KeysIndex idx, String line, CryptoKeyEntry entry) {
+        if (entry == null) {
+            return;
+        }
+
+        try {
+            String  fingerprint=KeyUtils.getFingerprint(entry.decodeOpenSSHPublicKey());
+            if (StringUtils.isEmpty(fingerprint)) {
+                logger.warn("indexEntry(" + entry + ") no fingerprint");
+                return;
+            }
+
+            idx.addLine(line, new IndexedLine(fingerprint, entry));
+        } catch(IOException | RuntimeException e) {
+            logger.warn("indexEntry(" + entry + ") failed (" + e.getClass().getSimpleName() + ") to decode: " + e.getMessage());
+        }
+    }
+
+    private static final class IndexedLine {
+        final String    fingerprint;
+        final CryptoKeyEntry    entry;
+
+        IndexedLine(String fp, CryptoKeyEntry e) {
+            fingerprint = fp;
+            entry = e;
+        }
+    }
+
+    /**
+     * An index that is fully built before being published and never modified afterwards
+     */
+    private static final class KeysIndex {
+        final long  lastModified, size;
+        final Map<String,IndexedLine>   lines=new HashMap<String,IndexedLine>();
+        final Map<String,Collection<CryptoKeyEntry>>    byFingerprint=new HashMap<String,Collection<CryptoKeyEntry>>();
+        int reusedLines;
+        byte[]  contentHash;    // null if not loaded yet
+        long    readTime;
+
+        KeysIndex(long modTime, long fileSize) {
+            lastModified = modTime;
+            size = fileSize;
+        }
+
+        void markLoaded(byte[] hash, long loadTime) {
+            contentHash = hash;
+            readTime = loadTime;
+        }
+
+        boolean isLoaded() {
+            return contentHash != null;
+        }
+
+        /**
+         * @return <code>true</code> if the file was read within the timestamp
+         * granularity of its last modification, so a same-size rewrite might
+         * not have changed its last-modified time
+         */
+        boolean isModificationTimeAmbiguous() {
+            return (lastModified + MODIFICATION_TIME_GRANULARITY) >= readTime;
+        }
+
+        void addLine(String line, IndexedLine l) {
+            if (line != null) {
+                lines.put(line, l);
+            }
+
+            Collection<CryptoKeyEntry>  entries=byFingerprint.get(l.fingerprint);
+            if (entries == null) {
+                entries = new LinkedList<CryptoKeyEntry>();
+                byFingerprint.put(l.fingerprint, entries);
+            }
+            entries.add(l.entry);
+        }
+
+        Collection<CryptoKeyEntry> getEntries(String fingerprint) {
+            Collection<CryptoKeyEntry>  entries=byFingerprint.get(fingerprint);
+            return (entries == null) ? Collections.<CryptoKeyEntry>emptyList() : entries;
+        }
+    }
+}
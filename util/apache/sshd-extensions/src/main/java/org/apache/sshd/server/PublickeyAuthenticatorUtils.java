@@ -18,15 +18,8 @@ package org.apache.sshd.server;
 
 import java.io.File;
 import java.security.PublicKey;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Map;
 
-import org.apache.commons.collections15.AbstractExtendedPredicate;
-import org.apache.commons.collections15.CollectionUtils;
-import org.apache.commons.collections15.ExtendedCollectionUtils;
-import org.apache.commons.collections15.ExtendedMapUtils;
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.net.ssh.keys.CryptoKeyEntry;
 import org.apache.sshd.server.session.ServerSession;
 
@@ -60,44 +53,23 @@ public class PublickeyAuthenticatorUtils {
 
     /**
      * @param entries A {@link Collection} of {@link CryptoKeyEntry}-ies
-     * @return A {@link PublickeyAuthenticator} that matches the received encoded
-     * public key bytes to one of the authorized keys published by the user
+     * @return A {@link PublickeyAuthenticator} that matches the received
+     * public key fingerprint to one of the authorized keys published by the user
      * @see CryptoKeyEntry#readAuthorizedKeys(File)
+     * @see AuthorizedKeysAuthenticator
      */
     public static final PublickeyAuthenticator authorizedKeysAuthenticator(Collection<? extends CryptoKeyEntry> entries) {
-        final Map<String,? extends Collection<CryptoKeyEntry>>  keysMap=
-                ExtendedMapUtils.mapCollectionMultiValues(
-                        CryptoKeyEntry.USERNAME_EXTRACTOR, ExtendedCollectionUtils.<CryptoKeyEntry>linkedListFactory(), entries);
-        return new PublickeyAuthenticator() {
-            @Override
-            public boolean authenticate(String username, PublicKey key, ServerSession session) {
-                Collection<CryptoKeyEntry>  keySet=keysMap.get(username);
-                if (ExtendedCollectionUtils.isEmpty(keySet)) {
-                    return false;
-                }
-                
-                final byte[]  keyBytes=key.getEncoded();
-                if (ArrayUtils.isEmpty(keyBytes)) {
-                    return false;   // TODO consider throwing an exception
-                }
-                
-                CryptoKeyEntry  entry=CollectionUtils.find(keySet, new AbstractExtendedPredicate<CryptoKeyEntry>(CryptoKeyEntry.class) {
-                        @Override
-                        public boolean evaluate(CryptoKeyEntry e) {
-                            byte[]  entryBytes=e.getKeyData();
-                            if (Arrays.equals(keyBytes, entryBytes)) {
-                                return true;
-                            } else {
-                                return false;   // debug breakpoint;
-                            }
-                        }
-                    });
-                if (entry == null) {
-                    return false;
-                } else {
-                    return true;
-                }
-            }
-        };
+        return new AuthorizedKeysAuthenticator(entries);
+    }
+
+    /**
+     * @param keysFile The <code>authorized_keys</code> {@link File}
+     * @return A {@link PublickeyAuthenticator} that matches the received
+     * public key fingerprint to one of the authorized keys published by the
+     * user - reloading the file if it changes
+     * @see AuthorizedKeysAuthenticator
+     */
+    public static final PublickeyAuthenticator authorizedKeysAuthenticator(File keysFile) {
+        return new AuthorizedKeysAuthenticator(keysFile);
     }
 }
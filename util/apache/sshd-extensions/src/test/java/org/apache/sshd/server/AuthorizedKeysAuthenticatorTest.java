@@ -0,0 +1,169 @@
+/*
+ * Copyright 2013 Lyor Goldstein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sshd.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.net.ssh.keys.CryptoKeyEntry;
+import org.apache.commons.net.ssh.keys.KeyUtils;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.test.AbstractSshdTestSupport;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.mockito.Mockito;
+
+/**
+ * <P>Copyright as per GPLv2</P>
+ * @author Lyor Goldstein
+ * @since Dec 7, 2013 3:05:19 PM
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class AuthorizedKeysAuthenticatorTest extends AbstractSshdTestSupport {
+    private static final ServerSession  MOCK_SESSION=Mockito.mock(ServerSession.class);
+    private static final List<PublicKey>    KEYS=new ArrayList<PublicKey>();
+
+    // avoid repeated calls to constructor
+    static {
+        try {
+            for (String algorithm : new String[] { "RSA", "DSA" }) {
+                KeyPairGenerator    gen=KeyPairGenerator.getInstance(algorithm);
+                gen.initialize(1024);
+                for (int index=0; index < 2; index++) {
+                    KEYS.add(gen.generateKeyPair().getPublic());
+                }
+            }
+        } catch(GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public AuthorizedKeysAuthenticatorTest() {
+        super();
+    }
+
+    @Test
+    public void testStaticEntries() throws IOException {
+        List<CryptoKeyEntry>    entries=new ArrayList<CryptoKeyEntry>(KEYS.size());
+        for (int index=0; index < KEYS.size(); index++) {
+            entries.add(CryptoKeyEntry.parseCryptoKeyEntry(toAuthorizedKeyLine(KEYS.get(index), "user" + index)));
+        }
+
+        PublickeyAuthenticator  authenticator=PublickeyAuthenticatorUtils.authorizedKeysAuthenticator(entries);
+        for (int index=0; index < KEYS.size(); index++) {
+            PublicKey   key=KEYS.get(index);
+            assertTrue("Key not authenticated for user #" + index, authenticator.authenticate("user" + index, key, MOCK_SESSION));
+            assertFalse("Key authenticated for wrong user #" + index, authenticator.authenticate("user" + (index + 1), key, MOCK_SESSION));
+        }
+
+        assertFalse("Null key authenticated", authenticator.authenticate("user0", null, MOCK_SESSION));
+    }
+
+    @Test
+    public void testFileReload() throws IOException {
+        File    keysFile=new File(ensureTempFolderExists(), getClass().getSimpleName() + "-" + getCurrentTestName());
+        if (keysFile.exists()) {
+            assertTrue("Failed to delete " + keysFile, keysFile.delete());
+        }
+
+        AuthorizedKeysAuthenticator authenticator=new AuthorizedKeysAuthenticator(keysFile, 0L);
+        assertFalse("Key authenticated with no file", authenticator.authenticate(getCurrentTestName(), KEYS.get(0), MOCK_SESSION));
+
+        StringBuilder   sb=new StringBuilder()
+                .append(CryptoKeyEntry.COMMENT_CHAR).append(' ').append(getCurrentTestName()).append('\n')
+                .append("ssh-rsa ### bad-data@").append(getCurrentTestName()).append('\n')
+                .append(toAuthorizedKeyLine(KEYS.get(0), getCurrentTestName())).append('\n');
+        writeKeysFile(keysFile, sb);
+        assertTrue("Key not authenticated after file creation", authenticator.authenticate(getCurrentTestName(), KEYS.get(0), MOCK_SESSION));
+        assertEquals("Mismatched indexed keys count", 1, authenticator.getIndexedKeysCount());
+
+        // rotate the keys
+        sb.setLength(0);
+        for (int index=1; index < KEYS.size(); index++) {
+            sb.append(toAuthorizedKeyLine(KEYS.get(index), getCurrentTestName())).append('\n');
+        }
+        writeKeysFile(keysFile, sb);
+        assertFalse("Removed key still authenticated", authenticator.authenticate(getCurrentTestName(), KEYS.get(0), MOCK_SESSION));
+        for (int index=1; index < KEYS.size(); index++) {
+            assertTrue("New key #" + index + " not authenticated", authenticator.authenticate(getCurrentTestName(), KEYS.get(index), MOCK_SESSION));
+        }
+        assertEquals("Mismatched rotated keys count", KEYS.size() - 1, authenticator.getIndexedKeysCount());
+        assertFalse("Unexpected reload of unchanged file", authenticator.reload());
+
+        assertTrue("Failed to delete " + keysFile, keysFile.delete());
+        assertFalse("Key authenticated after file deletion", authenticator.authenticate(getCurrentTestName(), KEYS.get(1), MOCK_SESSION));
+    }
+
+    @Test
+    public void testInitialLoad() throws IOException {
+        File    keysFile=new File(ensureTempFolderExists(), getClass().getSimpleName() + "-" + getCurrentTestName());
+        writeKeysFile(keysFile, toAuthorizedKeyLine(KEYS.get(0), getCurrentTestName()) + "\n");
+
+        // make sure the key is available without waiting for the first modification check
+        AuthorizedKeysAuthenticator authenticator=new AuthorizedKeysAuthenticator(keysFile, Long.MAX_VALUE);
+        assertEquals("Mismatched initially indexed keys count", 1, authenticator.getIndexedKeysCount());
+        assertTrue("Key not authenticated after initial load", authenticator.authenticate(getCurrentTestName(), KEYS.get(0), MOCK_SESSION));
+    }
+
+    @Test
+    public void testSameSizeRewrite() throws IOException {
+        File    keysFile=new File(ensureTempFolderExists(), getClass().getSimpleName() + "-" + getCurrentTestName());
+        String  oldUser=getCurrentTestName() + "A", newUser=getCurrentTestName() + "B";
+        FileUtils.writeStringToFile(keysFile, toAuthorizedKeyLine(KEYS.get(0), oldUser) + "\n");
+
+        AuthorizedKeysAuthenticator authenticator=new AuthorizedKeysAuthenticator(keysFile, 0L);
+        assertTrue("Original user not authenticated", authenticator.authenticate(oldUser, KEYS.get(0), MOCK_SESSION));
+
+        // rewrite with same size and restore the modification time to simulate a change within the timestamp granularity
+        long    lastModified=keysFile.lastModified(), size=keysFile.length();
+        FileUtils.writeStringToFile(keysFile, toAuthorizedKeyLine(KEYS.get(0), newUser) + "\n");
+        assertTrue("Failed to restore modification time", keysFile.setLastModified(lastModified));
+        assertEquals("Mismatched rewritten size", size, keysFile.length());
+
+        assertTrue("New user not authenticated", authenticator.authenticate(newUser, KEYS.get(0), MOCK_SESSION));
+        assertFalse("Old user still authenticated", authenticator.authenticate(oldUser, KEYS.get(0), MOCK_SESSION));
+    }
+
+    @Test
+    public void testFingerprint() {
+        for (PublicKey key : KEYS) {
+            String  fingerprint=KeyUtils.getFingerprint(key);
+            assertTrue("Bad fingerprint prefix: " + fingerprint, fingerprint.startsWith(key.getAlgorithm() + ":"));
+            for (PublicKey other : KEYS) {
+                assertEquals("Mismatched fingerprint equality", key == other, fingerprint.equals(KeyUtils.getFingerprint(other)));
+            }
+        }
+    }
+
+    private static void writeKeysFile(File keysFile, CharSequence data) throws IOException {
+        long    lastModified=keysFile.exists() ? keysFile.lastModified() : 0L;
+        FileUtils.writeStringToFile(keysFile, data.toString());
+        // make sure modification is detected even if the file system timestamp granularity is coarse
+        keysFile.setLastModified(Math.max(System.currentTimeMillis(), lastModified + 2000L));
+    }
+
+    private static String toAuthorizedKeyLine(PublicKey key, String username) throws IOException {
+        return KeyUtils.appendOpenSSHPublicKey(new StringBuilder(), key, username + "@localhost").toString();
+    }
+}